@@ -26,6 +26,7 @@
  */
 package Camera;
 
+import bodies.ModelViewStack;
 import java.util.List;
 import javax.media.opengl.GL2;
 import javax.media.opengl.glu.GLU;
@@ -41,9 +42,11 @@ import robotrace.Vector;
  */
 public class Camera {
 
+    private final ModelViewStack modelView;
     private CameraView viewPrevious;
     private CameraView viewNext;
     private CameraMode modeCurrent;
+    private Frustum frustum;
 
     private static final double SWITCH_TIME = 10d;
     private static final double SWITCH_TRANSIT_TIME = 4d;
@@ -52,6 +55,13 @@ public class Camera {
     private double tAutoSwitch = 0d;
     private int camModePrevious = 0;
 
+    /**
+     * @param modelView The ModelViewStack through which the view is set.
+     */
+    public Camera(ModelViewStack modelView) {
+        this.modelView = modelView;
+    }
+
     public void initialize(GlobalState gs, List<Robot> robots) {
         viewPrevious = generateCameraView(gs, robots);
         viewNext = generateCameraView(gs, robots);
@@ -84,13 +94,21 @@ public class Camera {
         } else {
             modeCurrent = viewNext.getCameraMode();
         }
-        modeCurrent.setView(gl, glu, gs);
+        modeCurrent.setView(gl, glu, gs, modelView);
+        frustum = modeCurrent.getFrustum((float) gs.w / gs.h);
     }
 
     public Vector getCamPos() {
         return modeCurrent.getEye();
     }
 
+    /**
+     * @return The view frustum of the camera, as of the last update.
+     */
+    public Frustum getFrustum() {
+        return frustum;
+    }
+
     private CameraView generateCameraView(GlobalState gs, List<Robot> robots) {
         return new CameraView(gs, robots, robots.get((int) Math.floor(Math.random() * robots.size())), ((int) Math.floor(Math.random() * 3d)) + 1);
     }
@@ -26,6 +26,7 @@
  */
 package Camera;
 
+import bodies.ModelViewStack;
 import javax.media.opengl.GL2;
 import static javax.media.opengl.fixedfunc.GLMatrixFunc.GL_MODELVIEW;
 import static javax.media.opengl.fixedfunc.GLMatrixFunc.GL_PROJECTION;
@@ -102,7 +103,7 @@ public class CameraMode {
         );
     }
 
-    public void setView(GL2 gl, GLU glu, GlobalState gs) {
+    public void setView(GL2 gl, GLU glu, GlobalState gs, ModelViewStack modelView) {
         // Select part of window.
         gl.glViewport(0, 0, gs.w, gs.h);
         // Set projection matrix.
@@ -113,10 +114,17 @@ public class CameraMode {
         // Set camera.
         gl.glMatrixMode(GL_MODELVIEW);
         //Load the identity matrix.
-        gl.glLoadIdentity();
-        glu.gluLookAt(eye.x(), eye.y(), eye.z(),
-                center.x(), center.y(), center.z(),
-                up.x(), up.y(), up.z());
+        modelView.loadIdentity(gl);
+        modelView.lookAt(gl, eye, center, up);
+    }
+
+    /**
+     * @param aspect The width of the viewport divided by its height.
+     * @return The view frustum that {@link #setView} sets up for a viewport
+     *         of the given aspect ratio.
+     */
+    public Frustum getFrustum(float aspect) {
+        return new Frustum(eye, center, up, fovAngle, aspect, planeNear, planeFar);
     }
 
     public Vector getEye() {
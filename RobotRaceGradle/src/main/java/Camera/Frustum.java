@@ -0,0 +1,128 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package Camera;
+
+import robotrace.Vector;
+
+/**
+ * The view frustum of a camera, as six planes in world coordinates. Used to
+ * skip things that cannot be seen before they are handed to OpenGL.
+ *
+ * @author Arjan Boschman
+ */
+public class Frustum {
+
+    private static final int NEAR = 0;
+    private static final int FAR = 1;
+    private static final int LEFT = 2;
+    private static final int RIGHT = 3;
+    private static final int BOTTOM = 4;
+    private static final int TOP = 5;
+    private static final int NR_PLANES = 6;
+
+    /**
+     * For each plane the normal (a, b, c) and offset d, such that a point p
+     * lies on the inside of the plane if a*p.x + b*p.y + c*p.z + d >= 0.
+     */
+    private final double[][] planes;
+
+    /**
+     * Make the frustum that gluPerspective and gluLookAt would set up for
+     * the given parameters.
+     *
+     * @param eye      The position of the camera.
+     * @param center   The point the camera is looking at.
+     * @param up       The up vector. Need not be perpendicular to the view
+     *                 direction.
+     * @param fovAngle The vertical field of view in degrees.
+     * @param aspect   The width of the viewport divided by its height.
+     * @param near     The distance to the near plane.
+     * @param far      The distance to the far plane.
+     */
+    public Frustum(Vector eye, Vector center, Vector up, double fovAngle, double aspect, double near, double far) {
+        final Vector forward = center.subtract(eye).normalized();
+        final Vector side = forward.cross(up).normalized();
+        final Vector realUp = side.cross(forward);
+        final double tanY = Math.tan(Math.toRadians(fovAngle) * 0.5d);
+        final double tanX = tanY * aspect;
+        this.planes = new double[NR_PLANES][];
+        planes[NEAR] = makePlane(forward, eye.add(forward.scale(near)));
+        planes[FAR] = makePlane(forward.scale(-1d), eye.add(forward.scale(far)));
+        //The side planes go through the eye and one edge of the screen each; their normals point inwards.
+        planes[LEFT] = makePlane(forward.subtract(side.scale(tanX)).cross(realUp), eye);
+        planes[RIGHT] = makePlane(realUp.cross(forward.add(side.scale(tanX))), eye);
+        planes[BOTTOM] = makePlane(side.cross(forward.subtract(realUp.scale(tanY))), eye);
+        planes[TOP] = makePlane(forward.add(realUp.scale(tanY)).cross(side), eye);
+    }
+
+    private Frustum(double[][] planes) {
+        this.planes = planes;
+    }
+
+    private static double[] makePlane(Vector normal, Vector point) {
+        return new double[]{normal.x(), normal.y(), normal.z(), -normal.dot(point)};
+    }
+
+    /**
+     * Get this frustum as seen from a coordinate system whose origin lies at
+     * the given position in world coordinates, such as that of a body that
+     * is drawn after a glTranslate.
+     *
+     * @param origin The origin of the other coordinate system.
+     * @return A new Frustum.
+     */
+    public Frustum translatedTo(Vector origin) {
+        final double[][] translated = new double[NR_PLANES][];
+        for (int i = 0; i < NR_PLANES; i++) {
+            final double[] plane = planes[i];
+            translated[i] = new double[]{plane[0], plane[1], plane[2],
+                plane[3] + plane[0] * origin.x() + plane[1] * origin.y() + plane[2] * origin.z()};
+        }
+        return new Frustum(translated);
+    }
+
+    /**
+     * Test whether an axis aligned box may be visible. Boxes that are only
+     * near a corner of the frustum can be reported as visible even though
+     * they are not; boxes that are visible are never reported as invisible.
+     *
+     * @return False if the box lies completely outside the frustum.
+     */
+    public boolean intersectsBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        for (double[] plane : planes) {
+            //Only the corner furthest along the plane normal needs to be tested.
+            final double x = plane[0] >= 0d ? maxX : minX;
+            final double y = plane[1] >= 0d ? maxY : minY;
+            final double z = plane[2] >= 0d ? maxZ : minZ;
+            if (plane[0] * x + plane[1] * y + plane[2] * z + plane[3] < 0d) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
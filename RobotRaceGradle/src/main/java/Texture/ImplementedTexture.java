@@ -27,6 +27,7 @@
 package Texture;
 
 import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
 import com.jogamp.opengl.util.texture.TextureIO;
 import java.io.File;
 import java.io.IOException;
@@ -53,18 +54,41 @@ public class ImplementedTexture {
         final File file = new File("src/main/java/robotrace/" + filename);
         try {
             texture = TextureIO.newTexture(file, true);
-            texture.enable(gl);
-            texture.bind(gl);
-            texture.setTexParameteri(gl, GL2.GL_TEXTURE_MIN_FILTER, (interpolate) ? (GL2.GL_LINEAR) : (GL2.GL_NEAREST));
-            texture.setTexParameteri(gl, GL2.GL_TEXTURE_MAG_FILTER, (interpolate) ? (GL2.GL_LINEAR) : (GL2.GL_NEAREST));
-            texture.setTexParameteri(gl, GL2.GL_TEXTURE_WRAP_S, (mirror) ? (GL2.GL_MIRRORED_REPEAT) : (GL2.GL_REPEAT));
-            texture.setTexParameteri(gl, GL2.GL_TEXTURE_WRAP_T, (mirror) ? (GL2.GL_MIRRORED_REPEAT) : (GL2.GL_REPEAT));
-            texture.disable(gl);
+            setParameters(gl, interpolate, (mirror) ? (GL2.GL_MIRRORED_REPEAT) : (GL2.GL_REPEAT));
         } catch (IOException | GLException ex) {
             Logger.getLogger(ImplementedTexture.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
 
+    /**
+     * Make a texture from an image made in memory rather than loaded from a
+     * file. The texture is clamped to its edges instead of repeated.
+     *
+     * @param gl          The instance of GL2 that will own the texture.
+     * @param data        The image.
+     * @param description A name for the image, used in place of a filename.
+     * @param interpolate If the texture should be interpolated between texels.
+     */
+    public ImplementedTexture(GL2 gl, TextureData data, String description, boolean interpolate) {
+        originalFilename = description;
+        try {
+            texture = TextureIO.newTexture(data);
+            setParameters(gl, interpolate, GL2.GL_CLAMP_TO_EDGE);
+        } catch (GLException ex) {
+            Logger.getLogger(ImplementedTexture.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void setParameters(GL2 gl, boolean interpolate, int wrap) {
+        texture.enable(gl);
+        texture.bind(gl);
+        texture.setTexParameteri(gl, GL2.GL_TEXTURE_MIN_FILTER, (interpolate) ? (GL2.GL_LINEAR) : (GL2.GL_NEAREST));
+        texture.setTexParameteri(gl, GL2.GL_TEXTURE_MAG_FILTER, (interpolate) ? (GL2.GL_LINEAR) : (GL2.GL_NEAREST));
+        texture.setTexParameteri(gl, GL2.GL_TEXTURE_WRAP_S, wrap);
+        texture.setTexParameteri(gl, GL2.GL_TEXTURE_WRAP_T, wrap);
+        texture.disable(gl);
+    }
+
     public Texture getTexture() {
         return texture;
     }
@@ -113,13 +137,20 @@ public class ImplementedTexture {
         return originalFilename;
     }
 
-    public void drawStart(GL2 gl) {
-        texture.enable(gl);
-        texture.bind(gl);
+    /**
+     * @return The OpenGL texture target this texture is bound to, usually
+     *         GL_TEXTURE_2D.
+     */
+    public int getTarget() {
+        return texture.getTarget();
     }
 
-    public void drawEnd(GL2 gl) {
-        texture.disable(gl);
+    /**
+     * @param gl The instance of GL2 that owns the texture.
+     * @return The name under which OpenGL knows this texture.
+     */
+    public int getTextureObject(GL2 gl) {
+        return texture.getTextureObject(gl);
     }
 
 }
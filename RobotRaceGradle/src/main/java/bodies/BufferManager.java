@@ -26,37 +26,118 @@
  */
 package bodies;
 
-import bodies.assembly.Vertex;
+import com.jogamp.common.nio.Buffers;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.media.opengl.GL2;
+import javax.media.opengl.GLException;
 
 /**
  * Manages a data buffer. This class acts as a link to OpenGL during the draw
  * phase. Use its Initialiser subclass during the initialisation phase.
  *
+ * The initialisation phase is split in two. Meshes are built on the CPU by the
+ * tasks given to {@link Initialiser#addMesh}, which run concurrently and need
+ * no OpenGL context. When {@link Initialiser#finish()} is called, the finished
+ * meshes are uploaded to OpenGL in the order in which they were added.
+ *
  * @author Arjan Boschman
  */
 public class BufferManager {
 
     /**
-     * The type format used for the index buffers. This integer refers to a
-     * {@link GL2} enum value.
+     * The largest index that still fits in an unsigned short.
      */
-    public static final int INDEX_BUFFER_TYPE = GL2.GL_UNSIGNED_INT;
+    static final int MAX_SHORT_INDEX = 0xFFFF;
     /**
      * The default buffer offset used for index buffers.
      */
     public static final int INDEX_BUFFER_OFFSET = 0;
 
+    private final GLStateCache stateCache = new GLStateCache();
+    private final ModelViewStack modelView = new ModelViewStack();
+    private final RenderQueue renderQueue = new RenderQueue(stateCache, modelView);
+    private final MeshCache meshCache = new MeshCache();
     private int dataBufferName;
+    private VertexLayout layout = VertexLayout.STANDARD;
+    /**
+     * True if glDrawElementsBaseVertex may be used, which only the GL3
+     * profile declares. If not, the vertex pointers are moved to the base
+     * vertex of each index buffer instead.
+     */
+    private boolean baseVertexSupported = false;
+    /**
+     * The base vertex the vertex pointers currently point at.
+     */
+    private int pointerBaseVertex = 0;
 
     public Initialiser makeInitialiser(GL2 gl) {
+        return makeInitialiser(gl, VertexLayout.STANDARD);
+    }
+
+    /**
+     * Make an Initialiser that stores all vertices in the given layout. If the
+     * OpenGL implementation cannot read that layout, the standard layout is
+     * used instead.
+     *
+     * @param gl     The instance of GL2 used during the initialisation phase.
+     * @param layout The preferred vertex layout.
+     * @return The Initialiser.
+     */
+    public Initialiser makeInitialiser(GL2 gl, VertexLayout layout) {
+        if (layout.isSupported(gl)) {
+            this.layout = layout;
+        } else {
+            Logger.getLogger(BufferManager.class.getName()).log(Level.INFO,
+                    "Vertex layout {0} is not supported, falling back to {1}.",
+                    new Object[]{layout, VertexLayout.STANDARD});
+            this.layout = VertexLayout.STANDARD;
+        }
+        this.baseVertexSupported = gl.isGL3() && gl.isFunctionAvailable("glDrawElementsBaseVertex");
         return new Initialiser(gl);
     }
 
+    /**
+     * @return The layout of the vertices in the data buffer.
+     */
+    public VertexLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return The GLStateCache through which all bodies managed by this
+     *         instance change the OpenGL state.
+     */
+    public GLStateCache getStateCache() {
+        return stateCache;
+    }
+
+    /**
+     * @return The ModelViewStack through which everything drawn during the
+     *         draw phase changes the modelview matrix.
+     */
+    public ModelViewStack getModelView() {
+        return modelView;
+    }
+
+    /**
+     * @return The RenderQueue that collects the shapes managed by this
+     *         instance during the draw phase.
+     */
+    public RenderQueue getRenderQueue() {
+        return renderQueue;
+    }
+
     /**
      * Must be called at the start of the draw phase, before any of the bodies
      * managed by this instance are drawn.
@@ -65,30 +146,19 @@ public class BufferManager {
      * @see #endDraw Must be called in conjunction with this method.
      */
     public void startDraw(GL2 gl) {
+        stateCache.startFrame();
+        //Start every frame with texturing switched off.
+        stateCache.useTexture(gl, null);
         gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
         gl.glEnableClientState(GL2.GL_NORMAL_ARRAY);
         gl.glEnableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
         //Use the name under which the data buffer was stored to bind it.
-        gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, dataBufferName);
-        final int stride = Vertex.NR_VERTEX_ELEMENTS * Vertex.COORD_COUNT * Float.BYTES;
-        /**
-         * Tell OpenGL what formats and what stride length to expect when
-         * extracting vertex coordinate information from the data buffer.
-         */
-        final int positionPointerOffset = 0 * Vertex.COORD_COUNT * Float.BYTES;
-        gl.glVertexPointer(Vertex.COORD_COUNT, GL2.GL_FLOAT, stride, positionPointerOffset);
-        /**
-         * Tell OpenGL what formats, stride length and offset to expect when
-         * extracting normal information from the data buffer.
-         */
-        final int normalPointerOffset = 1 * Vertex.COORD_COUNT * Float.BYTES;
-        gl.glNormalPointer(GL2.GL_FLOAT, stride, normalPointerOffset);
-        /**
-         * Tell OpenGL what formats, stride length and offset to expect when
-         * extracting texture information from the data buffer.
-         */
-        final int texturePointerOffset = 2 * Vertex.COORD_COUNT * Float.BYTES;
-        gl.glTexCoordPointer(Vertex.COORD_COUNT, GL2.GL_FLOAT, stride, texturePointerOffset);
+        stateCache.bindBuffer(gl, GL2.GL_ARRAY_BUFFER, dataBufferName);
+        //Tell OpenGL where to find each element, depending on how the buffer was built.
+        layout.setPointers(gl, 0);
+        pointerBaseVertex = 0;
+        //From here on, shapes are queued rather than drawn right away.
+        renderQueue.begin();
     }
 
     /**
@@ -99,25 +169,201 @@ public class BufferManager {
      * @see #startDraw Must be called in conjunction with this method.
      */
     public void endDraw(GL2 gl) {
+        //Draw all queued shapes in sorted order, while the pointers are still set.
+        renderQueue.flush(gl);
         gl.glDisableClientState(GL2.GL_TEXTURE_COORD_ARRAY);
         gl.glDisableClientState(GL2.GL_NORMAL_ARRAY);
         gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
     }
 
+    /**
+     * Draw the triangles of the given index buffer, which must be bound.
+     *
+     * @param gl          The instance of GL2 responsible for drawing.
+     * @param indexBuffer The index buffer to draw.
+     */
+    void drawTriangles(GL2 gl, IndexBufferHandle indexBuffer) {
+        final int baseVertex = indexBuffer.getBaseVertex();
+        if (baseVertexSupported) {
+            gl.getGL3().glDrawElementsBaseVertex(GL2.GL_TRIANGLES, indexBuffer.getLength(), indexBuffer.getType(), INDEX_BUFFER_OFFSET, baseVertex);
+            return;
+        }
+        //Without base vertex support, point at the base vertex instead. Shapes sharing a base vertex share the pointers.
+        if (baseVertex != pointerBaseVertex) {
+            layout.setPointers(gl, (long) baseVertex * layout.getStride());
+            pointerBaseVertex = baseVertex;
+        }
+        gl.glDrawElements(GL2.GL_TRIANGLES, indexBuffer.getLength(), indexBuffer.getType(), INDEX_BUFFER_OFFSET);
+    }
+
+    /**
+     * Draw several instances of the triangles of the given index buffer, which
+     * must be bound.
+     *
+     * @param gl          The instance of GL2 responsible for drawing.
+     * @param indexBuffer The index buffer to draw.
+     * @param count       The number of instances.
+     */
+    void drawTrianglesInstanced(GL2 gl, IndexBufferHandle indexBuffer, int count) {
+        final int baseVertex = indexBuffer.getBaseVertex();
+        if (baseVertexSupported) {
+            gl.getGL3().glDrawElementsInstancedBaseVertex(GL2.GL_TRIANGLES, indexBuffer.getLength(), indexBuffer.getType(), INDEX_BUFFER_OFFSET, count, baseVertex);
+            return;
+        }
+        if (baseVertex != pointerBaseVertex) {
+            layout.setPointers(gl, (long) baseVertex * layout.getStride());
+            pointerBaseVertex = baseVertex;
+        }
+        gl.glDrawElementsInstanced(GL2.GL_TRIANGLES, indexBuffer.getLength(), indexBuffer.getType(), INDEX_BUFFER_OFFSET, count);
+    }
+
+    /**
+     * Bind the data buffer and point at the vertices the queued shapes expect,
+     * after something else was drawn from another buffer.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     */
+    void restoreDataBuffer(GL2 gl) {
+        stateCache.bindBuffer(gl, GL2.GL_ARRAY_BUFFER, dataBufferName);
+        layout.setPointers(gl, (long) pointerBaseVertex * layout.getStride());
+    }
+
     @SuppressWarnings("PublicInnerClass")
     public class Initialiser {
 
         private final GL2 gl;
+        /**
+         * The tasks that were handed to this Initialiser, in order.
+         */
+        private final List<PendingTask<?>> pendingTasks = new ArrayList<>();
         /**
          * The data buffer; contains all vertices and normals given to this
          * object through {@link #addData}.
          */
-        private FloatBuffer dataBuffer = FloatBuffer.allocate(0);
+        private VertexArena dataBuffer = new VertexArena();
+        /**
+         * The amount of vertices stored in the data buffer.
+         */
+        private int vertexCount = 0;
+        /**
+         * The amount of bytes of index data handed to OpenGL, and the amount
+         * it would have been if every index was an int.
+         */
+        private long indexBytes = 0;
+        private long indexBytesAsInt = 0;
 
         private Initialiser(GL2 gl) {
             this.gl = gl;
         }
 
+        /**
+         * @return The GLStateCache that the shapes created during this
+         *         initialisation phase must use.
+         */
+        public GLStateCache getStateCache() {
+            return stateCache;
+        }
+
+        /**
+         * @return The ModelViewStack that the bodies created during this
+         *         initialisation phase must use to change the modelview
+         *         matrix.
+         */
+        public ModelViewStack getModelView() {
+            return modelView;
+        }
+
+        /**
+         * @return The MeshCache in which compiled meshes are kept between
+         *         runs of the program.
+         */
+        public MeshCache getMeshCache() {
+            return meshCache;
+        }
+
+        /**
+         * @return The Executor on which CPU work of the initialisation phase,
+         *         like building meshes, should run.
+         */
+        public Executor getBuildExecutor() {
+            return ForkJoinPool.commonPool();
+        }
+
+        /**
+         * Add a mesh that is being built. Once the mesh is built, it is
+         * uploaded during {@link #finish()}, as if passed to
+         * {@link #addData(FloatBuffer, List)}.
+         *
+         * @param mesh     The mesh. Its index buffers must be triangle lists.
+         * @param onUpload Called on the OpenGL thread after the mesh is
+         *                 uploaded, with the mesh and the handles of its index
+         *                 buffers. This is where the Shapes can be made.
+         */
+        public void addMesh(CompletableFuture<MeshCache.Entry> mesh, BiConsumer<MeshCache.Entry, IndexBufferHandle[]> onUpload) {
+            addTask(mesh, (entry) -> onUpload.accept(entry, addData(entry.getData(), entry.getIndexBuffers(), entry.getBaseVertices())));
+        }
+
+        /**
+         * Add some work that must be done before the initialisation phase
+         * ends.
+         *
+         * @param <T>      The type of the result.
+         * @param task     The work, which may still be in progress.
+         * @param onFinish Called on the OpenGL thread during
+         *                 {@link #finish()}, with the result of the task.
+         *                 Tasks are finished in the order in which they were
+         *                 added.
+         */
+        public <T> void addTask(CompletableFuture<T> task, Consumer<T> onFinish) {
+            pendingTasks.add(new PendingTask<>(task, onFinish));
+        }
+
+        /**
+         * Make a pool of data buffers whose vertices can be replaced during
+         * the draw phase. The buffers are made right away.
+         *
+         * @param slotCount       The number of meshes the pool holds at once.
+         * @param verticesPerSlot The number of vertices of each mesh.
+         * @param indices         The triangle list shared by all meshes.
+         * @return The pool.
+         */
+        public StreamingBufferPool makeStreamingBufferPool(int slotCount, int verticesPerSlot, IntBuffer indices) {
+            final StreamingBufferPool pool = new StreamingBufferPool(gl, BufferManager.this, slotCount, verticesPerSlot, indices);
+            Logger.getLogger(BufferManager.class.getName()).log(Level.INFO,
+                    "Made a streaming pool of {0} slots of {1} vertices ({2} bytes).",
+                    new Object[]{slotCount, verticesPerSlot, pool.getVertexBytes()});
+            return pool;
+        }
+
+        /**
+         * Make an InstanceRenderer, which draws many copies of a body at once.
+         * The program and buffer it needs are made right away.
+         *
+         * @return The InstanceRenderer, or null if the OpenGL implementation
+         *         cannot draw instances.
+         */
+        public InstanceRenderer makeInstanceRenderer() {
+            if (!InstanceRenderer.isSupported(gl)) {
+                Logger.getLogger(BufferManager.class.getName()).log(Level.INFO,
+                        "Instanced drawing is not supported.");
+                return null;
+            }
+            try {
+                return new InstanceRenderer(gl, BufferManager.this);
+            } catch (GLException ex) {
+                Logger.getLogger(BufferManager.class.getName()).log(Level.WARNING,
+                        "Instanced drawing is not used.", ex);
+                return null;
+            }
+        }
+
+        /**
+         * @return The BufferManager that is being initialised.
+         */
+        public BufferManager getBufferManager() {
+            return BufferManager.this;
+        }
+
         /**
          * This method must be called at the end of the initialisation phase. It
          * prepares the enclosing BodyManager instance for the draw phase.
@@ -127,13 +373,30 @@ public class BufferManager {
          * used anymore.
          */
         public void finish() {
+            //Wait for each task in turn, uploading meshes as soon as they are done.
+            final long drainStart = System.nanoTime();
+            for (PendingTask<?> pendingTask : pendingTasks) {
+                pendingTask.finish();
+            }
+            Logger.getLogger(BufferManager.class.getName()).log(Level.INFO,
+                    "Finished {0} initialisation tasks in {1} ms after all were handed out.",
+                    new Object[]{pendingTasks.size(), String.format("%.1f", (System.nanoTime() - drainStart) / 1_000_000d)});
+            pendingTasks.clear();
             //Obtain buffer name.
             final int[] singleBufferName = new int[1];
             gl.glGenBuffers(1, singleBufferName, 0);
             BufferManager.this.dataBufferName = singleBufferName[0];
             //Push the data buffer to OpenGL.
             gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, BufferManager.this.dataBufferName);
-            gl.glBufferData(GL2.GL_ARRAY_BUFFER, dataBuffer.capacity() * Float.BYTES, dataBuffer, GL2.GL_STATIC_DRAW);
+            gl.glBufferData(GL2.GL_ARRAY_BUFFER, dataBuffer.size(), dataBuffer.getPayload(), GL2.GL_STATIC_DRAW);
+            Logger.getLogger(BufferManager.class.getName()).log(Level.INFO,
+                    "Uploaded {0} vertices ({1} bytes, {2} layout). "
+                    + "Peak arena memory: {3} bytes, grown {4} times, {5} bytes copied.",
+                    new Object[]{vertexCount, dataBuffer.size(), layout,
+                        dataBuffer.getPeakBytes(), dataBuffer.getCopyCount(), dataBuffer.getBytesCopied()});
+            Logger.getLogger(BufferManager.class.getName()).log(Level.INFO,
+                    "Uploaded {0} bytes of indices ({1} bytes if stored as ints). Base vertex drawing supported: {2}.",
+                    new Object[]{indexBytes, indexBytesAsInt, baseVertexSupported});
             //Erase buffer data so nothing will stay in memory or silently fail if people abuse this class.
             dataBuffer = null;
         }
@@ -148,11 +411,12 @@ public class BufferManager {
          *                    at the end of this objects lifespan, upon calling
          *                    {@link #finish()}.
          * @param indexBuffer This index buffer will be sent to OpenGl
-         *                    immediately.
-         * @return The index buffer name that was used to register the given
-         *         indexBuffer with OpenGL.
+         *                    immediately. Its indices refer to the given data,
+         *                    starting at zero.
+         * @return The handle under which the given indexBuffer was registered
+         *         with OpenGL.
          */
-        public int addData(FloatBuffer data, IntBuffer indexBuffer) {
+        public IndexBufferHandle addData(FloatBuffer data, IntBuffer indexBuffer) {
             final List<IntBuffer> list = new ArrayList<>();
             list.add(indexBuffer);
             return addData(data, list)[0];
@@ -168,74 +432,129 @@ public class BufferManager {
          *                     at the end of this objects lifespan, upon calling
          *                     {@link #finish()}.
          * @param indexBuffers These index buffers will be sent to OpenGl
-         *                     immediately.
-         * @return An array of index buffer names, parallel to the given List of
-         *         index buffers. These are the names that each of the index
-         *         buffers is registered under with OpenGL.
-         */
-        public int[] addData(FloatBuffer data, List<IntBuffer> indexBuffers) {
-            //Append databuffer to the one already stored in here.
-            final int coordLength = Vertex.NR_VERTEX_ELEMENTS * Vertex.COORD_COUNT;
-            final int oldLength = appendToDataBuffer(data) / coordLength;
-            //Increment each index by the previous length of the databuffer.
-            incrementEachElement(indexBuffers, oldLength);
-            //Retrieve index buffer names and push the buffers to OpenGL.
-            final int[] bufferNames = pushIndexArraysToGL(indexBuffers);
-            //Return index buffer names.
-            return bufferNames;
-        }
-
-        /**
-         * Append the given buffer to the data buffer stored as a class member.
-         *
-         * @param addition The buffer to append.
-         * @return The length of the old buffer.
+         *                     immediately. Their indices refer to the given
+         *                     data, starting at zero.
+         * @return An array of handles, parallel to the given List of index
+         *         buffers. These describe how each of the index buffers is
+         *         registered with OpenGL.
          */
-        private int appendToDataBuffer(FloatBuffer addition) {
-            final int oldLength = dataBuffer.capacity();
-            final FloatBuffer newData = FloatBuffer.allocate(oldLength + addition.capacity());
-            newData.put(dataBuffer);
-            newData.position(oldLength);
-            newData.put(addition);
-            newData.position(0);
-            dataBuffer = newData;
-            return oldLength;
+        public IndexBufferHandle[] addData(FloatBuffer data, List<IntBuffer> indexBuffers) {
+            return addData(data, indexBuffers, new int[indexBuffers.size()]);
         }
 
         /**
-         * Increment all the elements of all the buffers by the given amount.
+         * Like {@link #addData(FloatBuffer, List)}, but the indices of each
+         * index buffer count from their own vertex in the given data. This
+         * keeps the indices of a large mesh that is split into parts small
+         * enough to be stored as shorts.
          *
-         * @param intBuffers  The buffers.
-         * @param incrementBy The amount to increments all the elements by.
+         * @param data         This data will be appended to the existing data
+         *                     buffer that is backing this Initialiser.
+         * @param indexBuffers These index buffers will be sent to OpenGl
+         *                     immediately.
+         * @param baseVertices For each of the index buffers, the vertex in the
+         *                     given data that its index zero refers to.
+         * @return An array of handles, parallel to the given List of index
+         *         buffers.
          */
-        private void incrementEachElement(List<IntBuffer> intBuffers, int incrementBy) {
-            intBuffers.stream().forEach((intBuffer) -> {
-                for (int i = 0; i < intBuffer.capacity(); i++) {
-                    intBuffer.put(i, intBuffer.get(i) + incrementBy);
-                }
-                intBuffer.position(0);
-            });
+        public IndexBufferHandle[] addData(FloatBuffer data, List<IntBuffer> indexBuffers, int[] baseVertices) {
+            //The indices are kept relative to the first vertex of this data.
+            final int baseVertex = vertexCount;
+            //Append databuffer to the one already stored in here.
+            dataBuffer.putVertices(data, layout);
+            vertexCount += data.capacity() / VertexLayout.FLOATS_PER_VERTEX;
+            //Push the buffers to OpenGL and return their handles.
+            return pushIndexArraysToGL(indexBuffers, baseVertex, baseVertices);
         }
 
         /**
          * Let OpenGL generate some buffer names and register each index buffer
-         * to each of the names.
+         * to each of the names. Index buffers whose largest index fits in an
+         * unsigned short are stored as shorts.
          *
          * @param indexBuffers The index buffer that are to be registered with
          *                     OpenGL.
-         * @return The buffer names. Each of these corresponds to one of the
-         *         index buffers given as a parameter.
+         * @param baseVertex   The first vertex of the data the index buffers
+         *                     belong to.
+         * @param baseVertices The base vertex of each index buffer, relative
+         *                     to baseVertex.
+         * @return The handles. Each of these corresponds to one of the index
+         *         buffers given as a parameter.
          */
-        private int[] pushIndexArraysToGL(List<IntBuffer> indexBuffers) {
+        private IndexBufferHandle[] pushIndexArraysToGL(List<IntBuffer> indexBuffers, int baseVertex, int[] baseVertices) {
             final int[] bufferNames = new int[indexBuffers.size()];
             gl.glGenBuffers(bufferNames.length, bufferNames, 0);
+            final IndexBufferHandle[] handles = new IndexBufferHandle[bufferNames.length];
             for (int i = 0; i < indexBuffers.size(); i++) {
+                final IntBuffer indexBuffer = indexBuffers.get(i);
+                final int length = indexBuffer.capacity();
                 gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, bufferNames[i]);
-                gl.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER,
-                        indexBuffers.get(i).capacity() * Integer.BYTES,
-                        indexBuffers.get(i), GL2.GL_STATIC_DRAW);
+                final int type;
+                if (getMaxIndex(indexBuffer) <= MAX_SHORT_INDEX) {
+                    type = GL2.GL_UNSIGNED_SHORT;
+                    gl.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, length * Short.BYTES,
+                            toShortBuffer(indexBuffer), GL2.GL_STATIC_DRAW);
+                } else {
+                    type = GL2.GL_UNSIGNED_INT;
+                    gl.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, length * Integer.BYTES,
+                            indexBuffer, GL2.GL_STATIC_DRAW);
+                }
+                handles[i] = new IndexBufferHandle(bufferNames[i], length, type, baseVertex + baseVertices[i]);
+                indexBytes += (long) length * handles[i].getIndexBytes();
+                indexBytesAsInt += (long) length * Integer.BYTES;
+            }
+            return handles;
+        }
+
+        /**
+         * @param indexBuffer An index buffer.
+         * @return The largest index in the whole buffer, or -1 if it is empty.
+         */
+        private int getMaxIndex(IntBuffer indexBuffer) {
+            int maxIndex = -1;
+            for (int i = 0; i < indexBuffer.capacity(); i++) {
+                maxIndex = Math.max(maxIndex, indexBuffer.get(i));
+            }
+            return maxIndex;
+        }
+
+        /**
+         * Convert an index buffer to unsigned shorts. All of its indices must
+         * fit.
+         *
+         * @param indexBuffer The index buffer.
+         * @return A new direct buffer with the same indices.
+         */
+        private ShortBuffer toShortBuffer(IntBuffer indexBuffer) {
+            final ShortBuffer shortBuffer = Buffers.newDirectShortBuffer(indexBuffer.capacity());
+            for (int i = 0; i < indexBuffer.capacity(); i++) {
+                shortBuffer.put(i, (short) indexBuffer.get(i));
             }
-            return bufferNames;
+            return shortBuffer;
+        }
+    }
+
+    /**
+     * Some work of the initialisation phase, together with what to do with
+     * its result on the OpenGL thread.
+     *
+     * @param <T> The type of the result.
+     */
+    private static class PendingTask<T> {
+
+        private final CompletableFuture<T> task;
+        private final Consumer<T> onFinish;
+
+        private PendingTask(CompletableFuture<T> task, Consumer<T> onFinish) {
+            this.task = task;
+            this.onFinish = onFinish;
+        }
+
+        /**
+         * Wait for the work to be done, then handle its result.
+         */
+        private void finish() {
+            onFinish.accept(task.join());
         }
     }
 
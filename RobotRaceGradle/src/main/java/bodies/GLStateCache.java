@@ -0,0 +1,266 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import Texture.ImplementedTexture;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.media.opengl.GL2;
+
+/**
+ * Sits between our drawing code and {@link GL2}, and remembers the parts of
+ * the OpenGL state that we change most often: the bound buffers, the bound
+ * texture, a handful of enable flags and the current material. Calls that
+ * would not change anything are skipped.
+ *
+ * All of these state changes must go through this class during the draw
+ * phase, otherwise it will get out of sync with OpenGL. To be safe, everything
+ * is forgotten at the start of each frame.
+ *
+ * The number of calls that were issued and skipped is counted per frame.
+ *
+ * @author Arjan Boschman
+ */
+public class GLStateCache {
+
+    private static final Logger LOGGER = Logger.getLogger(GLStateCache.class.getName());
+    /**
+     * Marks a piece of state that is not known, so the next change to it will
+     * always be issued.
+     */
+    private static final int UNKNOWN = -1;
+    /**
+     * The maximum number of distinct enable flags that are tracked. Flags
+     * beyond this number are simply never cached.
+     */
+    private static final int MAX_TRACKED_CAPABILITIES = 8;
+
+    private int arrayBuffer = UNKNOWN;
+    private int elementArrayBuffer = UNKNOWN;
+    private ImplementedTexture texture = null;
+    private boolean textureKnown = false;
+    private int material = UNKNOWN;
+    /**
+     * The tracked enable flags, parallel arrays. A state of UNKNOWN means the
+     * flag has not been touched since the start of the frame.
+     */
+    private final int[] capabilities = new int[MAX_TRACKED_CAPABILITIES];
+    private final int[] capabilityStates = new int[MAX_TRACKED_CAPABILITIES];
+    private int capabilityCount = 0;
+
+    private int issuedCount = 0;
+    private int skippedCount = 0;
+    private int lastFrameIssuedCount = 0;
+    private int lastFrameSkippedCount = 0;
+
+    /**
+     * Must be called at the start of every frame. Forgets all remembered state
+     * and starts counting anew.
+     */
+    public void startFrame() {
+        lastFrameIssuedCount = issuedCount;
+        lastFrameSkippedCount = skippedCount;
+        issuedCount = 0;
+        skippedCount = 0;
+        arrayBuffer = UNKNOWN;
+        elementArrayBuffer = UNKNOWN;
+        texture = null;
+        textureKnown = false;
+        material = UNKNOWN;
+        Arrays.fill(capabilityStates, UNKNOWN);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE,
+                    "Previous frame: {0} state changes issued, {1} skipped.",
+                    new Object[]{lastFrameIssuedCount, lastFrameSkippedCount});
+        }
+    }
+
+    /**
+     * Bind a buffer, unless it is already bound.
+     *
+     * @param gl     The instance of GL2 responsible for drawing.
+     * @param target Either GL_ARRAY_BUFFER or GL_ELEMENT_ARRAY_BUFFER. Other
+     *               targets are passed on without caching.
+     * @param name   The name of the buffer to bind.
+     */
+    public void bindBuffer(GL2 gl, int target, int name) {
+        switch (target) {
+            case GL2.GL_ARRAY_BUFFER:
+                if (arrayBuffer == name) {
+                    skippedCount++;
+                    return;
+                }
+                arrayBuffer = name;
+                break;
+            case GL2.GL_ELEMENT_ARRAY_BUFFER:
+                if (elementArrayBuffer == name) {
+                    skippedCount++;
+                    return;
+                }
+                elementArrayBuffer = name;
+                break;
+            default:
+                break;
+        }
+        issuedCount++;
+        gl.glBindBuffer(target, name);
+    }
+
+    /**
+     * Enable an OpenGL capability, unless it is already enabled.
+     *
+     * @param gl         The instance of GL2 responsible for drawing.
+     * @param capability The capability, for instance GL_CULL_FACE.
+     */
+    public void enable(GL2 gl, int capability) {
+        if (setCapability(capability, true)) {
+            gl.glEnable(capability);
+        }
+    }
+
+    /**
+     * Disable an OpenGL capability, unless it is already disabled.
+     *
+     * @param gl         The instance of GL2 responsible for drawing.
+     * @param capability The capability, for instance GL_CULL_FACE.
+     */
+    public void disable(GL2 gl, int capability) {
+        if (setCapability(capability, false)) {
+            gl.glDisable(capability);
+        }
+    }
+
+    /**
+     * Get whether the given capability was last enabled through this cache.
+     *
+     * @param capability The capability, for instance GL_CULL_FACE.
+     *
+     * @return True if it is known to be enabled, false otherwise.
+     */
+    public boolean isEnabled(int capability) {
+        for (int i = 0; i < capabilityCount; i++) {
+            if (capabilities[i] == capability) {
+                return capabilityStates[i] == 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Make the given texture the current one, enabling texturing for its
+     * target. Passing null disables texturing instead.
+     *
+     * @param gl      The instance of GL2 responsible for drawing.
+     * @param texture The texture to draw with, or null for none.
+     */
+    public void useTexture(GL2 gl, ImplementedTexture texture) {
+        if (textureKnown && this.texture == texture) {
+            skippedCount++;
+            return;
+        }
+        if (this.texture != null && (texture == null || this.texture.getTarget() != texture.getTarget())) {
+            disable(gl, this.texture.getTarget());
+        }
+        if (texture == null) {
+            if (!textureKnown) {
+                //Nothing is known about the previous texture, so switch off the usual target.
+                disable(gl, GL2.GL_TEXTURE_2D);
+            }
+        } else {
+            enable(gl, texture.getTarget());
+            issuedCount++;
+            gl.glBindTexture(texture.getTarget(), texture.getTextureObject(gl));
+        }
+        this.texture = texture;
+        this.textureKnown = true;
+    }
+
+    /**
+     * Check whether a material must be uploaded. The caller is expected to
+     * issue the actual calls when this returns true.
+     *
+     * @param materialId An identifier that is unique for each distinct set of
+     *                   material properties.
+     * @param callCount  The number of OpenGL calls it takes to upload the
+     *                   material. Only used for counting.
+     *
+     * @return True if the material differs from the current one.
+     */
+    public boolean changeMaterial(int materialId, int callCount) {
+        if (material == materialId) {
+            skippedCount += callCount;
+            return false;
+        }
+        material = materialId;
+        issuedCount += callCount;
+        return true;
+    }
+
+    /**
+     * @return The number of calls issued to OpenGL during the previous frame.
+     */
+    public int getLastFrameIssuedCount() {
+        return lastFrameIssuedCount;
+    }
+
+    /**
+     * @return The number of calls skipped during the previous frame, because
+     *         they would not have changed anything.
+     */
+    public int getLastFrameSkippedCount() {
+        return lastFrameSkippedCount;
+    }
+
+    /**
+     * Remember the new state of a capability.
+     *
+     * @return True if the call must be issued.
+     */
+    private boolean setCapability(int capability, boolean enabled) {
+        final int state = enabled ? 1 : 0;
+        for (int i = 0; i < capabilityCount; i++) {
+            if (capabilities[i] == capability) {
+                if (capabilityStates[i] == state) {
+                    skippedCount++;
+                    return false;
+                }
+                capabilityStates[i] = state;
+                issuedCount++;
+                return true;
+            }
+        }
+        if (capabilityCount < MAX_TRACKED_CAPABILITIES) {
+            capabilities[capabilityCount] = capability;
+            capabilityStates[capabilityCount] = state;
+            capabilityCount++;
+        }
+        issuedCount++;
+        return true;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import javax.media.opengl.GL2;
+
+/**
+ * Everything needed to draw an index buffer that was handed to OpenGL by a
+ * {@link BufferManager.Initialiser}.
+ *
+ * Indices are stored relative to a base vertex, which is the position in the
+ * data buffer of the first vertex that was added together with the index
+ * buffer. This keeps the indices small, so that most index buffers fit in 16
+ * bits.
+ *
+ * @author Arjan Boschman
+ */
+public class IndexBufferHandle {
+
+    private final int name;
+    private final int length;
+    private final int type;
+    private final int baseVertex;
+
+    /**
+     * @param name       The name under which OpenGL stores the index buffer.
+     * @param length     The number of indices in the buffer.
+     * @param type       The type of the indices; either GL_UNSIGNED_SHORT or
+     *                   GL_UNSIGNED_INT.
+     * @param baseVertex The value to add to each index to find the vertex in
+     *                   the data buffer.
+     */
+    IndexBufferHandle(int name, int length, int type, int baseVertex) {
+        this.name = name;
+        this.length = length;
+        this.type = type;
+        this.baseVertex = baseVertex;
+    }
+
+    /**
+     * @return The name under which OpenGL stores the index buffer.
+     */
+    public int getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of indices in the buffer.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return The type of the indices. This integer refers to a {@link GL2}
+     *         enum value.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * @return The value to add to each index to find the vertex in the data
+     *         buffer.
+     */
+    public int getBaseVertex() {
+        return baseVertex;
+    }
+
+    /**
+     * Get a handle to the same index buffer, applied to other vertices. This
+     * lets meshes that are made of many parts with the same layout share
+     * their index buffers.
+     *
+     * @param baseVertex The value to add to each index to find the vertex in
+     *                   the data buffer.
+     * @return A new handle.
+     */
+    public IndexBufferHandle withBaseVertex(int baseVertex) {
+        return new IndexBufferHandle(name, length, type, baseVertex);
+    }
+
+    /**
+     * @return The size of a single index in bytes.
+     */
+    public int getIndexBytes() {
+        return (type == GL2.GL_UNSIGNED_SHORT) ? Short.BYTES : Integer.BYTES;
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import com.jogamp.common.nio.Buffers;
+import java.nio.FloatBuffer;
+import java.util.List;
+import javax.media.opengl.GL2;
+import javax.media.opengl.GLException;
+
+/**
+ * Draws many copies of a body with one draw call per shape, each copy placed
+ * by its own matrix. The matrices of all copies are uploaded to a single
+ * buffer, after which any range of them can be drawn.
+ *
+ * The fixed-function pipeline cannot place each copy by itself, so copies are
+ * drawn with a small GLSL 1.20 program. It reads the matrix of each copy as a
+ * per-instance attribute, and lights the vertices the way the fixed-function
+ * pipeline does with the first light and the current material. Textures are
+ * ignored.
+ *
+ * Like a {@link StreamingBufferPool}, copies are drawn right away rather than
+ * through the RenderQueue, since the matrices may change before the queue is
+ * flushed.
+ *
+ * @author Arjan Boschman
+ */
+public class InstanceRenderer {
+
+    /**
+     * The number of elements in a matrix.
+     */
+    private static final int MATRIX_SIZE = 16;
+    private static final int MATRIX_BYTES = MATRIX_SIZE * Float.BYTES;
+    /**
+     * A matrix attribute takes up one attribute location per column.
+     */
+    private static final int MATRIX_COLUMNS = 4;
+    private static final String MATRIX_ATTRIBUTE = "instanceMatrix";
+    /**
+     * The attribute location of the first column of the instance matrix,
+     * bound before linking so it can't be given a location that the driver
+     * aliases to one of the built-in attributes in use. Some drivers alias
+     * gl_Vertex to 0, gl_Normal to 2 and gl_MultiTexCoord0 to 8; the columns
+     * take 10 up to 13, which are free, and every implementation has at least
+     * 16.
+     */
+    private static final int MATRIX_LOCATION = 10;
+    /**
+     * Places the vertex by the matrix of its instance, then by the modelview
+     * matrix, and lights it with light 0 like the fixed-function pipeline
+     * does. Normals are transformed by the cofactor matrix of the instance
+     * matrix, which points the same way as its inverse transpose without
+     * having to invert anything.
+     */
+    private static final String VERTEX_SHADER = ""
+            + "#version 120\n"
+            + "attribute mat4 " + MATRIX_ATTRIBUTE + ";\n"
+            + "void main() {\n"
+            + "    vec4 eyePosition = gl_ModelViewMatrix * (" + MATRIX_ATTRIBUTE + " * gl_Vertex);\n"
+            + "    gl_Position = gl_ProjectionMatrix * eyePosition;\n"
+            + "    mat3 instance = mat3(" + MATRIX_ATTRIBUTE + "[0].xyz, " + MATRIX_ATTRIBUTE + "[1].xyz, "
+            + MATRIX_ATTRIBUTE + "[2].xyz);\n"
+            + "    mat3 cofactors = mat3(cross(instance[1], instance[2]), cross(instance[2], instance[0]),\n"
+            + "            cross(instance[0], instance[1]));\n"
+            + "    vec3 normal = normalize(gl_NormalMatrix * (cofactors * gl_Normal));\n"
+            + "    vec3 toLight = normalize(gl_LightSource[0].position.xyz\n"
+            + "            - eyePosition.xyz * gl_LightSource[0].position.w);\n"
+            + "    float diffuse = max(dot(normal, toLight), 0.0);\n"
+            + "    float specular = 0.0;\n"
+            + "    if (diffuse > 0.0) {\n"
+            + "        vec3 halfVector = normalize(toLight + vec3(0.0, 0.0, 1.0));\n"
+            + "        specular = pow(max(dot(normal, halfVector), 0.0), gl_FrontMaterial.shininess);\n"
+            + "    }\n"
+            + "    gl_FrontColor = gl_FrontLightModelProduct.sceneColor + gl_FrontLightProduct[0].ambient\n"
+            + "            + diffuse * gl_FrontLightProduct[0].diffuse + specular * gl_FrontLightProduct[0].specular;\n"
+            + "    gl_FrontColor.a = gl_FrontMaterial.diffuse.a;\n"
+            + "}\n";
+    private static final String FRAGMENT_SHADER = ""
+            + "#version 120\n"
+            + "void main() {\n"
+            + "    gl_FragColor = gl_Color;\n"
+            + "}\n";
+
+    private final BufferManager bufferManager;
+    private final GLStateCache stateCache;
+    private final int programName;
+    private final int instanceBufferName;
+    /**
+     * Reused for every upload, and only replaced by a larger one when needed.
+     */
+    private FloatBuffer uploadBuffer = Buffers.newDirectFloatBuffer(MATRIX_SIZE);
+
+    /**
+     * @param gl The instance of GL2 to check.
+     * @return True if the functions needed for instanced drawing are
+     *         available. The divisors are only declared by the GL3 profile.
+     */
+    static boolean isSupported(GL2 gl) {
+        return gl.isGL3()
+                && gl.isFunctionAvailable("glDrawElementsInstanced")
+                && gl.isFunctionAvailable("glVertexAttribDivisor")
+                && gl.isFunctionAvailable("glCreateProgram");
+    }
+
+    /**
+     * Make the program and the instance buffer. Must be called on the OpenGL
+     * thread.
+     *
+     * @throws GLException If the program could not be compiled or linked.
+     */
+    InstanceRenderer(GL2 gl, BufferManager bufferManager) {
+        this.bufferManager = bufferManager;
+        this.stateCache = bufferManager.getStateCache();
+        final int vertexShader = compileShader(gl, GL2.GL_VERTEX_SHADER, VERTEX_SHADER);
+        final int fragmentShader = compileShader(gl, GL2.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        this.programName = gl.glCreateProgram();
+        gl.glAttachShader(programName, vertexShader);
+        gl.glAttachShader(programName, fragmentShader);
+        gl.glBindAttribLocation(programName, MATRIX_LOCATION, MATRIX_ATTRIBUTE);
+        gl.glLinkProgram(programName);
+        //The program keeps the shaders alive as long as it needs them.
+        gl.glDeleteShader(vertexShader);
+        gl.glDeleteShader(fragmentShader);
+        final int[] status = new int[1];
+        gl.glGetProgramiv(programName, GL2.GL_LINK_STATUS, status, 0);
+        if (status[0] == GL2.GL_FALSE) {
+            throw new GLException("Could not link the instancing program: " + getProgramInfoLog(gl, programName));
+        }
+        final int[] singleBufferName = new int[1];
+        gl.glGenBuffers(1, singleBufferName, 0);
+        this.instanceBufferName = singleBufferName[0];
+    }
+
+    private static int compileShader(GL2 gl, int type, String source) {
+        final int shader = gl.glCreateShader(type);
+        gl.glShaderSource(shader, 1, new String[]{source}, null, 0);
+        gl.glCompileShader(shader);
+        final int[] status = new int[1];
+        gl.glGetShaderiv(shader, GL2.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == GL2.GL_FALSE) {
+            throw new GLException("Could not compile an instancing shader: " + getShaderInfoLog(gl, shader));
+        }
+        return shader;
+    }
+
+    private static String getShaderInfoLog(GL2 gl, int shader) {
+        final int[] length = new int[1];
+        gl.glGetShaderiv(shader, GL2.GL_INFO_LOG_LENGTH, length, 0);
+        final byte[] log = new byte[Math.max(length[0], 1)];
+        gl.glGetShaderInfoLog(shader, log.length, length, 0, log, 0);
+        return new String(log, 0, length[0]);
+    }
+
+    private static String getProgramInfoLog(GL2 gl, int program) {
+        final int[] length = new int[1];
+        gl.glGetProgramiv(program, GL2.GL_INFO_LOG_LENGTH, length, 0);
+        final byte[] log = new byte[Math.max(length[0], 1)];
+        gl.glGetProgramInfoLog(program, log.length, length, 0, log, 0);
+        return new String(log, 0, length[0]);
+    }
+
+    /**
+     * Replace the matrices of all instances.
+     *
+     * @param gl          The instance of GL2 responsible for drawing.
+     * @param matrices    The column-major matrices, one after another.
+     * @param matrixCount The number of matrices to upload.
+     */
+    public void upload(GL2 gl, float[] matrices, int matrixCount) {
+        final int floatCount = matrixCount * MATRIX_SIZE;
+        if (uploadBuffer.capacity() < floatCount) {
+            uploadBuffer = Buffers.newDirectFloatBuffer(Math.max(floatCount, 2 * uploadBuffer.capacity()));
+        }
+        uploadBuffer.clear();
+        uploadBuffer.put(matrices, 0, floatCount);
+        uploadBuffer.flip();
+        stateCache.bindBuffer(gl, GL2.GL_ARRAY_BUFFER, instanceBufferName);
+        //Replacing all of the data lets the driver hand out fresh memory instead of waiting for earlier draws.
+        gl.glBufferData(GL2.GL_ARRAY_BUFFER, (long) floatCount * Float.BYTES, uploadBuffer, GL2.GL_DYNAMIC_DRAW);
+        bufferManager.restoreDataBuffer(gl);
+    }
+
+    /**
+     * Must be called before instances are drawn. Switches to the instancing
+     * program.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     * @see #endDraw Must be called in conjunction with this method.
+     */
+    public void startDraw(GL2 gl) {
+        gl.glUseProgram(programName);
+        for (int column = 0; column < MATRIX_COLUMNS; column++) {
+            gl.glEnableVertexAttribArray(MATRIX_LOCATION + column);
+            gl.getGL3().glVertexAttribDivisor(MATRIX_LOCATION + column, 1);
+        }
+    }
+
+    /**
+     * Draw a range of instances of a body, each placed by its matrix relative
+     * to the current transformation.
+     *
+     * @param gl          The instance of GL2 responsible for drawing.
+     * @param body        The body to draw.
+     * @param firstMatrix The index of the matrix of the first instance.
+     * @param count       The number of instances.
+     */
+    public void draw(GL2 gl, SimpleBody body, int firstMatrix, int count) {
+        if (count == 0) {
+            return;
+        }
+        stateCache.bindBuffer(gl, GL2.GL_ARRAY_BUFFER, instanceBufferName);
+        for (int column = 0; column < MATRIX_COLUMNS; column++) {
+            gl.glVertexAttribPointer(MATRIX_LOCATION + column, MATRIX_COLUMNS, GL2.GL_FLOAT, false, MATRIX_BYTES,
+                    (long) firstMatrix * MATRIX_BYTES + column * MATRIX_COLUMNS * Float.BYTES);
+        }
+        bufferManager.restoreDataBuffer(gl);
+        final List<Shape> shapes = body.getShapes();
+        for (int i = 0; i < shapes.size(); i++) {
+            shapes.get(i).drawInstances(gl, count);
+        }
+    }
+
+    /**
+     * Must be called after instances are drawn. Switches back to the
+     * fixed-function pipeline.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     * @see #startDraw Must be called in conjunction with this method.
+     */
+    public void endDraw(GL2 gl) {
+        for (int column = 0; column < MATRIX_COLUMNS; column++) {
+            gl.getGL3().glVertexAttribDivisor(MATRIX_LOCATION + column, 0);
+            gl.glDisableVertexAttribArray(MATRIX_LOCATION + column);
+        }
+        gl.glUseProgram(0);
+    }
+
+}
@@ -0,0 +1,399 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps compiled meshes on disk, so that they don't have to be generated again
+ * the next time the program starts. Instances may be used from several threads
+ * at once.
+ *
+ * A mesh is stored under a key that describes everything it was generated
+ * from, for instance the parameters of a terrain generator or the definition of
+ * a stacked body. Each mesh is stored in its own file, which holds the vertex
+ * data in the format produced by the assemblers, the index buffers and a
+ * texture slot per index buffer. Files are memory-mapped when loaded, so the
+ * buffers handed out are views on the file and are copied only once, into the
+ * arena of the {@link BufferManager.Initialiser}.
+ *
+ * The cache cannot tell when the code that generates a mesh changes. Whenever
+ * that happens, {@link #FORMAT_VERSION} must be incremented, or the cache
+ * directory must be deleted. Setting the system property
+ * {@value #DISABLE_PROPERTY} to true turns the cache off.
+ *
+ * @author Arjan Boschman
+ */
+public class MeshCache {
+
+    /**
+     * The directory in which the cache files are kept by default, relative to
+     * the working directory.
+     */
+    public static final String DEFAULT_DIRECTORY = "build/meshcache";
+    /**
+     * The system property that turns off the cache when set to true.
+     */
+    public static final String DISABLE_PROPERTY = "robotrace.meshcache.disabled";
+    /**
+     * Files written by a different version of this class, or of the
+     * generators, are ignored.
+     */
+    private static final int FORMAT_VERSION = 3;
+    /**
+     * The first int of every cache file. Because it is written in native byte
+     * order, it also identifies files written on a machine with a different
+     * byte order.
+     */
+    private static final int MAGIC = 0x52524D43;
+    private static final String FILE_EXTENSION = ".mesh";
+    private static final String TEMP_EXTENSION = ".tmp";
+    /**
+     * The size in bytes of the buffer through which vertices and indices are
+     * written to a cache file.
+     */
+    private static final int STAGING_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final boolean enabled;
+
+    /**
+     * Make a mesh cache in the default directory.
+     */
+    public MeshCache() {
+        this(Paths.get(DEFAULT_DIRECTORY));
+    }
+
+    /**
+     * Make a mesh cache.
+     *
+     * @param directory The directory in which to keep the cache files. It is
+     *                  created when the first mesh is stored.
+     */
+    public MeshCache(Path directory) {
+        this.directory = directory;
+        this.enabled = !Boolean.getBoolean(DISABLE_PROPERTY);
+    }
+
+    /**
+     * Get the mesh stored under the given key. If there is none, the mesh is
+     * generated and stored under the key for next time.
+     *
+     * @param key       Describes everything the mesh is generated from.
+     * @param generator Generates the mesh if it is not in the cache.
+     * @return The mesh.
+     */
+    public Entry computeIfAbsent(String key, Supplier<Entry> generator) {
+        if (!enabled) {
+            return generator.get();
+        }
+        final long loadStart = System.nanoTime();
+        final Entry cached = load(key);
+        if (cached != null) {
+            Logger.getLogger(MeshCache.class.getName()).log(Level.INFO,
+                    "Mesh cache hit for {0}: loaded {1} bytes in {2} ms.",
+                    new Object[]{key, cached.getByteCount(), toMillis(System.nanoTime() - loadStart)});
+            return cached;
+        }
+        final long generateStart = System.nanoTime();
+        final Entry generated = generator.get();
+        final long storeStart = System.nanoTime();
+        store(key, generated);
+        Logger.getLogger(MeshCache.class.getName()).log(Level.INFO,
+                "Mesh cache miss for {0}: generated in {1} ms, stored {2} bytes in {3} ms.",
+                new Object[]{key, toMillis(storeStart - generateStart), generated.getByteCount(),
+                    toMillis(System.nanoTime() - storeStart)});
+        return generated;
+    }
+
+    /**
+     * Turns a sequence of values into a short string, so that large inputs
+     * can be made part of a key.
+     *
+     * @param values The values.
+     * @return A digest of the values.
+     */
+    public static String digest(float[] values) {
+        final ByteBuffer bytes = ByteBuffer.allocate(values.length * Float.BYTES);
+        bytes.asFloatBuffer().put(values);
+        return UUID.nameUUIDFromBytes(bytes.array()).toString();
+    }
+
+    /**
+     * Load the mesh stored under the given key.
+     *
+     * @param key The key.
+     * @return The mesh, or null if it is not in the cache or the file is not
+     *         usable.
+     */
+    private Entry load(String key) {
+        final Path file = getFile(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        final MappedByteBuffer mapped;
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //The mapping stays valid after the channel is closed.
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException ex) {
+            Logger.getLogger(MeshCache.class.getName()).log(Level.WARNING, "Could not read " + file, ex);
+            return null;
+        }
+        mapped.order(ByteOrder.nativeOrder());
+        try {
+            if (mapped.getInt() != MAGIC || mapped.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            final byte[] storedKey = new byte[mapped.getInt()];
+            mapped.get(storedKey);
+            //Two keys may share a file name; only the right one counts.
+            if (!key.equals(new String(storedKey, StandardCharsets.UTF_8))) {
+                return null;
+            }
+            skipPadding(mapped);
+            final int floatCount = mapped.getInt();
+            final int bufferCount = mapped.getInt();
+            final int[] lengths = new int[bufferCount];
+            final int[] textureSlots = new int[bufferCount];
+            final int[] baseVertices = new int[bufferCount];
+            for (int i = 0; i < bufferCount; i++) {
+                lengths[i] = mapped.getInt();
+                textureSlots[i] = mapped.getInt();
+                baseVertices[i] = mapped.getInt();
+            }
+            final FloatBuffer data = slice(mapped, floatCount * Float.BYTES).asFloatBuffer();
+            final List<IntBuffer> indexBuffers = new ArrayList<>(bufferCount);
+            for (int i = 0; i < bufferCount; i++) {
+                indexBuffers.add(slice(mapped, lengths[i] * Integer.BYTES).asIntBuffer());
+            }
+            return new Entry(data, indexBuffers, textureSlots, baseVertices);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException ex) {
+            Logger.getLogger(MeshCache.class.getName()).log(Level.WARNING, "Ignoring damaged cache file " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Store a mesh under the given key. The file is written next to its final
+     * location and then moved in place, so other instances of the program
+     * never see a half written file. It is written through the channel rather
+     * than a mapping, because Windows refuses to move a file that is still
+     * mapped, and a mapping is only released when it is garbage collected.
+     *
+     * @param key   The key.
+     * @param entry The mesh.
+     */
+    private void store(String key, Entry entry) {
+        final Path file = getFile(key);
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int bufferCount = entry.getIndexBuffers().size();
+        final int headerSize = align(3 * Integer.BYTES + keyBytes.length) + 2 * Integer.BYTES + 3 * bufferCount * Integer.BYTES;
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            //Meshes may be stored concurrently, possibly under the same key, so each gets its own temp file.
+            tempFile = Files.createTempFile(directory, file.getFileName().toString(), TEMP_EXTENSION);
+            try (final FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                final ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.nativeOrder());
+                header.putInt(MAGIC);
+                header.putInt(FORMAT_VERSION);
+                header.putInt(keyBytes.length);
+                header.put(keyBytes);
+                //The padding is already zero.
+                skipPadding(header);
+                header.putInt(entry.getData().capacity());
+                header.putInt(bufferCount);
+                for (int i = 0; i < bufferCount; i++) {
+                    header.putInt(entry.getIndexBuffers().get(i).capacity());
+                    header.putInt(entry.getTextureSlots()[i]);
+                    header.putInt(entry.getBaseVertices()[i]);
+                }
+                header.flip();
+                writeFully(channel, header);
+                final ByteBuffer staging = ByteBuffer.allocateDirect(STAGING_BYTES).order(ByteOrder.nativeOrder());
+                final FloatBuffer data = entry.getData().duplicate();
+                data.clear();
+                while (data.hasRemaining()) {
+                    final int count = Math.min(data.remaining(), STAGING_BYTES / Float.BYTES);
+                    final FloatBuffer part = data.duplicate();
+                    part.limit(data.position() + count);
+                    staging.clear();
+                    staging.asFloatBuffer().put(part);
+                    staging.limit(count * Float.BYTES);
+                    data.position(data.position() + count);
+                    writeFully(channel, staging);
+                }
+                for (IntBuffer indexBuffer : entry.getIndexBuffers()) {
+                    final IntBuffer indices = indexBuffer.duplicate();
+                    indices.clear();
+                    while (indices.hasRemaining()) {
+                        final int count = Math.min(indices.remaining(), STAGING_BYTES / Integer.BYTES);
+                        final IntBuffer part = indices.duplicate();
+                        part.limit(indices.position() + count);
+                        staging.clear();
+                        staging.asIntBuffer().put(part);
+                        staging.limit(count * Integer.BYTES);
+                        indices.position(indices.position() + count);
+                        writeFully(channel, staging);
+                    }
+                }
+                channel.force(false);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Logger.getLogger(MeshCache.class.getName()).log(Level.WARNING, "Could not write " + file, ex);
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException deleteEx) {
+                    Logger.getLogger(MeshCache.class.getName()).log(Level.WARNING, "Could not delete " + tempFile, deleteEx);
+                }
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private Path getFile(String key) {
+        return directory.resolve(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + FILE_EXTENSION);
+    }
+
+    /**
+     * Cut the next byteCount bytes out of the given buffer, and advance its
+     * position past them.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int byteCount) {
+        final ByteBuffer slice = buffer.slice();
+        slice.limit(byteCount);
+        buffer.position(buffer.position() + byteCount);
+        //Slices always start out big endian.
+        return slice.order(ByteOrder.nativeOrder());
+    }
+
+    private static void skipPadding(ByteBuffer buffer) {
+        buffer.position(align(buffer.position()));
+    }
+
+    private static int align(int position) {
+        return (position + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000d);
+    }
+
+    /**
+     * A compiled mesh: vertex data in the format produced by the assemblers,
+     * index buffers, and a texture slot for each index buffer. What a texture
+     * slot refers to is up to whoever generated the mesh; -1 means no texture.
+     * The indices of each index buffer count from its base vertex, which is
+     * zero unless given otherwise.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public static class Entry {
+
+        private final FloatBuffer data;
+        private final List<IntBuffer> indexBuffers;
+        private final int[] textureSlots;
+        private final int[] baseVertices;
+
+        /**
+         * @param data         The vertex data.
+         * @param indexBuffers The index buffers, as triangle lists.
+         * @param textureSlots The texture slot of each index buffer.
+         */
+        public Entry(FloatBuffer data, List<IntBuffer> indexBuffers, int[] textureSlots) {
+            this(data, indexBuffers, textureSlots, new int[indexBuffers.size()]);
+        }
+
+        /**
+         * @param data         The vertex data.
+         * @param indexBuffers The index buffers, as triangle lists.
+         * @param textureSlots The texture slot of each index buffer.
+         * @param baseVertices The vertex in the data at which the indices of
+         *                     each index buffer start counting.
+         */
+        public Entry(FloatBuffer data, List<IntBuffer> indexBuffers, int[] textureSlots, int[] baseVertices) {
+            this.data = data;
+            this.indexBuffers = Collections.unmodifiableList(indexBuffers);
+            this.textureSlots = textureSlots;
+            this.baseVertices = baseVertices;
+        }
+
+        public FloatBuffer getData() {
+            return data;
+        }
+
+        public List<IntBuffer> getIndexBuffers() {
+            return indexBuffers;
+        }
+
+        public int[] getTextureSlots() {
+            return textureSlots;
+        }
+
+        public int[] getBaseVertices() {
+            return baseVertices;
+        }
+
+        /**
+         * @return The size of the vertex data and index buffers in bytes.
+         */
+        public long getByteCount() {
+            long byteCount = (long) data.capacity() * Float.BYTES;
+            for (IntBuffer indexBuffer : indexBuffers) {
+                byteCount += (long) indexBuffer.capacity() * Integer.BYTES;
+            }
+            return byteCount;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import javax.media.opengl.GL2;
+import robotrace.Vector;
+import utility.MatrixUtils;
+
+/**
+ * Keeps a copy of the OpenGL modelview matrix stack, so the current
+ * transformation is known without asking OpenGL for it. Reading state back
+ * from OpenGL makes the CPU wait for the graphics card to catch up, which is
+ * far too slow to do for every shape that is queued in the
+ * {@link RenderQueue}.
+ *
+ * Every method changes the copy and then makes the same call on GL2, so the
+ * two stay in sync. Like the {@link GLStateCache}, this only works if all
+ * changes to the modelview matrix during the draw phase go through this class.
+ *
+ * @author Arjan Boschman
+ */
+public class ModelViewStack {
+
+    /**
+     * The smallest depth of the modelview matrix stack that OpenGL
+     * guarantees.
+     */
+    private static final int MAX_DEPTH = 32;
+    private static final double[] IDENTITY = MatrixUtils.identity();
+
+    private final double[] current = MatrixUtils.identity();
+    private final double[][] pushed = new double[MAX_DEPTH][MatrixUtils.MATRIX_SIZE];
+    private int depth = 0;
+
+    /**
+     * Replace the current matrix by the identity, like glLoadIdentity.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     */
+    public void loadIdentity(GL2 gl) {
+        System.arraycopy(IDENTITY, 0, current, 0, MatrixUtils.MATRIX_SIZE);
+        gl.glLoadIdentity();
+    }
+
+    /**
+     * Multiply the current matrix by a viewing matrix, like gluLookAt.
+     *
+     * @param gl     The instance of GL2 responsible for drawing.
+     * @param eye    The position of the camera.
+     * @param center The point the camera looks at.
+     * @param up     The direction that is up in the picture.
+     */
+    public void lookAt(GL2 gl, Vector eye, Vector center, Vector up) {
+        final double[] view = MatrixUtils.lookAt(eye, center, up);
+        MatrixUtils.multiply(current, view);
+        gl.glMultMatrixd(view, 0);
+    }
+
+    /**
+     * Save the current matrix, like glPushMatrix.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     */
+    public void pushMatrix(GL2 gl) {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("The modelview matrix stack is full.");
+        }
+        System.arraycopy(current, 0, pushed[depth++], 0, MatrixUtils.MATRIX_SIZE);
+        gl.glPushMatrix();
+    }
+
+    /**
+     * Restore the last saved matrix, like glPopMatrix.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     */
+    public void popMatrix(GL2 gl) {
+        if (depth == 0) {
+            throw new IllegalStateException("The modelview matrix stack is empty.");
+        }
+        System.arraycopy(pushed[--depth], 0, current, 0, MatrixUtils.MATRIX_SIZE);
+        gl.glPopMatrix();
+    }
+
+    /**
+     * Multiply the current matrix by a translation, like glTranslate.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     * @param x  The translation along the x-axis.
+     * @param y  The translation along the y-axis.
+     * @param z  The translation along the z-axis.
+     */
+    public void translate(GL2 gl, double x, double y, double z) {
+        MatrixUtils.translate(current, x, y, z);
+        gl.glTranslated(x, y, z);
+    }
+
+    /**
+     * Multiply the current matrix by a rotation, like glRotate.
+     *
+     * @param gl    The instance of GL2 responsible for drawing.
+     * @param angle The angle of rotation in degrees.
+     * @param x     The x-coordinate of the axis of rotation.
+     * @param y     The y-coordinate of the axis of rotation.
+     * @param z     The z-coordinate of the axis of rotation.
+     */
+    public void rotate(GL2 gl, double angle, double x, double y, double z) {
+        MatrixUtils.rotate(current, angle, x, y, z);
+        gl.glRotated(angle, x, y, z);
+    }
+
+    /**
+     * Multiply the current matrix by a scaling, like glScale.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     * @param x  The scale factor along the x-axis.
+     * @param y  The scale factor along the y-axis.
+     * @param z  The scale factor along the z-axis.
+     */
+    public void scale(GL2 gl, double x, double y, double z) {
+        MatrixUtils.scale(current, x, y, z);
+        gl.glScaled(x, y, z);
+    }
+
+    /**
+     * Multiply the current matrix by another one, like glMultMatrixf.
+     *
+     * @param gl     The instance of GL2 responsible for drawing.
+     * @param matrix The array holding the matrix, in column-major order.
+     * @param offset The index in the array of the first element.
+     */
+    public void multMatrix(GL2 gl, float[] matrix, int offset) {
+        MatrixUtils.multiply(current, matrix, offset);
+        gl.glMultMatrixf(matrix, offset);
+    }
+
+    /**
+     * Copy the current matrix into a float array, for glLoadMatrixf.
+     *
+     * @param target The array to copy it into.
+     * @param offset The index in the array of the first element.
+     */
+    public void getMatrix(float[] target, int offset) {
+        MatrixUtils.copyTo(current, target, offset);
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import Texture.ImplementedTexture;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.media.opengl.GL2;
+import static javax.media.opengl.GL.GL_CULL_FACE;
+
+/**
+ * Collects the shapes drawn during a frame and draws them all at once at the
+ * end of the frame, in an order that minimises state changes.
+ *
+ * While the queue is recording, drawing a {@link Shape} does not draw it.
+ * Instead, the shape is stored along with everything needed to draw it later:
+ * the current modelview matrix, its texture, the current material and whether
+ * face culling is enabled. All of these are known on the CPU side, through the
+ * {@link GLStateCache} and the {@link ModelViewStack}, so OpenGL is never
+ * asked for its state. When the queue is flushed, the stored items are
+ * sorted by pass, culling, texture, material and depth, then drawn:
+ * <ul>
+ * <li>Opaque items come first, grouped by state and then front to back.</li>
+ * <li>Transparent items come last, back to front, so they blend correctly
+ * with everything behind them.</li>
+ * </ul>
+ *
+ * Anything drawn without going through a Shape, like GLUT objects, is still
+ * drawn immediately.
+ *
+ * @author Arjan Boschman
+ */
+public class RenderQueue {
+
+    /**
+     * The number of elements in an OpenGL matrix.
+     */
+    private static final int MATRIX_SIZE = 16;
+    /**
+     * The index of the z component of the translation in a column-major
+     * matrix.
+     */
+    private static final int TRANSLATION_Z = 14;
+    private static final int PASS_OPAQUE = 0;
+    private static final int PASS_TRANSPARENT = 1;
+    /**
+     * The order in which items are drawn.
+     */
+    private static final Comparator<Item> DRAW_ORDER = (item1, item2) -> {
+        if (item1.pass != item2.pass) {
+            return Integer.compare(item1.pass, item2.pass);
+        }
+        if (item1.pass == PASS_TRANSPARENT) {
+            //Back to front, whatever the state.
+            return Float.compare(item2.depth, item1.depth);
+        }
+        if (item1.cullFace != item2.cullFace) {
+            return Boolean.compare(item1.cullFace, item2.cullFace);
+        }
+        if (item1.textureKey != item2.textureKey) {
+            return Integer.compare(item1.textureKey, item2.textureKey);
+        }
+        if (item1.materialId != item2.materialId) {
+            return Integer.compare(item1.materialId, item2.materialId);
+        }
+        //Front to back, so the depth test can reject hidden fragments early.
+        return Float.compare(item1.depth, item2.depth);
+    };
+
+    private final GLStateCache stateCache;
+    private final ModelViewStack modelView;
+    /**
+     * Items are reused from frame to frame; only the first itemCount are in
+     * use.
+     */
+    private final List<Item> items = new ArrayList<>();
+    private int itemCount = 0;
+    /**
+     * Items sorted into drawing order. Kept as a field so the list doesn't
+     * have to be reallocated every frame.
+     */
+    private final List<Item> sortedItems = new ArrayList<>();
+    /**
+     * Small integer keys for each texture, so items can be sorted by texture.
+     */
+    private final Map<ImplementedTexture, Integer> textureKeys = new IdentityHashMap<>();
+    private MaterialTracker materialTracker = null;
+    private boolean recording = false;
+
+    /**
+     * @param stateCache The GLStateCache used to apply the state of each item.
+     * @param modelView  The ModelViewStack that knows the current modelview
+     *                   matrix.
+     */
+    RenderQueue(GLStateCache stateCache, ModelViewStack modelView) {
+        this.stateCache = stateCache;
+        this.modelView = modelView;
+    }
+
+    /**
+     * Set the object that knows the current material, and can set it again
+     * when an item is drawn.
+     *
+     * @param materialTracker The material tracker.
+     */
+    public void setMaterialTracker(MaterialTracker materialTracker) {
+        this.materialTracker = materialTracker;
+    }
+
+    /**
+     * Start recording. Every Shape drawn from now on is queued, until the
+     * queue is flushed.
+     */
+    void begin() {
+        itemCount = 0;
+        recording = true;
+    }
+
+    /**
+     * @return True if shapes should be submitted to this queue rather than be
+     *         drawn directly.
+     */
+    boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Queue a shape, capturing the current state.
+     *
+     * @param shape   The shape to draw later.
+     * @param texture The texture to draw the shape with. This is captured now,
+     *                because the texture of a shape may change before the
+     *                queue is flushed.
+     */
+    void submit(Shape shape, ImplementedTexture texture) {
+        if (itemCount == items.size()) {
+            items.add(new Item());
+        }
+        final Item item = items.get(itemCount++);
+        item.shape = shape;
+        item.texture = texture;
+        item.textureKey = getTextureKey(texture);
+        item.cullFace = stateCache.isEnabled(GL_CULL_FACE);
+        if (materialTracker == null) {
+            item.materialId = -1;
+            item.pass = PASS_OPAQUE;
+        } else {
+            item.materialId = materialTracker.getCurrentMaterialId();
+            item.pass = materialTracker.isCurrentMaterialTransparent() ? PASS_TRANSPARENT : PASS_OPAQUE;
+        }
+        modelView.getMatrix(item.modelView, 0);
+        //The camera looks down the negative z axis in eye space.
+        item.depth = -item.modelView[TRANSLATION_Z];
+    }
+
+    /**
+     * Stop recording, then sort and draw all queued items. The modelview
+     * matrix is restored afterwards.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     */
+    void flush(GL2 gl) {
+        recording = false;
+        sortedItems.clear();
+        for (int i = 0; i < itemCount; i++) {
+            sortedItems.add(items.get(i));
+        }
+        sortedItems.sort(DRAW_ORDER);
+        gl.glPushMatrix();
+        for (int i = 0; i < sortedItems.size(); i++) {
+            final Item item = sortedItems.get(i);
+            if (item.cullFace) {
+                stateCache.enable(gl, GL_CULL_FACE);
+            } else {
+                stateCache.disable(gl, GL_CULL_FACE);
+            }
+            if (materialTracker != null && item.materialId >= 0) {
+                materialTracker.applyMaterial(gl, item.materialId);
+            }
+            gl.glLoadMatrixf(item.modelView, 0);
+            item.shape.drawElements(gl, item.texture);
+            //Don't keep references to textures around longer than needed.
+            item.texture = null;
+        }
+        gl.glPopMatrix();
+        stateCache.disable(gl, GL_CULL_FACE);
+        sortedItems.clear();
+        itemCount = 0;
+    }
+
+    private int getTextureKey(ImplementedTexture texture) {
+        if (texture == null) {
+            return 0;
+        }
+        final Integer key = textureKeys.get(texture);
+        if (key != null) {
+            return key;
+        }
+        final int newKey = textureKeys.size() + 1;
+        textureKeys.put(texture, newKey);
+        return newKey;
+    }
+
+    /**
+     * Knows which material is currently set, and can set any material again
+     * by its identifier.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public interface MaterialTracker {
+
+        /**
+         * @return An identifier that is unique for the currently set material.
+         */
+        int getCurrentMaterialId();
+
+        /**
+         * @return True if the currently set material is see-through, and must
+         *         therefore be blended with whatever is behind it.
+         */
+        boolean isCurrentMaterialTransparent();
+
+        /**
+         * Set the material with the given identifier.
+         *
+         * @param gl         The instance of GL2 responsible for drawing.
+         * @param materialId An identifier previously returned by
+         *                   {@link #getCurrentMaterialId()}.
+         */
+        void applyMaterial(GL2 gl, int materialId);
+    }
+
+    /**
+     * A queued shape with all the state needed to draw it.
+     */
+    private static class Item {
+
+        private Shape shape;
+        private ImplementedTexture texture;
+        private int textureKey;
+        private int materialId;
+        private int pass;
+        private boolean cullFace;
+        private float depth;
+        private final float[] modelView = new float[MATRIX_SIZE];
+    }
+
+}
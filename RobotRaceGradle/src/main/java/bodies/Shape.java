@@ -31,7 +31,8 @@ import javax.media.opengl.GL2;
 
 /**
  * A single OpenGL drawable element. This is a rigid shape, optionally defined
- * as part of a more complex {@link Body}.
+ * as part of a more complex {@link Body}. Shapes are always drawn as indexed
+ * triangle lists.
  *
  * The actual data and index buffers are kept by the OpenGL libraries, instances
  * of this class just maintain the minimum required information to draw the
@@ -41,30 +42,22 @@ import javax.media.opengl.GL2;
  */
 public class Shape implements Body {
 
-    private final int indexBufferName;
-    private final int indexbufferLength;
-    private final int shapeMode;
+    private final BufferManager bufferManager;
+    private final IndexBufferHandle indexBuffer;
     private ImplementedTexture texture = null;
 
     /**
-     * @param indexBufferName   The name of the index buffer used by this shape.
-     *                          The actual buffer is help by OpenGL, this name
-     *                          is how OpenGL refers to it.
-     * @param indexbufferLength The length of the index buffer. This is the
-     *                          number of vertices in use by this shape.
-     * @param shapeMode         The shape mode is a reference to a {@link GL2}
-     *                          enum constant. It tells the OpenGL library how
-     *                          to draw this shape. The OpenGL version 2
-     *                          specification tells us the following constants
-     *                          are accepted: GL_POINTS, GL_LINE_STRIP,
-     *                          GL_LINE_LOOP, GL_LINES, GL_TRIANGLE_STRIP,
-     *                          GL_TRIANGLE_FAN, GL_TRIANGLES, GL_QUAD_STRIP,
-     *                          GL_QUADS, and GL_POLYGON.
+     * @param bufferManager The BufferManager that holds the data buffer of
+     *                      this shape. Its state cache and render queue are
+     *                      used while drawing.
+     * @param indexBuffer   The index buffer used by this shape. The actual
+     *                      buffer is held by OpenGL, the handle describes how
+     *                      to draw it. The index buffer must contain a
+     *                      triangle list.
      */
-    public Shape(int indexBufferName, int indexbufferLength, int shapeMode) {
-        this.indexBufferName = indexBufferName;
-        this.indexbufferLength = indexbufferLength;
-        this.shapeMode = shapeMode;
+    public Shape(BufferManager bufferManager, IndexBufferHandle indexBuffer) {
+        this.bufferManager = bufferManager;
+        this.indexBuffer = indexBuffer;
     }
 
     public Shape setTexture(ImplementedTexture texture) {
@@ -76,16 +69,50 @@ public class Shape implements Body {
         return texture;
     }
 
+    /**
+     * Draws this shape. While the {@link RenderQueue} of the BufferManager is
+     * recording, the shape is queued with its current texture instead, and
+     * drawn when the queue is flushed.
+     *
+     * @param gl The instance of GL2 responsible for drawing the shape.
+     */
     @Override
     public void draw(GL2 gl) {
-        if (texture != null) {
-            texture.drawStart(gl);
-        }
-        gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, indexBufferName);
-        gl.glDrawElements(shapeMode, indexbufferLength, BufferManager.INDEX_BUFFER_TYPE, BufferManager.INDEX_BUFFER_OFFSET);
-        if (texture != null) {
-            texture.drawEnd(gl);
+        final RenderQueue renderQueue = bufferManager.getRenderQueue();
+        if (renderQueue.isRecording()) {
+            renderQueue.submit(this, texture);
+        } else {
+            drawElements(gl, texture);
         }
     }
 
+    /**
+     * Draws this shape right away. The given texture stays bound afterwards,
+     * so that consecutive shapes with the same texture don't need to bind it
+     * again. Code that draws without going through a Shape should switch
+     * texturing off through the {@link GLStateCache} first.
+     *
+     * @param gl      The instance of GL2 responsible for drawing the shape.
+     * @param texture The texture to draw the shape with, or null for none.
+     */
+    void drawElements(GL2 gl, ImplementedTexture texture) {
+        final GLStateCache stateCache = bufferManager.getStateCache();
+        stateCache.useTexture(gl, texture);
+        stateCache.bindBuffer(gl, GL2.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getName());
+        bufferManager.drawTriangles(gl, indexBuffer);
+    }
+
+    /**
+     * Draw several instances of this shape right away, each placed by the
+     * per-instance attributes that were set up beforehand.
+     *
+     * @param gl    The instance of GL2 responsible for drawing.
+     * @param count The number of instances.
+     * @see InstanceRenderer
+     */
+    void drawInstances(GL2 gl, int count) {
+        bufferManager.getStateCache().bindBuffer(gl, GL2.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getName());
+        bufferManager.drawTrianglesInstanced(gl, indexBuffer, count);
+    }
+
 }
@@ -26,8 +26,8 @@
  */
 package bodies;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 import javax.media.opengl.GL2;
 
 /**
@@ -38,12 +38,12 @@ import javax.media.opengl.GL2;
  */
 public class SimpleBody implements Body {
 
-    private final Set<Shape> shapes = new HashSet<>();
+    private final List<Shape> shapes = new ArrayList<>();
 
     /**
      * Adds a shape to this SimpleBody. During the SimpleBody's draw phase,
-     * shapes belonging to a SimpleBody will all be drawn in no particular
-     * order. Shapes may belong to several SimpleBodies.
+     * shapes belonging to a SimpleBody will all be drawn in the order in which
+     * they were added. Shapes may belong to several SimpleBodies.
      *
      * @param shape The shape to be added.
      */
@@ -51,9 +51,19 @@ public class SimpleBody implements Body {
         shapes.add(shape);
     }
 
+    /**
+     * @return The shapes of this body, in the order in which they were
+     *         added.
+     */
+    List<Shape> getShapes() {
+        return shapes;
+    }
+
     @Override
     public void draw(GL2 gl) {
-        shapes.stream().forEach((shape) -> shape.draw(gl));
+        for (int i = 0; i < shapes.size(); i++) {
+            shapes.get(i).draw(gl);
+        }
     }
 
 }
@@ -33,7 +33,10 @@ import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import javax.media.opengl.GL2;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Can create an instance of {@link SimpleBody} that consists of a stack of
@@ -42,12 +45,27 @@ import javax.media.opengl.GL2;
  * The initial shape will be built at the bottom, with progressive shapes built
  * back to back on top of each other, creating a tunnel-like shape.
  *
+ * The shapes are only assembled when {@link #build()} is called, and only if
+ * the {@link MeshCache} doesn't already hold a body with the same definition.
+ *
  * @author Arjan Boschman
  */
 public class StackBuilder {
 
     private final BufferManager.Initialiser bmInitialiser;
-    private final StackAssembler assembler;
+    /**
+     * The steps that assemble the body, in order. These are only taken if the
+     * body is not in the cache.
+     */
+    private final List<Consumer<StackAssembler>> steps = new ArrayList<>();
+    /**
+     * Describes everything the body is assembled from. Used as the cache key.
+     */
+    private final StringBuilder definition = new StringBuilder("stack");
+    /**
+     * The distinct textures used by the body, in order of first use.
+     */
+    private final List<ImplementedTexture> textureSlots = new ArrayList<>();
     private int sliceCount = 3;
     private ImplementedTexture textureTop = null;
     private ImplementedTexture textureBottom = null;
@@ -65,27 +83,57 @@ public class StackBuilder {
     public StackBuilder(BufferManager.Initialiser bmInitialiser) {
         this.texturedShapes = new ArrayList<>();
         this.bmInitialiser = bmInitialiser;
-        this.assembler = new StackAssembler();
     }
 
     /**
-     * During the {@link #build()} call, the Shapes that have textures in them
-     * will be stored. This getter retrieves those shapes. You can use these
-     * handles to for instance swap out textures.
+     * When the body made by {@link #build()} is uploaded, the Shapes that have
+     * textures in them will be stored. This getter retrieves those shapes. You
+     * can use these handles to for instance swap out textures.
      *
-     * @return A list of all Shapes in the constructed SimpleBody that have an
-     *         ImplementedTexture.
+     * @return A view of all Shapes in the constructed SimpleBody that have an
+     *         ImplementedTexture. It is empty until the Initialiser is
+     *         finished.
      */
     public List<Shape> getTexturedShapes() {
         return Collections.unmodifiableList(texturedShapes);
     }
 
     /**
-     * Create a SimpleBody from the previously given definition.
+     * Create a SimpleBody from the previously given definition. The body is
+     * assembled in the background and stays empty until the Initialiser is
+     * finished. This builder must not be changed afterwards.
      *
      * @return A new SimpleBody.
      */
     public SimpleBody build() {
+        final SimpleBody simpleBody = new SimpleBody();
+        final MeshCache meshCache = bmInitialiser.getMeshCache();
+        final String key = definition.toString();
+        final CompletableFuture<MeshCache.Entry> mesh = CompletableFuture.supplyAsync(
+                () -> meshCache.computeIfAbsent(key, this::buildMesh), bmInitialiser.getBuildExecutor());
+        bmInitialiser.addMesh(mesh, (entry, handles) -> {
+            //Surfaces that share a texture were merged, so they can be drawn in one go.
+            for (Shape shape : StaticBatcher.makeShapes(bmInitialiser.getBufferManager(), entry, handles, textureSlots)) {
+                if (shape.getTexture() != null) {
+                    texturedShapes.add(shape);
+                }
+                simpleBody.addShape(shape);
+            }
+        });
+        return simpleBody;
+    }
+
+    /**
+     * Assemble the body from the previously given definition. This doesn't
+     * need OpenGL, and doesn't use the mesh cache.
+     *
+     * @return The compiled mesh, with surfaces that share a texture merged.
+     *         Its texture slots refer to the textures in the order in which
+     *         they were first set.
+     */
+    public MeshCache.Entry buildMesh() {
+        final StackAssembler assembler = new StackAssembler();
+        steps.stream().forEach((step) -> step.accept(assembler));
         /**
          * Tell Assembler to compile all the surfaces and then retrieve the
          * necessary values.
@@ -96,27 +144,21 @@ public class StackBuilder {
         final FloatBuffer dataBuffer = assembler.getDataBuffer();
         /**
          * List of index buffers. Each index buffer belongs to a shape and
-         * consists of pointers to vertices in the data buffer.
-         */
-        final List<IntBuffer> indicesBufferList = assembler.getIndicesBuffers();
-        /**
-         * List of boolean flags. Runs parallel to the indicesBufferList and is
-         * true if the shape is a polygon, false if it's a QuadStrip.
+         * consists of pointers to vertices in the data buffer, as a triangle
+         * list that is ordered to make good use of the vertex cache.
          */
-        final List<Boolean> surfaceTypeList = assembler.getSurfaceTypeList();
-        final List<ImplementedTexture> textureList = assembler.getTextureList();
-        final int[] indexBufferNames = bmInitialiser.addData(dataBuffer, indicesBufferList);
-        final SimpleBody simpleBody = new SimpleBody();
-        for (int i = 0; i < indexBufferNames.length; i++) {
-            final int shapeMode = surfaceTypeList.get(i) ? GL2.GL_POLYGON : GL2.GL_QUAD_STRIP;
-            final ImplementedTexture texture = textureList.get(i);
-            final Shape shape = new Shape(indexBufferNames[i], indicesBufferList.get(i).capacity(), shapeMode).setTexture(texture);
-            if (texture != null) {
-                texturedShapes.add(shape);
-            }
-            simpleBody.addShape(shape);
+        final Logger logger = Logger.getLogger(StackBuilder.class.getName());
+        //Counting the cache misses takes about as long as the reordering, so it is only done if it is logged.
+        final boolean logStatistics = logger.isLoggable(Level.INFO);
+        final List<IntBuffer> indicesBufferList = assembler.getIndicesBuffers(logStatistics);
+        if (logStatistics) {
+            logger.log(Level.INFO,
+                    "Compiled stack body: {0} triangles, ACMR {1} before and {2} after vertex cache optimisation.",
+                    new Object[]{assembler.getTriangleCount(), String.format("%.3f", assembler.getAcmrBefore()),
+                        String.format("%.3f", assembler.getAcmrAfter())});
         }
-        return simpleBody;
+        final List<ImplementedTexture> textureList = assembler.getTextureList();
+        return StaticBatcher.batch(dataBuffer, indicesBufferList, textureList, textureSlots);
     }
 
     /**
@@ -166,7 +208,13 @@ public class StackBuilder {
      * @return This StackBuilder.
      */
     public StackBuilder addConicalFrustum(float radiusLow, float radiusHigh, float heightLow, float heightHigh, boolean closeBottom, boolean closeTop) {
-        assembler.addConicalFrustum(sliceCount, radiusLow, radiusHigh, heightLow, heightHigh, closeBottom, closeTop, textureTop, textureBottom, textureSide);
+        final int slices = sliceCount;
+        final ImplementedTexture top = textureTop;
+        final ImplementedTexture bottom = textureBottom;
+        final ImplementedTexture side = textureSide;
+        define("frustum", slices, radiusLow, radiusHigh, heightLow, heightHigh, closeBottom, closeTop,
+                getTextureSlot(top), getTextureSlot(bottom), getTextureSlot(side));
+        steps.add((assembler) -> assembler.addConicalFrustum(slices, radiusLow, radiusHigh, heightLow, heightHigh, closeBottom, closeTop, top, bottom, side));
         return this;
     }
 
@@ -189,10 +237,43 @@ public class StackBuilder {
      * @return This StackBuilder.
      */
     public StackBuilder addPartialTorus(int stackCount, float radiusLow, float radiusHigh, float heightLow, float heightHigh, boolean closeBottom, boolean closeTop) {
-        assembler.addPartialTorus(sliceCount, stackCount, radiusLow, radiusHigh, heightLow, heightHigh, closeBottom, closeTop, textureTop, textureBottom, textureSide);
+        final int slices = sliceCount;
+        final ImplementedTexture top = textureTop;
+        final ImplementedTexture bottom = textureBottom;
+        final ImplementedTexture side = textureSide;
+        define("torus", slices, stackCount, radiusLow, radiusHigh, heightLow, heightHigh, closeBottom, closeTop,
+                getTextureSlot(top), getTextureSlot(bottom), getTextureSlot(side));
+        steps.add((assembler) -> assembler.addPartialTorus(slices, stackCount, radiusLow, radiusHigh, heightLow, heightHigh, closeBottom, closeTop, top, bottom, side));
         return this;
     }
 
+    /**
+     * Append a step to the definition of the body.
+     *
+     * @param step      The name of the step.
+     * @param arguments All values the step depends on.
+     */
+    private void define(String step, Object... arguments) {
+        definition.append('/').append(step);
+        for (Object argument : arguments) {
+            definition.append(',').append(argument);
+        }
+    }
+
+    /**
+     * Find the slot of the given texture, registering it if it wasn't used
+     * before.
+     *
+     * @param texture The texture, or null.
+     * @return The texture slot.
+     */
+    private int getTextureSlot(ImplementedTexture texture) {
+        if (texture != null && !textureSlots.stream().anyMatch((slot) -> slot == texture)) {
+            textureSlots.add(texture);
+        }
+        return StaticBatcher.getTextureSlot(texture, textureSlots);
+    }
+
     /**
      * Add a polygon to close off the stacked body.
      *
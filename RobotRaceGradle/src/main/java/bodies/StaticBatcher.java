@@ -0,0 +1,163 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import Texture.ImplementedTexture;
+import com.jogamp.common.nio.Buffers;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static utility class. Merges the surfaces of a rigid body into as few
+ * Shapes as possible before they are handed to the
+ * {@link BufferManager.Initialiser}.
+ *
+ * All surfaces that share an {@link ImplementedTexture} (or that share having
+ * no texture at all) have their triangle lists concatenated into one index
+ * buffer. Each resulting Shape therefore costs a single glDrawElements call,
+ * no matter how many surfaces it was made from.
+ *
+ * Textures are referred to by their position in a list of texture slots, so
+ * that the merged result can be kept in a {@link MeshCache}.
+ *
+ * @author Arjan Boschman
+ */
+@SuppressWarnings("FinalClass")
+final class StaticBatcher {
+
+    /**
+     * The texture slot that stands for no texture at all.
+     */
+    static final int NO_TEXTURE = -1;
+
+    /**
+     * Merge the index buffers of a body, with one index buffer per distinct
+     * texture.
+     *
+     * @param dataBuffer   The vertex data of the whole body.
+     * @param indexBuffers The index buffers of each of the surfaces of the
+     *                     body. These must all be triangle lists.
+     * @param textures     The texture of each surface, parallel to the
+     *                     indexBuffers. Elements may be null.
+     * @param textureSlots The textures that may occur, each only once. Every
+     *                     non-null texture in textures must be among them.
+     *
+     * @return A mesh with one index buffer per distinct texture, in order of
+     *         first occurrence.
+     */
+    static MeshCache.Entry batch(FloatBuffer dataBuffer, List<IntBuffer> indexBuffers, List<ImplementedTexture> textures, List<ImplementedTexture> textureSlots) {
+        //Group the index buffers by texture slot, keeping the order in which the slots are first used.
+        final Map<Integer, List<IntBuffer>> batches = new LinkedHashMap<>();
+        for (int i = 0; i < indexBuffers.size(); i++) {
+            batches.computeIfAbsent(getTextureSlot(textures.get(i), textureSlots), (slot) -> new ArrayList<>()).add(indexBuffers.get(i));
+        }
+        final List<IntBuffer> mergedBuffers = new ArrayList<>(batches.size());
+        final int[] mergedSlots = new int[batches.size()];
+        int i = 0;
+        for (Map.Entry<Integer, List<IntBuffer>> batch : batches.entrySet()) {
+            mergedBuffers.add(concatenate(batch.getValue()));
+            mergedSlots[i++] = batch.getKey();
+        }
+        return new MeshCache.Entry(dataBuffer, mergedBuffers, mergedSlots);
+    }
+
+    /**
+     * Make one Shape per index buffer of a mesh that was uploaded.
+     *
+     * @param bufferManager The BufferManager the mesh was uploaded to.
+     * @param mesh          The mesh, as made by {@link #batch}.
+     * @param handles       The handles of the index buffers of the mesh.
+     * @param textureSlots  The textures that the texture slots of the mesh
+     *                      refer to.
+     *
+     * @return One Shape per index buffer of the mesh.
+     */
+    static List<Shape> makeShapes(BufferManager bufferManager, MeshCache.Entry mesh, IndexBufferHandle[] handles, List<ImplementedTexture> textureSlots) {
+        final List<Shape> shapes = new ArrayList<>(handles.length);
+        for (int i = 0; i < handles.length; i++) {
+            final int slot = mesh.getTextureSlots()[i];
+            final ImplementedTexture texture = (slot == NO_TEXTURE) ? null : textureSlots.get(slot);
+            shapes.add(new Shape(bufferManager, handles[i]).setTexture(texture));
+        }
+        return shapes;
+    }
+
+    /**
+     * Find the slot of the given texture. Textures are compared by identity.
+     *
+     * @param texture      The texture, or null.
+     * @param textureSlots The textures that may occur, each only once.
+     *
+     * @return The position of the texture in textureSlots, or
+     *         {@link #NO_TEXTURE} if the texture is null.
+     */
+    static int getTextureSlot(ImplementedTexture texture, List<ImplementedTexture> textureSlots) {
+        if (texture == null) {
+            return NO_TEXTURE;
+        }
+        for (int i = 0; i < textureSlots.size(); i++) {
+            if (textureSlots.get(i) == texture) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Texture " + texture.getOriginalFilename() + " has no slot.");
+    }
+
+    /**
+     * Concatenate triangle lists.
+     *
+     * @param buffers The buffers to concatenate.
+     *
+     * @return A new buffer containing the whole content of each of the given
+     *         buffers, in order.
+     */
+    private static IntBuffer concatenate(List<IntBuffer> buffers) {
+        if (buffers.size() == 1) {
+            return buffers.get(0);
+        }
+        int length = 0;
+        for (IntBuffer buffer : buffers) {
+            length += buffer.capacity();
+        }
+        final IntBuffer merged = Buffers.newDirectIntBuffer(length);
+        for (IntBuffer buffer : buffers) {
+            final IntBuffer source = buffer.duplicate();
+            source.clear();
+            merged.put(source);
+        }
+        merged.rewind();
+        return merged;
+    }
+
+    private StaticBatcher() {
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import com.jogamp.common.nio.Buffers;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import javax.media.opengl.GL2;
+
+/**
+ * A fixed number of data buffers of equal size, whose vertices can be
+ * replaced while drawing. Unlike the data buffer of a {@link BufferManager},
+ * which is uploaded once, these are meant for meshes that come and go, like
+ * the tiles of a terrain that moves along with the camera.
+ *
+ * All slots share a single index buffer, so every mesh put into the pool must
+ * have the same vertex count and topology. The amount of memory used is fixed
+ * when the pool is made.
+ *
+ * The slots are drawn right away rather than through the RenderQueue, since
+ * their contents may change before the queue is flushed.
+ *
+ * @author Arjan Boschman
+ */
+public class StreamingBufferPool {
+
+    private final BufferManager bufferManager;
+    private final GLStateCache stateCache;
+    private final VertexLayout layout;
+    private final int[] slotBufferNames;
+    private final int verticesPerSlot;
+    private final int indexBufferName;
+    private final int indexCount;
+    private final int indexType;
+    /**
+     * Reused for every upload, so that replacing a slot allocates nothing.
+     */
+    private final ByteBuffer uploadBuffer;
+
+    /**
+     * Make the buffers of a new pool. Must be called on the OpenGL thread.
+     */
+    StreamingBufferPool(GL2 gl, BufferManager bufferManager, int slotCount, int verticesPerSlot, IntBuffer indices) {
+        this.bufferManager = bufferManager;
+        this.stateCache = bufferManager.getStateCache();
+        this.layout = bufferManager.getLayout();
+        this.verticesPerSlot = verticesPerSlot;
+        this.uploadBuffer = ByteBuffer.allocateDirect(verticesPerSlot * layout.getStride()).order(ByteOrder.nativeOrder());
+        this.slotBufferNames = new int[slotCount];
+        gl.glGenBuffers(slotCount, slotBufferNames, 0);
+        for (int slotBufferName : slotBufferNames) {
+            //Reserve the memory; the vertices follow with each upload.
+            gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, slotBufferName);
+            gl.glBufferData(GL2.GL_ARRAY_BUFFER, uploadBuffer.capacity(), null, GL2.GL_DYNAMIC_DRAW);
+        }
+        final int[] singleBufferName = new int[1];
+        gl.glGenBuffers(1, singleBufferName, 0);
+        this.indexBufferName = singleBufferName[0];
+        this.indexCount = indices.capacity();
+        gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, indexBufferName);
+        if (verticesPerSlot - 1 <= BufferManager.MAX_SHORT_INDEX) {
+            this.indexType = GL2.GL_UNSIGNED_SHORT;
+            final ShortBuffer shortIndices = Buffers.newDirectShortBuffer(indexCount);
+            for (int i = 0; i < indexCount; i++) {
+                shortIndices.put(i, (short) indices.get(i));
+            }
+            gl.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, indexCount * Short.BYTES, shortIndices, GL2.GL_STATIC_DRAW);
+        } else {
+            this.indexType = GL2.GL_UNSIGNED_INT;
+            gl.glBufferData(GL2.GL_ELEMENT_ARRAY_BUFFER, indexCount * Integer.BYTES, indices, GL2.GL_STATIC_DRAW);
+        }
+    }
+
+    /**
+     * @return The number of meshes this pool can hold at once.
+     */
+    public int getSlotCount() {
+        return slotBufferNames.length;
+    }
+
+    /**
+     * @return The number of vertices of every mesh in this pool.
+     */
+    public int getVerticesPerSlot() {
+        return verticesPerSlot;
+    }
+
+    /**
+     * @return The amount of bytes of vertex data this pool holds in OpenGL.
+     */
+    public long getVertexBytes() {
+        return (long) slotBufferNames.length * uploadBuffer.capacity();
+    }
+
+    /**
+     * Replace the vertices in a slot.
+     *
+     * @param gl   The instance of GL2 responsible for drawing.
+     * @param slot The slot, between zero and the slot count.
+     * @param data The vertices, as produced by the assemblers. Must hold
+     *             exactly the vertex count of this pool.
+     */
+    public void upload(GL2 gl, int slot, FloatBuffer data) {
+        if (data.capacity() != verticesPerSlot * VertexLayout.FLOATS_PER_VERTEX) {
+            throw new IllegalArgumentException("Expected " + verticesPerSlot + " vertices, got "
+                    + data.capacity() / VertexLayout.FLOATS_PER_VERTEX + ".");
+        }
+        encodeAndUpload(gl, slot, data);
+    }
+
+    /**
+     * Replace the first vertices in a slot, leaving the rest as they were.
+     * Meant for meshes whose size changes from frame to frame, which are
+     * drawn with {@link #draw(GL2, int, int)}.
+     *
+     * @param gl          The instance of GL2 responsible for drawing.
+     * @param slot        The slot, between zero and the slot count.
+     * @param data        The vertices, as produced by the assemblers. Only
+     *                    the first vertexCount vertices are used.
+     * @param vertexCount The number of vertices to replace, at most the
+     *                    vertex count of this pool.
+     */
+    public void upload(GL2 gl, int slot, FloatBuffer data, int vertexCount) {
+        if (vertexCount > verticesPerSlot || data.capacity() < vertexCount * VertexLayout.FLOATS_PER_VERTEX) {
+            throw new IllegalArgumentException("Can't upload " + vertexCount + " vertices into a slot of "
+                    + verticesPerSlot + " from a buffer of " + data.capacity() / VertexLayout.FLOATS_PER_VERTEX + ".");
+        }
+        //The layouts convert whole buffers, so hand them a view of just the vertices to replace.
+        final FloatBuffer vertices = data.duplicate();
+        vertices.clear();
+        vertices.limit(vertexCount * VertexLayout.FLOATS_PER_VERTEX);
+        encodeAndUpload(gl, slot, vertices.slice());
+    }
+
+    private void encodeAndUpload(GL2 gl, int slot, FloatBuffer data) {
+        uploadBuffer.clear();
+        layout.encode(data, uploadBuffer);
+        uploadBuffer.flip();
+        stateCache.bindBuffer(gl, GL2.GL_ARRAY_BUFFER, slotBufferNames[slot]);
+        gl.glBufferSubData(GL2.GL_ARRAY_BUFFER, 0, uploadBuffer.limit(), uploadBuffer);
+    }
+
+    /**
+     * Draw the triangles of a slot with the current material and texture.
+     * When done drawing slots, call {@link #endDraw}.
+     *
+     * @param gl   The instance of GL2 responsible for drawing.
+     * @param slot The slot, between zero and the slot count.
+     */
+    public void draw(GL2 gl, int slot) {
+        draw(gl, slot, indexCount);
+    }
+
+    /**
+     * Draw the first triangles of a slot with the current material and
+     * texture. When done drawing slots, call {@link #endDraw}.
+     *
+     * @param gl              The instance of GL2 responsible for drawing.
+     * @param slot            The slot, between zero and the slot count.
+     * @param drawnIndexCount The number of indices to draw, at most the
+     *                        length of the shared triangle list.
+     */
+    public void draw(GL2 gl, int slot, int drawnIndexCount) {
+        stateCache.bindBuffer(gl, GL2.GL_ARRAY_BUFFER, slotBufferNames[slot]);
+        layout.setPointers(gl, 0);
+        stateCache.bindBuffer(gl, GL2.GL_ELEMENT_ARRAY_BUFFER, indexBufferName);
+        gl.glDrawElements(GL2.GL_TRIANGLES, drawnIndexCount, indexType, BufferManager.INDEX_BUFFER_OFFSET);
+    }
+
+    /**
+     * Point OpenGL back at the data buffer of the BufferManager, so that the
+     * queued shapes are drawn from it again. Must be called after uploading
+     * or drawing slots.
+     *
+     * @param gl The instance of GL2 responsible for drawing.
+     */
+    public void endDraw(GL2 gl) {
+        bufferManager.restoreDataBuffer(gl);
+    }
+
+}
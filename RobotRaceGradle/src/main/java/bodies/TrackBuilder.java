@@ -31,8 +31,11 @@ import bodies.assembly.TrackAssembler;
 import bodies.assembly.Vertex;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.List;
-import javax.media.opengl.GL2;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -41,7 +44,6 @@ import javax.media.opengl.GL2;
 public class TrackBuilder {
 
     private final BufferManager.Initialiser bmInitialiser;
-    private final TrackAssembler assembler;
     private float laneWidth = 1.22f;
     private int laneCount = 4;
     private float trackHeight = 1f;
@@ -58,10 +60,51 @@ public class TrackBuilder {
      */
     public TrackBuilder(BufferManager.Initialiser bmInitialiser) {
         this.bmInitialiser = bmInitialiser;
-        this.assembler = new TrackAssembler();
     }
 
+    /**
+     * Create a SimpleBody for a track that follows the given description. The
+     * track is only assembled if the {@link MeshCache} doesn't already hold one
+     * with the same description and properties. Assembly happens in the
+     * background; the body stays empty until the Initialiser is finished.
+     *
+     * @param trackDescription The points along the center of the track.
+     * @return A new SimpleBody.
+     */
     public SimpleBody build(List<Vertex> trackDescription) {
+        final List<ImplementedTexture> textureSlots = new ArrayList<>();
+        for (ImplementedTexture texture : new ImplementedTexture[]{textureTop, textureBottom, textureSide}) {
+            if (texture != null && !textureSlots.stream().anyMatch((slot) -> slot == texture)) {
+                textureSlots.add(texture);
+            }
+        }
+        final MeshCache meshCache = bmInitialiser.getMeshCache();
+        final String key = getCacheKey(trackDescription, textureSlots);
+        final CompletableFuture<MeshCache.Entry> mesh = CompletableFuture.supplyAsync(
+                () -> meshCache.computeIfAbsent(key, () -> buildMesh(trackDescription, textureSlots)), bmInitialiser.getBuildExecutor());
+        /**
+         * Create the SimpleBody that represents this RaceTrack. Surfaces that
+         * share a texture were merged, so they can be drawn in one go.
+         */
+        final SimpleBody simpleBody = new SimpleBody();
+        bmInitialiser.addMesh(mesh, (entry, handles) -> {
+            for (Shape shape : StaticBatcher.makeShapes(bmInitialiser.getBufferManager(), entry, handles, textureSlots)) {
+                simpleBody.addShape(shape);
+            }
+        });
+        return simpleBody;
+    }
+
+    /**
+     * Assemble a track that follows the given description. This doesn't need
+     * OpenGL, and doesn't use the mesh cache.
+     *
+     * @param trackDescription The points along the center of the track.
+     * @param textureSlots     The distinct textures of the track.
+     * @return The compiled mesh, with surfaces that share a texture merged.
+     */
+    public MeshCache.Entry buildMesh(List<Vertex> trackDescription, List<ImplementedTexture> textureSlots) {
+        final TrackAssembler assembler = new TrackAssembler();
         assembler.calculateTrack(trackDescription, laneWidth, laneCount, trackHeight, closedTrack, textureTop, textureBottom, textureSide);
         /**
          * Buffer containing all vertex data from all previously added shapes.
@@ -71,26 +114,45 @@ public class TrackBuilder {
         final FloatBuffer dataBuffer = assembler.getDataBuffer();
         /**
          * List of index buffers. Each index buffer belongs to a shape and
-         * consists of pointers to vertices in the data buffer.
+         * consists of pointers to vertices in the data buffer, as a triangle
+         * list that is ordered to make good use of the vertex cache.
          */
-        final List<IntBuffer> indicesBufferList = assembler.getIndicesBuffers();
-        /**
-         * List of boolean flags. Runs parallel to the indicesBufferList and is
-         * true if the shape is a polygon, false if it's a QuadStrip.
-         */
-        final List<Boolean> surfaceTypeList = assembler.getSurfaceTypeList();
+        final Logger logger = Logger.getLogger(TrackBuilder.class.getName());
+        //Counting the cache misses takes about as long as the reordering, so it is only done if it is logged.
+        final boolean logStatistics = logger.isLoggable(Level.INFO);
+        final List<IntBuffer> indicesBufferList = assembler.getIndicesBuffers(logStatistics);
+        if (logStatistics) {
+            logger.log(Level.INFO,
+                    "Compiled track body: {0} triangles, ACMR {1} before and {2} after vertex cache optimisation.",
+                    new Object[]{assembler.getTriangleCount(), String.format("%.3f", assembler.getAcmrBefore()),
+                        String.format("%.3f", assembler.getAcmrAfter())});
+        }
         final List<ImplementedTexture> textureList = assembler.getTextureList();
-        final int[] indexBufferNames = bmInitialiser.addData(dataBuffer, indicesBufferList);
-        /**
-         * Create the SimpleBody that represents this RaceTrack.
-         */
-        final SimpleBody simpleBody = new SimpleBody();
-        for (int i = 0; i < indexBufferNames.length; i++) {
-            final int shapeMode = surfaceTypeList.get(i) ? GL2.GL_POLYGON : GL2.GL_QUAD_STRIP;
-            final ImplementedTexture texture = textureList.get(i);
-            simpleBody.addShape(new Shape(indexBufferNames[i], indicesBufferList.get(i).capacity(), shapeMode).setTexture(texture));
+        return StaticBatcher.batch(dataBuffer, indicesBufferList, textureList, textureSlots);
+    }
+
+    /**
+     * The track depends on the positions in its description, its properties
+     * and the size and stretching of its textures, since those decide the
+     * texture coordinates.
+     */
+    private String getCacheKey(List<Vertex> trackDescription, List<ImplementedTexture> textureSlots) {
+        final float[] positions = new float[trackDescription.size() * Vertex.COORD_COUNT];
+        for (int i = 0; i < trackDescription.size(); i++) {
+            System.arraycopy(trackDescription.get(i).getPositionA(), 0, positions, i * Vertex.COORD_COUNT, Vertex.COORD_COUNT);
         }
-        return simpleBody;
+        final StringBuilder key = new StringBuilder("track");
+        key.append(',').append(laneWidth).append(',').append(laneCount)
+                .append(',').append(trackHeight).append(',').append(closedTrack);
+        for (ImplementedTexture texture : new ImplementedTexture[]{textureTop, textureBottom, textureSide}) {
+            key.append('/').append(StaticBatcher.getTextureSlot(texture, textureSlots));
+            if (texture != null) {
+                key.append(',').append(texture.getStretchWidth()).append(',').append(texture.getStretchHeight())
+                        .append(',').append(texture.getImageWidth()).append(',').append(texture.getImageHeight());
+            }
+        }
+        key.append('/').append(trackDescription.size()).append(',').append(MeshCache.digest(positions));
+        return key.toString();
     }
 
     /**
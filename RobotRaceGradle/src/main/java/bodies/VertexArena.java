@@ -0,0 +1,174 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * A growable block of direct memory in which the vertex data of all bodies is
+ * accumulated during the initialisation phase.
+ *
+ * The capacity of the arena grows geometrically, so appending n bytes in total
+ * costs O(n) amortized time, no matter how many separate appends are made. The
+ * arena keeps track of how many bytes it had reserved at most and how often
+ * its contents had to be copied, so the memory cost of the initialisation
+ * phase can be reported.
+ *
+ * @author Arjan Boschman
+ */
+class VertexArena {
+
+    /**
+     * The capacity in bytes that is reserved up front.
+     */
+    private static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+    /**
+     * The factor by which the capacity is multiplied whenever the arena runs
+     * out of space.
+     */
+    private static final int GROWTH_FACTOR = 2;
+    /**
+     * The largest capacity a single direct buffer can have.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private ByteBuffer buffer;
+    private long peakBytes;
+    private int copyCount;
+    private long bytesCopied;
+
+    /**
+     * Creates an arena with a default initial capacity.
+     */
+    VertexArena() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an arena.
+     *
+     * @param initialCapacity The amount of bytes to reserve up front.
+     */
+    VertexArena(int initialCapacity) {
+        this.buffer = allocate(Math.max(initialCapacity, Float.BYTES));
+        this.peakBytes = buffer.capacity();
+    }
+
+    /**
+     * Appends the whole content of the given buffer to the arena, regardless of
+     * its position and limit, converting it to the given layout.
+     *
+     * @param data   The vertices to append, as produced by the assemblers.
+     * @param layout The layout to store the vertices in.
+     */
+    void putVertices(FloatBuffer data, VertexLayout layout) {
+        final FloatBuffer source = data.duplicate();
+        source.clear();
+        final int vertexCount = source.capacity() / VertexLayout.FLOATS_PER_VERTEX;
+        ensureRemaining(vertexCount * layout.getStride());
+        layout.encode(source, buffer);
+    }
+
+    /**
+     * Makes sure there is room for at least the given amount of bytes after
+     * the current position, growing the arena if needed.
+     *
+     * @param byteCount The amount of bytes that is about to be appended.
+     */
+    void ensureRemaining(int byteCount) {
+        if (buffer.remaining() >= byteCount) {
+            return;
+        }
+        final long required = (long) buffer.position() + byteCount;
+        if (required > MAX_CAPACITY) {
+            throw new IllegalStateException("Vertex arena cannot hold more than "
+                    + MAX_CAPACITY + " bytes.");
+        }
+        long newCapacity = buffer.capacity();
+        while (newCapacity < required) {
+            newCapacity *= GROWTH_FACTOR;
+        }
+        newCapacity = Math.min(newCapacity, MAX_CAPACITY);
+        final ByteBuffer grown = allocate((int) newCapacity);
+        //Both buffers are alive while the old content is being copied.
+        peakBytes = Math.max(peakBytes, (long) buffer.capacity() + grown.capacity());
+        copyCount++;
+        bytesCopied += buffer.position();
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    /**
+     * @return The amount of bytes that have been appended so far.
+     */
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * @return A read-only view of the appended bytes, with its position at
+     *         zero and its limit at {@link #size()}. Suitable to be passed to
+     *         glBufferData directly.
+     */
+    ByteBuffer getPayload() {
+        final ByteBuffer payload = buffer.asReadOnlyBuffer();
+        payload.flip();
+        return payload.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return The largest amount of direct memory in bytes that this arena
+     *         held at any one time.
+     */
+    long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * @return The amount of times the contents of this arena were copied
+     *         because it had to grow.
+     */
+    int getCopyCount() {
+        return copyCount;
+    }
+
+    /**
+     * @return The total amount of bytes that were copied because the arena
+     *         had to grow.
+     */
+    long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+}
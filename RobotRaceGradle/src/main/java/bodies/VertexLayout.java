@@ -0,0 +1,181 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import bodies.assembly.Vertex;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import javax.media.opengl.GL2;
+import javax.media.opengl.GL3ES3;
+
+/**
+ * The ways in which vertices can be laid out in the data buffer of a
+ * {@link BufferManager}.
+ *
+ * The assemblers always produce vertices of
+ * {@link Vertex#NR_VERTEX_ELEMENTS} times {@link Vertex#COORD_COUNT} floats.
+ * A layout decides how those floats are stored in the data buffer, and how
+ * OpenGL must be told to read them back.
+ *
+ * @author Arjan Boschman
+ */
+public enum VertexLayout {
+
+    /**
+     * Every element of a vertex is stored as three floats, exactly as the
+     * assemblers produce them. 36 bytes per vertex.
+     */
+    STANDARD(Vertex.NR_VERTEX_ELEMENTS * Vertex.COORD_COUNT * Float.BYTES) {
+
+                @Override
+                void encode(FloatBuffer source, ByteBuffer target) {
+                    final int offset = target.position();
+                    //Bulk copy through a float view, starting at the current position.
+                    target.asFloatBuffer().put(source);
+                    target.position(offset + source.capacity() * Float.BYTES);
+                }
+
+                @Override
+                void setPointers(GL2 gl, long offset) {
+                    final int elementSize = Vertex.COORD_COUNT * Float.BYTES;
+                    gl.glVertexPointer(Vertex.COORD_COUNT, GL2.GL_FLOAT, getStride(), offset + 0 * elementSize);
+                    gl.glNormalPointer(GL2.GL_FLOAT, getStride(), offset + 1 * elementSize);
+                    gl.glTexCoordPointer(Vertex.COORD_COUNT, GL2.GL_FLOAT, getStride(), offset + 2 * elementSize);
+                }
+
+                @Override
+                boolean isSupported(GL2 gl) {
+                    return true;
+                }
+            },
+    /**
+     * The position is stored as three floats, the normal is packed into a
+     * single signed 2_10_10_10 integer and the texture coordinates are stored
+     * as two floats. The third texture coordinate is always zero and is
+     * dropped. 24 bytes per vertex.
+     *
+     * The texture coordinates are kept as full floats. Those along the track
+     * grow with its length, far beyond where half floats still resolve a
+     * texture.
+     */
+    COMPACT(Vertex.COORD_COUNT * Float.BYTES + Integer.BYTES + 2 * Float.BYTES) {
+
+                @Override
+                void encode(FloatBuffer source, ByteBuffer target) {
+                    final int vertexCount = source.capacity() / FLOATS_PER_VERTEX;
+                    for (int i = 0; i < vertexCount; i++) {
+                        final int base = i * FLOATS_PER_VERTEX;
+                        target.putFloat(source.get(base + 0));
+                        target.putFloat(source.get(base + 1));
+                        target.putFloat(source.get(base + 2));
+                        target.putInt(packNormal(source.get(base + 3), source.get(base + 4), source.get(base + 5)));
+                        target.putFloat(source.get(base + 6));
+                        target.putFloat(source.get(base + 7));
+                    }
+                }
+
+                @Override
+                void setPointers(GL2 gl, long offset) {
+                    final int normalOffset = Vertex.COORD_COUNT * Float.BYTES;
+                    final int textureOffset = normalOffset + Integer.BYTES;
+                    gl.glVertexPointer(Vertex.COORD_COUNT, GL2.GL_FLOAT, getStride(), offset);
+                    //GL2 does not declare the packed type, but the extension required by isSupported lets it read it.
+                    gl.glNormalPointer(GL3ES3.GL_INT_2_10_10_10_REV, getStride(), offset + normalOffset);
+                    gl.glTexCoordPointer(2, GL2.GL_FLOAT, getStride(), offset + textureOffset);
+                }
+
+                @Override
+                boolean isSupported(GL2 gl) {
+                    return gl.isExtensionAvailable("GL_ARB_vertex_type_2_10_10_10_rev");
+                }
+            };
+
+    /**
+     * The number of floats per vertex in the buffers produced by the
+     * assemblers.
+     */
+    static final int FLOATS_PER_VERTEX = Vertex.NR_VERTEX_ELEMENTS * Vertex.COORD_COUNT;
+    /**
+     * The largest value of a signed 10 bit integer.
+     */
+    private static final int MAX_SIGNED_10_BIT = 511;
+    private static final int MASK_10_BIT = 0x3FF;
+
+    private final int stride;
+
+    private VertexLayout(int stride) {
+        this.stride = stride;
+    }
+
+    /**
+     * @return The amount of bytes a single vertex takes up in this layout.
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Convert vertices produced by the assemblers to this layout. The whole
+     * source buffer is converted, regardless of its position and limit.
+     *
+     * @param source The vertices, {@link #FLOATS_PER_VERTEX} floats each.
+     * @param target The buffer to write to, starting at its position. Must
+     *               have room for all vertices.
+     */
+    abstract void encode(FloatBuffer source, ByteBuffer target);
+
+    /**
+     * Tell OpenGL where to find the position, normal and texture coordinates
+     * in a data buffer with this layout. The data buffer must be bound.
+     *
+     * @param gl     The instance of GL2 responsible for drawing.
+     * @param offset The offset in bytes of the first vertex to point at.
+     */
+    abstract void setPointers(GL2 gl, long offset);
+
+    /**
+     * @param gl The instance of GL2 responsible for drawing.
+     * @return True if the OpenGL implementation can read vertices in this
+     *         layout.
+     */
+    abstract boolean isSupported(GL2 gl);
+
+    /**
+     * Pack a normal into the signed 2_10_10_10 format. The normal is
+     * normalised first, since the format can only hold values in [-1,1]. The
+     * w component is left at zero.
+     */
+    static int packNormal(float x, float y, float z) {
+        final float length = (float) Math.sqrt(x * x + y * y + z * z);
+        final float scale = (length == 0f) ? 0f : (MAX_SIGNED_10_BIT / length);
+        final int packedX = Math.round(x * scale) & MASK_10_BIT;
+        final int packedY = Math.round(y * scale) & MASK_10_BIT;
+        final int packedZ = Math.round(z * scale) & MASK_10_BIT;
+        return packedX | (packedY << 10) | (packedZ << 20);
+    }
+
+}
@@ -169,20 +169,44 @@ public class StackAssembler {
     /**
      * Get a list of buffers with the indices of all vertices of all surfaces.
      *
+     * @param measureCacheMisses Whether to measure the average cache miss
+     *                           ratio before and after reordering.
+     *
      * @return A list of buffers with the indices of all vertices of all
      *         surfaces.
      */
-    public List<IntBuffer> getIndicesBuffers() {
-        return surfaceCompilation.getIndicesBuffers();
+    public List<IntBuffer> getIndicesBuffers(boolean measureCacheMisses) {
+        return surfaceCompilation.getIndicesBuffers(measureCacheMisses);
+    }
+
+    /**
+     * Get the number of triangles in all surfaces. Only valid after calling
+     * {@link #getIndicesBuffers(boolean)}.
+     *
+     * @return The number of triangles.
+     */
+    public int getTriangleCount() {
+        return surfaceCompilation.getTriangleCount();
+    }
+
+    /**
+     * Get the average cache miss ratio of the triangles before they were
+     * reordered. Only valid after calling {@link #getIndicesBuffers(boolean)}.
+     *
+     * @return The average cache miss ratio before reordering.
+     */
+    public double getAcmrBefore() {
+        return surfaceCompilation.getAcmrBefore();
     }
 
     /**
-     * Get a list of surface types (polygon or quad strip).
+     * Get the average cache miss ratio of the triangles after they were
+     * reordered. Only valid after calling {@link #getIndicesBuffers(boolean)}.
      *
-     * @return A list of surface types.
+     * @return The average cache miss ratio after reordering.
      */
-    public List<Boolean> getSurfaceTypeList() {
-        return surfaceCompilation.getSurfaceTypeList();
+    public double getAcmrAfter() {
+        return surfaceCompilation.getAcmrAfter();
     }
 
     /**
@@ -247,35 +271,40 @@ public class StackAssembler {
         final Iterator<Vertex> vertices2 = (ring2 == null) ? Collections.emptyIterator() : ring2.getVertices().iterator();
         final Iterator<IndexedVertex> sharedVertices = (knownVertices == null) ? Collections.emptyIterator() : knownVertices.iterator();
         final List<IndexedVertex> indexedVertices = new ArrayList<>();
+        //Keep track of the position in each ring, rather than searching for every vertex.
+        int index1 = 0;
+        int index2 = 0;
         //Iterate over all vertices of both rings of the surface.
         while (vertices1.hasNext() || vertices2.hasNext()) {
             //And interleave them into indexedVertices, so that it becomes a proper quad strip.
             if (vertices1.hasNext() && (ring1 != null)) {
                 final Vertex vertex = vertices1.next();
-                final float textureX = ring1.getVertices().indexOf(vertex) / (float) ring1.getVertices().size();
+                final float textureX = index1 / (float) ring1.getVertices().size();
                 final IndexedVertex newVertex;
                 //If a vertex can be shared, do so.
                 if (sharedVertices.hasNext()) {
                     newVertex = sharedVertices.next();
                 } //Else calculate the normal of the unknown vertex and use the vertex with it's normal.
                 else {
-                    vertex.setNormalA(calculateQuadStripNormal(ring1.getVertices().indexOf(vertex), ring0, ring1, ring2));
+                    vertex.setNormalA(calculateQuadStripNormal(index1, ring0, ring1, ring2));
                     vertex.setTextureC(textureX, ring1.getTextureSmear(), 0f);
                     newVertex = IndexedVertex.makeIndexedVertex(vertex);
                 }
                 //And store the vertex.
                 indexedVertices.add(newVertex);
+                index1++;
             }
             //Again, interleaving, it means first vertex 1, then vertex 2, so here is vertex 2.
             if (vertices2.hasNext() && (ring2 != null)) {
                 final Vertex vertex = vertices2.next();
-                final float textureX = ring2.getVertices().indexOf(vertex) / (float) ring2.getVertices().size();
+                final float textureX = index2 / (float) ring2.getVertices().size();
                 //The second ring is not calculated (yet), and can therefore not (yet) be reused.
                 //So calculate the normal.
-                vertex.setNormalA(calculateQuadStripNormal(ring2.getVertices().indexOf(vertex), ring1, ring2, ring3));
+                vertex.setNormalA(calculateQuadStripNormal(index2, ring1, ring2, ring3));
                 vertex.setTextureC(textureX, ring2.getTextureSmear(), 0f);
                 //And store it.
                 indexedVertices.add(IndexedVertex.makeIndexedVertex(vertex));
+                index2++;
             }
         }
         //Return the new Surface created from all just calculated vertices with their normals.
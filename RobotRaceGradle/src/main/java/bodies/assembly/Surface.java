@@ -26,7 +26,6 @@
  */
 package bodies.assembly;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -41,7 +40,8 @@ class Surface {
      */
     private final List<IndexedVertex> vertices;
     /**
-     * If this Surface is a polygon or a quad strip.
+     * If this Surface is a polygon or a quad strip. Either way, it is turned
+     * into a triangle list when it is compiled.
      */
     private final boolean polygon;
 
@@ -88,18 +88,59 @@ class Surface {
     }
 
     /**
-     * Get the indices of all IndexedVertex's defining this Surface.
+     * Get the number of triangles this Surface is made of once it is converted
+     * into a triangle list.
      *
-     * Do this by iterating over all IndexedVertex's defining this Surface and
-     * returning the resulting list.
+     * @return The number of triangles.
+     */
+    public int getTriangleCount() {
+        if (polygon) {
+            //A polygon is split into a fan around its first vertex.
+            return Math.max(vertices.size() - 2, 0);
+        } else {
+            //Every quad of a quad strip is split into two triangles.
+            return 2 * Math.max((vertices.size() / 2) - 1, 0);
+        }
+    }
+
+    /**
+     * Write the indices of the IndexedVertex's defining this Surface to the
+     * given array as a triangle list, starting at the given offset.
+     *
+     * The triangles keep the winding order of the polygon or quad strip they
+     * are made from, so the front faces stay the same.
+     *
+     * @param indices The array to write to. It must have room for at least
+     *                three times {@link #getTriangleCount()} elements after
+     *                the offset.
+     * @param offset  The position in the array of the first index.
      *
-     * @return The indices of all IndexedVertex's defining this Surface.
+     * @return The position in the array after the last written index.
      */
-    public List<Integer> getIndices() {
-        final List<Integer> indices = new ArrayList<>();
-        for (IndexedVertex vertex : vertices) {
-            indices.add(vertex.getIndex());
+    public int putTriangleIndices(int[] indices, int offset) {
+        int position = offset;
+        if (polygon) {
+            final int first = vertices.get(0).getIndex();
+            for (int i = 1; i < vertices.size() - 1; i++) {
+                indices[position++] = first;
+                indices[position++] = vertices.get(i).getIndex();
+                indices[position++] = vertices.get(i + 1).getIndex();
+            }
+        } else {
+            //Quad i of a quad strip consists of vertices 2i, 2i+1, 2i+3 and 2i+2, in that order.
+            for (int i = 0; i + 3 < vertices.size(); i += 2) {
+                final int lowerLeft = vertices.get(i).getIndex();
+                final int upperLeft = vertices.get(i + 1).getIndex();
+                final int lowerRight = vertices.get(i + 2).getIndex();
+                final int upperRight = vertices.get(i + 3).getIndex();
+                indices[position++] = lowerLeft;
+                indices[position++] = upperLeft;
+                indices[position++] = upperRight;
+                indices[position++] = lowerLeft;
+                indices[position++] = upperRight;
+                indices[position++] = lowerRight;
+            }
         }
-        return indices;
+        return position;
     }
 }
@@ -26,11 +26,13 @@
  */
 package bodies.assembly;
 
-import static bodies.assembly.Vertex.*;
+import static bodies.assembly.Vertex.COORD_COUNT;
+import static bodies.assembly.Vertex.NR_VERTEX_ELEMENTS;
 import com.jogamp.common.nio.Buffers;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -48,6 +50,12 @@ class SurfaceCompilation {
      * All Surfaces in this SurfaceCompilation.
      */
     private final List<Surface> surfaces = new ArrayList<>();
+    /**
+     * Statistics of the last conversion into triangle lists.
+     */
+    private int triangleCount = 0;
+    private double acmrBefore = 0d;
+    private double acmrAfter = 0d;
 
     /**
      * Add a Surface to this SurfaceCompilation.
@@ -68,8 +76,8 @@ class SurfaceCompilation {
         final List<IndexedVertex> knownVertices = new ArrayList<>();
         for (IndexedVertex vertex : surfaceVertices) {
             if (!vertex.isShared()) {
+                //The vertex is updated in place, so the Surface already refers to it.
                 vertex.setIndex(vertices.size());
-                surface.setVertex(vertex, surfaceVertices.indexOf(vertex));
                 vertices.add(vertex);
             } else {
                 knownVertices.add(vertex);
@@ -102,64 +110,124 @@ class SurfaceCompilation {
      * @return A buffer with all vertices of the SurfaceCompilation.
      */
     public FloatBuffer getDataBuffer() {
-        final List<Float> dataList = new ArrayList<>();
-        //Iterate over all vertices in the SurfaceCompilation.
+        //Reserve exactly enough room for all vertices up front.
+        final FloatBuffer dataBuffer = Buffers.newDirectFloatBuffer(vertices.size() * NR_VERTEX_ELEMENTS * COORD_COUNT);
+        //Iterate over all vertices in the SurfaceCompilation and write their data straight into the buffer.
         for (IndexedVertex vertex : vertices) {
-            //And store all vertices' data in an ArrayList.
-            dataList.add(vertex.getVertex().getPositionA()[IND_X]);
-            dataList.add(vertex.getVertex().getPositionA()[IND_Y]);
-            dataList.add(vertex.getVertex().getPositionA()[IND_Z]);
-            dataList.add(vertex.getVertex().getNormalA()[IND_X]);
-            dataList.add(vertex.getVertex().getNormalA()[IND_Y]);
-            dataList.add(vertex.getVertex().getNormalA()[IND_Z]);
-            dataList.add(vertex.getVertex().getTextureA()[IND_X]);
-            dataList.add(vertex.getVertex().getTextureA()[IND_Y]);
-            dataList.add(vertex.getVertex().getTextureA()[IND_Z]);
+            vertex.getVertex().putInto(dataBuffer);
         }
-        final float[] dataArray = new float[dataList.size()];
-        //Convert the ArrayList into an array.
-        for (int i = 0; i < dataArray.length; i++) {
-            dataArray[i] = dataList.get(i);
-        }
-        //Deliver it in the form of a buffer.
-        return Buffers.newDirectFloatBuffer(dataArray);
+        dataBuffer.rewind();
+        return dataBuffer;
     }
 
     /**
      * Get a list of buffers with the indices of all vertices of all surfaces.
      *
+     * Every Surface is converted into a triangle list, whose triangles are then
+     * reordered to make good use of the post-transform vertex cache. Each
+     * surface is reordered on its own vertices only, numbered from zero, so
+     * the work stays proportional to the size of the surface rather than that
+     * of the whole compilation.
+     *
+     * @param measureCacheMisses Whether to remember the average cache miss
+     *                           ratio of the whole compilation before and
+     *                           after the reordering. This takes about as
+     *                           long as the reordering itself.
+     *
      * @return A list of buffers with the indices of all vertices of all
-     *         surfaces.
+     *         surfaces, each one a triangle list.
      */
-    public List<IntBuffer> getIndicesBuffers() {
-        final List<IntBuffer> indicesBufferList = new ArrayList<>();
+    public List<IntBuffer> getIndicesBuffers(boolean measureCacheMisses) {
+        final List<IntBuffer> indicesBufferList = new ArrayList<>(surfaces.size());
+        //Maps the index of a vertex in the compilation to its index in the current surface.
+        final int[] localIndices = new int[vertices.size()];
+        Arrays.fill(localIndices, -1);
+        int missesBefore = 0;
+        int missesAfter = 0;
+        triangleCount = 0;
         //Iterate over the surfaces in the SurfaceCompilation.
         for (Surface surface : surfaces) {
-            //Get the list of indices from the surface.
-            final List<Integer> indicesList = surface.getIndices();
-            final int[] indicesArray = new int[indicesList.size()];
-            //And convert it from an ArrayList to an array.
-            for (int i = 0; i < indicesArray.length; i++) {
-                indicesArray[i] = indicesList.get(i);
+            //Let the surface write its triangles into an array of the right size.
+            final int[] indices = new int[3 * surface.getTriangleCount()];
+            surface.putTriangleIndices(indices, 0);
+            final int[] globalIndices = toLocalIndices(indices, localIndices);
+            if (measureCacheMisses) {
+                missesBefore += VertexCacheOptimizer.countCacheMisses(indices, globalIndices.length);
+            }
+            VertexCacheOptimizer.optimize(indices, globalIndices.length);
+            if (measureCacheMisses) {
+                missesAfter += VertexCacheOptimizer.countCacheMisses(indices, globalIndices.length);
+            }
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = globalIndices[indices[i]];
             }
-            //Add it to the buffer list in the form of a buffer.
-            indicesBufferList.add(Buffers.newDirectIntBuffer(indicesArray));
+            //Only the entries of this surface were set, so only those need to be cleared.
+            for (int globalIndex : globalIndices) {
+                localIndices[globalIndex] = -1;
+            }
+            triangleCount += surface.getTriangleCount();
+            indicesBufferList.add(Buffers.newDirectIntBuffer(indices));
         }
+        acmrBefore = (triangleCount == 0) ? (0d) : (missesBefore / (double) triangleCount);
+        acmrAfter = (triangleCount == 0) ? (0d) : (missesAfter / (double) triangleCount);
         return indicesBufferList;
     }
 
     /**
-     * Get a list of surface types (polygon or quad strip).
+     * Number the vertices used by a triangle list from zero, in order of first
+     * use.
+     *
+     * @param indices      The triangle list. Its indices are replaced by the
+     *                     local ones.
+     * @param localIndices The local index of every vertex of the compilation,
+     *                     or -1 if it has none yet. Filled in for the
+     *                     vertices of this triangle list.
      *
-     * @return A list of surface types.
+     * @return The index in the compilation of every local vertex.
      */
-    public List<Boolean> getSurfaceTypeList() {
-        final List<Boolean> surfaceTypeList = new ArrayList<>();
-        //Iterate over all surfaces in the SurfaceCompilation.
-        for (Surface surface : surfaces) {
-            //Add the type of the surface to the list.
-            surfaceTypeList.add(surface.isPolygon());
+    private static int[] toLocalIndices(int[] indices, int[] localIndices) {
+        final int[] globalIndices = new int[Math.min(indices.length, localIndices.length)];
+        int localCount = 0;
+        for (int i = 0; i < indices.length; i++) {
+            final int globalIndex = indices[i];
+            if (localIndices[globalIndex] < 0) {
+                localIndices[globalIndex] = localCount;
+                globalIndices[localCount++] = globalIndex;
+            }
+            indices[i] = localIndices[globalIndex];
         }
-        return surfaceTypeList;
+        return Arrays.copyOf(globalIndices, localCount);
+    }
+
+    /**
+     * Get the number of triangles in all surfaces. Only valid after calling
+     * {@link #getIndicesBuffers(boolean)}.
+     *
+     * @return The number of triangles.
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Get the average cache miss ratio of all triangles as they were defined by
+     * the surfaces. Only valid after calling
+     * {@link #getIndicesBuffers(boolean)} with measureCacheMisses set.
+     *
+     * @return The average cache miss ratio before reordering.
+     */
+    public double getAcmrBefore() {
+        return acmrBefore;
+    }
+
+    /**
+     * Get the average cache miss ratio of all triangles after reordering them.
+     * Only valid after calling {@link #getIndicesBuffers(boolean)} with
+     * measureCacheMisses set.
+     *
+     * @return The average cache miss ratio after reordering.
+     */
+    public double getAcmrAfter() {
+        return acmrAfter;
     }
 }
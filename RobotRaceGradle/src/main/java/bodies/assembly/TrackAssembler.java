@@ -58,36 +58,49 @@ public class TrackAssembler {
      * @param textureSide      The texture for the side of the track.
      */
     public void calculateTrack(List<Vertex> trackDescription, float laneWidth, int laneCount, float trackHeight, boolean closedTrack, ImplementedTexture textureTop, ImplementedTexture textureBottom, ImplementedTexture textureSide) {
-        final List<TrackSlice> slices = new ArrayList<>();
+        final float trackWidth = laneWidth * laneCount;
+        final float widthDistance = TEXTURE_SCALE * trackWidth;
+        final float heightDistance = TEXTURE_SCALE * trackHeight;
+        /**
+         * The texture scaling is the same for every slice. Textures may be
+         * absent, in which case they are treated as stretched textures of
+         * unit size.
+         */
+        final float widthDistanceTop = isStretchWidth(textureTop) ? (1f) : (widthDistance / getImageWidth(textureTop));
+        final float widthDistanceBottom = isStretchWidth(textureBottom) ? (1f) : (widthDistance / getImageWidth(textureBottom));
+        final float heightDistanceSide = isStretchHeight(textureSide) ? (1f) : (heightDistance / getImageHeight(textureSide));
+        final float textureTopHeight = getImageHeight(textureTop);
+        final float textureBottomHeight = getImageHeight(textureBottom);
+        final float textureSideWidth = getImageWidth(textureSide);
+        final int vertexCount = trackDescription.size();
+        final List<TrackSlice> slices = new ArrayList<>(vertexCount + 1);
         /**
          * Select appropriate previous and next vertices (interpolate if at end
          * of list and open track)
          */
-        final float trackWidth = laneWidth * laneCount;
-        final float widthDistance = TEXTURE_SCALE * trackWidth;
-        final float heightDistance = TEXTURE_SCALE * trackHeight;
         TrackSlice previousSlice = null;
-        for (Vertex vertex : trackDescription) {
+        for (int i = 0; i < vertexCount; i++) {
+            final Vertex vertex = trackDescription.get(i);
             Vertex previous, next;
-            if (trackDescription.indexOf(vertex) == 0) {
-                next = trackDescription.get(trackDescription.indexOf(vertex) + 1);
+            if (i == 0) {
+                next = trackDescription.get(i + 1);
                 if (closedTrack) {
-                    previous = trackDescription.get(trackDescription.size() - 1);
+                    previous = trackDescription.get(vertexCount - 1);
                 } else {
                     previous = new Vertex(vertex.getPositionV().subtract(next.getPositionV().subtract(vertex.getPositionV())));
                 }
-            } else if (trackDescription.indexOf(vertex) == (trackDescription.size() - 1)) {
-                previous = trackDescription.get(trackDescription.indexOf(vertex) - 1);
+            } else if (i == (vertexCount - 1)) {
+                previous = trackDescription.get(i - 1);
                 if (closedTrack) {
                     next = trackDescription.get(0);
                 } else {
                     next = new Vertex(vertex.getPositionV().add(vertex.getPositionV().subtract(previous.getPositionV())));
                 }
             } else {
-                previous = trackDescription.get(trackDescription.indexOf(vertex) - 1);
-                next = trackDescription.get(trackDescription.indexOf(vertex) + 1);
+                previous = trackDescription.get(i - 1);
+                next = trackDescription.get(i + 1);
             }
-            final TrackSlice newSlice = new TrackSlice(previous, vertex, next, previousSlice, trackWidth, trackHeight, (textureTop.getStretchWidth()) ? (1f) : (widthDistance / textureTop.getImageWidth()), (textureBottom.getStretchWidth()) ? (1f) : (widthDistance / textureBottom.getImageWidth()), (textureSide.getStretchHeight()) ? (1f) : (heightDistance / textureSide.getImageHeight()), textureTop.getImageHeight(), textureBottom.getImageHeight(), textureSide.getImageWidth());
+            final TrackSlice newSlice = new TrackSlice(previous, vertex, next, previousSlice, trackWidth, trackHeight, widthDistanceTop, widthDistanceBottom, heightDistanceSide, textureTopHeight, textureBottomHeight, textureSideWidth);
             slices.add(newSlice);
             previousSlice = newSlice;
         }
@@ -95,18 +108,18 @@ public class TrackAssembler {
          * Close the track if necessary.
          */
         if (closedTrack) {
-            final Vertex previous = trackDescription.get(trackDescription.size() - 1);
+            final Vertex previous = trackDescription.get(vertexCount - 1);
             final Vertex vertex = trackDescription.get(0);
             final Vertex next = trackDescription.get(1);
-            slices.add(new TrackSlice(previous, vertex, next, previousSlice, trackWidth, trackHeight, (textureTop.getStretchWidth()) ? (1f) : (widthDistance / textureTop.getImageWidth()), (textureBottom.getStretchWidth()) ? (1f) : (widthDistance / textureBottom.getImageWidth()), (textureSide.getStretchHeight()) ? (1f) : (heightDistance / textureSide.getImageHeight()), textureTop.getImageHeight(), textureBottom.getImageHeight(), textureSide.getImageWidth()));
+            slices.add(new TrackSlice(previous, vertex, next, previousSlice, trackWidth, trackHeight, widthDistanceTop, widthDistanceBottom, heightDistanceSide, textureTopHeight, textureBottomHeight, textureSideWidth));
         }
         /**
          * And create a SurfaceCompilation of the track.
          */
-        final List<IndexedVertex> topVertices = new ArrayList<>();
-        final List<IndexedVertex> bottomVertices = new ArrayList<>();
-        final List<IndexedVertex> innerVertices = new ArrayList<>();
-        final List<IndexedVertex> outerVertices = new ArrayList<>();
+        final List<IndexedVertex> topVertices = new ArrayList<>(2 * slices.size());
+        final List<IndexedVertex> bottomVertices = new ArrayList<>(2 * slices.size());
+        final List<IndexedVertex> innerVertices = new ArrayList<>(2 * slices.size());
+        final List<IndexedVertex> outerVertices = new ArrayList<>(2 * slices.size());
         for (TrackSlice slice : slices) {
             topVertices.add(IndexedVertex.makeIndexedVertex(slice.getTop().getVertex1()));
             topVertices.add(IndexedVertex.makeIndexedVertex(slice.getTop().getVertex2()));
@@ -129,9 +142,9 @@ public class TrackAssembler {
          * With end caps if it is an open track.
          */
         if (!closedTrack) {
-            surfaceCompilation.addSurface(slices.get(0).getStartEndPlate(true, widthDistance / textureSide.getImageWidth(), (textureSide.getStretchHeight()) ? (1f) : (heightDistance / textureSide.getImageHeight())));
+            surfaceCompilation.addSurface(slices.get(0).getStartEndPlate(true, widthDistance / textureSideWidth, heightDistanceSide));
             textureList.add(textureSide);
-            surfaceCompilation.addSurface(slices.get(slices.size() - 1).getStartEndPlate(false, widthDistance / textureSide.getImageWidth(), (textureSide.getStretchHeight()) ? (1f) : (heightDistance / textureSide.getImageHeight())));
+            surfaceCompilation.addSurface(slices.get(slices.size() - 1).getStartEndPlate(false, widthDistance / textureSideWidth, heightDistanceSide));
             textureList.add(textureSide);
         }
     }
@@ -148,20 +161,44 @@ public class TrackAssembler {
     /**
      * Get a list of buffers with the indices of all vertices of all surfaces.
      *
+     * @param measureCacheMisses Whether to measure the average cache miss
+     *                           ratio before and after reordering.
+     *
      * @return A list of buffers with the indices of all vertices of all
      *         surfaces.
      */
-    public List<IntBuffer> getIndicesBuffers() {
-        return surfaceCompilation.getIndicesBuffers();
+    public List<IntBuffer> getIndicesBuffers(boolean measureCacheMisses) {
+        return surfaceCompilation.getIndicesBuffers(measureCacheMisses);
+    }
+
+    /**
+     * Get the number of triangles in all surfaces. Only valid after calling
+     * {@link #getIndicesBuffers(boolean)}.
+     *
+     * @return The number of triangles.
+     */
+    public int getTriangleCount() {
+        return surfaceCompilation.getTriangleCount();
     }
 
     /**
-     * Get a list of surface types (polygon or quad strip).
+     * Get the average cache miss ratio of the triangles before they were
+     * reordered. Only valid after calling {@link #getIndicesBuffers(boolean)}.
      *
-     * @return A list of surface types.
+     * @return The average cache miss ratio before reordering.
      */
-    public List<Boolean> getSurfaceTypeList() {
-        return surfaceCompilation.getSurfaceTypeList();
+    public double getAcmrBefore() {
+        return surfaceCompilation.getAcmrBefore();
+    }
+
+    /**
+     * Get the average cache miss ratio of the triangles after they were
+     * reordered. Only valid after calling {@link #getIndicesBuffers(boolean)}.
+     *
+     * @return The average cache miss ratio after reordering.
+     */
+    public double getAcmrAfter() {
+        return surfaceCompilation.getAcmrAfter();
     }
 
     /**
@@ -173,6 +210,22 @@ public class TrackAssembler {
         return Collections.unmodifiableList(textureList);
     }
 
+    private static boolean isStretchWidth(ImplementedTexture texture) {
+        return (texture == null) || texture.getStretchWidth();
+    }
+
+    private static boolean isStretchHeight(ImplementedTexture texture) {
+        return (texture == null) || texture.getStretchHeight();
+    }
+
+    private static float getImageWidth(ImplementedTexture texture) {
+        return (texture == null) ? (1f) : (texture.getImageWidth());
+    }
+
+    private static float getImageHeight(ImplementedTexture texture) {
+        return (texture == null) ? (1f) : (texture.getImageHeight());
+    }
+
     private static class TrackSlice {
 
         private final TrackSliceSide top, bottom, inner, outer;
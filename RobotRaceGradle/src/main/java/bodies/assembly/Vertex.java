@@ -26,6 +26,7 @@
  */
 package bodies.assembly;
 
+import java.nio.FloatBuffer;
 import robotrace.Vector;
 
 /**
@@ -106,7 +107,7 @@ public class Vertex {
      * @param normalZ   Component of the normal in the Z axis.
      */
     public Vertex(float positionX, float positionY, float positionZ, float normalX, float normalY, float normalZ) {
-        this(positionX, positionY, positionZ, 0f, 0f, 0f, 0f, 0f, 0f);
+        this(positionX, positionY, positionZ, normalX, normalY, normalZ, 0f, 0f, 0f);
     }
 
     /**
@@ -353,6 +354,19 @@ public class Vertex {
         return new Vector(textureX, textureY, textureZ);
     }
 
+    /**
+     * Write the position, normal and texture coordinates of this Vertex to the
+     * given buffer, in that order, starting at its current position.
+     *
+     * @param buffer The buffer to write to. Its position is advanced by
+     *               {@code NR_VERTEX_ELEMENTS * COORD_COUNT}.
+     */
+    void putInto(FloatBuffer buffer) {
+        buffer.put(positionX).put(positionY).put(positionZ);
+        buffer.put(normalX).put(normalY).put(normalZ);
+        buffer.put(textureX).put(textureY).put(textureZ);
+    }
+
     /**
      * Cross the normals of two Vertices, average the positions.
      *
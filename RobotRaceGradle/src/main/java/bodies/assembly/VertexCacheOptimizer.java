@@ -0,0 +1,176 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies.assembly;
+
+import java.util.Arrays;
+
+/**
+ * Static utility class. Reorders indexed triangle lists so that the
+ * post-transform vertex cache of the graphics card is used well, and measures
+ * how well it is used.
+ *
+ * The reordering is an implementation of the Tipsify algorithm, as described
+ * in "Fast Triangle Reordering for Vertex Locality and Reduced Overdraw" by
+ * Sander, Nehab and Barczak (2007). It runs in time linear in the number of
+ * indices. The winding order of each triangle is kept intact.
+ *
+ * @author Robke Geenen
+ */
+@SuppressWarnings("FinalClass")
+final class VertexCacheOptimizer {
+
+    /**
+     * The number of vertices the simulated post-transform cache can hold. This
+     * is a conservative estimate for current graphics hardware.
+     */
+    static final int CACHE_SIZE = 16;
+
+    /**
+     * Reorder the triangles of an indexed triangle list.
+     *
+     * @param indices     The triangle list, three indices per triangle. It is
+     *                    reordered in place.
+     * @param vertexCount The number of vertices the indices refer to. All
+     *                    indices must be smaller than this number.
+     */
+    static void optimize(int[] indices, int vertexCount) {
+        final int triangleCount = indices.length / 3;
+        if (triangleCount < 2) {
+            return;
+        }
+        //Build the vertex to triangle adjacency in compressed form.
+        final int[] liveTriangles = new int[vertexCount];
+        for (int i = 0; i < triangleCount * 3; i++) {
+            liveTriangles[indices[i]]++;
+        }
+        final int[] adjacencyOffsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyOffsets[v + 1] = adjacencyOffsets[v] + liveTriangles[v];
+        }
+        final int[] adjacency = new int[adjacencyOffsets[vertexCount]];
+        final int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+        for (int t = 0; t < triangleCount; t++) {
+            for (int corner = 0; corner < 3; corner++) {
+                adjacency[fill[indices[3 * t + corner]]++] = t;
+            }
+        }
+        final int[] cacheTime = new int[vertexCount];
+        final boolean[] emitted = new boolean[triangleCount];
+        //Vertices that were recently used, in case the fanning runs into a dead end.
+        final int[] deadEndStack = new int[triangleCount * 3];
+        int deadEndSize = 0;
+        final int[] candidates = new int[triangleCount * 3];
+        final int[] output = new int[triangleCount * 3];
+        int outputSize = 0;
+        int time = CACHE_SIZE + 1;
+        int cursor = 0;
+        int fanningVertex = 0;
+        while (fanningVertex >= 0) {
+            int candidateCount = 0;
+            //Emit all remaining triangles around the fanning vertex.
+            for (int a = adjacencyOffsets[fanningVertex]; a < adjacencyOffsets[fanningVertex + 1]; a++) {
+                final int t = adjacency[a];
+                if (emitted[t]) {
+                    continue;
+                }
+                for (int corner = 0; corner < 3; corner++) {
+                    final int v = indices[3 * t + corner];
+                    output[outputSize++] = v;
+                    deadEndStack[deadEndSize++] = v;
+                    candidates[candidateCount++] = v;
+                    liveTriangles[v]--;
+                    if (time - cacheTime[v] > CACHE_SIZE) {
+                        cacheTime[v] = time;
+                        time++;
+                    }
+                }
+                emitted[t] = true;
+            }
+            //Pick the candidate that will still be in the cache after fanning, and is the oldest.
+            int next = -1;
+            int bestPriority = -1;
+            for (int c = 0; c < candidateCount; c++) {
+                final int v = candidates[c];
+                if (liveTriangles[v] > 0) {
+                    int priority = 0;
+                    if (time - cacheTime[v] + 2 * liveTriangles[v] <= CACHE_SIZE) {
+                        priority = time - cacheTime[v];
+                    }
+                    if (priority > bestPriority) {
+                        bestPriority = priority;
+                        next = v;
+                    }
+                }
+            }
+            if (next == -1) {
+                //Dead end, first try a recently used vertex, then any vertex with triangles left.
+                while (deadEndSize > 0 && next == -1) {
+                    final int v = deadEndStack[--deadEndSize];
+                    if (liveTriangles[v] > 0) {
+                        next = v;
+                    }
+                }
+                while (cursor < vertexCount && next == -1) {
+                    if (liveTriangles[cursor] > 0) {
+                        next = cursor;
+                    }
+                    cursor++;
+                }
+            }
+            fanningVertex = next;
+        }
+        System.arraycopy(output, 0, indices, 0, outputSize);
+    }
+
+    /**
+     * Count the cache misses of a triangle list, simulating a first-in
+     * first-out post-transform cache of {@link #CACHE_SIZE} entries.
+     *
+     * @param indices     The triangle list, three indices per triangle.
+     * @param vertexCount The number of vertices the indices refer to.
+     *
+     * @return The number of cache misses.
+     */
+    static int countCacheMisses(int[] indices, int vertexCount) {
+        //A vertex is in the cache if fewer than CACHE_SIZE misses happened since it was inserted.
+        final int[] insertedAt = new int[vertexCount];
+        Arrays.fill(insertedAt, -CACHE_SIZE - 1);
+        int misses = 0;
+        for (int i = 0; i < indices.length - indices.length % 3; i++) {
+            final int v = indices[i];
+            if (misses - insertedAt[v] >= CACHE_SIZE) {
+                insertedAt[v] = misses;
+                misses++;
+            }
+        }
+        return misses;
+    }
+
+    private VertexCacheOptimizer() {
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack;
+
+import java.util.ArrayList;
+import java.util.List;
+import robotrace.Vector;
+
+/**
+ * Chooses the parameters at which a race track is sliced, so that the flat
+ * pieces between the slices stay within a given distance of the real track.
+ * Straight stretches get few slices and sharp bends get many, instead of the
+ * same number everywhere.
+ *
+ * Every Bézier segment is first cut into a few intervals, so the joints
+ * between segments are always slices. An interval is then halved until the
+ * centre line and both edges of the track lie close enough to the chords
+ * between its ends, and until the tangent turns little enough across it. The
+ * chords are checked at a quarter, halfway and three quarters of the interval.
+ *
+ * @author Robke Geenen
+ */
+public class AdaptiveTrackSampler {
+
+    /**
+     * The default largest distance in meters between the slices and the
+     * track.
+     */
+    public static final double DEFAULT_MAX_DEVIATION = 0.01d;
+    private static final int INITIAL_INTERVALS_PER_SEGMENT = 4;
+    /**
+     * The largest angle in radians the tangent may turn between two slices,
+     * which keeps the shading of tight bends smooth.
+     */
+    private static final double MAX_TURN_ANGLE = Math.toRadians(10d);
+    private static final int MAX_DEPTH = 20;
+    private static final double[] PROBES = {0.25d, 0.5d, 0.75d};
+    /**
+     * The number of points per interval at which the deviation is measured
+     * afterwards.
+     */
+    private static final int MEASURE_PROBES = 16;
+    /**
+     * The distance from the centre line to the edges of the track.
+     */
+    private static final double EDGE_OFFSET = RaceTrack.LANE_COUNT * RaceTrack.LANE_WIDTH * 0.5d;
+
+    private final int trackType;
+    private final double maxDeviation;
+    private final double minTurnCosine = Math.cos(MAX_TURN_ANGLE);
+    private final double[] parameter = new double[1];
+    private final double[] pointAndTangent = new double[RaceTrackDefinition.POINT_AND_TANGENT_SIZE];
+
+    /**
+     * @param trackType    The type of the track, see
+     *                     {@link RaceTrackDefinition}.
+     * @param maxDeviation The largest distance in meters between the slices
+     *                     and the track.
+     */
+    public AdaptiveTrackSampler(int trackType, double maxDeviation) {
+        this.trackType = trackType;
+        this.maxDeviation = maxDeviation;
+    }
+
+    /**
+     * @return The parameters at which the track is sliced, in increasing
+     *         order from zero to exactly one.
+     */
+    public double[] sample() {
+        final int intervalCount = RaceTrackDefinition.getSegmentCount(trackType) * INITIAL_INTERVALS_PER_SEGMENT;
+        final List<Double> ts = new ArrayList<>();
+        double startT = 0d;
+        Frame start = evaluate(startT);
+        ts.add(startT);
+        for (int i = 1; i <= intervalCount; i++) {
+            final double endT = (i == intervalCount) ? 1d : i / (double) intervalCount;
+            final Frame end = evaluate(endT);
+            subdivide(ts, startT, start, endT, end, 0);
+            ts.add(endT);
+            startT = endT;
+            start = end;
+        }
+        return ts.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Add the parameters strictly between two slices that are needed to stay
+     * close to the track, in increasing order.
+     */
+    private void subdivide(List<Double> ts, double startT, Frame start, double endT, Frame end, int depth) {
+        if (depth >= MAX_DEPTH || isCloseEnough(startT, start, endT, end)) {
+            return;
+        }
+        final double middleT = (startT + endT) * 0.5d;
+        final Frame middle = evaluate(middleT);
+        subdivide(ts, startT, start, middleT, middle, depth + 1);
+        ts.add(middleT);
+        subdivide(ts, middleT, middle, endT, end, depth + 1);
+    }
+
+    private boolean isCloseEnough(double startT, Frame start, double endT, Frame end) {
+        if (start.tangent.dot(end.tangent) < minTurnCosine) {
+            return false;
+        }
+        for (double probe : PROBES) {
+            if (getDeviation(start, end, evaluate(startT + (endT - startT) * probe)) > maxDeviation) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find how far the track strays from the slices, by checking every
+     * interval at many points.
+     *
+     * @param trackType The type of the track, see {@link RaceTrackDefinition}.
+     * @param ts        The parameters at which the track is sliced, in
+     *                  increasing order.
+     * @return The largest distance in meters between the centre line or an
+     *         edge of the track and the chords between the slices.
+     */
+    public static double measureDeviation(int trackType, double[] ts) {
+        final AdaptiveTrackSampler sampler = new AdaptiveTrackSampler(trackType, 0d);
+        double maxDeviation = 0d;
+        Frame start = sampler.evaluate(ts[0]);
+        for (int i = 1; i < ts.length; i++) {
+            final Frame end = sampler.evaluate(ts[i]);
+            for (int j = 1; j < MEASURE_PROBES; j++) {
+                final Frame probe = sampler.evaluate(ts[i - 1] + (ts[i] - ts[i - 1]) * j / MEASURE_PROBES);
+                maxDeviation = Math.max(maxDeviation, getDeviation(start, end, probe));
+            }
+            start = end;
+        }
+        return maxDeviation;
+    }
+
+    /**
+     * @return The largest distance between a point on the centre line or an
+     *         edge of the track, and the chord of the same line between two
+     *         slices.
+     */
+    private static double getDeviation(Frame start, Frame end, Frame probe) {
+        double deviation = 0d;
+        for (double offset : new double[]{0d, -EDGE_OFFSET, EDGE_OFFSET}) {
+            deviation = Math.max(deviation, getDistanceToSegment(probe.at(offset), start.at(offset), end.at(offset)));
+        }
+        return deviation;
+    }
+
+    private static double getDistanceToSegment(Vector point, Vector segmentStart, Vector segmentEnd) {
+        final Vector segment = segmentEnd.subtract(segmentStart);
+        final double squaredLength = segment.lengthSqr();
+        final Vector fromStart = point.subtract(segmentStart);
+        if (squaredLength == 0d) {
+            return fromStart.length();
+        }
+        final double scale = Math.max(0d, Math.min(1d, fromStart.dot(segment) / squaredLength));
+        return fromStart.subtract(segment.scale(scale)).length();
+    }
+
+    private Frame evaluate(double t) {
+        parameter[0] = t;
+        RaceTrackDefinition.getTrackPointsAndTangents(trackType, parameter, pointAndTangent);
+        return new Frame(
+                new Vector(pointAndTangent[0], pointAndTangent[1], pointAndTangent[2]),
+                new Vector(pointAndTangent[3], pointAndTangent[4], pointAndTangent[5]));
+    }
+
+    /**
+     * A point on the centre line with its unit tangent and sideways normal.
+     */
+    private static class Frame {
+
+        private final Vector point;
+        private final Vector tangent;
+        private final Vector normal;
+
+        private Frame(Vector point, Vector tangent) {
+            this.point = point;
+            this.tangent = tangent;
+            this.normal = RaceTrackDefinition.toNormal(tangent);
+        }
+
+        /**
+         * @return The point at a distance to the right of the centre line.
+         */
+        private Vector at(double offset) {
+            return point.add(normal.scale(offset));
+        }
+
+    }
+
+}
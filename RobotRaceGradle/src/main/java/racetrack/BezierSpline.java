@@ -0,0 +1,219 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack;
+
+import robotrace.Vector;
+
+/**
+ * A closed chain of cubic Bézier segments, evaluated with Horner's rule.
+ * Every segment is converted once from its four control points to the
+ * coefficients of a cubic polynomial per axis, so a point costs three
+ * multiply-adds per axis. The first and second derivatives come from the same
+ * coefficients, which gives exact tangents instead of finite differences.
+ *
+ * The spline is parametrised by t from zero to one, with every segment taking
+ * an equal share. The derivatives are with respect to that t.
+ *
+ * @author Robke Geenen
+ */
+class BezierSpline {
+
+    /**
+     * The offsets within an evaluation: the point, the first derivative and
+     * the second derivative, three coordinates each.
+     */
+    static final int POINT = 0;
+    static final int FIRST_DERIVATIVE = 3;
+    static final int SECOND_DERIVATIVE = 6;
+    static final int EVALUATION_SIZE = 9;
+    private static final int CONTROL_POINTS_PER_SEGMENT = 4;
+    private static final int COEFFICIENTS_PER_SEGMENT = 12;
+
+    private final int segmentCount;
+    /**
+     * Per segment and per axis, the coefficients a, b, c and d of
+     * a*u^3 + b*u^2 + c*u + d, with u running from zero to one over the
+     * segment.
+     */
+    private final double[] coefficients;
+
+    /**
+     * @param controlPoints The control points of the segments, four per
+     *                      segment, in order.
+     */
+    BezierSpline(Vector... controlPoints) {
+        if (controlPoints.length == 0 || controlPoints.length % CONTROL_POINTS_PER_SEGMENT != 0) {
+            throw new IllegalArgumentException("Expected four control points per segment, got "
+                    + controlPoints.length + ".");
+        }
+        this.segmentCount = controlPoints.length / CONTROL_POINTS_PER_SEGMENT;
+        this.coefficients = new double[segmentCount * COEFFICIENTS_PER_SEGMENT];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            for (int axis = 0; axis < 3; axis++) {
+                final double p0 = getCoordinate(controlPoints[segment * CONTROL_POINTS_PER_SEGMENT], axis);
+                final double p1 = getCoordinate(controlPoints[segment * CONTROL_POINTS_PER_SEGMENT + 1], axis);
+                final double p2 = getCoordinate(controlPoints[segment * CONTROL_POINTS_PER_SEGMENT + 2], axis);
+                final double p3 = getCoordinate(controlPoints[segment * CONTROL_POINTS_PER_SEGMENT + 3], axis);
+                final int offset = segment * COEFFICIENTS_PER_SEGMENT + axis * 4;
+                coefficients[offset] = -p0 + 3d * p1 - 3d * p2 + p3;
+                coefficients[offset + 1] = 3d * p0 - 6d * p1 + 3d * p2;
+                coefficients[offset + 2] = -3d * p0 + 3d * p1;
+                coefficients[offset + 3] = p0;
+            }
+        }
+    }
+
+    /**
+     * @return The number of segments.
+     */
+    int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @param t The parameter, between zero and one.
+     * @return The point at t.
+     */
+    Vector getPoint(double t) {
+        final int segment = getSegment(t);
+        final double u = getLocalParameter(t, segment);
+        final int offset = segment * COEFFICIENTS_PER_SEGMENT;
+        return new Vector(horner(offset, u), horner(offset + 4, u), horner(offset + 8, u));
+    }
+
+    /**
+     * Evaluate the point and its first two derivatives at once.
+     *
+     * @param t      The parameter, between zero and one.
+     * @param target The array to write {@link #EVALUATION_SIZE} doubles to.
+     * @param offset Where in the target to start.
+     */
+    void evaluate(double t, double[] target, int offset) {
+        final int segment = getSegment(t);
+        final double u = getLocalParameter(t, segment);
+        //The derivatives are with respect to t, which runs segmentCount times slower than u.
+        final double scale = segmentCount;
+        for (int axis = 0; axis < 3; axis++) {
+            final int coefficient = segment * COEFFICIENTS_PER_SEGMENT + axis * 4;
+            final double a = coefficients[coefficient];
+            final double b = coefficients[coefficient + 1];
+            final double c = coefficients[coefficient + 2];
+            final double d = coefficients[coefficient + 3];
+            target[offset + POINT + axis] = ((a * u + b) * u + c) * u + d;
+            target[offset + FIRST_DERIVATIVE + axis] = ((3d * a * u + 2d * b) * u + c) * scale;
+            target[offset + SECOND_DERIVATIVE + axis] = (6d * a * u + 2d * b) * scale * scale;
+        }
+    }
+
+    /**
+     * Evaluate the points and their first two derivatives at many parameters.
+     *
+     * @param ts     The parameters, each between zero and one.
+     * @param target The array to write {@link #EVALUATION_SIZE} doubles per
+     *               parameter to, one after another.
+     */
+    void evaluate(double[] ts, double[] target) {
+        for (int i = 0; i < ts.length; i++) {
+            evaluate(ts[i], target, i * EVALUATION_SIZE);
+        }
+    }
+
+    /**
+     * The direction of the spline, which is that of the first derivative.
+     * Where that is zero, which happens when a control point coincides with
+     * the end point next to it, the direction the spline leaves in or arrives
+     * from is used instead.
+     *
+     * @param t The parameter, between zero and one.
+     * @return The unit tangent at t.
+     */
+    Vector getTangent(double t) {
+        final double[] evaluation = new double[EVALUATION_SIZE];
+        evaluate(t, evaluation, 0);
+        return getTangent(t, evaluation, 0);
+    }
+
+    /**
+     * @param t          The parameter the evaluation was made at.
+     * @param evaluation An evaluation made by {@link #evaluate}.
+     * @param offset     Where the evaluation starts.
+     * @return The unit tangent of the evaluation.
+     */
+    Vector getTangent(double t, double[] evaluation, int offset) {
+        final Vector derivative = toVector(evaluation, offset + FIRST_DERIVATIVE);
+        if (derivative.length() > 0d) {
+            return derivative.normalized();
+        }
+        //Near a standstill at the start of a segment, the spline moves along its second derivative;
+        //near one at the end, it arrives against it.
+        final int segment = getSegment(t);
+        final double sign = (getLocalParameter(t, segment) < 0.5d) ? 1d : -1d;
+        final Vector secondDerivative = toVector(evaluation, offset + SECOND_DERIVATIVE).scale(sign);
+        if (secondDerivative.length() > 0d) {
+            return secondDerivative.normalized();
+        }
+        //A segment that doesn't move at all; point along the chord.
+        final int coefficient = segment * COEFFICIENTS_PER_SEGMENT;
+        final Vector chord = new Vector(
+                coefficients[coefficient] + coefficients[coefficient + 1] + coefficients[coefficient + 2],
+                coefficients[coefficient + 4] + coefficients[coefficient + 5] + coefficients[coefficient + 6],
+                coefficients[coefficient + 8] + coefficients[coefficient + 9] + coefficients[coefficient + 10]);
+        return (chord.length() > 0d) ? chord.normalized() : Vector.X;
+    }
+
+    private double horner(int offset, double u) {
+        return ((coefficients[offset] * u + coefficients[offset + 1]) * u + coefficients[offset + 2]) * u
+                + coefficients[offset + 3];
+    }
+
+    /**
+     * @return The segment t lies in; t of one lies at the end of the last.
+     */
+    private int getSegment(double t) {
+        return Math.max(0, Math.min(segmentCount - 1, (int) Math.floor(t * segmentCount)));
+    }
+
+    private double getLocalParameter(double t, int segment) {
+        return t * segmentCount - segment;
+    }
+
+    private static double getCoordinate(Vector vector, int axis) {
+        switch (axis) {
+            case 0:
+                return vector.x();
+            case 1:
+                return vector.y();
+            default:
+                return vector.z();
+        }
+    }
+
+    static Vector toVector(double[] array, int offset) {
+        return new Vector(array[offset], array[offset + 1], array[offset + 2]);
+    }
+
+}
@@ -29,11 +29,15 @@ package racetrack;
 import Texture.ImplementedTexture;
 import bodies.Body;
 import bodies.BufferManager;
+import bodies.ModelViewStack;
 import bodies.SingletonDrawable;
 import bodies.TrackBuilder;
 import bodies.assembly.Vertex;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.media.opengl.GL2;
 import static racetrack.RaceTrackDefinition.*;
 import robotrace.Lighting;
@@ -50,14 +54,26 @@ public class RaceTrack implements SingletonDrawable {
     public static final float LANE_WIDTH = 1.22f;
     public static final int LANE_COUNT = 4;
     public static final float TRACK_HEIGHT = 2f;
+    /**
+     * The default largest distance in meters between the samples of the frame
+     * tables.
+     */
+    private static final double DEFAULT_FRAME_SPACING = 0.1d;
 
     private Body raceTrackBody;
     private int trackType = RTD_TEST;
     private final RaceTrackDistances trackDistances = new RaceTrackDistances();
     private final List<RaceTrackDistances> laneDistances = new ArrayList<>();
+    /**
+     * The frames of the centre line, followed by those of every lane.
+     */
+    private List<TrackFrameTable> frameTables;
+    private double frameSpacing = DEFAULT_FRAME_SPACING;
+    private double maxDeviation = AdaptiveTrackSampler.DEFAULT_MAX_DEVIATION;
     private ImplementedTexture textureTop;
     private ImplementedTexture textureBottom;
     private ImplementedTexture textureSide;
+    private ModelViewStack modelView;
 
     public void setTrackType(int trackType) {
         this.trackType = trackType;
@@ -67,34 +83,119 @@ public class RaceTrack implements SingletonDrawable {
         return this.trackType;
     }
 
+    /**
+     * Set the resolution of the frame tables made during initialisation.
+     *
+     * @param frameSpacing The largest distance in meters between two samples.
+     */
+    public void setFrameSpacing(double frameSpacing) {
+        this.frameSpacing = frameSpacing;
+    }
+
+    /**
+     * Set how closely the slices of the track must follow its definition.
+     *
+     * @param maxDeviation The largest distance in meters between the slices
+     *                     and the track.
+     */
+    public void setMaxDeviation(double maxDeviation) {
+        this.maxDeviation = maxDeviation;
+    }
+
     @Override
     public void initialize(GL2 gl, BufferManager.Initialiser bmInitialiser) {
         for (int i = 0; i < LANE_COUNT; i++) {
             laneDistances.add(new RaceTrackDistances());
         }
-        final List<Vertex> trackDescription = new ArrayList<>();
-        final double stepSize = 1d / getSliceCount();
-        double tPrevious = 0d;
-        for (double t = 0d; t < (1d + stepSize); t += stepSize) {
-            if (t > 1d) {
-                t = 1d;
-            }
-            trackDescription.add(new Vertex(getTrackPoint(t)));
-            trackDistances.addPair(getTrackPoint(t).subtract(getTrackPoint(tPrevious)).length(), t);
+        final double[] ts = makeSliceParameters();
+        //All slices are evaluated at once; each lane lies along the normal of the centre line.
+        final double[] pointsAndTangents = new double[ts.length * POINT_AND_TANGENT_SIZE];
+        getTrackPointsAndTangents(trackType, ts, pointsAndTangents);
+        final List<Vertex> trackDescription = new ArrayList<>(ts.length);
+        Vector previousPoint = null;
+        final Vector[] previousLanePoints = new Vector[LANE_COUNT];
+        for (int slice = 0; slice < ts.length; slice++) {
+            final int offset = slice * POINT_AND_TANGENT_SIZE;
+            final Vector point = new Vector(pointsAndTangents[offset], pointsAndTangents[offset + 1], pointsAndTangents[offset + 2]);
+            final Vector normal = toNormal(new Vector(pointsAndTangents[offset + 3], pointsAndTangents[offset + 4], pointsAndTangents[offset + 5]));
+            trackDescription.add(new Vertex(point));
+            trackDistances.addPair((previousPoint == null) ? 0d : point.subtract(previousPoint).length(), ts[slice]);
+            previousPoint = point;
             for (int i = 0; i < LANE_COUNT; i++) {
-                laneDistances.get(i).addPair(getLanePoint(t, i).subtract(getLanePoint(tPrevious, i)).length(), t);
+                final Vector lanePoint = point.add(normal.scale(getLaneOffset(i)));
+                laneDistances.get(i).addPair((previousLanePoints[i] == null) ? 0d : lanePoint.subtract(previousLanePoints[i]).length(), ts[slice]);
+                previousLanePoints[i] = lanePoint;
             }
-            tPrevious = t;
         }
+        bmInitialiser.addTask(CompletableFuture.supplyAsync(this::makeFrameTables, bmInitialiser.getBuildExecutor()),
+                (tables) -> this.frameTables = tables);
         textureTop = getTopTexture(trackType, gl);
         textureBottom = getBottomTexture(trackType, gl);
         textureSide = getSideTexture(trackType, gl);
+        modelView = bmInitialiser.getModelView();
         raceTrackBody = new TrackBuilder(bmInitialiser)
                 .setTrackProperties(LANE_WIDTH, LANE_COUNT, TRACK_HEIGHT, getClosedTrack())
                 .setTextures(textureTop, textureBottom, textureSide)
                 .build(trackDescription);
     }
 
+    /**
+     * @return The parameters at which the track is sliced, closer together
+     *         where it bends.
+     */
+    private double[] makeSliceParameters() {
+        final double[] ts = new AdaptiveTrackSampler(trackType, maxDeviation).sample();
+        Logger.getLogger(RaceTrack.class.getName()).log(Level.INFO,
+                "Track {0}: {1} slices instead of {2}, at most {3} cm off the track.",
+                new Object[]{trackType, ts.length, getSliceCount() + 1,
+                    AdaptiveTrackSampler.measureDeviation(trackType, ts) * 100d});
+        return ts;
+    }
+
+    /**
+     * Sample the centre line and every lane evenly along its length, so that
+     * the robots can follow them without evaluating the track every frame.
+     * Runs on a build thread.
+     *
+     * @return The frames of the centre line, followed by those of every lane.
+     */
+    private List<TrackFrameTable> makeFrameTables() {
+        final List<TrackFrameTable> tables = new ArrayList<>(LANE_COUNT + 1);
+        tables.add(new TrackFrameTable(trackType, TrackFrameTable.CENTRE_LINE, frameSpacing));
+        for (int i = 0; i < LANE_COUNT; i++) {
+            tables.add(new TrackFrameTable(trackType, i, frameSpacing));
+        }
+        double maxPointError = 0d;
+        double maxTangentError = 0d;
+        int sampleCount = 0;
+        for (TrackFrameTable table : tables) {
+            maxPointError = Math.max(maxPointError, table.getMaxPointError());
+            maxTangentError = Math.max(maxTangentError, table.getMaxTangentError());
+            sampleCount += table.getSampleCount();
+        }
+        Logger.getLogger(RaceTrack.class.getName()).log(Level.INFO,
+                "Frame tables of track {0}: {1} samples, at most {2} m and {3} degrees off the track.",
+                new Object[]{trackType, sampleCount, maxPointError, maxTangentError});
+        return tables;
+    }
+
+    /**
+     * @return The frames of the centre line, evenly spaced along it. Ready
+     *         once the initialisation phase is over.
+     */
+    public TrackFrameTable getTrackFrames() {
+        return frameTables.get(0);
+    }
+
+    /**
+     * @param laneNumber The lane.
+     * @return The frames of the lane, evenly spaced along it. Ready once the
+     *         initialisation phase is over.
+     */
+    public TrackFrameTable getLaneFrames(int laneNumber) {
+        return frameTables.get(laneNumber + 1);
+    }
+
     public boolean getClosedTrack() {
         return RaceTrackDefinition.getClosedTrack(trackType);
     }
@@ -152,9 +253,9 @@ public class RaceTrack implements SingletonDrawable {
     public void draw(GL2 gl, Lighting lighting) {
         lighting.setMaterial(gl, Material.NONE);
         lighting.setColor(gl, 1f, 1f, 1f, 1f);
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         raceTrackBody.draw(gl);
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
 }
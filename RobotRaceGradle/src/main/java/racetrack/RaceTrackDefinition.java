@@ -27,8 +27,6 @@
 package racetrack;
 
 import Texture.ImplementedTexture;
-import java.util.Arrays;
-import java.util.List;
 import javax.media.opengl.GL2;
 import robotrace.Vector;
 
@@ -47,20 +45,25 @@ public class RaceTrackDefinition {
     public static final int RTD_CUSTOM = 6;
 
     private static final int RTD_MAX_TYPE = 6;
+    /**
+     * The number of doubles per parameter written by
+     * {@link #getTrackPointsAndTangents}: the point, then the unit tangent.
+     */
+    protected static final int POINT_AND_TANGENT_SIZE = 6;
 
     protected static int getMaxTypeID() {
         return RTD_MAX_TYPE;
     }
 
-    private static final List<CubicBezierPath> BEZIER_TEST = Arrays.asList(
+    private static final BezierSpline BEZIER_TEST = makeSpline(
             new CubicBezierPath(Vector.Z, Vector.Z.add(Vector.X.scale(10d)), Vector.Z.add(Vector.Y.scale(20d)).add(Vector.X.scale(10d)), Vector.Z.add(Vector.Y.scale(20d))),
             new CubicBezierPath(Vector.Z.add(Vector.Y.scale(20d)), Vector.Z.add(Vector.Y.scale(20d)).add(Vector.X.scale(-10d)), Vector.Z.add(Vector.X.scale(-10d)), Vector.Z)
     );
-    private static final List<CubicBezierPath> BEZIER_O = Arrays.asList(
+    private static final BezierSpline BEZIER_O = makeSpline(
             new CubicBezierPath(new Vector(0d, -17d, 1d), new Vector(19d, -17d, 1d), new Vector(19d, 17d, 1d), new Vector(0d, 17d, 1d)),
             new CubicBezierPath(new Vector(0d, 17d, 1d), new Vector(-19d, 17d, 1d), new Vector(-19d, -17d, 1d), new Vector(0d, -17d, 1d))
     );
-    private static final List<CubicBezierPath> BEZIER_L = Arrays.asList(
+    private static final BezierSpline BEZIER_L = makeSpline(
             new CubicBezierPath(new Vector(7d, -16d, 1d), new Vector(12d, -16d, 1d), new Vector(12d, -9d, 1d), new Vector(7d, -9d, 1d)),
             new CubicBezierPath(new Vector(7d, -9d, 1d), new Vector(7d, -9d, 1d), new Vector(2d, -9d, 1d), new Vector(2d, -9d, 1d)),
             new CubicBezierPath(new Vector(2d, -9d, 1d), new Vector(-3d, -9d, 1d), new Vector(-3d, -9d, 1d), new Vector(-3d, -4d, 1d)),
@@ -70,13 +73,13 @@ public class RaceTrackDefinition {
             new CubicBezierPath(new Vector(-10d, -11d, 1d), new Vector(-10d, -16d, 1d), new Vector(-10d, -16d, 1d), new Vector(-5d, -16d, 1d)),
             new CubicBezierPath(new Vector(-5d, -16d, 1d), new Vector(-5d, -16d, 1d), new Vector(7d, -16d, 1d), new Vector(7d, -16d, 1d))
     );
-    private static final List<CubicBezierPath> BEZIER_C = Arrays.asList(
+    private static final BezierSpline BEZIER_C = makeSpline(
             new CubicBezierPath(new Vector(10d, -17d, 1d), new Vector(15d, -17d, 1d), new Vector(15d, -10d, 1d), new Vector(10d, -10d, 1d)),
             new CubicBezierPath(new Vector(10d, -10d, 1d), new Vector(-5d, -10d, 1d), new Vector(-5d, 10d, 1d), new Vector(10d, 10d, 1d)),
             new CubicBezierPath(new Vector(10d, 10d, 1d), new Vector(15d, 10d, 1d), new Vector(15d, 17d, 1d), new Vector(10d, 17d, 1d)),
             new CubicBezierPath(new Vector(10d, 17d, 1d), new Vector(-15d, 17d, 1d), new Vector(-15d, -17d, 1d), new Vector(10d, -17d, 1d))
     );
-    private static final List<CubicBezierPath> BEZIER_CUSTOM = Arrays.asList(
+    private static final BezierSpline BEZIER_CUSTOM = makeSpline(
             new CubicBezierPath(new Vector(-17d, 12d, 1d), new Vector(-17d, 5d, 1d), new Vector(-17d, -5d, 6d), new Vector(-17d, -12d, 6d)),
             new CubicBezierPath(new Vector(-17d, -12d, 6d), new Vector(-17d, -15d, 6d), new Vector(-15d, -17d, 6d), new Vector(-12d, -17d, 6d)),
             new CubicBezierPath(new Vector(-12d, -17d, 6d), new Vector(-5d, -17d, 6d), new Vector(6d, -17d, 11d), new Vector(13d, -17d, 11d)),
@@ -134,6 +137,15 @@ public class RaceTrackDefinition {
         }
     }
 
+    /**
+     * @return The number of pieces the track is made of, whose joints must
+     *         be slices of the track.
+     */
+    protected static int getSegmentCount(int trackType) {
+        final BezierSpline spline = getSpline(trackType);
+        return (spline == null) ? 1 : spline.getSegmentCount();
+    }
+
     protected static ImplementedTexture getTopTexture(int trackType, GL2 gl) {
         switch (trackType) {
             case RTD_TEST:
@@ -184,49 +196,102 @@ public class RaceTrackDefinition {
             case RTD_TEST_ELEVATED:
                 return new Vector(10d * Math.cos(2d * Math.PI * t), 14d * Math.sin(2d * Math.PI * t), 6d - (5d * Math.cos(3d * Math.PI * t)));
             case RTD_TEST_BEZ:
-                return calculateBezierPoint(t, BEZIER_TEST);
+                return BEZIER_TEST.getPoint(t);
             case RTD_O:
-                return calculateBezierPoint(t, BEZIER_O);
+                return BEZIER_O.getPoint(t);
             case RTD_L:
-                return calculateBezierPoint(t, BEZIER_L);
+                return BEZIER_L.getPoint(t);
             case RTD_C:
-                return calculateBezierPoint(t, BEZIER_C);
+                return BEZIER_C.getPoint(t);
             case RTD_CUSTOM:
-                return calculateBezierPoint(t, BEZIER_CUSTOM);
+                return BEZIER_CUSTOM.getPoint(t);
             default:
                 return Vector.O;
         }
     }
 
+    /**
+     * @return The horizontal unit vector to the right of the track, which is
+     *         perpendicular to its tangent.
+     */
     protected static Vector getTrackNormal(int trackType, double t) {
-        t = clip(t);
-        final double stepSize = 1d / getSliceCount(trackType);
-        final Vector previous = getTrackPoint(trackType, t - stepSize);
-        final Vector original = getTrackPoint(trackType, t);
-        final Vector next = getTrackPoint(trackType, t + stepSize);
-        final Vector lower = original.subtract(Vector.Z.normalized().scale(RaceTrack.TRACK_HEIGHT));
-        final Vector normal1 = lower.subtract(original).cross(next.subtract(original));
-        final Vector normal2 = previous.subtract(original).cross(lower.subtract(original));
-        return normal1.add(normal2).normalized();
+        return toNormal(getTrackTangent(trackType, t));
     }
 
+    /**
+     * @return The unit tangent of the track, worked out from the derivative
+     *         of its definition.
+     */
     protected static Vector getTrackTangent(int trackType, double t) {
         t = clip(t);
-        final double stepSize = 1d / getSliceCount(trackType);
-        final Vector previous = getTrackPoint(trackType, t - stepSize);
-        final Vector original = getTrackPoint(trackType, t);
-        final Vector next = getTrackPoint(trackType, t + stepSize);
-        final Vector delta1 = next.subtract(original);
-        final Vector delta2 = original.subtract(previous);
-        return delta1.add(delta2).normalized();
+        final BezierSpline spline = getSpline(trackType);
+        if (spline != null) {
+            return spline.getTangent(t);
+        }
+        final double angle = 2d * Math.PI * t;
+        switch (trackType) {
+            case RTD_TEST:
+                return new Vector(-20d * Math.PI * Math.sin(angle), 28d * Math.PI * Math.cos(angle), 0d).normalized();
+            case RTD_TEST_ELEVATED:
+                return new Vector(-20d * Math.PI * Math.sin(angle), 28d * Math.PI * Math.cos(angle),
+                        15d * Math.PI * Math.sin(3d * Math.PI * t)).normalized();
+            default:
+                return Vector.Y;
+        }
     }
 
     protected static Vector getLanePoint(int trackType, int laneNumber, double t) {
         t = clip(t);
-        final Vector translate = getTrackNormal(trackType, t).scale((laneNumber - (RaceTrack.LANE_COUNT - 1) * 0.5d) * RaceTrack.LANE_WIDTH);
+        final Vector translate = getTrackNormal(trackType, t).scale(getLaneOffset(laneNumber));
         return getTrackPoint(trackType, t).add(translate);
     }
 
+    /**
+     * Evaluate the centre line of the track at many parameters at once.
+     *
+     * @param trackType The type of the track.
+     * @param ts        The parameters.
+     * @param target    The array to write the point and unit tangent to,
+     *                  {@link #POINT_AND_TANGENT_SIZE} doubles per parameter.
+     */
+    protected static void getTrackPointsAndTangents(int trackType, double[] ts, double[] target) {
+        final BezierSpline spline = getSpline(trackType);
+        if (spline == null) {
+            for (int i = 0; i < ts.length; i++) {
+                putVector(target, i * POINT_AND_TANGENT_SIZE, getTrackPoint(trackType, ts[i]));
+                putVector(target, i * POINT_AND_TANGENT_SIZE + 3, getTrackTangent(trackType, ts[i]));
+            }
+            return;
+        }
+        final double[] evaluations = new double[ts.length * BezierSpline.EVALUATION_SIZE];
+        final double[] clipped = new double[ts.length];
+        for (int i = 0; i < ts.length; i++) {
+            clipped[i] = clip(ts[i]);
+        }
+        spline.evaluate(clipped, evaluations);
+        for (int i = 0; i < ts.length; i++) {
+            final int evaluation = i * BezierSpline.EVALUATION_SIZE;
+            System.arraycopy(evaluations, evaluation + BezierSpline.POINT, target, i * POINT_AND_TANGENT_SIZE, 3);
+            putVector(target, i * POINT_AND_TANGENT_SIZE + 3, spline.getTangent(clipped[i], evaluations, evaluation));
+        }
+    }
+
+    /**
+     * @return The distance from the centre line to the middle of a lane,
+     *         positive to the right.
+     */
+    protected static double getLaneOffset(int laneNumber) {
+        return (laneNumber - (RaceTrack.LANE_COUNT - 1) * 0.5d) * RaceTrack.LANE_WIDTH;
+    }
+
+    /**
+     * @param tangent The unit tangent of the track.
+     * @return The horizontal unit vector to the right of it.
+     */
+    protected static Vector toNormal(Vector tangent) {
+        return tangent.cross(Vector.Z).normalized();
+    }
+
     protected static Vector getLaneNormal(int trackType, int laneNumber, double t) {
         t = clip(t);
         return getTrackNormal(trackType, t);
@@ -237,22 +302,42 @@ public class RaceTrackDefinition {
         return getTrackTangent(trackType, t);
     }
 
-    private static Vector calculateBezierPoint(double t, List<CubicBezierPath> bezierElements) {
-        t = clip(t);
-        final double tScaled = t * bezierElements.size();
-        int iElement = (int) Math.floor(tScaled);
-        double tElement = tScaled % 1d;
-        if (iElement <= 0) {
-            iElement = 0;
-        }
-        if (iElement >= bezierElements.size()) {
-            iElement = bezierElements.size() - 1;
+    /**
+     * @return The spline of the track, or null if it isn't made of Bézier
+     *         segments.
+     */
+    private static BezierSpline getSpline(int trackType) {
+        switch (trackType) {
+            case RTD_TEST_BEZ:
+                return BEZIER_TEST;
+            case RTD_O:
+                return BEZIER_O;
+            case RTD_L:
+                return BEZIER_L;
+            case RTD_C:
+                return BEZIER_C;
+            case RTD_CUSTOM:
+                return BEZIER_CUSTOM;
+            default:
+                return null;
         }
-        if (t == 1d) {
-            iElement = bezierElements.size() - 1;
-            tElement = 1d;
+    }
+
+    private static BezierSpline makeSpline(CubicBezierPath... bezierElements) {
+        final Vector[] controlPoints = new Vector[bezierElements.length * 4];
+        for (int i = 0; i < bezierElements.length; i++) {
+            controlPoints[i * 4] = bezierElements[i].p0;
+            controlPoints[i * 4 + 1] = bezierElements[i].p1;
+            controlPoints[i * 4 + 2] = bezierElements[i].p2;
+            controlPoints[i * 4 + 3] = bezierElements[i].p3;
         }
-        return bezierElements.get(iElement).calculatePointOnPath(tElement);
+        return new BezierSpline(controlPoints);
+    }
+
+    private static void putVector(double[] target, int offset, Vector vector) {
+        target[offset] = vector.x();
+        target[offset + 1] = vector.y();
+        target[offset + 2] = vector.z();
     }
 
     private static double clip(double t) {
@@ -277,16 +362,6 @@ public class RaceTrackDefinition {
             this.p3 = p3;
         }
 
-        private Vector calculatePointOnPath(double t) {
-            t = clip(t);
-            final Vector point = Vector.O
-                    .add(p0.scale(Math.pow((1d - t), 3d)))
-                    .add(p1.scale(3d * t * Math.pow((1d - t), 2d)))
-                    .add(p2.scale(3d * (1d - t) * Math.pow(t, 2d)))
-                    .add(p3.scale(Math.pow(t, 3d)));
-            return point;
-        }
-
     }
 
 }
@@ -26,74 +26,103 @@
  */
 package racetrack;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * 
+ * A table of the distance along a track against the track parameter t, used
+ * to convert one into the other. The pairs are kept in two parallel arrays,
+ * sorted by both t and distance, so a lookup is a binary search followed by
+ * linear interpolation between the two nearest pairs.
+ *
+ * Both lookups wrap around: a t or distance beyond the last pair is taken
+ * modulo the lap, so the cost of a lookup doesn't grow with the number of
+ * laps driven.
+ *
  * @author Robke Geenen
  */
-class RaceTrackDistances {
+public class RaceTrackDistances {
 
-    private final List<RaceTrackDistanceT> raceTrackDistances;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] distances = new double[INITIAL_CAPACITY];
+    private double[] ts = new double[INITIAL_CAPACITY];
+    private int size = 0;
     private double distance = 0d;
 
-    RaceTrackDistances() {
-        this.raceTrackDistances = new ArrayList<>();
+    /**
+     * @param t The track parameter, which may be beyond the first lap.
+     * @return The distance along the track from the start of the lap in
+     *         which t lies.
+     */
+    public double getDistance(double t) {
+        return lookUp(t, ts, distances);
     }
 
-    protected double getDistance(double t) {
-        int i = 0;
-        while (t >= raceTrackDistances.get(i).getT()) {
-            i++;
-            if (i >= raceTrackDistances.size() - 1) {
-                i = 1;
-                t -= raceTrackDistances.get(raceTrackDistances.size() - 1).getT();
-            }
-        }
-        if (i == 0) {
-            return 0d;
-        }
-        final double scale = (t - raceTrackDistances.get(i - 1).getT()) / (raceTrackDistances.get(i).getT() - raceTrackDistances.get(i - 1).getT());
-        return (1d - scale) * raceTrackDistances.get(i - 1).getDistance() + scale * raceTrackDistances.get(i).getDistance();
+    /**
+     * @param distance The distance along the track, which may be beyond the
+     *                 first lap.
+     * @return The track parameter within the lap at which the distance is
+     *         reached.
+     */
+    public double getT(double distance) {
+        return lookUp(distance, distances, ts);
     }
 
-    protected double getT(double distance) {
-        int i = 0;
-        while (distance >= raceTrackDistances.get(i).getDistance()) {
-            i++;
-            if (i >= raceTrackDistances.size() - 1) {
-                i = 1;
-                distance -= raceTrackDistances.get(raceTrackDistances.size() - 1).getDistance();
-            }
-        }
-        if (i == 0) {
-            return 0d;
+    /**
+     * Add the next pair to the table. The first pair is expected to be at
+     * the start of the track, with a t and delta distance of zero.
+     *
+     * @param deltaDistance The distance from the previous pair.
+     * @param t             The track parameter, at least that of the
+     *                      previous pair.
+     */
+    public void addPair(double deltaDistance, double t) {
+        distance += deltaDistance;
+        if (size == ts.length) {
+            distances = Arrays.copyOf(distances, size * 2);
+            ts = Arrays.copyOf(ts, size * 2);
         }
-        final double scale = (distance - raceTrackDistances.get(i - 1).getDistance()) / (raceTrackDistances.get(i).getDistance() - raceTrackDistances.get(i - 1).getDistance());
-        return (1d - scale) * raceTrackDistances.get(i - 1).getT() + scale * raceTrackDistances.get(i).getT();
+        distances[size] = distance;
+        ts[size] = t;
+        size++;
     }
 
-    protected void addPair(double deltaDistance, double t) {
-        distance += deltaDistance;
-        raceTrackDistances.add(new RaceTrackDistanceT(distance, t));
+    /**
+     * @return The length of a lap.
+     */
+    public double getLength() {
+        return distance;
     }
 
-    private static class RaceTrackDistanceT {
-
-        private final double t, distance;
-
-        private RaceTrackDistanceT(double distance, double t) {
-            this.distance = distance;
-            this.t = t;
+    /**
+     * Find the value belonging to a key, where the keys and values are either
+     * the t's and distances or the other way round.
+     */
+    private double lookUp(double key, double[] keys, double[] values) {
+        if (size == 0) {
+            return 0d;
         }
-
-        private double getDistance() {
-            return distance;
+        final double lap = keys[size - 1];
+        if (lap <= 0d) {
+            return values[0];
         }
-
-        private double getT() {
-            return t;
+        //Further laps map onto the first; rounding may leave the result just outside of it.
+        double wrapped = key - Math.floor(key / lap) * lap;
+        if (wrapped < 0d || wrapped >= lap) {
+            wrapped = 0d;
+        }
+        final int found = Arrays.binarySearch(keys, 0, size, wrapped);
+        if (found >= 0) {
+            return values[found];
         }
+        final int upper = -found - 1;
+        if (upper == 0) {
+            //Only if the first pair isn't at the start of the track.
+            return values[0];
+        }
+        final int lower = upper - 1;
+        final double scale = (wrapped - keys[lower]) / (keys[upper] - keys[lower]);
+        return (1d - scale) * values[lower] + scale * values[upper];
     }
+
 }
@@ -0,0 +1,223 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack;
+
+import robotrace.Vector;
+
+/**
+ * The point, tangent and normal of the centre line or a lane of a race track,
+ * sampled at equal distances along it. Looking up a frame is a linear
+ * interpolation between the two nearest samples, which is much cheaper than
+ * evaluating the track itself and allocates nothing.
+ *
+ * A frame is stored in an array of {@link #FRAME_SIZE} doubles: the point,
+ * the tangent and the normal, three coordinates each, followed by the track
+ * parameter t. The normal points sideways, as in {@link RaceTrackDefinition}.
+ *
+ * When the table is made, it is checked against the track halfway between
+ * every two samples, where the interpolation is furthest off.
+ *
+ * @author Robke Geenen
+ */
+public class TrackFrameTable {
+
+    public static final int POINT = 0;
+    public static final int TANGENT = 3;
+    public static final int NORMAL = 6;
+    public static final int T = 9;
+    public static final int FRAME_SIZE = 10;
+    /**
+     * The lane number of the centre line.
+     */
+    static final int CENTRE_LINE = -1;
+    /**
+     * The number of steps in t per slice of the track with which its length
+     * is measured, before the samples are spread evenly along it.
+     */
+    private static final int MEASURE_STEPS_PER_SLICE = 8;
+    private static final int MIN_SAMPLE_COUNT = 4;
+
+    private final int trackType;
+    private final int laneNumber;
+    /**
+     * The length of the track measured in fine steps of t, used to find the
+     * distance at which each sample lies.
+     */
+    private final RaceTrackDistances measuredDistances = new RaceTrackDistances();
+    private final double length;
+    private final int intervalCount;
+    private final double sampleSpacing;
+    private final double[] frames;
+    private double maxPointError = 0d;
+    private double maxTangentError = 0d;
+
+    /**
+     * Sample the centre line or a lane of a track.
+     *
+     * @param trackType  The type of the track, see {@link RaceTrackDefinition}.
+     * @param laneNumber The lane, or {@link #CENTRE_LINE}.
+     * @param maxSpacing The largest distance in meters between two samples.
+     */
+    TrackFrameTable(int trackType, int laneNumber, double maxSpacing) {
+        this.trackType = trackType;
+        this.laneNumber = laneNumber;
+        final int measureSteps = RaceTrackDefinition.getSliceCount(trackType) * MEASURE_STEPS_PER_SLICE;
+        Vector previous = getPoint(0d);
+        for (int i = 0; i <= measureSteps; i++) {
+            final Vector point = getPoint(i / (double) measureSteps);
+            measuredDistances.addPair(point.subtract(previous).length(), i / (double) measureSteps);
+            previous = point;
+        }
+        this.length = measuredDistances.getLength();
+        this.intervalCount = Math.max(MIN_SAMPLE_COUNT, (int) Math.ceil(length / maxSpacing));
+        this.sampleSpacing = length / intervalCount;
+        this.frames = new double[(intervalCount + 1) * FRAME_SIZE];
+        for (int i = 0; i <= intervalCount; i++) {
+            //The distance at the very end would wrap around to the start.
+            final double t = (i == intervalCount) ? 1d : measuredDistances.getT(i * sampleSpacing);
+            putFrame(frames, i * FRAME_SIZE, t);
+        }
+        measureError();
+    }
+
+    /**
+     * Look up the frame at a distance along the track.
+     *
+     * @param distance The distance from the start, which may be beyond the
+     *                 first lap.
+     * @param target   The array of at least {@link #FRAME_SIZE} doubles to
+     *                 put the frame in.
+     */
+    public void getFrame(double distance, double[] target) {
+        //Further laps map onto the first.
+        final double position = (distance - Math.floor(distance / length) * length) / sampleSpacing;
+        final int interval = Math.max(0, Math.min(intervalCount - 1, (int) position));
+        final double scale = Math.max(0d, Math.min(1d, position - interval));
+        final int lower = interval * FRAME_SIZE;
+        final int upper = lower + FRAME_SIZE;
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            target[i] = (1d - scale) * frames[lower + i] + scale * frames[upper + i];
+        }
+        normalize(target, TANGENT);
+        normalize(target, NORMAL);
+    }
+
+    /**
+     * Look up the frame at a track parameter.
+     *
+     * @param t      The track parameter, which may be beyond the first lap.
+     * @param target The array of at least {@link #FRAME_SIZE} doubles to put
+     *               the frame in. Its t is the one within the lap.
+     */
+    public void getFrameAtT(double t, double[] target) {
+        getFrame(measuredDistances.getDistance(t), target);
+    }
+
+    /**
+     * @return The length of a lap in meters.
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * @return The number of samples in a lap.
+     */
+    public int getSampleCount() {
+        return intervalCount;
+    }
+
+    /**
+     * @return The largest distance in meters between an interpolated point
+     *         and the point on the track at the same distance from the start.
+     */
+    public double getMaxPointError() {
+        return maxPointError;
+    }
+
+    /**
+     * @return The largest angle in degrees between an interpolated tangent
+     *         and the tangent of the track at the same distance from the
+     *         start.
+     */
+    public double getMaxTangentError() {
+        return maxTangentError;
+    }
+
+    /**
+     * Compare the interpolated frames halfway between samples with the track
+     * itself.
+     */
+    private void measureError() {
+        final double[] interpolated = new double[FRAME_SIZE];
+        final double[] exact = new double[FRAME_SIZE];
+        for (int i = 0; i < intervalCount; i++) {
+            final double distance = (i + 0.5d) * sampleSpacing;
+            getFrame(distance, interpolated);
+            putFrame(exact, 0, measuredDistances.getT(distance));
+            double pointErrorSquared = 0d;
+            double tangentDot = 0d;
+            for (int axis = 0; axis < 3; axis++) {
+                final double delta = interpolated[POINT + axis] - exact[POINT + axis];
+                pointErrorSquared += delta * delta;
+                tangentDot += interpolated[TANGENT + axis] * exact[TANGENT + axis];
+            }
+            maxPointError = Math.max(maxPointError, Math.sqrt(pointErrorSquared));
+            maxTangentError = Math.max(maxTangentError, Math.toDegrees(Math.acos(Math.min(1d, tangentDot))));
+        }
+    }
+
+    private void putFrame(double[] target, int offset, double t) {
+        putVector(target, offset + POINT, getPoint(t));
+        putVector(target, offset + TANGENT, RaceTrackDefinition.getLaneTangent(trackType, laneNumber, t));
+        putVector(target, offset + NORMAL, RaceTrackDefinition.getLaneNormal(trackType, laneNumber, t));
+        target[offset + T] = t;
+    }
+
+    private Vector getPoint(double t) {
+        return (laneNumber == CENTRE_LINE)
+                ? RaceTrackDefinition.getTrackPoint(trackType, t)
+                : RaceTrackDefinition.getLanePoint(trackType, laneNumber, t);
+    }
+
+    private static void putVector(double[] target, int offset, Vector vector) {
+        target[offset] = vector.x();
+        target[offset + 1] = vector.y();
+        target[offset + 2] = vector.z();
+    }
+
+    private static void normalize(double[] frame, int offset) {
+        final double norm = Math.sqrt(frame[offset] * frame[offset] + frame[offset + 1] * frame[offset + 1]
+                + frame[offset + 2] * frame[offset + 2]);
+        if (norm > 0d) {
+            frame[offset] /= norm;
+            frame[offset + 1] /= norm;
+            frame[offset + 2] /= norm;
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack.debug;
+
+import java.util.Random;
+import racetrack.RaceTrack;
+import racetrack.RaceTrackDefinition;
+import racetrack.RaceTrackDistances;
+
+/**
+ * Measures how long it takes to look up the track parameter belonging to a
+ * distance along a lane, and the other way round, in the first lap and in
+ * the ten thousandth. A robot that has been racing for a while asks for
+ * distances many laps in, so both should take about as long.
+ *
+ * The table is filled the same way the race track fills it, without an
+ * OpenGL context.
+ *
+ * @author Robke Geenen
+ */
+public class DistanceLookupBenchmark {
+
+    private static final int[] LAPS = {1, 10_000};
+    private static final int LOOKUP_COUNT = 1_000_000;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) {
+        final RaceTrack raceTrack = new RaceTrack();
+        raceTrack.setTrackType(RaceTrackDefinition.RTD_CUSTOM);
+        final RaceTrackDistances laneDistances = makeLaneDistances(raceTrack, 0);
+        final double lapLength = laneDistances.getLength();
+        System.out.printf("Lane 0 of the custom track: %.1f m per lap.%n", lapLength);
+        for (int lap : LAPS) {
+            //The same spread of positions within the lap for every lap count.
+            final Random random = new Random(1L);
+            final double[] distances = new double[LOOKUP_COUNT];
+            final double[] ts = new double[LOOKUP_COUNT];
+            for (int i = 0; i < LOOKUP_COUNT; i++) {
+                final double fraction = random.nextDouble();
+                distances[i] = (lap - 1 + fraction) * lapLength;
+                ts[i] = lap - 1 + fraction;
+            }
+            double checksum = 0d;
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                checksum += lookUpTs(laneDistances, distances) + lookUpDistances(laneDistances, ts);
+            }
+            long bestTNanos = Long.MAX_VALUE;
+            long bestDistanceNanos = Long.MAX_VALUE;
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                final long start = System.nanoTime();
+                checksum += lookUpTs(laneDistances, distances);
+                final long middle = System.nanoTime();
+                checksum += lookUpDistances(laneDistances, ts);
+                bestTNanos = Math.min(bestTNanos, middle - start);
+                bestDistanceNanos = Math.min(bestDistanceNanos, System.nanoTime() - middle);
+            }
+            System.out.printf("Lap %6d: getT %7.2f ms (%5.1f ns/lookup), getDistance %7.2f ms (%5.1f ns/lookup), checksum %.3f%n",
+                    lap, bestTNanos / 1e6d, bestTNanos / (double) LOOKUP_COUNT,
+                    bestDistanceNanos / 1e6d, bestDistanceNanos / (double) LOOKUP_COUNT, checksum);
+        }
+    }
+
+    /**
+     * Measure a lane uniformly in t, the same way the race track does.
+     */
+    private static RaceTrackDistances makeLaneDistances(RaceTrack raceTrack, int laneNumber) {
+        final RaceTrackDistances laneDistances = new RaceTrackDistances();
+        final int sliceCount = raceTrack.getSliceCount();
+        for (int i = 0; i <= sliceCount; i++) {
+            final double t = i / (double) sliceCount;
+            final double tPrevious = Math.max(0, i - 1) / (double) sliceCount;
+            laneDistances.addPair(raceTrack.getLanePoint(t, laneNumber)
+                    .subtract(raceTrack.getLanePoint(tPrevious, laneNumber)).length(), t);
+        }
+        return laneDistances;
+    }
+
+    private static double lookUpTs(RaceTrackDistances laneDistances, double[] distances) {
+        double sum = 0d;
+        for (double distance : distances) {
+            sum += laneDistances.getT(distance);
+        }
+        return sum;
+    }
+
+    private static double lookUpDistances(RaceTrackDistances laneDistances, double[] ts) {
+        double sum = 0d;
+        for (double t : ts) {
+            sum += laneDistances.getDistance(t);
+        }
+        return sum;
+    }
+
+}
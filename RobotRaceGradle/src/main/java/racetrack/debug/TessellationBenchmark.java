@@ -0,0 +1,94 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack.debug;
+
+import bodies.assembly.TrackAssembler;
+import bodies.assembly.Vertex;
+import java.util.ArrayList;
+import java.util.List;
+import racetrack.AdaptiveTrackSampler;
+import racetrack.RaceTrack;
+import racetrack.RaceTrackDefinition;
+
+/**
+ * Compares the uniform slicing of every race track with the adaptive one, at
+ * a few target deviations: how many slices and compiled vertices each takes,
+ * how far the slices end up from the track, and how long sampling takes.
+ *
+ * Textures are left out, so no OpenGL context is needed.
+ *
+ * @author Robke Geenen
+ */
+public class TessellationBenchmark {
+
+    private static final double[] TARGET_DEVIATIONS = {0.05d, 0.02d, 0.01d, 0.005d};
+    private static final int WARMUP_RUNS = 5;
+
+    public static void main(String[] args) {
+        final RaceTrack raceTrack = new RaceTrack();
+        for (int trackType = RaceTrackDefinition.RTD_TEST; trackType <= RaceTrackDefinition.RTD_CUSTOM; trackType++) {
+            raceTrack.setTrackType(trackType);
+            final int sliceCount = raceTrack.getSliceCount();
+            final double[] uniform = new double[sliceCount + 1];
+            for (int i = 0; i <= sliceCount; i++) {
+                uniform[i] = i / (double) sliceCount;
+            }
+            System.out.printf("Track %d, uniform: %6d slices, %7d vertices, at most %7.3f cm off%n",
+                    trackType, uniform.length, compile(raceTrack, uniform),
+                    AdaptiveTrackSampler.measureDeviation(trackType, uniform) * 100d);
+            for (double targetDeviation : TARGET_DEVIATIONS) {
+                final AdaptiveTrackSampler sampler = new AdaptiveTrackSampler(trackType, targetDeviation);
+                for (int i = 0; i < WARMUP_RUNS; i++) {
+                    sampler.sample();
+                }
+                final long start = System.nanoTime();
+                final double[] adaptive = sampler.sample();
+                final double millis = (System.nanoTime() - start) / 1e6d;
+                System.out.printf("  target %5.1f cm: %6d slices, %7d vertices, at most %7.3f cm off, %7.3f ms%n",
+                        targetDeviation * 100d, adaptive.length, compile(raceTrack, adaptive),
+                        AdaptiveTrackSampler.measureDeviation(trackType, adaptive) * 100d, millis);
+            }
+        }
+    }
+
+    /**
+     * Compile the track sliced at the given parameters.
+     *
+     * @return The number of vertices in the data buffer.
+     */
+    private static int compile(RaceTrack raceTrack, double[] ts) {
+        final List<Vertex> trackDescription = new ArrayList<>(ts.length);
+        for (double t : ts) {
+            trackDescription.add(new Vertex(raceTrack.getTrackPoint(t)));
+        }
+        final TrackAssembler assembler = new TrackAssembler();
+        assembler.calculateTrack(trackDescription, RaceTrack.LANE_WIDTH, RaceTrack.LANE_COUNT,
+                RaceTrack.TRACK_HEIGHT, raceTrack.getClosedTrack(), null, null, null);
+        return assembler.getDataBuffer().capacity() / (Vertex.NR_VERTEX_ELEMENTS * Vertex.COORD_COUNT);
+    }
+
+}
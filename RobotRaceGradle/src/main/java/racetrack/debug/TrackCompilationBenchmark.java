@@ -0,0 +1,124 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack.debug;
+
+import bodies.assembly.TrackAssembler;
+import bodies.assembly.Vertex;
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import racetrack.RaceTrack;
+import racetrack.RaceTrackDefinition;
+
+/**
+ * Measures how long it takes to compile the custom race track into vertex and
+ * index buffers, and how much garbage that produces. The track is compiled at
+ * its normal slice count and at a hundred times that, so one can verify that
+ * both grow linearly with the number of vertices.
+ *
+ * Textures are left out, so no OpenGL context is needed.
+ *
+ * @author Robke Geenen
+ */
+public class TrackCompilationBenchmark {
+
+    private static final int[] SLICE_COUNTS = {500, 50_000};
+    private static final int WARMUP_RUNS = 20;
+    private static final int MEASURED_RUNS = 10;
+
+    public static void main(String[] args) {
+        final RaceTrack raceTrack = new RaceTrack();
+        raceTrack.setTrackType(RaceTrackDefinition.RTD_CUSTOM);
+        double previousMillis = 0d;
+        for (int sliceCount : SLICE_COUNTS) {
+            final List<Vertex> trackDescription = makeTrackDescription(raceTrack, sliceCount);
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                compile(trackDescription, raceTrack.getClosedTrack());
+            }
+            long bestNanos = Long.MAX_VALUE;
+            long allocatedBytes = 0L;
+            int vertexCount = 0;
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                final long allocatedBefore = getAllocatedBytes();
+                final long start = System.nanoTime();
+                vertexCount = compile(trackDescription, raceTrack.getClosedTrack());
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+                allocatedBytes += getAllocatedBytes() - allocatedBefore;
+            }
+            final double millis = bestNanos / 1e6d;
+            System.out.printf("%6d slices: %8d vertices, %9.3f ms, %6.1f ns/vertex, %10d bytes allocated per run%s%n",
+                    sliceCount, vertexCount, millis, bestNanos / (double) vertexCount,
+                    allocatedBytes / MEASURED_RUNS,
+                    (previousMillis > 0d) ? String.format(" (x%.1f time)", millis / previousMillis) : "");
+            previousMillis = millis;
+        }
+    }
+
+    /**
+     * Sample the centre line of the track uniformly in t, so that the vertex
+     * count is exactly proportional to the slice count.
+     */
+    private static List<Vertex> makeTrackDescription(RaceTrack raceTrack, int sliceCount) {
+        final List<Vertex> trackDescription = new ArrayList<>(sliceCount + 1);
+        for (int i = 0; i <= sliceCount; i++) {
+            trackDescription.add(new Vertex(raceTrack.getTrackPoint(i / (double) sliceCount)));
+        }
+        return trackDescription;
+    }
+
+    /**
+     * Compile the track and export its buffers.
+     *
+     * @return The number of vertices in the data buffer.
+     */
+    private static int compile(List<Vertex> trackDescription, boolean closedTrack) {
+        final TrackAssembler assembler = new TrackAssembler();
+        assembler.calculateTrack(trackDescription, RaceTrack.LANE_WIDTH, RaceTrack.LANE_COUNT,
+                RaceTrack.TRACK_HEIGHT, closedTrack, null, null, null);
+        final FloatBuffer dataBuffer = assembler.getDataBuffer();
+        final List<IntBuffer> indicesBuffers = assembler.getIndicesBuffers(true);
+        if (indicesBuffers.isEmpty()) {
+            throw new IllegalStateException("The track compiled into nothing.");
+        }
+        return dataBuffer.capacity() / (Vertex.NR_VERTEX_ELEMENTS * Vertex.COORD_COUNT);
+    }
+
+    /**
+     * @return The amount of bytes allocated by the current thread so far, or
+     *         zero if the virtual machine cannot tell.
+     */
+    private static long getAllocatedBytes() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+
+}
@@ -26,9 +26,11 @@
  */
 package robot;
 
+import bodies.ModelViewStack;
 import com.jogamp.opengl.util.gl2.GLUT;
 import javax.media.opengl.GL2;
 import racetrack.RaceTrack;
+import racetrack.TrackFrameTable;
 import robotrace.Lighting;
 import robotrace.Material;
 import robotrace.Vector;
@@ -56,6 +58,11 @@ public class Robot {
     private double trackT = 0d;
     private double distanceTravelled = 0d;
     private int laneNumber = 0;
+    /**
+     * Reused for the frames looked up during every update.
+     */
+    private final double[] laneFrame = new double[TrackFrameTable.FRAME_SIZE];
+    private final double[] trackFrame = new double[TrackFrameTable.FRAME_SIZE];
 
     /**
      * The material from which this robot is built.
@@ -65,16 +72,20 @@ public class Robot {
      * The object in charge of drawing the robot's actual physical body.
      */
     private final RobotBody robotBody;
+    private final ModelViewStack modelView;
 
     /**
      * Constructs a new instance of robot.
      *
      * @param material  The material that the robot is to be made of.
      * @param robotBody The aesthetics of the body used by this robot.
+     * @param modelView The ModelViewStack through which the robot is moved
+     *                  into place.
      */
-    public Robot(Material material, RobotBody robotBody) {
+    public Robot(Material material, RobotBody robotBody, ModelViewStack modelView) {
         this.material = material;
         this.robotBody = robotBody;
+        this.modelView = modelView;
     }
 
     public void setPosition(Vector position) {
@@ -152,7 +163,14 @@ public class Robot {
 
     public void moveDistance(RaceTrack raceTrack, double deltaTime) {
         distanceTravelled += deltaTime * getCurrentSpeed();
-        final double newTrackT = raceTrack.getLaneT(distanceTravelled, laneNumber);
+        advanceTrackT(raceTrack.getLaneT(distanceTravelled, laneNumber));
+    }
+
+    /**
+     * @param newTrackT The track parameter within the current lap, which
+     *                  starts a new lap if it is less than before.
+     */
+    private void advanceTrackT(double newTrackT) {
         if (newTrackT < (trackT - Math.floor(trackT))) {
             trackT = Math.floor(trackT) + 1d + newTrackT;
         } else {
@@ -186,12 +204,27 @@ public class Robot {
         return robotBody;
     }
 
+    /**
+     * Move the robot along its lane. The positions and directions are looked
+     * up in the frame tables of the track, rather than worked out from the
+     * track itself.
+     *
+     * @param raceTrack The race track, which must have been initialised.
+     * @param deltaTime The time since the last update in seconds.
+     */
     public void update(RaceTrack raceTrack, double deltaTime) {
-        moveDistance(raceTrack, deltaTime);
-        setPositionOnLane(raceTrack);
-        setDirectionOnLane(raceTrack);
-        setPositionOnTrack(raceTrack);
-        setDirectionOnTrack(raceTrack);
+        distanceTravelled += deltaTime * getCurrentSpeed();
+        raceTrack.getLaneFrames(laneNumber).getFrame(distanceTravelled, laneFrame);
+        advanceTrackT(laneFrame[TrackFrameTable.T]);
+        raceTrack.getTrackFrames().getFrameAtT(trackT, trackFrame);
+        this.position = toVector(laneFrame, TrackFrameTable.POINT);
+        this.direction = toVector(laneFrame, TrackFrameTable.TANGENT);
+        this.positionTrack = toVector(trackFrame, TrackFrameTable.POINT);
+        this.directionTrack = toVector(trackFrame, TrackFrameTable.TANGENT);
+    }
+
+    private static Vector toVector(double[] frame, int offset) {
+        return new Vector(frame[offset], frame[offset + 1], frame[offset + 2]);
     }
 
     /**
@@ -210,19 +243,19 @@ public class Robot {
      */
     public void draw(GL2 gl, GLUT glut, boolean stickFigure, float tAnim, Lighting lighting) {
         lighting.setMaterial(gl, getMaterial());
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         {
-            gl.glTranslated(position.x(), position.y(), position.z());
+            modelView.translate(gl, position.x(), position.y(), position.z());
             final double rotationDotY = direction.dot(Vector.Y) / (direction.length() * Vector.Y.length());
             final double rotationDotX = direction.dot(Vector.X) / (direction.length() * Vector.X.length());
             final double rotationAngle = Math.toDegrees(Math.acos(rotationDotY));
-            gl.glRotated((rotationDotX > 0d) ? (-rotationAngle) : (rotationAngle), Vector.Z.x(), Vector.Z.y(), Vector.Z.z());
+            modelView.rotate(gl, (rotationDotX > 0d) ? (-rotationAngle) : (rotationAngle), Vector.Z.x(), Vector.Z.y(), Vector.Z.z());
             final double elevationDot = direction.dot(Vector.Z) / (direction.length() * Vector.Z.length());
             final double elevationAngle = Math.toDegrees(Math.asin(elevationDot));
-            gl.glRotated(elevationAngle, Vector.X.x(), Vector.X.y(), Vector.X.z());
+            modelView.rotate(gl, elevationAngle, Vector.X.x(), Vector.X.y(), Vector.X.z());
             robotBody.draw(gl, glut, stickFigure, tAnim);
         }
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
 }
@@ -27,6 +27,7 @@
 package robot;
 
 import bodies.BufferManager;
+import bodies.ModelViewStack;
 import javax.media.opengl.GL2;
 import robot.bender.Arm;
 import robot.bender.Bender;
@@ -46,10 +47,16 @@ public class RobotFactory {
 
     private final robot.bender.Limb benderLimb;
     private final robot.bender.Torso benderTorso;
+    private final ModelViewStack modelView;
 
-    public RobotFactory() {
+    /**
+     * @param modelView The ModelViewStack through which the robots made by
+     *                  this factory move their parts into place.
+     */
+    public RobotFactory(ModelViewStack modelView) {
         this.benderLimb = new Limb();
         this.benderTorso = new Torso();
+        this.modelView = modelView;
     }
 
     /**
@@ -80,7 +87,7 @@ public class RobotFactory {
      * @return A newly created instance of Robot.
      */
     public Robot makeBender(int backNumber, Material material) {
-        return new Robot(material, makeBenderBody(backNumber));
+        return new Robot(material, makeBenderBody(backNumber), modelView);
     }
 
     /**
@@ -108,7 +115,7 @@ public class RobotFactory {
      * @see #makeBender(Material)
      */
     public Robot makeBenderAt(int backNumber, Material material, Vector position, Vector direction) {
-        final Robot robot = new Robot(material, RobotFactory.this.makeBenderBody(backNumber));
+        final Robot robot = new Robot(material, RobotFactory.this.makeBenderBody(backNumber), modelView);
         robot.setPosition(position);
         robot.setDirection(direction);
         return robot;
@@ -125,14 +132,14 @@ public class RobotFactory {
      * @return The newly created body of bender.
      */
     private Bender makeBenderBody(int backNumber) {
-        final Leg rightLeg = new Leg(benderLimb, 0f);
-        final Leg leftLeg = new Leg(benderLimb, 0.5f);
-        final Arm rightArm = new Arm(benderLimb, 0.5f, Vector.Y, Vector.Z.scale(-1d));
-        final Arm leftArm = new Arm(benderLimb, 0f, Vector.Y.scale(-1d), Vector.Z);
+        final Leg rightLeg = new Leg(benderLimb, 0f, modelView);
+        final Leg leftLeg = new Leg(benderLimb, 0.5f, modelView);
+        final Arm rightArm = new Arm(benderLimb, 0.5f, Vector.Y, Vector.Z.scale(-1d), modelView);
+        final Arm leftArm = new Arm(benderLimb, 0f, Vector.Y.scale(-1d), Vector.Z, modelView);
         final Animation animation = new Animation();
         animation.addAnimationType(AnimationType.RUNNING, Bender.ANIM_RUNNING_CONSTANT / 1.5f);
         animation.setDefaultAnimation(AnimationType.RUNNING);
-        return new Bender(animation, benderTorso, rightLeg, leftLeg, rightArm, leftArm, backNumber);
+        return new Bender(animation, benderTorso, rightLeg, leftLeg, rightArm, leftArm, backNumber, modelView);
     }
 
 }
@@ -26,6 +26,7 @@
  */
 package robot.bender;
 
+import bodies.ModelViewStack;
 import com.jogamp.opengl.util.gl2.GLUT;
 import javax.media.opengl.GL2;
 import robot.Animation;
@@ -45,28 +46,30 @@ public class Arm {
     private final float animationPeriodOffset;
     private final Vector verticalTurningAxis;
     private final Vector horizontalTurningAxis;
+    private final ModelViewStack modelView;
 
-    public Arm(Limb limb, float animationPeriodOffset, Vector verticalTurningAxis, Vector horizontalTurningAxis) {
+    public Arm(Limb limb, float animationPeriodOffset, Vector verticalTurningAxis, Vector horizontalTurningAxis, ModelViewStack modelView) {
         this.limb = limb;
         this.animationPeriodOffset = animationPeriodOffset;
         this.verticalTurningAxis = verticalTurningAxis;
         this.horizontalTurningAxis = horizontalTurningAxis;
+        this.modelView = modelView;
     }
 
     public void draw(GL2 gl, GLUT glut, boolean stickFigure, Animation animation) {
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         drawShoulders(gl, glut, stickFigure, animation);
         drawElbows(gl, glut, stickFigure, animation);
         drawWrists(gl, glut, stickFigure, animation);
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
     private void drawShoulders(GL2 gl, GLUT glut, boolean stickFigure, Animation animation) {
         for (int i = 0; i < NR_SHOULDER_JOINTS; i++) {
-            gl.glRotated(getPartialShoulderAngle(animation), horizontalTurningAxis.x(), horizontalTurningAxis.y(), horizontalTurningAxis.z());
-            gl.glRotated(45, verticalTurningAxis.x(), verticalTurningAxis.y(), verticalTurningAxis.z());
+            modelView.rotate(gl, getPartialShoulderAngle(animation), horizontalTurningAxis.x(), horizontalTurningAxis.y(), horizontalTurningAxis.z());
+            modelView.rotate(gl, 45, verticalTurningAxis.x(), verticalTurningAxis.y(), verticalTurningAxis.z());
             limb.drawSegment(gl, glut, stickFigure);
-            gl.glTranslated(0, 0, Limb.HEIGHT_OUTER_SEGMENT);
+            modelView.translate(gl, 0, 0, Limb.HEIGHT_OUTER_SEGMENT);
         }
     }
 
@@ -85,9 +88,9 @@ public class Arm {
 
     private void drawElbows(GL2 gl, GLUT glut, boolean stickFigure, Animation animation) {
         for (int i = 0; i < NR_ELBOW_JOINTS; i++) {
-            gl.glRotated(getPartialElbowAngle(animation), 1f, 0f, 0.7f * horizontalTurningAxis.z());
+            modelView.rotate(gl, getPartialElbowAngle(animation), 1f, 0f, 0.7f * horizontalTurningAxis.z());
             limb.drawSegment(gl, glut, stickFigure);
-            gl.glTranslated(0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
+            modelView.translate(gl, 0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
         }
     }
 
@@ -106,12 +109,12 @@ public class Arm {
 
     private void drawWrists(GL2 gl, GLUT glut, boolean stickFigure, Animation animation) {
         for (int i = 0; i < NR_WRIST_JOINTS + 1; i++) {
-            gl.glRotated(getPartialWristAngle(animation), 0.1f, 0.5f * horizontalTurningAxis.z(), 0d);
+            modelView.rotate(gl, getPartialWristAngle(animation), 0.1f, 0.5f * horizontalTurningAxis.z(), 0d);
             if (i == NR_WRIST_JOINTS) {
                 limb.drawHand(gl, stickFigure);
             } else {
                 limb.drawSegment(gl, glut, stickFigure);
-                gl.glTranslated(0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
+                modelView.translate(gl, 0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
             }
         }
     }
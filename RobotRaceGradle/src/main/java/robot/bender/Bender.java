@@ -26,6 +26,7 @@
  */
 package robot.bender;
 
+import bodies.ModelViewStack;
 import com.jogamp.opengl.util.gl2.GLUT;
 import javax.media.opengl.GL2;
 import robot.Animation;
@@ -63,8 +64,9 @@ public class Bender implements RobotBody {
     private final Arm rightArm;
     private final Arm leftArm;
     private final int backNumber;
+    private final ModelViewStack modelView;
 
-    public Bender(Animation animation, Torso torso, Leg rightLeg, Leg leftLeg, Arm rightArm, Arm leftArm, int backNumber) {
+    public Bender(Animation animation, Torso torso, Leg rightLeg, Leg leftLeg, Arm rightArm, Arm leftArm, int backNumber, ModelViewStack modelView) {
         this.animation = animation;
         this.torso = torso;
         this.rightLeg = rightLeg;
@@ -72,44 +74,45 @@ public class Bender implements RobotBody {
         this.rightArm = rightArm;
         this.leftArm = leftArm;
         this.backNumber = backNumber;
+        this.modelView = modelView;
     }
 
     @Override
     public void draw(GL2 gl, GLUT glut, boolean stickFigure, float tAnim) {
         animation.update(tAnim);
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         {
             final double legHeight = Limb.HEIGHT_OUTER_SEGMENT * Limb.RING_COUNT + Limb.HEIGHT_FOOT;
-            gl.glTranslated(0d, 0d, legHeight);
+            modelView.translate(gl, 0d, 0d, legHeight);
 
             torso.draw(gl, glut, stickFigure, animation, backNumber);
 
-            gl.glPushMatrix();
+            modelView.pushMatrix(gl);
             {
                 torso.setRightLegMountPoint(gl);
                 rightLeg.draw(gl, glut, stickFigure, animation);
             }
-            gl.glPopMatrix();
-            gl.glPushMatrix();
+            modelView.popMatrix(gl);
+            modelView.pushMatrix(gl);
             {
                 torso.setLeftLegMountPoint(gl);
                 leftLeg.draw(gl, glut, stickFigure, animation);
             }
-            gl.glPopMatrix();
-            gl.glPushMatrix();
+            modelView.popMatrix(gl);
+            modelView.pushMatrix(gl);
             {
                 torso.setRightArmMountPoint(gl);
                 rightArm.draw(gl, glut, stickFigure, animation);
             }
-            gl.glPopMatrix();
-            gl.glPushMatrix();
+            modelView.popMatrix(gl);
+            modelView.pushMatrix(gl);
             {
                 torso.setLeftArmMountPoint(gl);
                 leftArm.draw(gl, glut, stickFigure, animation);
             }
-            gl.glPopMatrix();
+            modelView.popMatrix(gl);
         }
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
     @Override
@@ -26,6 +26,7 @@
  */
 package robot.bender;
 
+import bodies.ModelViewStack;
 import com.jogamp.opengl.util.gl2.GLUT;
 import javax.media.opengl.GL2;
 import robot.Animation;
@@ -43,25 +44,27 @@ public class Leg {
 
     private final Limb limb;
     private final float animationPeriodOffset;
+    private final ModelViewStack modelView;
 
-    public Leg(Limb limb, float animationPeriodOffset) {
+    public Leg(Limb limb, float animationPeriodOffset, ModelViewStack modelView) {
         this.limb = limb;
         this.animationPeriodOffset = animationPeriodOffset;
+        this.modelView = modelView;
     }
 
     public void draw(GL2 gl, GLUT glut, boolean stickFigure, Animation animation) {
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         drawHips(gl, glut, stickFigure, animation);
         drawKnees(gl, glut, stickFigure, animation);
         drawAnkles(gl, glut, stickFigure, animation);
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
     private void drawHips(GL2 gl, GLUT glut, boolean stickFigure, Animation animation) {
         for (int i = 0; i < NR_HIP_JOINTS; i++) {
-            gl.glRotated(getPartialHipAngle(animation), -1d, 0d, 0d);
+            modelView.rotate(gl, getPartialHipAngle(animation), -1d, 0d, 0d);
             limb.drawSegment(gl, glut, stickFigure);
-            gl.glTranslated(0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
+            modelView.translate(gl, 0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
         }
     }
 
@@ -79,9 +82,9 @@ public class Leg {
 
     private void drawKnees(GL2 gl, GLUT glut, boolean stickFigure, Animation animation) {
         for (int i = 0; i < NR_KNEE_JOINTS; i++) {
-            gl.glRotated(getPartialKneeAngle(animation), -1d, 0d, 0d);
+            modelView.rotate(gl, getPartialKneeAngle(animation), -1d, 0d, 0d);
             limb.drawSegment(gl, glut, stickFigure);
-            gl.glTranslated(0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
+            modelView.translate(gl, 0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
         }
     }
 
@@ -101,12 +104,12 @@ public class Leg {
 
     private void drawAnkles(GL2 gl, GLUT glut, boolean stickFigure, Animation animation) {
         for (int i = 0; i < NR_ANKLE_JOINTS + 1; i++) {
-            gl.glRotated(getPartialAnkleAngle(animation), -1d, 0d, 0d);
+            modelView.rotate(gl, getPartialAnkleAngle(animation), -1d, 0d, 0d);
             if (i == NR_ANKLE_JOINTS) {
                 limb.drawFoot(gl, stickFigure);
             } else {
                 limb.drawSegment(gl, glut, stickFigure);
-                gl.glTranslated(0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
+                modelView.translate(gl, 0d, 0d, Limb.HEIGHT_OUTER_SEGMENT);
             }
         }
     }
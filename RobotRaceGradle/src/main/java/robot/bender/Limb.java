@@ -28,6 +28,7 @@ package robot.bender;
 
 import bodies.Body;
 import bodies.BufferManager;
+import bodies.ModelViewStack;
 import bodies.SingletonDrawable;
 import bodies.StackBuilder;
 import com.jogamp.opengl.util.gl2.GLUT;
@@ -83,9 +84,11 @@ public class Limb implements SingletonDrawable {
     private Body footBody;
     private Body handBody;
     private Body fingerBody;
+    private ModelViewStack modelView;
 
     @Override
     public void initialize(GL2 gl, BufferManager.Initialiser bmInitialiser) {
+        modelView = bmInitialiser.getModelView();
         outerSegmentBody = new StackBuilder(bmInitialiser)
                 .setSliceCount(SLICE_COUNT)
                 .addConicalFrustum(RADIUS_OUTER_SEGMENT, RADIUS_OUTER_SEGMENT, 0f, HEIGHT_OUTER_SEGMENT, true, true)
@@ -110,39 +113,39 @@ public class Limb implements SingletonDrawable {
     }
 
     public void drawSegment(GL2 gl, GLUT glut, boolean stickFigure) {
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         if (stickFigure) {
-            gl.glTranslated(0d, 0d, HEIGHT_OUTER_SEGMENT / 2f);
-            gl.glScaled(RobotBody.STICK_THICKNESS, RobotBody.STICK_THICKNESS, HEIGHT_OUTER_SEGMENT);
+            modelView.translate(gl, 0d, 0d, HEIGHT_OUTER_SEGMENT / 2f);
+            modelView.scale(gl, RobotBody.STICK_THICKNESS, RobotBody.STICK_THICKNESS, HEIGHT_OUTER_SEGMENT);
             glut.glutSolidCube(1f);
         } else {
             outerSegmentBody.draw(gl);
             final double heightDifference = HEIGHT_OUTER_SEGMENT - HEIGHT_INNER_SEGMENT;
-            gl.glTranslated(0d, 0d, heightDifference / 2f);
+            modelView.translate(gl, 0d, 0d, heightDifference / 2f);
             innerSegmentBody.draw(gl);
         }
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
     public void drawHand(GL2 gl, boolean stickFigure) {
         handBody.draw(gl);
-        gl.glTranslated(0d, 0d, HEIGHT_HAND);
+        modelView.translate(gl, 0d, 0d, HEIGHT_HAND);
         for (int j = 0; j < FINGER_COUNT; j++) {
-            gl.glPushMatrix();
-            gl.glTranslated(FINGER_OFFCENTER * cos(toRadians(j * 360f / FINGER_COUNT)), FINGER_OFFCENTER * sin(toRadians(j * 360f / FINGER_COUNT)), 0d);
+            modelView.pushMatrix(gl);
+            modelView.translate(gl, FINGER_OFFCENTER * cos(toRadians(j * 360f / FINGER_COUNT)), FINGER_OFFCENTER * sin(toRadians(j * 360f / FINGER_COUNT)), 0d);
             fingerBody.draw(gl);
-            gl.glPopMatrix();
+            modelView.popMatrix(gl);
         }
     }
 
     public void drawFoot(GL2 gl, boolean stickFigure) {
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         {
-            gl.glTranslated(0d, 0d, HEIGHT_FOOT);
-            gl.glRotated(180d, 1d, 0d, 0d);
+            modelView.translate(gl, 0d, 0d, HEIGHT_FOOT);
+            modelView.rotate(gl, 180d, 1d, 0d, 0d);
             footBody.draw(gl);
         }
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
 }
@@ -28,6 +28,8 @@ package robot.bender;
 
 import Texture.ImplementedTexture;
 import bodies.BufferManager;
+import bodies.GLStateCache;
+import bodies.ModelViewStack;
 import bodies.Shape;
 import bodies.SimpleBody;
 import bodies.SingletonDrawable;
@@ -159,7 +161,13 @@ public class Torso implements SingletonDrawable {
      */
     private final List<ImplementedTexture> backTextures = new ArrayList<>();
     private SimpleBody torsoBody;
-    private Shape back;
+    /**
+     * The textured shapes of the torso body; the back is the only one. This
+     * list is filled once the body has been uploaded.
+     */
+    private List<Shape> texturedShapes;
+    private GLStateCache stateCache;
+    private ModelViewStack modelView;
 
     @Override
     public void initialize(GL2 gl, BufferManager.Initialiser bmInitialiser) {
@@ -180,7 +188,9 @@ public class Torso implements SingletonDrawable {
                 .addPartialTorus(STACK_COUNT, RADIUS_ANTENNA_TOP, RADIUS_ANTENNA_BALL_MIDDLE, HEIGHT_ANTENNA_TOP, HEIGHT_ANTENNA_BALL_MIDDLE, false, false)
                 .addPartialTorus(STACK_COUNT, RADIUS_ANTENNA_BALL_MIDDLE, RADIUS_ANTENNA_BALL_TOP, HEIGHT_ANTENNA_BALL_MIDDLE, HEIGHT_ANTENNA_BALL_TOP, false, false);
         this.torsoBody = builder.build();
-        this.back = builder.getTexturedShapes().get(0);
+        this.texturedShapes = builder.getTexturedShapes();
+        this.stateCache = bmInitialiser.getStateCache();
+        this.modelView = bmInitialiser.getModelView();
     }
 
     /**
@@ -214,9 +224,11 @@ public class Torso implements SingletonDrawable {
             drawStickFigurePelvis(gl, glut, bodyHeight);
             drawStickFigureShoulders(gl, glut);
         } else {
-            back.setTexture(getCurrentTexture(backNumber));
+            texturedShapes.get(0).setTexture(getCurrentTexture(backNumber));
             torsoBody.draw(gl);
         }
+        //The eyes are drawn by GLUT, make sure the back texture doesn't end up on them.
+        stateCache.useTexture(gl, null);
         drawEyes(gl, glut);
     }
 
@@ -238,42 +250,42 @@ public class Torso implements SingletonDrawable {
     private void applyRunningTransformation(GL2 gl, Animation animation) {
         final double fractionInRadians = animation.getLinearInterpolation() * 2f * Math.PI;
         final double bobbingUpAndDownHeight = 0.05f * Math.abs(Math.sin(fractionInRadians));
-        gl.glTranslated(0d, 0d, bobbingUpAndDownHeight);
-        gl.glRotated(RUNNING_ANGLE, 1d, 0d, 0d);
+        modelView.translate(gl, 0d, 0d, bobbingUpAndDownHeight);
+        modelView.rotate(gl, RUNNING_ANGLE, 1d, 0d, 0d);
     }
 
     private void drawStickFigureBody(GL2 gl, GLUT glut, double bodyHeight) {
-        gl.glPushMatrix();
-        gl.glScaled(RobotBody.STICK_THICKNESS, RobotBody.STICK_THICKNESS, bodyHeight);
-        gl.glTranslated(0d, 0d, bodyHeight / 2f);
+        modelView.pushMatrix(gl);
+        modelView.scale(gl, RobotBody.STICK_THICKNESS, RobotBody.STICK_THICKNESS, bodyHeight);
+        modelView.translate(gl, 0d, 0d, bodyHeight / 2f);
         glut.glutSolidCube(1f);
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
     private void drawStickFigurePelvis(GL2 gl, GLUT glut, double bodyHeight) {
         final double pelvisWidth = LEG_OFFCENTER * 2f;
-        gl.glPushMatrix();
-        gl.glScaled(pelvisWidth, RobotBody.STICK_THICKNESS, RobotBody.STICK_THICKNESS);
+        modelView.pushMatrix(gl);
+        modelView.scale(gl, pelvisWidth, RobotBody.STICK_THICKNESS, RobotBody.STICK_THICKNESS);
         glut.glutSolidCube(1f);
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
     private void drawStickFigureShoulders(GL2 gl, GLUT glut) {
         final double shoulderWidth = SHOULDER_OFFCENTER * 2f;
-        gl.glPushMatrix();
-        gl.glTranslated(0d, 0d, SHOULDER_HEIGHT);
-        gl.glScaled(shoulderWidth, RobotBody.STICK_THICKNESS, RobotBody.STICK_THICKNESS);
+        modelView.pushMatrix(gl);
+        modelView.translate(gl, 0d, 0d, SHOULDER_HEIGHT);
+        modelView.scale(gl, shoulderWidth, RobotBody.STICK_THICKNESS, RobotBody.STICK_THICKNESS);
         glut.glutSolidCube(1f);
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
     private void drawEyes(GL2 gl, GLUT glut) {
-        gl.glPushMatrix();
-        gl.glTranslated(0.05d, 0.125d, 0.8d);
+        modelView.pushMatrix(gl);
+        modelView.translate(gl, 0.05d, 0.125d, 0.8d);
         glut.glutSolidSphere(0.025d, 50, 50);
-        gl.glTranslated(-0.1d, 0d, 0d);
+        modelView.translate(gl, -0.1d, 0d, 0d);
         glut.glutSolidSphere(0.025d, 50, 50);
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
     /**
@@ -284,8 +296,8 @@ public class Torso implements SingletonDrawable {
      * @param gl The instance of GL2 responsible for drawing the body.
      */
     public void setRightLegMountPoint(GL2 gl) {
-        gl.glTranslated(LEG_OFFCENTER, 0d, 0d);
-        gl.glRotated(180d, 1d, 0d, 0d);
+        modelView.translate(gl, LEG_OFFCENTER, 0d, 0d);
+        modelView.rotate(gl, 180d, 1d, 0d, 0d);
     }
 
     /**
@@ -296,8 +308,8 @@ public class Torso implements SingletonDrawable {
      * @param gl The instance of GL2 responsible for drawing the body.
      */
     public void setLeftLegMountPoint(GL2 gl) {
-        gl.glTranslated(-LEG_OFFCENTER, 0d, 0d);
-        gl.glRotated(180d, 1d, 0d, 0d);
+        modelView.translate(gl, -LEG_OFFCENTER, 0d, 0d);
+        modelView.rotate(gl, 180d, 1d, 0d, 0d);
     }
 
     /**
@@ -308,8 +320,8 @@ public class Torso implements SingletonDrawable {
      * @param gl The instance of GL2 responsible for drawing the body.
      */
     public void setRightArmMountPoint(GL2 gl) {
-        gl.glTranslated(SHOULDER_OFFCENTER, 0d, SHOULDER_HEIGHT);
-        gl.glRotated(90d, 0d, 1d, 0d);
+        modelView.translate(gl, SHOULDER_OFFCENTER, 0d, SHOULDER_HEIGHT);
+        modelView.rotate(gl, 90d, 0d, 1d, 0d);
     }
 
     /**
@@ -320,8 +332,8 @@ public class Torso implements SingletonDrawable {
      * @param gl The instance of GL2 responsible for drawing the body.
      */
     public void setLeftArmMountPoint(GL2 gl) {
-        gl.glTranslated(-SHOULDER_OFFCENTER, 0d, SHOULDER_HEIGHT);
-        gl.glRotated(-90d, 0d, 1d, 0d);
+        modelView.translate(gl, -SHOULDER_OFFCENTER, 0d, SHOULDER_HEIGHT);
+        modelView.rotate(gl, -90d, 0d, 1d, 0d);
     }
 
 }
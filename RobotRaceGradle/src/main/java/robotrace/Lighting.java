@@ -26,6 +26,10 @@
  */
 package robotrace;
 
+import bodies.GLStateCache;
+import bodies.RenderQueue;
+import java.util.ArrayList;
+import java.util.List;
 import static javax.media.opengl.GL.GL_FRONT;
 import javax.media.opengl.GL2;
 import static javax.media.opengl.fixedfunc.GLLightingFunc.GL_AMBIENT;
@@ -45,9 +49,12 @@ import static utility.GsUtils.getInclination;
  * Right now this class just creates a single, infinitely far away light source.
  * (The sun)
  *
+ * It also keeps track of the material that is currently set, so that shapes
+ * queued in a {@link RenderQueue} can be drawn with the right material later.
+ *
  * @author Arjan Boschman
  */
-public class Lighting {
+public class Lighting implements RenderQueue.MaterialTracker {
 
     /**
      * Length 4 float-array representing an all black, fully transparent colour.
@@ -59,6 +66,30 @@ public class Lighting {
      * source, will make the light source infinitely far away.
      */
     private static final int POS_INFINITE = 0;
+    /**
+     * The number of OpenGL calls it takes to set a material and a colour,
+     * respectively.
+     */
+    private static final int MATERIAL_CALL_COUNT = 4;
+    private static final int COLOUR_CALL_COUNT = 3;
+    /**
+     * Material identifiers are handed out as follows: two per Material
+     * constant (plain and unicolorized), followed by one per distinct colour.
+     */
+    private static final int COLOUR_ID_OFFSET = 2 * Material.values().length;
+    /**
+     * All Material constants, indexed by ordinal.
+     */
+    private static final Material[] MATERIALS = Material.values();
+
+    private final GLStateCache stateCache;
+    /**
+     * All distinct colours that have been set so far. The position in this
+     * list determines the material identifier of the colour.
+     */
+    private final List<float[]> colours = new ArrayList<>();
+    private int currentMaterialId = -1;
+    private boolean currentMaterialTransparent = false;
 
     private final float[] lightPos = new float[4];
     /**
@@ -74,6 +105,14 @@ public class Lighting {
      */
     private final float[] ambientLight = {0.1f, 0.1f, 0.1f, 1f};
 
+    /**
+     * @param stateCache The GLStateCache used to skip material changes that
+     *                   would not change anything.
+     */
+    public Lighting(GLStateCache stateCache) {
+        this.stateCache = stateCache;
+    }
+
     /**
      * Called during openGL initialisation. This enables the necessary settings
      * and sets up the light source.
@@ -165,6 +204,12 @@ public class Lighting {
      * Note that using glColor* has been turned off and doesn't work.
      */
     public void setMaterial(GL2 gl, Material material, boolean uniColor) {
+        final int materialId = 2 * material.ordinal() + (uniColor ? 1 : 0);
+        currentMaterialId = materialId;
+        currentMaterialTransparent = material.diffuse[3] < 1f;
+        if (!stateCache.changeMaterial(materialId, MATERIAL_CALL_COUNT)) {
+            return;
+        }
         if (uniColor) {
             material = material.uniColorize();
         }
@@ -193,9 +238,53 @@ public class Lighting {
      * constant though.
      */
     public void setColor(GL2 gl, float red, float green, float blue, float alpha) {
-        gl.glMaterialfv(GL_FRONT, GL_AMBIENT_AND_DIFFUSE, new float[]{red, green, blue, alpha}, 0);
+        final int colourIndex = findColour(red, green, blue, alpha);
+        currentMaterialId = COLOUR_ID_OFFSET + colourIndex;
+        currentMaterialTransparent = alpha < 1f;
+        if (!stateCache.changeMaterial(COLOUR_ID_OFFSET + colourIndex, COLOUR_CALL_COUNT)) {
+            return;
+        }
+        gl.glMaterialfv(GL_FRONT, GL_AMBIENT_AND_DIFFUSE, colours.get(colourIndex), 0);
         gl.glMaterialfv(GL_FRONT, GL_SPECULAR, COLOUR_OFF, 0);
         gl.glMaterialf(GL_FRONT, GL_SHININESS, 0);
     }
 
+    @Override
+    public int getCurrentMaterialId() {
+        return currentMaterialId;
+    }
+
+    @Override
+    public boolean isCurrentMaterialTransparent() {
+        return currentMaterialTransparent;
+    }
+
+    @Override
+    public void applyMaterial(GL2 gl, int materialId) {
+        if (materialId < COLOUR_ID_OFFSET) {
+            setMaterial(gl, MATERIALS[materialId / 2], materialId % 2 == 1);
+        } else {
+            final float[] colour = colours.get(materialId - COLOUR_ID_OFFSET);
+            setColor(gl, colour[0], colour[1], colour[2], colour[3]);
+        }
+    }
+
+    /**
+     * Find the given colour among the colours set before, or register it if
+     * it is new. There are only a handful of distinct colours, so a linear
+     * search is fine.
+     *
+     * @return The position of the colour in {@link #colours}.
+     */
+    private int findColour(float red, float green, float blue, float alpha) {
+        for (int i = 0; i < colours.size(); i++) {
+            final float[] colour = colours.get(i);
+            if (colour[0] == red && colour[1] == green && colour[2] == blue && colour[3] == alpha) {
+                return i;
+            }
+        }
+        colours.add(new float[]{red, green, blue, alpha});
+        return colours.size() - 1;
+    }
+
 }
@@ -123,6 +123,14 @@ public enum Material {
         this.shininess = shininess;
     }
 
+    /**
+     * @return A copy of the diffuse RGBA reflectance of the material, for
+     *         drawing it without OpenGL lighting.
+     */
+    public float[] getDiffuse() {
+        return diffuse.clone();
+    }
+
     public Material uniColorize() {
         ambient = uniColorizeComponent(ambient);
         diffuse = uniColorizeComponent(diffuse);
@@ -28,7 +28,11 @@ package robotrace;
 
 import Camera.Camera;
 import bodies.BufferManager;
+import bodies.ModelViewStack;
+import bodies.VertexLayout;
 import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.media.opengl.GL;
 import static javax.media.opengl.GL.GL_COLOR_BUFFER_BIT;
 import static javax.media.opengl.GL.GL_DEPTH_BUFFER_BIT;
@@ -98,16 +102,22 @@ public class RobotRace extends Base {
         robotRace.run();
     }
 
+    /**
+     * The moment this instance was constructed, used to measure the time it
+     * takes to draw the first frame.
+     */
+    private final long constructionTime = System.nanoTime();
     private final BufferManager bodyManager = new BufferManager();
-    private final Camera camera = new Camera();
-    private final Terrain terrain = new Terrain();
-    private final RobotFactory robotFactory = new RobotFactory();
+    private final Camera camera = new Camera(bodyManager.getModelView());
+    private final Terrain terrain = new Terrain(Terrain.Mode.fromProperty());
+    private final RobotFactory robotFactory = new RobotFactory(bodyManager.getModelView());
     private final RaceTrackFactory raceTrackFactory = new RaceTrackFactory();
-    private final Lighting lighting = new Lighting();
+    private final Lighting lighting = new Lighting(bodyManager.getStateCache());
     private final Robot[] robots;
     private final RaceTrack[] raceTracks;
 
     private double tPrevious = 0d;
+    private boolean firstFrameDrawn = false;
 
     /**
      * Constructs this robot race by initializing robots, camera, track, and
@@ -150,8 +160,9 @@ public class RobotRace extends Base {
      */
     @Override
     public void initialize() {
-        final BufferManager.Initialiser bmInitialiser = bodyManager.makeInitialiser(gl);
+        final BufferManager.Initialiser bmInitialiser = bodyManager.makeInitialiser(gl, VertexLayout.COMPACT);
         lighting.initialize(gl, gs);
+        bodyManager.getRenderQueue().setMaterialTracker(lighting);
 
         // Enable blending.
         gl.glEnable(GL.GL_BLEND);
@@ -169,14 +180,17 @@ public class RobotRace extends Base {
         gl.glHint(GL_PERSPECTIVE_CORRECTION_HINT, GL_NICEST);
         gl.glBindTexture(GL_TEXTURE_2D, 0);
 
+        //Initialize terrain and factories. The terrain takes longest to build, so it is started first.
+        //Meshes are built in the background while textures are loaded here.
+        terrain.initialize(gl, bmInitialiser);
+
         raceTrackFactory.initialize(gl, bmInitialiser);
 
-        //Initialize factories and terrain.
         robotFactory.initialize(gl, bmInitialiser);
 
-        terrain.initialize(gl, bmInitialiser);
         camera.initialize(gs, Arrays.asList(robots));
 
+        //Wait for all meshes and upload them.
         bmInitialiser.finish();
     }
 
@@ -219,12 +233,17 @@ public class RobotRace extends Base {
         raceTrack.draw(gl, lighting);
 
         // Draw the terrain.
-        terrain.draw(gl, glut, camera.getCamPos(), lighting);
+        terrain.draw(gl, glut, camera.getCamPos(), camera.getFrustum(), lighting);
 
         //End the drawing and finish up.
         bodyManager.endDraw(gl);
         gl.glFlush();
         tPrevious = gs.tAnim;
+        if (!firstFrameDrawn) {
+            firstFrameDrawn = true;
+            Logger.getLogger(RobotRace.class.getName()).log(Level.INFO, "Time to first frame: {0} ms.",
+                    String.format("%.1f", (System.nanoTime() - constructionTime) / 1_000_000d));
+        }
     }
 
     /**
@@ -257,36 +276,37 @@ public class RobotRace extends Base {
         final float axisLength = 1f - coneHeight;
         //Sets the color relative to the axis being drawn. (x=red,y=green,z=blue)
         lighting.setColor(gl, x, y, z, 1f);
+        final ModelViewStack modelView = bodyManager.getModelView();
 
         //Store the current matrix.
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         //Translate the cone to the correct position, depending on the axis being drawn.
-        gl.glTranslatef(x * axisLength, y * axisLength, z * axisLength);
+        modelView.translate(gl, x * axisLength, y * axisLength, z * axisLength);
         /**
          * Rotate the cone so that it points along the axis. The cone is rotated
          * around the axis perpendicular to the one being drawn. The z-cone is
          * already rotated correctly, so it is not rotated.
          */
-        gl.glRotatef(z == 1f ? 0f : 90f, -y, x, 0f);
+        modelView.rotate(gl, z == 1f ? 0f : 90f, -y, x, 0f);
         //Draw the cone, make base five times wider than the axis beam.
         glut.glutSolidCone(axisThickness * 5f, coneHeight, DEFAULT_SLICES, DEFAULT_STACKS);
         //Restore the original matrix.
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
 
         //Store the current matrix.
-        gl.glPushMatrix();
+        modelView.pushMatrix(gl);
         //Translate the beam half its length into the direction of its axis.
-        gl.glTranslatef(axisLength * 0.5f * x,
+        modelView.translate(gl, axisLength * 0.5f * x,
                 axisLength * 0.5f * y,
                 axisLength * 0.5f * z);
         //Stretch the beam along its axis to make it fit the previously defined axisLength.
-        gl.glScalef(x == 0f ? 1f : axisLength / axisThickness,
+        modelView.scale(gl, x == 0f ? 1f : axisLength / axisThickness,
                 y == 0f ? 1f : axisLength / axisThickness,
                 z == 0f ? 1f : axisLength / axisThickness);
         //Draw the beam.
         glut.glutSolidCube(axisThickness);
         //Restore the original matrix.
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
 }
@@ -0,0 +1,227 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain;
+
+import Camera.Frustum;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.media.opengl.GL2;
+import robotrace.Vector;
+
+/**
+ * A terrain that is split up into square chunks, each with several levels of
+ * detail. The chunks are kept in a quadtree, so that whole groups of chunks
+ * outside of the view frustum are skipped at once. The level of each visible
+ * chunk follows from its distance to the camera.
+ *
+ * Where two chunks of a different level meet, their edges don't line up. The
+ * gaps are hidden by skirts: strips of triangles that hang down from the
+ * edges of each chunk, deeper than the largest error of any of its levels.
+ *
+ * @author Arjan Boschman
+ */
+public class ChunkedTerrain {
+
+    private static final Logger LOGGER = Logger.getLogger(ChunkedTerrain.class.getName());
+    /**
+     * The largest vertical error in meters allowed per meter distance from
+     * the camera. The error of a level is the worst case over a whole chunk,
+     * most of the chunk lies much closer to level 0. On the fractal terrain
+     * this keeps everything within about a hundred meters of the camera at
+     * full detail, while drawing 5 to 10 times fewer triangles overall.
+     */
+    private static final float MAX_ERROR_PER_METER = 0.015f;
+
+    private final int chunksX;
+    private final int chunksY;
+    private Node root = null;
+    private int chunkCount = 0;
+    private int lastFrameVisibleChunkCount = 0;
+    private int lastFrameVisibleTriangleCount = 0;
+    private int lastFrameFullDetailTriangleCount = 0;
+
+    /**
+     * @param chunksX The number of chunks along the x-axis.
+     * @param chunksY The number of chunks along the y-axis.
+     */
+    ChunkedTerrain(int chunksX, int chunksY) {
+        this.chunksX = chunksX;
+        this.chunksY = chunksY;
+    }
+
+    /**
+     * Set the chunks, once they are uploaded.
+     *
+     * @param chunks All chunks, in rows along the x-axis.
+     */
+    void setChunks(List<TerrainChunk> chunks) {
+        this.root = makeNode(chunks, 0, 0, chunksX, chunksY);
+        this.chunkCount = chunks.size();
+    }
+
+    /**
+     * Make a node of the quadtree for a range of chunks.
+     */
+    private Node makeNode(List<TerrainChunk> chunks, int firstX, int firstY, int endX, int endY) {
+        if (endX - firstX == 1 && endY - firstY == 1) {
+            return new Node(chunks.get(firstY * chunksX + firstX));
+        }
+        final int middleX = Math.max(firstX + 1, (firstX + endX) / 2);
+        final int middleY = Math.max(firstY + 1, (firstY + endY) / 2);
+        final Node node = new Node(null);
+        node.include(makeNode(chunks, firstX, firstY, middleX, middleY));
+        if (middleX < endX) {
+            node.include(makeNode(chunks, middleX, firstY, endX, middleY));
+        }
+        if (middleY < endY) {
+            node.include(makeNode(chunks, firstX, middleY, middleX, endY));
+        }
+        if (middleX < endX && middleY < endY) {
+            node.include(makeNode(chunks, middleX, middleY, endX, endY));
+        }
+        return node;
+    }
+
+    /**
+     * Draw the chunks that may be visible, each at the level that suits its
+     * distance to the camera, and count them.
+     *
+     * @param gl      The instance of GL2 responsible for drawing the body.
+     * @param frustum The view frustum, in the coordinates the terrain is drawn
+     *                in. If null, all chunks are drawn.
+     * @param camPos  The position of the camera, in the coordinates the
+     *                terrain is drawn in.
+     */
+    public void draw(GL2 gl, Frustum frustum, Vector camPos) {
+        lastFrameVisibleChunkCount = 0;
+        lastFrameVisibleTriangleCount = 0;
+        lastFrameFullDetailTriangleCount = 0;
+        if (root != null) {
+            draw(gl, root, frustum, camPos);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE,
+                    "{0} of {1} terrain chunks visible, {2} triangles ({3} at full detail).",
+                    new Object[]{lastFrameVisibleChunkCount, chunkCount,
+                        lastFrameVisibleTriangleCount, lastFrameFullDetailTriangleCount});
+        }
+    }
+
+    private void draw(GL2 gl, Node node, Frustum frustum, Vector camPos) {
+        if (frustum != null && !frustum.intersectsBox(node.minX, node.minY, node.minZ, node.maxX, node.maxY, node.maxZ)) {
+            return;
+        }
+        if (node.chunk == null) {
+            for (Node child : node.children) {
+                if (child != null) {
+                    draw(gl, child, frustum, camPos);
+                }
+            }
+            return;
+        }
+        final int level = node.chunk.selectLevel(camPos, MAX_ERROR_PER_METER);
+        node.chunk.draw(gl, level);
+        lastFrameVisibleChunkCount++;
+        lastFrameVisibleTriangleCount += node.chunk.getTriangleCount(level);
+        lastFrameFullDetailTriangleCount += node.chunk.getTriangleCount(0);
+    }
+
+    /**
+     * @return The total number of chunks.
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return The number of chunks drawn during the last call to
+     *         {@link #draw}.
+     */
+    public int getLastFrameVisibleChunkCount() {
+        return lastFrameVisibleChunkCount;
+    }
+
+    /**
+     * @return The number of triangles drawn during the last call to
+     *         {@link #draw}.
+     */
+    public int getLastFrameVisibleTriangleCount() {
+        return lastFrameVisibleTriangleCount;
+    }
+
+    /**
+     * @return The number of triangles the chunks drawn during the last call
+     *         to {@link #draw} would have had at full detail.
+     */
+    public int getLastFrameFullDetailTriangleCount() {
+        return lastFrameFullDetailTriangleCount;
+    }
+
+    /**
+     * A node of the quadtree. Leaves hold a chunk, other nodes up to four
+     * children. The bounding box of a node holds those of all its chunks.
+     */
+    private static class Node {
+
+        private final TerrainChunk chunk;
+        private final Node[] children = new Node[4];
+        private int childCount = 0;
+        private float minX = Float.POSITIVE_INFINITY;
+        private float minY = Float.POSITIVE_INFINITY;
+        private float minZ = Float.POSITIVE_INFINITY;
+        private float maxX = Float.NEGATIVE_INFINITY;
+        private float maxY = Float.NEGATIVE_INFINITY;
+        private float maxZ = Float.NEGATIVE_INFINITY;
+
+        private Node(TerrainChunk chunk) {
+            this.chunk = chunk;
+            if (chunk != null) {
+                minX = chunk.getMinX();
+                minY = chunk.getMinY();
+                minZ = chunk.getMinZ();
+                maxX = chunk.getMaxX();
+                maxY = chunk.getMaxY();
+                maxZ = chunk.getMaxZ();
+            }
+        }
+
+        /**
+         * Add a child, and grow the bounding box to hold it.
+         */
+        private void include(Node child) {
+            children[childCount++] = child;
+            minX = Math.min(minX, child.minX);
+            minY = Math.min(minY, child.minY);
+            minZ = Math.min(minZ, child.minZ);
+            maxX = Math.max(maxX, child.maxX);
+            maxY = Math.max(maxY, child.maxY);
+            maxZ = Math.max(maxZ, child.maxZ);
+        }
+    }
+
+}
@@ -26,7 +26,14 @@
  */
 package terrain;
 
+import bodies.MeshCache;
+import com.jogamp.common.nio.Buffers;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
 import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import utility.RandomUtils;
 
 /**
  * Uses the diamond-square algorithm to generate realistic looking terrain.
@@ -42,16 +49,77 @@ public class FractalTerrainGenerator implements HeightMap {
      */
     private static final long RAND_SEED = 12_345_678_422L;
 
+    private static final int DEFAULT_DETAIL = 10;
+    private static final float DEFAULT_ROUGHNESS = 0.3f;
+    /**
+     * Passes with fewer points than this are not worth spreading over
+     * several threads.
+     */
+    private static final int MIN_PARALLEL_POINTS = 4096;
+
+    /**
+     * How the passes of the algorithm are run, and where their random
+     * offsets come from.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public enum Mode {
+
+        /**
+         * All passes run on the calling thread, taking their offsets from a
+         * single Random in a fixed order. This yields the terrain the game
+         * has always had.
+         */
+        SEQUENTIAL,
+        /**
+         * Each pass is spread over all cores. The offset of every point is
+         * computed from the seed and the position of the point, so the
+         * terrain is the same whatever the number of threads. It is not the
+         * same terrain as the sequential one.
+         */
+        PARALLEL
+    }
+
     public static FractalTerrainGenerator create() {
-        final FractalTerrainGenerator instance = new FractalTerrainGenerator(10, 0.3f);
+        final FractalTerrainGenerator instance = new FractalTerrainGenerator(DEFAULT_DETAIL, DEFAULT_ROUGHNESS);
         instance.initialise();
         return instance;
     }
+
+    /**
+     * Like {@link #create()}, but the heights are taken from the given cache if
+     * they were calculated before, and stored in it otherwise.
+     *
+     * @param meshCache The cache.
+     * @return A new, initialised FractalTerrainGenerator.
+     */
+    public static FractalTerrainGenerator create(MeshCache meshCache) {
+        final FractalTerrainGenerator instance = new FractalTerrainGenerator(DEFAULT_DETAIL, DEFAULT_ROUGHNESS);
+        final MeshCache.Entry heights = meshCache.computeIfAbsent(instance.getCacheKey(), () -> {
+            instance.initialise();
+            return new MeshCache.Entry(instance.getHeights(), new ArrayList<>(), new int[0]);
+        });
+        instance.setHeights(heights.getData());
+        return instance;
+    }
+
     private final Random rand = new Random(RAND_SEED);
     private final int globalSize;
     private final int max;
-    private final float[][] map;
+    /**
+     * The distance after which the square step wraps around the map. The
+     * sequential mode wraps after globalSize, which makes the square steps on
+     * the edges read points of the wrong pass. That is kept so that its
+     * terrain doesn't change. The parallel mode must only read points of
+     * earlier steps, so it wraps after max.
+     */
+    private final int wrapSize;
+    /**
+     * The heights, one row of constant x after another.
+     */
+    private final float[] map;
     private final float roughness;
+    private final int detail;
+    private final Mode mode;
 
     /**
      * Make a new instance of the FractalTerrainGenerator. Note that before
@@ -67,10 +135,28 @@ public class FractalTerrainGenerator implements HeightMap {
      * creates the generator using some default values and also initialises it.
      */
     public FractalTerrainGenerator(int detail, float roughness) {
+        this(detail, roughness, Mode.SEQUENTIAL);
+    }
+
+    /**
+     * Like {@link #FractalTerrainGenerator(int, float)}, but with a choice of
+     * how the terrain is generated.
+     *
+     * @param detail    A measure of the size of the cube of terrain that will
+     *                  be generated. Size is obtained as follows: size = (2 ^
+     *                  detail) + 1.
+     * @param roughness A value between 0 and 1, this is a measure of the
+     *                  smoothness of the terrain.
+     * @param mode      How the terrain is generated.
+     */
+    public FractalTerrainGenerator(int detail, float roughness, Mode mode) {
+        this.detail = detail;
         this.globalSize = (int) Math.pow(2d, detail) + 1;
         this.max = globalSize - 1;
-        this.map = new float[globalSize][globalSize];
+        this.map = new float[globalSize * globalSize];
         this.roughness = roughness;
+        this.mode = mode;
+        this.wrapSize = (mode == Mode.PARALLEL) ? max : globalSize;
     }
 
     /**
@@ -79,25 +165,28 @@ public class FractalTerrainGenerator implements HeightMap {
      */
     public void initialise() {
         final float initialValue = -50f;
-        map[0][0] = initialValue;
-        map[max][0] = initialValue;
-        map[0][max] = initialValue;
-        map[max][max] = initialValue;
-        divide(max);
+        map[index(0, 0)] = initialValue;
+        map[index(max, 0)] = initialValue;
+        map[index(0, max)] = initialValue;
+        map[index(max, max)] = initialValue;
+        for (int size = max; size > 1; size /= 2) {
+            if (mode == Mode.PARALLEL) {
+                dividePassParallel(size);
+            } else {
+                dividePass(size);
+            }
+        }
     }
 
     /**
-     * Recursive method that divides the terrain into ever smaller surfaces and
-     * performs the square-diamond steps on them.
+     * Perform the diamond and square steps for one size, taking the offsets
+     * from the Random.
      *
      * @param size The size to apply.
      */
-    private void divide(int size) {
+    private void dividePass(int size) {
         final int half = size / 2;
         final float scale = roughness * size;
-        if (half < 1) {
-            return;
-        }
         for (int y = half; y < max; y += size) {
             for (int x = half; x < max; x += size) {
                 performDiamondStep(x, y, half, rand.nextFloat() * scale * 2f - scale);
@@ -108,12 +197,60 @@ public class FractalTerrainGenerator implements HeightMap {
                 performSquareStep(x, y, half, rand.nextFloat() * scale * 2f - scale);
             }
         }
-        divide(half);
+    }
+
+    /**
+     * Like {@link #dividePass(int)}, but with the rows of each step spread
+     * over all cores. Within a step, no point depends on another point of
+     * the same step, so the rows can be done in any order.
+     *
+     * @param size The size to apply.
+     */
+    private void dividePassParallel(int size) {
+        final int half = size / 2;
+        final float scale = roughness * size;
+        final int cellsPerRow = max / size;
+        stepRows(cellsPerRow, cellsPerRow, (row) -> {
+            final int y = half + row * size;
+            for (int x = half; x < max; x += size) {
+                performDiamondStep(x, y, half, offsetAt(x, y) * scale * 2f - scale);
+            }
+        });
+        stepRows(2 * cellsPerRow + 1, cellsPerRow + 1, (row) -> {
+            final int y = row * half;
+            for (int x = (y + half) % size; x <= max; x += size) {
+                performSquareStep(x, y, half, offsetAt(x, y) * scale * 2f - scale);
+            }
+        });
+    }
+
+    /**
+     * Run a step over the given number of rows, in parallel if there are
+     * enough points.
+     */
+    private static void stepRows(int rowCount, int pointsPerRow, IntConsumer row) {
+        final IntStream rows = IntStream.range(0, rowCount);
+        if ((long) rowCount * pointsPerRow >= MIN_PARALLEL_POINTS) {
+            rows.parallel().forEach(row);
+        } else {
+            rows.forEach(row);
+        }
+    }
+
+    /**
+     * A counter based random number for a point. Every point is given an
+     * offset exactly once, so the position alone is a unique counter.
+     *
+     * @return A number in [0, 1).
+     */
+    private static float offsetAt(int x, int y) {
+        return RandomUtils.floatAt(RAND_SEED, x, y);
     }
 
     /**
      * The square step. For each diamond in the array, set the midpoint of that
      * diamond to be the average of the four corner points plus a random value.
+     * Diamonds on the edge of the map wrap around to the other side.
      *
      * @param x      Position on x-axis in the map array.
      * @param y      Position on y-axis in the map array.
@@ -123,17 +260,17 @@ public class FractalTerrainGenerator implements HeightMap {
      */
     private void performSquareStep(int x, int y, int radius, float offset) {
         final float average
-                = (map[x][Math.floorMod(y - radius, globalSize)] //Top
-                + map[Math.floorMod(x - radius, globalSize)][y] //Left
-                + map[x][Math.floorMod(y + radius, globalSize)] //Bottom
-                + map[Math.floorMod(x + radius, globalSize)][y]) / 4f;  //Right
-        map[x][y] = average + offset;
+                = (map[index(x, wrap(y - radius))] //Top
+                + map[index(wrap(x - radius), y)] //Left
+                + map[index(x, wrap(y + radius))] //Bottom
+                + map[index(wrap(x + radius), y)]) / 4f;  //Right
+        map[index(x, y)] = average + offset;
     }
 
     /**
      * The diamond step. For a certain square in the array, set the midpoint of
      * that square to be the average of the four corner points plus a random
-     * value.
+     * value. The corners of a square never lie outside of the map.
      *
      * @param x      Position on x-axis in the map array.
      * @param y      Position on y-axis in the map array.
@@ -143,18 +280,173 @@ public class FractalTerrainGenerator implements HeightMap {
      */
     private void performDiamondStep(int x, int y, int radius, float offset) {
         final float average
-                = (map[Math.floorMod(x - radius, globalSize)][Math.floorMod(y - radius, globalSize)] //Top-Left
-                + map[Math.floorMod(x - radius, globalSize)][Math.floorMod(y + radius, globalSize)] //Bottom-Left
-                + map[Math.floorMod(x + radius, globalSize)][Math.floorMod(y - radius, globalSize)] //Top-Right
-                + map[Math.floorMod(x + radius, globalSize)][Math.floorMod(y + radius, globalSize)]) / 4f; //Bottom-Right
-        map[x][y] = average + offset;
+                = (map[index(x - radius, y - radius)] //Top-Left
+                + map[index(x - radius, y + radius)] //Bottom-Left
+                + map[index(x + radius, y - radius)] //Top-Right
+                + map[index(x + radius, y + radius)]) / 4f; //Bottom-Right
+        map[index(x, y)] = average + offset;
+    }
+
+    private int index(int x, int y) {
+        return x * globalSize + y;
+    }
+
+    /**
+     * Wrap a position that lies less than half a map outside of the map back
+     * into it. Cheaper than {@link Math#floorMod(int, int)}.
+     */
+    private int wrap(int position) {
+        if (position < 0) {
+            return position + wrapSize;
+        }
+        return position >= globalSize ? position - wrapSize : position;
+    }
+
+    /**
+     * @return All heights, one row of constant x after another.
+     */
+    private FloatBuffer getHeights() {
+        final FloatBuffer heights = Buffers.newDirectFloatBuffer(map.length);
+        heights.put(map);
+        heights.rewind();
+        return heights;
+    }
+
+    /**
+     * @param heights All heights, as returned by {@link #getHeights()}.
+     */
+    private void setHeights(FloatBuffer heights) {
+        final FloatBuffer source = heights.duplicate();
+        source.clear();
+        source.get(map);
+    }
+
+    @Override
+    public String getCacheKey() {
+        final String name = (mode == Mode.PARALLEL) ? "fractal-parallel," : "fractal,";
+        return name + detail + "," + roughness + "," + RAND_SEED;
     }
 
     @Override
     public float heightAt(double x, double y) {
-        final int gridX = (int) x + globalSize / 2;
-        final int gridY = (int) y + globalSize / 2;
-        return map[Math.floorMod(gridX, globalSize)][Math.floorMod(gridY, globalSize)];
+        return sample(x, y, Sampling.NEAREST);
+    }
+
+    @Override
+    public float heightAt(double x, double y, Sampling sampling) {
+        return sample(x, y, sampling);
+    }
+
+    @Override
+    public void fillHeights(float[] heights, int offset, double firstX, double firstY, double spacing,
+            int countX, int countY, Sampling sampling) {
+        for (int j = 0; j < countY; j++) {
+            final double y = firstY + j * spacing;
+            final int rowOffset = offset + j * countX;
+            if (sampling == Sampling.NEAREST) {
+                //The row is the same for every height; only the column changes.
+                final int row = wrapGrid((int) y + globalSize / 2);
+                for (int i = 0; i < countX; i++) {
+                    heights[rowOffset + i] = map[wrapGrid((int) (firstX + i * spacing) + globalSize / 2) * globalSize + row];
+                }
+            } else {
+                for (int i = 0; i < countX; i++) {
+                    heights[rowOffset + i] = sample(firstX + i * spacing, y, sampling);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sample the map without going through the HeightMap interface, so that
+     * {@link #fillHeights} needs no virtual call per height.
+     */
+    private float sample(double x, double y, Sampling sampling) {
+        switch (sampling) {
+            case BILINEAR:
+                return sampleBilinear(x + globalSize / 2, y + globalSize / 2);
+            case BICUBIC:
+                return sampleBicubic(x + globalSize / 2, y + globalSize / 2);
+            default:
+                //Truncates like heightAt does, which is not the same as rounding down.
+                return map[index(wrapGrid((int) x + globalSize / 2), wrapGrid((int) y + globalSize / 2))];
+        }
+    }
+
+    /**
+     * @param gridX Position on the x-axis, in grid points.
+     * @param gridY Position on the y-axis, in grid points.
+     */
+    private float sampleBilinear(double gridX, double gridY) {
+        final int x0 = (int) Math.floor(gridX);
+        final int y0 = (int) Math.floor(gridY);
+        final float tx = (float) (gridX - x0);
+        final float ty = (float) (gridY - y0);
+        final int column0 = wrapGrid(x0) * globalSize;
+        final int column1 = wrapGrid(x0 + 1) * globalSize;
+        final int row0 = wrapGrid(y0);
+        final int row1 = wrapGrid(y0 + 1);
+        final float height0 = map[column0 + row0] + (map[column1 + row0] - map[column0 + row0]) * tx;
+        final float height1 = map[column0 + row1] + (map[column1 + row1] - map[column0 + row1]) * tx;
+        return height0 + (height1 - height0) * ty;
+    }
+
+    /**
+     * @param gridX Position on the x-axis, in grid points.
+     * @param gridY Position on the y-axis, in grid points.
+     */
+    private float sampleBicubic(double gridX, double gridY) {
+        final int x1 = (int) Math.floor(gridX);
+        final int y1 = (int) Math.floor(gridY);
+        final float tx = (float) (gridX - x1);
+        final float ty = (float) (gridY - y1);
+        final int row0 = wrapGrid(y1 - 1);
+        final int row1 = wrapGrid(y1);
+        final int row2 = wrapGrid(y1 + 1);
+        final int row3 = wrapGrid(y1 + 2);
+        //Interpolate each of the four columns along y, then the results along x.
+        float height = 0f;
+        for (int i = 0; i < 4; i++) {
+            final int column = wrapGrid(x1 - 1 + i) * globalSize;
+            final float columnHeight = catmullRom(map[column + row0], map[column + row1], map[column + row2], map[column + row3], ty);
+            height += columnHeight * catmullRomWeight(i, tx);
+        }
+        return height;
+    }
+
+    /**
+     * Catmull-Rom interpolation between height1 and height2.
+     *
+     * @param t How far between height1 and height2, from 0 to 1.
+     */
+    private static float catmullRom(float height0, float height1, float height2, float height3, float t) {
+        return height0 * catmullRomWeight(0, t) + height1 * catmullRomWeight(1, t)
+                + height2 * catmullRomWeight(2, t) + height3 * catmullRomWeight(3, t);
+    }
+
+    /**
+     * @param i Which of the four points, from 0 to 3.
+     * @param t How far between the middle two points, from 0 to 1.
+     * @return The weight of point i in a Catmull-Rom interpolation.
+     */
+    private static float catmullRomWeight(int i, float t) {
+        switch (i) {
+            case 0:
+                return ((-t + 2f) * t - 1f) * t * 0.5f;
+            case 1:
+                return ((3f * t - 5f) * t * t + 2f) * 0.5f;
+            case 2:
+                return ((-3f * t + 4f) * t + 1f) * t * 0.5f;
+            default:
+                return (t - 1f) * t * t * 0.5f;
+        }
+    }
+
+    /**
+     * Wrap a position in grid points into the map, like heightAt does.
+     */
+    private int wrapGrid(int position) {
+        return (position >= 0 && position < globalSize) ? position : Math.floorMod(position, globalSize);
     }
 
 }
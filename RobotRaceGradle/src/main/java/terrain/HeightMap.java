@@ -29,10 +29,41 @@ package terrain;
 /**
  * Describes the height map of a certain terrain.
  *
+ * Height maps that are stored as a grid can be sampled in several ways, see
+ * {@link Sampling}. Many heights at once are best asked for through
+ * {@link #fillHeights}, which such height maps can implement without a method
+ * call per sample.
+ *
  * @author Arjan Boschman
  */
 public interface HeightMap {
 
+    /**
+     * The ways in which the heights between the grid points of a height map
+     * can be found. Height maps that aren't stored as a grid give the same
+     * height for each.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    enum Sampling {
+
+        /**
+         * The height of a single grid point near the position, as given by
+         * {@link #heightAt(double, double)}. Makes steps between the grid
+         * points.
+         */
+        NEAREST,
+        /**
+         * Linear interpolation between the four surrounding grid points.
+         * Continuous, but with kinks at the grid lines.
+         */
+        BILINEAR,
+        /**
+         * Catmull-Rom interpolation between the sixteen surrounding grid
+         * points. Passes through the grid points, and has no kinks.
+         */
+        BICUBIC
+    }
+
     /**
      * Computes the elevation of the terrain at (x, y).
      *
@@ -41,4 +72,51 @@ public interface HeightMap {
      * @return The z-coordinate of the terrain at (x, y) in meters.
      */
     float heightAt(double x, double y);
+
+    /**
+     * Computes the elevation of the terrain at (x, y).
+     *
+     * @param x        The x-coordinate in meters.
+     * @param y        The y-coordinate in meters.
+     * @param sampling How to find heights between the grid points.
+     * @return The z-coordinate of the terrain at (x, y) in meters.
+     */
+    default float heightAt(double x, double y, Sampling sampling) {
+        return heightAt(x, y);
+    }
+
+    /**
+     * Computes the elevation of the terrain at a grid of positions, and
+     * stores them in the given array. The positions are (firstX + i * spacing,
+     * firstY + j * spacing) for i from zero to countX and j from zero to
+     * countY. For a single row, countY is one.
+     *
+     * @param heights  The array to store the heights in, one row along the
+     *                 x-axis after another.
+     * @param offset   The index in the array of the first height.
+     * @param firstX   The x-coordinate in meters of the first position.
+     * @param firstY   The y-coordinate in meters of the first position.
+     * @param spacing  The distance in meters between two positions.
+     * @param countX   The number of positions along the x-axis.
+     * @param countY   The number of positions along the y-axis.
+     * @param sampling How to find heights between the grid points.
+     */
+    default void fillHeights(float[] heights, int offset, double firstX, double firstY, double spacing,
+            int countX, int countY, Sampling sampling) {
+        for (int j = 0; j < countY; j++) {
+            for (int i = 0; i < countX; i++) {
+                heights[offset + j * countX + i] = heightAt(firstX + i * spacing, firstY + j * spacing, sampling);
+            }
+        }
+    }
+
+    /**
+     * @return A description of everything this height map depends on, so that
+     *         meshes made from it can be kept in a
+     *         {@link bodies.MeshCache}. Null if the height map can't be
+     *         described, in which case meshes made from it are not cached.
+     */
+    default String getCacheKey() {
+        return null;
+    }
 }
@@ -26,19 +26,28 @@
  */
 package terrain;
 
+import Camera.Frustum;
 import Texture.ImplementedTexture;
 import bodies.Body;
 import bodies.BufferManager;
+import bodies.GLStateCache;
+import bodies.MeshCache;
+import bodies.ModelViewStack;
 import com.jogamp.opengl.util.gl2.GLUT;
 import java.util.HashSet;
 import java.util.Set;
-import javafx.scene.shape.Rectangle;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import static javax.media.opengl.GL.GL_CULL_FACE;
 import javax.media.opengl.GL2;
 import robotrace.Lighting;
 import robotrace.Material;
 import robotrace.Vector;
 import terrain.trees.Foliage;
+import terrain.trees.Forest;
+import terrain.trees.ImpostorAtlas;
+import terrain.trees.ImpostorRenderer;
 import terrain.trees.Tree;
 import terrain.trees.TreeSupplier;
 
@@ -54,32 +63,144 @@ public class Terrain {
      */
     private static final Vector TERRAIN_LEVEL = new Vector(0d, 0d, -145d);
     /**
-     * The translation of the water relative to the world origin.
+     * The height of the water in the coordinates of the terrain.
      */
     private static final float WATER_LEVEL = 0f;
     private static final String TERRAIN_TEXTURE_FILENAME = "terrain.png";
+    /**
+     * The largest vertical error in meters the simplification of the terrain
+     * may make at full detail.
+     */
+    private static final float MAX_HEIGHT_ERROR = 0.05f;
+    /**
+     * The size of a block of the water body. In streaming mode, the water
+     * follows the camera in steps of this size.
+     */
+    private static final float WATER_BLOCK_SIZE = 100f;
+    /**
+     * The system property that selects the {@link Mode} of the terrain of the
+     * game, by the name of the mode. The terrain is fixed if it is not set.
+     */
+    public static final String MODE_PROPERTY = "robotrace.terrain.mode";
+
+    /**
+     * The ways in which the terrain can be made. The game uses the mode set
+     * by {@value #MODE_PROPERTY}, see {@link Mode#fromProperty()}.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public enum Mode {
+
+        /**
+         * A square kilometer of terrain, made once during the initialisation
+         * phase.
+         */
+        FIXED,
+        /**
+         * Terrain without edges, made in tiles around the camera while
+         * drawing. Experimental, and not the same terrain as the fixed one.
+         */
+        STREAMING;
 
-    private final Set<Tree> trees = new HashSet<>();
-    private Body terrainBody;
+        /**
+         * @return The mode named by the system property
+         *         {@value #MODE_PROPERTY}, ignoring case. FIXED if it is not
+         *         set or names no mode.
+         */
+        public static Mode fromProperty() {
+            final String name = System.getProperty(MODE_PROPERTY);
+            if (name == null) {
+                return FIXED;
+            }
+            for (Mode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name.trim())) {
+                    return mode;
+                }
+            }
+            Logger.getLogger(Terrain.class.getName()).log(Level.WARNING,
+                    "Unknown terrain mode {0}, using {1}.", new Object[]{name, FIXED});
+            return FIXED;
+        }
+    }
+
+    private final Mode mode;
+    private Forest forest;
+    private ChunkedTerrain terrainChunks;
+    private TerrainTileStreamer terrainTiles;
+    private ImplementedTexture terrainTexture;
     private Body waterBody;
+    private GLStateCache stateCache;
+    private ModelViewStack modelView;
+
+    public Terrain() {
+        this(Mode.FIXED);
+    }
+
+    /**
+     * @param mode How the terrain is made.
+     */
+    public Terrain(Mode mode) {
+        this.mode = mode;
+    }
 
+    /**
+     * Prepare the terrain. The height map, the trees and the meshes are made
+     * in the background; they are ready once the bmInitialiser is finished.
+     *
+     * @param gl            The instance of GL2 used to load the textures.
+     * @param bmInitialiser The BufferManager.Initialiser that takes the
+     *                      meshes.
+     */
     public void initialize(GL2 gl, BufferManager.Initialiser bmInitialiser) {
+        this.stateCache = bmInitialiser.getStateCache();
+        this.modelView = bmInitialiser.getModelView();
         final Foliage foliage = new Foliage();
         foliage.initialize(gl, bmInitialiser);
-        final FractalTerrainGenerator heightMap = FractalTerrainGenerator.create();
-        final TreeSupplier treeSupplierClose = new TreeSupplier(new Rectangle(-150d, -150d, 300d, 300d), heightMap, foliage);
+        final ImpostorRenderer impostorRenderer = new ImpostorRenderer(bmInitialiser);
+        this.forest = new Forest(foliage, bmInitialiser.makeInstanceRenderer(), impostorRenderer);
+        this.terrainTexture = new ImplementedTexture(gl, TERRAIN_TEXTURE_FILENAME, true, false);
+        final CompletableFuture<Set<Tree>> trees;
+        if (mode == Mode.STREAMING) {
+            final TileableFractalTerrain heightMap = TileableFractalTerrain.create();
+            trees = CompletableFuture.supplyAsync(() -> plantTrees(heightMap, foliage), bmInitialiser.getBuildExecutor());
+            this.terrainTiles = new TerrainTileStreamer(bmInitialiser, heightMap);
+        } else {
+            final MeshCache meshCache = bmInitialiser.getMeshCache();
+            final CompletableFuture<FractalTerrainGenerator> heightMap = CompletableFuture.supplyAsync(
+                    () -> FractalTerrainGenerator.create(meshCache), bmInitialiser.getBuildExecutor());
+            trees = heightMap.thenApplyAsync((map) -> plantTrees(map, foliage), bmInitialiser.getBuildExecutor());
+            //The water is drawn in the coordinates of the terrain, and the simplified surface may sink by the error.
+            this.terrainChunks = new TerrainFactory(1000f, 1000f, 1f)
+                    .setMaxHeightError(MAX_HEIGHT_ERROR)
+                    .setSubmergedHeight(WATER_LEVEL - MAX_HEIGHT_ERROR)
+                    .makeChunkedTerrain(bmInitialiser, heightMap, terrainTexture);
+        }
+        bmInitialiser.addTask(trees, forest::addTrees);
+        //The pictures of the distant trees are drawn once the trees are known.
+        bmInitialiser.addTask(trees.thenApplyAsync(ImpostorAtlas::forTrees, bmInitialiser.getBuildExecutor()),
+                (atlas) -> impostorRenderer.setAtlas(gl, atlas));
+        this.waterBody = new TerrainFactory(1000f, 1000f, WATER_BLOCK_SIZE)
+                .makeTerrain(bmInitialiser, (x, y) -> WATER_LEVEL, null);
+    }
+
+    /**
+     * Place trees on the given height map, some close to the track and some
+     * further away.
+     *
+     * @param heightMap The height map of the terrain.
+     * @param foliage   The Foliage the trees are drawn with.
+     * @return The trees.
+     */
+    private static Set<Tree> plantTrees(HeightMap heightMap, Foliage foliage) {
+        final Set<Tree> planted = new HashSet<>();
+        final TreeSupplier treeSupplierClose = new TreeSupplier(-150d, -150d, 300d, 300d, heightMap, foliage);
         treeSupplierClose.addForbiddenArea(-25d, -25d, 50d, 50d);
-        final TreeSupplier treeSupplierFar = new TreeSupplier(new Rectangle(-500d, -500d, 1000d, 1000d), heightMap, foliage);
+        final TreeSupplier treeSupplierFar = new TreeSupplier(-500d, -500d, 1000d, 1000d, heightMap, foliage);
         treeSupplierFar.addForbiddenArea(-50d, -50d, 100d, 100d);
         for (int i = 0; i < 15; i++) {
-            trees.add(treeSupplierClose.get());
-            trees.add(treeSupplierFar.get());
+            planted.add(treeSupplierClose.get());
+            planted.add(treeSupplierFar.get());
         }
-        final ImplementedTexture terrainTexture = new ImplementedTexture(gl, TERRAIN_TEXTURE_FILENAME, true, false);
-        this.terrainBody = new TerrainFactory(1000f, 1000f, 1f)
-                .makeTerrain(bmInitialiser, heightMap, terrainTexture);
-        this.waterBody = new TerrainFactory(1000f, 1000f, 100f)
-                .makeTerrain(bmInitialiser, (x, y) -> WATER_LEVEL, null);
+        return planted;
     }
 
     /**
@@ -88,25 +209,49 @@ public class Terrain {
      * @param gl       The instance of GL2 responsible for drawing the body.
      * @param glut     An instance of GLUT that can be optionally used to assist
      *                 in drawing.
-     * @param camPos   The position of the camera in world coordinates.
+     * @param camPos   The position of the camera in world coordinates. The
+     *                 terrain is drawn in less detail further away from it.
+     * @param frustum  The view frustum of the camera in world coordinates.
+     *                 Terrain chunks outside of it are not drawn.
      * @param lighting The Lighting instance responsible for calculating the
      *                 lighting in this scene. Can be used to set the colours of
      *                 bodies before drawing them.
      */
-    public void draw(GL2 gl, GLUT glut, Vector camPos, Lighting lighting) {
-        gl.glPushMatrix();
+    public void draw(GL2 gl, GLUT glut, Vector camPos, Frustum frustum, Lighting lighting) {
+        modelView.pushMatrix(gl);
         {
-            gl.glTranslated(TERRAIN_LEVEL.x(), TERRAIN_LEVEL.y(), TERRAIN_LEVEL.z());
-            gl.glEnable(GL_CULL_FACE);
+            modelView.translate(gl, TERRAIN_LEVEL.x(), TERRAIN_LEVEL.y(), TERRAIN_LEVEL.z());
+            final Vector camPosRelativeToTerrain = camPos.subtract(TERRAIN_LEVEL);
+            stateCache.enable(gl, GL_CULL_FACE);
             lighting.setMaterial(gl, Material.DIRT, true);
-            terrainBody.draw(gl);
+            if (mode == Mode.STREAMING) {
+                //The tiles are drawn right away, with the texture the chunks would have been queued with.
+                stateCache.useTexture(gl, terrainTexture);
+                terrainTiles.draw(gl, frustum.translatedTo(TERRAIN_LEVEL), camPosRelativeToTerrain);
+                drawWater(gl, camPosRelativeToTerrain, lighting);
+            } else {
+                terrainChunks.draw(gl, frustum.translatedTo(TERRAIN_LEVEL), camPosRelativeToTerrain);
+                lighting.setMaterial(gl, Material.WATER);
+                waterBody.draw(gl);
+            }
+            stateCache.disable(gl, GL_CULL_FACE);
+            forest.draw(gl, camPosRelativeToTerrain, lighting);
+        }
+        modelView.popMatrix(gl);
+    }
+
+    /**
+     * Draw the water below the camera, moved along with it in whole blocks.
+     */
+    private void drawWater(GL2 gl, Vector camPos, Lighting lighting) {
+        modelView.pushMatrix(gl);
+        {
+            modelView.translate(gl, Math.floor(camPos.x() / WATER_BLOCK_SIZE) * WATER_BLOCK_SIZE,
+                    Math.floor(camPos.y() / WATER_BLOCK_SIZE) * WATER_BLOCK_SIZE, 0d);
             lighting.setMaterial(gl, Material.WATER);
             waterBody.draw(gl);
-            gl.glDisable(GL_CULL_FACE);
-            final Vector camPosRelativeToTerrain = camPos.subtract(TERRAIN_LEVEL);
-            trees.stream().forEach((tree) -> tree.draw(gl, camPosRelativeToTerrain, lighting));
         }
-        gl.glPopMatrix();
+        modelView.popMatrix(gl);
     }
 
 }
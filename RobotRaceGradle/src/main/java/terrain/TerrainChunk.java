@@ -0,0 +1,139 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain;
+
+import bodies.Shape;
+import javax.media.opengl.GL2;
+import robotrace.Vector;
+
+/**
+ * One chunk of a {@link ChunkedTerrain}. A chunk can be drawn at several
+ * levels of detail. Level 0 uses every vertex; each next level skips every
+ * other row and column of the level before it. The coarser levels are only
+ * used where the difference with level 0 is too small to notice.
+ *
+ * @author Arjan Boschman
+ */
+class TerrainChunk {
+
+    private final float minX;
+    private final float minY;
+    private final float minZ;
+    private final float maxX;
+    private final float maxY;
+    private final float maxZ;
+    /**
+     * For each level, the largest vertical distance in meters between its
+     * surface and that of level 0. Never decreases from one level to the
+     * next.
+     */
+    private final float[] levelErrors;
+    private Shape[] levels;
+    private int[] triangleCounts;
+
+    /**
+     * @param bounds      The bounding box as {minX, minY, minZ, maxX, maxY,
+     *                    maxZ}.
+     * @param levelErrors For each level, the largest vertical distance in
+     *                    meters between its surface and that of level 0.
+     */
+    TerrainChunk(float[] bounds, float[] levelErrors) {
+        this.minX = bounds[0];
+        this.minY = bounds[1];
+        this.minZ = bounds[2];
+        this.maxX = bounds[3];
+        this.maxY = bounds[4];
+        this.maxZ = bounds[5];
+        this.levelErrors = levelErrors;
+    }
+
+    /**
+     * Set the shapes with which the levels are drawn, once they are uploaded.
+     *
+     * @param levels         A shape for each level.
+     * @param triangleCounts The number of triangles of each shape.
+     */
+    void setLevels(Shape[] levels, int[] triangleCounts) {
+        this.levels = levels;
+        this.triangleCounts = triangleCounts;
+    }
+
+    /**
+     * Pick the coarsest level whose error is within the given tolerance at
+     * the distance between the chunk and the camera.
+     *
+     * @param camPos            The position of the camera, in the coordinates
+     *                          of the terrain.
+     * @param maxErrorPerMeter  The largest error allowed, per meter distance
+     *                          from the camera.
+     * @return The level.
+     */
+    int selectLevel(Vector camPos, float maxErrorPerMeter) {
+        final double dx = Math.max(0d, Math.max(minX - camPos.x(), camPos.x() - maxX));
+        final double dy = Math.max(0d, Math.max(minY - camPos.y(), camPos.y() - maxY));
+        final double dz = Math.max(0d, Math.max(minZ - camPos.z(), camPos.z() - maxZ));
+        final double maxError = Math.sqrt(dx * dx + dy * dy + dz * dz) * maxErrorPerMeter;
+        int level = 0;
+        while (level + 1 < levelErrors.length && levelErrors[level + 1] <= maxError) {
+            level++;
+        }
+        return level;
+    }
+
+    void draw(GL2 gl, int level) {
+        levels[level].draw(gl);
+    }
+
+    int getTriangleCount(int level) {
+        return triangleCounts[level];
+    }
+
+    float getMinX() {
+        return minX;
+    }
+
+    float getMinY() {
+        return minY;
+    }
+
+    float getMinZ() {
+        return minZ;
+    }
+
+    float getMaxX() {
+        return maxX;
+    }
+
+    float getMaxY() {
+        return maxY;
+    }
+
+    float getMaxZ() {
+        return maxZ;
+    }
+
+}
@@ -29,11 +29,19 @@ package terrain;
 import Texture.ImplementedTexture;
 import bodies.Body;
 import bodies.BufferManager;
+import bodies.IndexBufferHandle;
+import bodies.MeshCache;
 import bodies.Shape;
+import bodies.SimpleBody;
 import bodies.assembly.Vertex;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import javax.media.opengl.GL2;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import robotrace.Vector;
 
 /**
@@ -52,12 +60,44 @@ public class TerrainFactory {
      * radius around a spot in order for that spot to be considered a cliff.
      */
     private static final float CLIFF_DECLINATION = 1f;
+    /**
+     * The number of quads along each side of a chunk made by
+     * {@link #makeChunkedTerrain}. The chunks along the far edges may be
+     * smaller. With 65 by 65 vertices per chunk, the indices of a chunk fit
+     * in a short.
+     */
+    public static final int CHUNK_SIZE = 64;
+    /**
+     * The number of levels of detail of each chunk. Level 0 uses every
+     * vertex, level 5 every 32nd row and column.
+     */
+    public static final int LEVEL_COUNT = 6;
+    /**
+     * The depth in meters to which skirts reach below the largest error of
+     * the levels of their chunk.
+     */
+    private static final float SKIRT_MARGIN = 0.5f;
+    /**
+     * Chunks can be full size, or smaller along the x-axis, the y-axis or
+     * both.
+     */
+    private static final int LAYOUT_COUNT = 4;
+    /**
+     * Part of the cache keys of the meshes. Must be raised whenever the
+     * meshes made from the same HeightMap change.
+     */
+    private static final int MESH_REVISION = 2;
+    private static final int FLOATS_PER_VERTEX = Vertex.COORD_COUNT * Vertex.NR_VERTEX_ELEMENTS;
 
     private final float widthInMeters;
     private final float heightInMeters;
     private final float blockScale;
     private final int widthInVertices;
     private final int heightInVertices;
+    private final int chunksX;
+    private final int chunksY;
+    private float maxHeightError = 0f;
+    private float submergedHeight = Float.NEGATIVE_INFINITY;
 
     /**
      * Make a new instance of TerrainFactory.
@@ -76,6 +116,37 @@ public class TerrainFactory {
         this.blockScale = blockScale;
         this.widthInVertices = (int) (widthInMeters / blockScale) + 1;
         this.heightInVertices = (int) (heightInMeters / blockScale) + 1;
+        this.chunksX = (widthInVertices - 2) / CHUNK_SIZE + 1;
+        this.chunksY = (heightInVertices - 2) / CHUNK_SIZE + 1;
+    }
+
+    /**
+     * Simplify the chunks made by {@link #makeChunkedTerrain} with a
+     * {@link TerrainSimplifier}. Each level of a chunk may then deviate from
+     * the heights by the given error, or by the error of the level without
+     * simplification if that is larger. Only chunks of the full
+     * {@link #CHUNK_SIZE} are simplified.
+     *
+     * @param maxHeightError The largest vertical error in meters.
+     * @return This TerrainFactory.
+     */
+    public TerrainFactory setMaxHeightError(float maxHeightError) {
+        this.maxHeightError = maxHeightError;
+        return this;
+    }
+
+    /**
+     * Leave out the triangles of the chunks made by
+     * {@link #makeChunkedTerrain} that lie entirely below some height, like
+     * those under water. Only chunks of the full {@link #CHUNK_SIZE} are
+     * affected.
+     *
+     * @param submergedHeight The height in the coordinates of the terrain.
+     * @return This TerrainFactory.
+     */
+    public TerrainFactory setSubmergedHeight(float submergedHeight) {
+        this.submergedHeight = submergedHeight;
+        return this;
     }
 
     /**
@@ -90,115 +161,525 @@ public class TerrainFactory {
      * @return A Body, which can be used during the draw phase to easily draw
      *         the entire terrain.
      */
-    public Body makeTerrain(BufferManager.Initialiser bmInitialiser, HeightMap heightMap, ImplementedTexture texture) {
-        final IntBuffer indexBuffer = generateIndexBuffer();
-        final Vector[] points = generatePoints(heightMap);
-        final Vector[] normals = generateNormals(points, indexBuffer);
-        final Vector[] textures = generateTextures(points);
-        final FloatBuffer dataBuffer = generateVertices(points, normals, textures);
-        final int indexBufferName = bmInitialiser.addData(dataBuffer, indexBuffer);
-        return new Shape(indexBufferName, indexBuffer.capacity(), GL2.GL_TRIANGLES).setTexture(texture);
+    public SimpleBody makeTerrain(BufferManager.Initialiser bmInitialiser, HeightMap heightMap, ImplementedTexture texture) {
+        return makeTerrain(bmInitialiser, CompletableFuture.completedFuture(heightMap), texture);
+    }
+
+    /**
+     * Like {@link #makeTerrain(BufferManager.Initialiser, HeightMap,
+     * ImplementedTexture)}, but for a HeightMap that may still be in the
+     * making. The buffers are created in the background, once the HeightMap is
+     * done. The returned Body stays empty until the bmInitialiser is finished.
+     *
+     * @param bmInitialiser The BufferManager.Initialiser that takes the raw
+     *                      buffers and gives them to OpenGL.
+     * @param heightMap     The HeightMap instance that dictates what the data
+     *                      should look like.
+     * @param texture       The texture of the terrain, or null.
+     * @return A Body, which can be used during the draw phase to easily draw
+     *         the entire terrain.
+     */
+    public SimpleBody makeTerrain(BufferManager.Initialiser bmInitialiser, CompletableFuture<? extends HeightMap> heightMap, ImplementedTexture texture) {
+        final MeshCache meshCache = bmInitialiser.getMeshCache();
+        final CompletableFuture<MeshCache.Entry> mesh = heightMap.thenApplyAsync((map) -> {
+            final String heightMapKey = map.getCacheKey();
+            if (heightMapKey == null) {
+                return buildMesh(map);
+            }
+            return meshCache.computeIfAbsent(
+                    "terrain," + MESH_REVISION + "," + widthInMeters + "," + heightInMeters + "," + blockScale + "/" + heightMapKey,
+                    () -> buildMesh(map));
+        }, bmInitialiser.getBuildExecutor());
+        final SimpleBody body = new SimpleBody();
+        bmInitialiser.addMesh(mesh, (entry, handles)
+                -> body.addShape(new Shape(bmInitialiser.getBufferManager(), handles[0]).setTexture(texture)));
+        return body;
+    }
+
+    /**
+     * Like {@link #makeTerrain(BufferManager.Initialiser, CompletableFuture,
+     * ImplementedTexture)}, but the terrain is split up into chunks of
+     * {@link #CHUNK_SIZE} by {@link #CHUNK_SIZE} quads, each with
+     * {@link #LEVEL_COUNT} levels of detail. See {@link ChunkedTerrain}.
+     *
+     * @param bmInitialiser The BufferManager.Initialiser that takes the raw
+     *                      buffers and gives them to OpenGL.
+     * @param heightMap     The HeightMap instance that dictates what the data
+     *                      should look like.
+     * @param texture       The texture of the terrain, or null.
+     * @return A ChunkedTerrain, which stays empty until the bmInitialiser is
+     *         finished.
+     */
+    public ChunkedTerrain makeChunkedTerrain(BufferManager.Initialiser bmInitialiser, CompletableFuture<? extends HeightMap> heightMap, ImplementedTexture texture) {
+        final MeshCache meshCache = bmInitialiser.getMeshCache();
+        final CompletableFuture<MeshCache.Entry> mesh = heightMap.thenApplyAsync((map) -> {
+            final String heightMapKey = map.getCacheKey();
+            if (heightMapKey == null) {
+                return buildChunkedMesh(map);
+            }
+            final String simplification = isSimplifying() ? ",simplified," + maxHeightError + "," + submergedHeight : "";
+            return meshCache.computeIfAbsent(
+                    "terrainchunks," + MESH_REVISION + "," + widthInMeters + "," + heightInMeters + "," + blockScale
+                    + "," + CHUNK_SIZE + "," + LEVEL_COUNT + simplification + "/" + heightMapKey,
+                    () -> buildChunkedMesh(map));
+        }, bmInitialiser.getBuildExecutor());
+        //Measuring the chunks takes a while, so it is done before the mesh is uploaded.
+        final CompletableFuture<List<TerrainChunk>> chunks = mesh.thenApplyAsync(this::measureChunks, bmInitialiser.getBuildExecutor());
+        final ChunkedTerrain terrain = new ChunkedTerrain(chunksX, chunksY);
+        bmInitialiser.addMesh(mesh, (entry, handles) -> {
+            final List<TerrainChunk> measuredChunks = chunks.join();
+            int baseVertex = 0;
+            //The index buffers of the simplified chunks follow those shared by the other chunks.
+            int nextOwnIndexBuffer = LAYOUT_COUNT * LEVEL_COUNT;
+            for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+                for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+                    final int firstIndexBuffer;
+                    if (isSimplified(chunkX, chunkY)) {
+                        firstIndexBuffer = nextOwnIndexBuffer;
+                        nextOwnIndexBuffer += LEVEL_COUNT;
+                    } else {
+                        firstIndexBuffer = getChunkLayout(chunkX, chunkY) * LEVEL_COUNT;
+                    }
+                    final Shape[] levels = new Shape[LEVEL_COUNT];
+                    final int[] triangleCounts = new int[LEVEL_COUNT];
+                    for (int level = 0; level < LEVEL_COUNT; level++) {
+                        final IndexBufferHandle handle = handles[firstIndexBuffer + level];
+                        levels[level] = new Shape(bmInitialiser.getBufferManager(),
+                                handle.withBaseVertex(handle.getBaseVertex() + baseVertex)).setTexture(texture);
+                        triangleCounts[level] = handle.getLength() / 3;
+                    }
+                    measuredChunks.get(chunkY * chunksX + chunkX).setLevels(levels, triangleCounts);
+                    baseVertex += getChunkVertexCount(getChunkQuadsX(chunkX), getChunkQuadsY(chunkY));
+                }
+            }
+            terrain.setChunks(measuredChunks);
+        });
+        return terrain;
     }
 
     /**
-     * Take the arrays of points and normals that were previously generated and
-     * interleave them into a data buffer.
+     * Generate the data- and index buffer for the given HeightMap. This doesn't
+     * need OpenGL, and doesn't use the mesh cache.
      *
-     * @param points  An array of points, parallel to the normals.
-     * @param normals An array of normals, parallel to the points.
-     * @return A DoubleBuffer with points and vectors interleaved.
+     * @param heightMap The HeightMap instance that dictates what the data
+     *                  should look like.
+     * @return A mesh with a single index buffer.
      */
-    private FloatBuffer generateVertices(Vector[] points, Vector[] normals, Vector[] textures) {
-        final int nrVertices = widthInVertices * heightInVertices;
-        final FloatBuffer buffer = FloatBuffer.allocate(Vertex.COORD_COUNT * Vertex.NR_VERTEX_ELEMENTS * nrVertices);
-        for (int i = 0; i < nrVertices; i++) {
-            buffer.put(new float[]{(float) points[i].x(), (float) points[i].y(), (float) points[i].z()});
-            buffer.put(new float[]{(float) normals[i].x(), (float) normals[i].y(), (float) normals[i].z()});
-            buffer.put(new float[]{(float) textures[i].x(), (float) textures[i].y(), (float) textures[i].z()});
+    public MeshCache.Entry buildMesh(HeightMap heightMap) {
+        final HeightGrid grid = new HeightGrid(heightMap);
+        final float[] data = new float[FLOATS_PER_VERTEX * widthInVertices * heightInVertices];
+        int offset = 0;
+        for (int y = 0; y < heightInVertices; y++) {
+            for (int x = 0; x < widthInVertices; x++) {
+                offset = grid.putVertex(data, offset, x, y, 0f);
+            }
+        }
+        final List<IntBuffer> indexBuffers = new ArrayList<>();
+        indexBuffers.add(generateIndexBuffer());
+        return new MeshCache.Entry(FloatBuffer.wrap(data), indexBuffers, new int[]{-1});
+    }
+
+    /**
+     * Generate the data and the index buffers of a chunked terrain for the
+     * given HeightMap. Each chunk gets its own copy of the vertices it uses,
+     * followed by the vertices of its skirts, so that chunks with the same
+     * number of quads can share their index buffers. This doesn't need
+     * OpenGL, and doesn't use the mesh cache.
+     *
+     * @param heightMap The HeightMap instance that dictates what the data
+     *                  should look like.
+     * @return A mesh with the vertices of each chunk in rows along the x-axis,
+     *         and {@link #LEVEL_COUNT} index buffers for each of the four
+     *         possible chunk layouts, followed by {@link #LEVEL_COUNT} index
+     *         buffers for each simplified chunk.
+     */
+    public MeshCache.Entry buildChunkedMesh(HeightMap heightMap) {
+        final HeightGrid grid = new HeightGrid(heightMap);
+        int nrVertices = 0;
+        for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+            for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+                nrVertices += getChunkVertexCount(getChunkQuadsX(chunkX), getChunkQuadsY(chunkY));
+            }
+        }
+        final float[] data = new float[FLOATS_PER_VERTEX * nrVertices];
+        final TerrainSimplifier simplifier = isSimplifying() ? new TerrainSimplifier(CHUNK_SIZE) : null;
+        final List<IntBuffer> ownIndexBuffers = new ArrayList<>();
+        int offset = 0;
+        for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+            final int firstY = chunkY * CHUNK_SIZE;
+            final int lastY = firstY + getChunkQuadsY(chunkY);
+            for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+                final int firstX = chunkX * CHUNK_SIZE;
+                final int lastX = firstX + getChunkQuadsX(chunkX);
+                final int baseVertex = offset / FLOATS_PER_VERTEX;
+                for (int y = firstY; y <= lastY; y++) {
+                    for (int x = firstX; x <= lastX; x++) {
+                        offset = grid.putVertex(data, offset, x, y, 0f);
+                    }
+                }
+                //The skirts must reach below the surface of any level of a neighbouring chunk.
+                final int heightOffset = firstY * widthInVertices + firstX;
+                final float[] levelErrors = measureLevelErrors(grid.heights, heightOffset,
+                        widthInVertices, lastX - firstX, lastY - firstY);
+                float skirtDepth = levelErrors[LEVEL_COUNT - 1] + SKIRT_MARGIN;
+                if (isSimplified(chunkX, chunkY)) {
+                    final TerrainSimplifier.Measurement measurement = simplifier.measure(grid.heights, heightOffset, widthInVertices);
+                    for (int level = 0; level < LEVEL_COUNT; level++) {
+                        final int[] triangles = simplifier.triangulate(grid.heights, heightOffset, widthInVertices,
+                                measurement, Math.max(maxHeightError, levelErrors[level]), submergedHeight);
+                        final IntBuffer indexBuffer = generateSimplifiedChunkIndexBuffer(triangles);
+                        ownIndexBuffers.add(indexBuffer);
+                        //The simplifier doesn't strictly keep to the error, so the skirts follow what it made.
+                        skirtDepth = Math.max(skirtDepth, SKIRT_MARGIN + TerrainSimplifier.measureDeviation(grid.heights,
+                                heightOffset, widthInVertices, CHUNK_SIZE + 1, CHUNK_SIZE + 1, indexBuffer));
+                    }
+                }
+                for (int x = firstX; x <= lastX; x++) {
+                    offset = grid.putVertex(data, offset, x, firstY, skirtDepth);
+                }
+                for (int x = firstX; x <= lastX; x++) {
+                    offset = grid.putVertex(data, offset, x, lastY, skirtDepth);
+                }
+                for (int y = firstY; y <= lastY; y++) {
+                    offset = grid.putVertex(data, offset, firstX, y, skirtDepth);
+                }
+                for (int y = firstY; y <= lastY; y++) {
+                    offset = grid.putVertex(data, offset, lastX, y, skirtDepth);
+                }
+            }
+        }
+        final List<IntBuffer> indexBuffers = new ArrayList<>();
+        for (int layout = 0; layout < LAYOUT_COUNT; layout++) {
+            final int quadsX = getChunkQuadsX((layout & 1) == 0 ? 0 : chunksX - 1);
+            final int quadsY = getChunkQuadsY((layout & 2) == 0 ? 0 : chunksY - 1);
+            for (int level = 0; level < LEVEL_COUNT; level++) {
+                indexBuffers.add(generateChunkIndexBuffer(quadsX, quadsY, level));
+            }
+        }
+        indexBuffers.addAll(ownIndexBuffers);
+        final int[] textureSlots = new int[indexBuffers.size()];
+        Arrays.fill(textureSlots, -1);
+        return new MeshCache.Entry(FloatBuffer.wrap(data), indexBuffers, textureSlots);
+    }
+
+    /**
+     * Find the bounding box and the errors of the levels of each chunk in a
+     * mesh made by {@link #buildChunkedMesh(HeightMap)}.
+     *
+     * @param mesh The mesh.
+     * @return The chunks, in rows along the x-axis. Their levels are not set.
+     */
+    private List<TerrainChunk> measureChunks(MeshCache.Entry mesh) {
+        final FloatBuffer data = mesh.getData();
+        final List<TerrainChunk> chunks = new ArrayList<>();
+        final float[] chunkHeights = new float[(CHUNK_SIZE + 1) * (CHUNK_SIZE + 1)];
+        final SimplificationReport report = new SimplificationReport();
+        int nextOwnIndexBuffer = LAYOUT_COUNT * LEVEL_COUNT;
+        int baseVertex = 0;
+        for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+            for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+                final int quadsX = getChunkQuadsX(chunkX);
+                final int quadsY = getChunkQuadsY(chunkY);
+                final int vertexCount = getChunkVertexCount(quadsX, quadsY);
+                //Includes the skirts, so nothing that is drawn sticks out of the box.
+                final float[] bounds = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                    Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+                for (int vertex = baseVertex; vertex < baseVertex + vertexCount; vertex++) {
+                    for (int axis = 0; axis < Vertex.COORD_COUNT; axis++) {
+                        final float coordinate = data.get(vertex * FLOATS_PER_VERTEX + axis);
+                        bounds[axis] = Math.min(bounds[axis], coordinate);
+                        bounds[axis + Vertex.COORD_COUNT] = Math.max(bounds[axis + Vertex.COORD_COUNT], coordinate);
+                    }
+                }
+                for (int i = 0; i < (quadsX + 1) * (quadsY + 1); i++) {
+                    chunkHeights[i] = data.get((baseVertex + i) * FLOATS_PER_VERTEX + 2);
+                }
+                final float[] levelErrors = measureLevelErrors(chunkHeights, 0, quadsX + 1, quadsX, quadsY);
+                if (isSimplified(chunkX, chunkY)) {
+                    //The levels are what the simplifier made of them instead.
+                    final int width = quadsX + 1;
+                    for (int level = 0; level < LEVEL_COUNT; level++) {
+                        final IntBuffer indexBuffer = mesh.getIndexBuffers().get(nextOwnIndexBuffer + level);
+                        final float deviation = TerrainSimplifier.measureDeviation(chunkHeights, 0, width, width, quadsY + 1, indexBuffer);
+                        report.add(level, quadsX * quadsY * 2 / (getLevelStep(quadsX, quadsY, level) * getLevelStep(quadsX, quadsY, level)),
+                                TerrainSimplifier.countGridTriangles(width, quadsY + 1, indexBuffer), deviation);
+                        levelErrors[level] = (level == 0) ? deviation : Math.max(levelErrors[level - 1], deviation);
+                    }
+                    nextOwnIndexBuffer += LEVEL_COUNT;
+                }
+                chunks.add(new TerrainChunk(bounds, levelErrors));
+                baseVertex += vertexCount;
+            }
         }
+        if (isSimplifying()) {
+            report.log();
+        }
+        return chunks;
+    }
+
+    /**
+     * Make the index buffer of a simplified chunk: its triangles, and a skirt
+     * below every side of a triangle that lies on the edge of the chunk. The
+     * vertices are laid out like for {@link #generateChunkIndexBuffer}.
+     *
+     * @param triangles The triangles made by the {@link TerrainSimplifier}.
+     * @return An IntBuffer with pointers to each triangle's vertexes.
+     */
+    private static IntBuffer generateSimplifiedChunkIndexBuffer(int[] triangles) {
+        final int width = CHUNK_SIZE + 1;
+        final int lowYSkirt = width * width;
+        final int highYSkirt = lowYSkirt + width;
+        final int lowXSkirt = highYSkirt + width;
+        final int highXSkirt = lowXSkirt + width;
+        //A triangle has at most two sides on the edge, each with a skirt of two triangles.
+        final IntBuffer skirts = IntBuffer.allocate(triangles.length * 4);
+        for (int i = 0; i < triangles.length; i += 3) {
+            for (int corner = 0; corner < 3; corner++) {
+                final int vertex0 = triangles[i + corner];
+                final int vertex1 = triangles[i + (corner + 1) % 3];
+                final int x0 = vertex0 % width;
+                final int y0 = vertex0 / width;
+                final int x1 = vertex1 % width;
+                final int y1 = vertex1 / width;
+                //Each side is put in the order in which the edges of generateChunkIndexBuffer run.
+                if (y0 == 0 && y1 == 0) {
+                    putSkirt(skirts, Math.min(vertex0, vertex1), Math.max(vertex0, vertex1),
+                            lowYSkirt + Math.min(x0, x1), lowYSkirt + Math.max(x0, x1), false);
+                } else if (y0 == CHUNK_SIZE && y1 == CHUNK_SIZE) {
+                    putSkirt(skirts, Math.min(vertex0, vertex1), Math.max(vertex0, vertex1),
+                            highYSkirt + Math.min(x0, x1), highYSkirt + Math.max(x0, x1), true);
+                } else if (x0 == 0 && x1 == 0) {
+                    putSkirt(skirts, Math.min(vertex0, vertex1), Math.max(vertex0, vertex1),
+                            lowXSkirt + Math.min(y0, y1), lowXSkirt + Math.max(y0, y1), true);
+                } else if (x0 == CHUNK_SIZE && x1 == CHUNK_SIZE) {
+                    putSkirt(skirts, Math.min(vertex0, vertex1), Math.max(vertex0, vertex1),
+                            highXSkirt + Math.min(y0, y1), highXSkirt + Math.max(y0, y1), false);
+                }
+            }
+        }
+        final IntBuffer buffer = IntBuffer.allocate(triangles.length + skirts.position());
+        buffer.put(triangles);
+        skirts.flip();
+        buffer.put(skirts);
         buffer.position(0);
         return buffer;
     }
 
     /**
-     * Generates the index buffer for this terrain's data buffer.
+     * @return True if a simplification was asked for.
+     */
+    private boolean isSimplifying() {
+        return maxHeightError > 0f || submergedHeight > Float.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @return True if the given chunk is simplified, which only full size
+     *         chunks are.
+     */
+    private boolean isSimplified(int chunkX, int chunkY) {
+        return isSimplifying() && getChunkQuadsX(chunkX) == CHUNK_SIZE && getChunkQuadsY(chunkY) == CHUNK_SIZE;
+    }
+
+    /**
+     * For each level of a chunk, find the largest vertical distance between
+     * its surface and that of level 0.
      *
+     * @param heights   The heights of the vertices of the chunk, in rows along
+     *                  the x-axis.
+     * @param offset    The index of the first height of the chunk.
+     * @param rowStride The distance in the array between two rows.
+     * @param quadsX    The number of quads of the chunk along the x-axis.
+     * @param quadsY    The number of quads of the chunk along the y-axis.
+     * @return The error of each level, never decreasing from one level to the
+     *         next.
+     */
+    private static float[] measureLevelErrors(float[] heights, int offset, int rowStride, int quadsX, int quadsY) {
+        final float[] errors = new float[LEVEL_COUNT];
+        for (int level = 1; level < LEVEL_COUNT; level++) {
+            final int step = getLevelStep(quadsX, quadsY, level);
+            float error = errors[level - 1];
+            //A level that can't be coarser than the one before it has the same error.
+            if (step > getLevelStep(quadsX, quadsY, level - 1)) {
+                for (int y = 0; y < quadsY; y += step) {
+                    for (int x = 0; x < quadsX; x += step) {
+                        error = Math.max(error, measureQuadError(heights, offset + y * rowStride + x, rowStride, step));
+                    }
+                }
+            }
+            errors[level] = error;
+        }
+        return errors;
+    }
+
+    /**
+     * Find the largest vertical distance between the heights within a quad
+     * and the two triangles the quad is drawn as.
+     *
+     * @param heights   The heights, in rows along the x-axis.
+     * @param corner    The index of the height of the first corner (V0).
+     * @param rowStride The distance in the array between two rows.
+     * @param step      The size of the quad.
+     * @return The largest distance.
+     */
+    private static float measureQuadError(float[] heights, int corner, int rowStride, int step) {
+        final float height0 = heights[corner];
+        final float height1 = heights[corner + step];
+        final float height2 = heights[corner + step * rowStride];
+        final float height3 = heights[corner + step * rowStride + step];
+        final float inverseStep = 1f / step;
+        float error = 0f;
+        for (int v = 0; v <= step; v++) {
+            final int row = corner + v * rowStride;
+            //The quad is split along the diagonal from V0 to V3, like in generateIndexBuffer.
+            for (int u = 0; u < v; u++) {
+                final float coarseHeight = height0 + (v * (height2 - height0) + u * (height3 - height2)) * inverseStep;
+                error = Math.max(error, Math.abs(heights[row + u] - coarseHeight));
+            }
+            for (int u = v; u <= step; u++) {
+                final float coarseHeight = height0 + (u * (height1 - height0) + v * (height3 - height1)) * inverseStep;
+                error = Math.max(error, Math.abs(heights[row + u] - coarseHeight));
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Generate the index buffer of a chunk at some level, including its
+     * skirts. The vertices of the chunk are expected in rows along the x-axis,
+     * followed by the skirt vertices of the edges at the lowest y, the highest
+     * y, the lowest x and the highest x.
+     *
+     * @param quadsX The number of quads of the chunk along the x-axis.
+     * @param quadsY The number of quads of the chunk along the y-axis.
+     * @param level  The level of detail.
      * @return An IntBuffer with pointers to each triangle's vertexes.
      */
-    private IntBuffer generateIndexBuffer() {
-        final IntBuffer buffer = IntBuffer.allocate(getNrTriangles() * 3);
-        for (int y = 0; y < heightInVertices - 1; y++) {
-            for (int x = 0; x < widthInVertices - 1; x++) {
-                final int vertexIndex = (y * widthInVertices) + x;
+    private static IntBuffer generateChunkIndexBuffer(int quadsX, int quadsY, int level) {
+        final int step = getLevelStep(quadsX, quadsY, level);
+        final int width = quadsX + 1;
+        final int stepsX = quadsX / step;
+        final int stepsY = quadsY / step;
+        final IntBuffer buffer = IntBuffer.allocate((stepsX * stepsY + 2 * stepsX + 2 * stepsY) * 6);
+        for (int y = 0; y < quadsY; y += step) {
+            for (int x = 0; x < quadsX; x += step) {
+                final int vertexIndex = (y * width) + x;
                 // Top triangle (T0)
-                buffer.put(vertexIndex + 1);                                    //V1
-                buffer.put(vertexIndex + widthInVertices + 1);                  //V3
+                buffer.put(vertexIndex + step);                                 //V1
+                buffer.put(vertexIndex + step * width + step);                  //V3
                 buffer.put(vertexIndex);                                        //V0
                 // Bottom triangle (T1)
-                buffer.put(vertexIndex + widthInVertices + 1);                  //V3
-                buffer.put(vertexIndex + widthInVertices);                      //V2
+                buffer.put(vertexIndex + step * width + step);                  //V3
+                buffer.put(vertexIndex + step * width);                         //V2
                 buffer.put(vertexIndex);                                        //V0
             }
         }
+        //The skirts face away from the chunk.
+        final int lowYSkirt = width * (quadsY + 1);
+        final int highYSkirt = lowYSkirt + width;
+        final int lowXSkirt = highYSkirt + width;
+        final int highXSkirt = lowXSkirt + quadsY + 1;
+        for (int x = 0; x < quadsX; x += step) {
+            putSkirt(buffer, x, x + step, lowYSkirt + x, lowYSkirt + x + step, false);
+            putSkirt(buffer, quadsY * width + x, quadsY * width + x + step, highYSkirt + x, highYSkirt + x + step, true);
+        }
+        for (int y = 0; y < quadsY; y += step) {
+            putSkirt(buffer, y * width, (y + step) * width, lowXSkirt + y, lowXSkirt + y + step, true);
+            putSkirt(buffer, y * width + quadsX, (y + step) * width + quadsX, highXSkirt + y, highXSkirt + y + step, false);
+        }
         buffer.position(0);
         return buffer;
     }
 
     /**
-     * Generates an array of points in a grid. The x and y values of the points
-     * range from zero to respectively widthInVertices and heightInVertices. The
-     * z-values are arranged according to the given HeightMap.
+     * Put the two triangles of a piece of skirt into an index buffer.
      *
-     * @param heightMap A HeightMap that dictates the z-values of the points
-     *                  that are generated.
-     * @return An array of points, equal in length to widthInVertices *
-     *         heightInVertices.
+     * @param buffer   The index buffer.
+     * @param top0     A vertex on the edge of the chunk.
+     * @param top1     The next vertex on the edge of the chunk.
+     * @param bottom0  The skirt vertex below top0.
+     * @param bottom1  The skirt vertex below top1.
+     * @param reversed False if the skirt faces the side on which top1 lies to
+     *                 the right of top0, true otherwise.
      */
-    private Vector[] generatePoints(HeightMap heightMap) {
-        final int nrVertices = widthInVertices * heightInVertices;
-        final Vector[] points = new Vector[nrVertices];
-        for (int y = 0; y < heightInVertices; y++) {
-            for (int x = 0; x < widthInVertices; x++) {
-                final int vertexIndex = (y * widthInVertices) + x;
-                final float xInMeters = x * blockScale - widthInMeters * 0.5f;
-                final float yInMeters = y * blockScale - heightInMeters * 0.5f;
-                final float zInMeters = heightMap.heightAt(xInMeters, yInMeters);
-                points[vertexIndex] = new Vector(xInMeters, yInMeters, zInMeters);
-            }
+    private static void putSkirt(IntBuffer buffer, int top0, int top1, int bottom0, int bottom1, boolean reversed) {
+        if (reversed) {
+            buffer.put(new int[]{bottom1, bottom0, top0, bottom1, top0, top1});
+        } else {
+            buffer.put(new int[]{bottom0, bottom1, top1, bottom0, top1, top0});
         }
-        return points;
     }
 
     /**
-     * Generates the vertex normals for the given points, by first calculating
-     * the sum of the face normals of the neighbouring triangles, and then
-     * normalising that.
-     *
-     * @param points      An array of points.
-     * @param indexBuffer Index buffer for the given points. For all n where
-     *                    n%3=0, the vectors at indices n, n+1 and n+2 describe
-     *                    a triangle in a clockwise manner.
-     * @return An array of vertex normals parallel to the points array. Each
-     *         normal corresponds to the point at the same index in the point
-     *         array.
+     * @return The distance in quads between the vertices used at the given
+     *         level. Each level doubles the distance, as long as the chunk
+     *         can be divided into quads of that size.
      */
-    private Vector[] generateNormals(Vector[] points, IntBuffer indexBuffer) {
-        final Vector[] normals = new Vector[points.length];
-        //Loop through the triangles, calculate face normals and add them to the corresponding vertices.
-        for (int i = 0; i < indexBuffer.capacity(); i += 3) {
-            final Vector point0 = points[indexBuffer.get(i + 0)];
-            final Vector point1 = points[indexBuffer.get(i + 1)];
-            final Vector point2 = points[indexBuffer.get(i + 2)];
-            final Vector faceNormal = point1.subtract(point0).cross(point2.subtract(point0)).normalized();
-            addVectorToVertex(faceNormal, normals, indexBuffer.get(i + 0));
-            addVectorToVertex(faceNormal, normals, indexBuffer.get(i + 1));
-            addVectorToVertex(faceNormal, normals, indexBuffer.get(i + 2));
+    private static int getLevelStep(int quadsX, int quadsY, int level) {
+        int step = 1;
+        for (int i = 0; i < level && quadsX % (step * 2) == 0 && quadsY % (step * 2) == 0; i++) {
+            step *= 2;
         }
-        //Normalise all the vertex normals.
-        for (int i = 0; i < normals.length; i++) {
-            normals[i] = normals[i].normalized();
+        return step;
+    }
+
+    /**
+     * @return The layout of the given chunk: which of the four possible
+     *         combinations of chunk sizes it has. Only the last chunk along
+     *         each axis can be smaller than {@link #CHUNK_SIZE}.
+     */
+    private int getChunkLayout(int chunkX, int chunkY) {
+        return (chunkX == chunksX - 1 ? 1 : 0) + (chunkY == chunksY - 1 ? 2 : 0);
+    }
+
+    private int getChunkQuadsX(int chunkX) {
+        return Math.min(CHUNK_SIZE, widthInVertices - 1 - chunkX * CHUNK_SIZE);
+    }
+
+    private int getChunkQuadsY(int chunkY) {
+        return Math.min(CHUNK_SIZE, heightInVertices - 1 - chunkY * CHUNK_SIZE);
+    }
+
+    /**
+     * @return The number of vertices of a chunk, including its skirts.
+     */
+    private static int getChunkVertexCount(int quadsX, int quadsY) {
+        return (quadsX + 1) * (quadsY + 1) + 2 * (quadsX + 1) + 2 * (quadsY + 1);
+    }
+
+    /**
+     * Generates the index buffer for this terrain's data buffer.
+     *
+     * @return An IntBuffer with pointers to each triangle's vertexes.
+     */
+    private IntBuffer generateIndexBuffer() {
+        return generateIndexBuffer(widthInVertices, heightInVertices);
+    }
+
+    /**
+     * Generates the index buffer for a grid of vertices, stored in rows along
+     * the x-axis.
+     *
+     * @param widthInVertices  The number of vertices in each row.
+     * @param heightInVertices The number of rows.
+     * @return An IntBuffer with pointers to each triangle's vertexes.
+     */
+    private static IntBuffer generateIndexBuffer(int widthInVertices, int heightInVertices) {
+        final IntBuffer buffer = IntBuffer.allocate((widthInVertices - 1) * (heightInVertices - 1) * 6);
+        for (int y = 0; y < heightInVertices - 1; y++) {
+            for (int x = 0; x < widthInVertices - 1; x++) {
+                final int vertexIndex = (y * widthInVertices) + x;
+                // Top triangle (T0)
+                buffer.put(vertexIndex + 1);                                    //V1
+                buffer.put(vertexIndex + widthInVertices + 1);                  //V3
+                buffer.put(vertexIndex);                                        //V0
+                // Bottom triangle (T1)
+                buffer.put(vertexIndex + widthInVertices + 1);                  //V3
+                buffer.put(vertexIndex + widthInVertices);                      //V2
+                buffer.put(vertexIndex);                                        //V0
+            }
         }
-        return normals;
+        buffer.position(0);
+        return buffer;
     }
 
     /**
@@ -212,58 +693,111 @@ public class TerrainFactory {
      */
     @Deprecated
     private boolean isCliff(HeightMap heightMap, Vector point) {
-        final float center = heightMap.heightAt(point.x(), point.y());
-        final float north = heightMap.heightAt(point.x(), point.y() - 1d);
-        final float south = heightMap.heightAt(point.x(), point.y() + 1d);
-        final float west = heightMap.heightAt(point.x() - 1d, point.y());
-        final float east = heightMap.heightAt(point.x() + 1d, point.y());
-        return Math.abs(center - north) > CLIFF_DECLINATION
-                || Math.abs(center - south) > CLIFF_DECLINATION
-                || Math.abs(center - west) > CLIFF_DECLINATION
-                || Math.abs(center - east) > CLIFF_DECLINATION;
+        final float[] heights = new float[9];
+        heightMap.fillHeights(heights, 0, point.x() - 1d, point.y() - 1d, 1d, 3, 3, HeightMap.Sampling.NEAREST);
+        final float center = heights[4];
+        return Math.abs(center - heights[1]) > CLIFF_DECLINATION //North
+                || Math.abs(center - heights[7]) > CLIFF_DECLINATION //South
+                || Math.abs(center - heights[3]) > CLIFF_DECLINATION //West
+                || Math.abs(center - heights[5]) > CLIFF_DECLINATION; //East
     }
 
-    private Vector[] generateTextures(Vector[] points) {
-        float min = Float.MAX_VALUE;
-        float max = Float.MIN_VALUE;
-        for (Vector vector : points) {
-            if ((float) vector.z() > max) {
-                max = (float) vector.z();
-            }
-            if ((float) vector.z() < min) {
-                min = (float) vector.z();
+    /**
+     * Sums up what the simplification did to each level of the chunks.
+     */
+    private class SimplificationReport {
+
+        private final long[] trianglesBefore = new long[LEVEL_COUNT];
+        private final long[] trianglesAfter = new long[LEVEL_COUNT];
+        private final float[] maxDeviations = new float[LEVEL_COUNT];
+        private int chunkCount = 0;
+
+        private void add(int level, int before, int after, float deviation) {
+            if (level == 0) {
+                chunkCount++;
             }
+            trianglesBefore[level] += before;
+            trianglesAfter[level] += after;
+            maxDeviations[level] = Math.max(maxDeviations[level], deviation);
         }
-        final Vector[] textures = new Vector[points.length];
-        for (int i = 0; i < points.length; i++) {
-            final float zTexture = Math.min(0.9F, ((float) points[i].z() - min) / (max - min));
-            textures[i] = new Vector(zTexture, 0d, 0d);
+
+        private void log() {
+            Logger.getLogger(TerrainFactory.class.getName()).log(Level.INFO,
+                    "Simplified terrain chunks to at most {0} m error, leaving out triangles below {1} m.",
+                    new Object[]{maxHeightError, submergedHeight});
+            for (int level = 0; level < LEVEL_COUNT; level++) {
+                Logger.getLogger(TerrainFactory.class.getName()).log(Level.INFO,
+                        "Simplified level {0} of {1} terrain chunks: {2} triangles before, {3} after. Largest deviation {4} m.",
+                        new Object[]{level, chunkCount, trianglesBefore[level], trianglesAfter[level], maxDeviations[level]});
+            }
         }
-        return textures;
     }
 
     /**
-     * Convenience method that changes the value of the Vector in the given
-     * array at the given index. If the previous value was null, the new value
-     * will be set to the given operand. If the existing value is a Vector, the
-     * new value will be the sum of the existing value and the given operand.
-     *
-     * @param toAdd          Operand to add to the existing value.
-     * @param existingValues An array of Vectors. Its elements may or may not be
-     *                       null.
-     * @param index          The index at which the existing value is located in
-     *                       the array.
+     * The heights of all vertices of the terrain, sampled once from the
+     * HeightMap, from which the vertices are written straight into the data
+     * buffer. Nothing is allocated per vertex.
      */
-    private void addVectorToVertex(Vector toAdd, Vector[] existingValues, int index) {
-        if (existingValues[index] == null) {
-            existingValues[index] = toAdd;
-        } else {
-            existingValues[index] = existingValues[index].add(toAdd);
+    private class HeightGrid {
+
+        /**
+         * The heights, in rows along the x-axis.
+         */
+        private final float[] heights = new float[widthInVertices * heightInVertices];
+        private final float minHeight;
+        private final float heightRange;
+
+        private HeightGrid(HeightMap heightMap) {
+            heightMap.fillHeights(heights, 0, -widthInMeters * 0.5f, -heightInMeters * 0.5f, blockScale,
+                    widthInVertices, heightInVertices, HeightMap.Sampling.NEAREST);
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (float height : heights) {
+                min = Math.min(min, height);
+                max = Math.max(max, height);
+            }
+            this.minHeight = min;
+            this.heightRange = max - min;
         }
-    }
 
-    private int getNrTriangles() {
-        return (widthInVertices - 1) * (heightInVertices - 1) * 2;
+        private float heightAt(int x, int y) {
+            return heights[y * widthInVertices + x];
+        }
+
+        /**
+         * Write the vertex at a grid position into the data: its position,
+         * optionally lowered by some distance, its normal, found by central
+         * differences of the heights around it, and its texture coordinate,
+         * which follows the height.
+         *
+         * @param data   The data.
+         * @param offset The index in the data at which to write the vertex.
+         * @param x      The column in the grid.
+         * @param y      The row in the grid.
+         * @param drop   The distance in meters to lower the vertex by.
+         * @return The index in the data just after the vertex.
+         */
+        private int putVertex(float[] data, int offset, int x, int y, float drop) {
+            final float height = heightAt(x, y);
+            //On the edges, the difference is one sided.
+            final int previousX = Math.max(x - 1, 0);
+            final int nextX = Math.min(x + 1, widthInVertices - 1);
+            final int previousY = Math.max(y - 1, 0);
+            final int nextY = Math.min(y + 1, heightInVertices - 1);
+            final float slopeX = (heightAt(nextX, y) - heightAt(previousX, y)) / ((nextX - previousX) * blockScale);
+            final float slopeY = (heightAt(x, nextY) - heightAt(x, previousY)) / ((nextY - previousY) * blockScale);
+            final float normalScale = 1f / (float) Math.sqrt(slopeX * slopeX + slopeY * slopeY + 1f);
+            data[offset] = x * blockScale - widthInMeters * 0.5f;
+            data[offset + 1] = y * blockScale - heightInMeters * 0.5f;
+            data[offset + 2] = height - drop;
+            data[offset + 3] = -slopeX * normalScale;
+            data[offset + 4] = -slopeY * normalScale;
+            data[offset + 5] = normalScale;
+            data[offset + 6] = (heightRange > 0f) ? Math.min(0.9F, (height - minHeight) / heightRange) : 0f;
+            data[offset + 7] = 0f;
+            data[offset + 8] = 0f;
+            return offset + FLOATS_PER_VERTEX;
+        }
     }
 
 }
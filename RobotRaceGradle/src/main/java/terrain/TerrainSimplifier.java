@@ -0,0 +1,356 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Simplifies a square grid of heights into a right-triangulated irregular
+ * network (RTIN): the grid is split into two right triangles, and each
+ * triangle is split in two at the middle of its long side for as long as that
+ * would bring the surface closer to the heights than a given error. Flat
+ * areas end up with few large triangles, rough areas keep every grid point.
+ *
+ * The errors of all possible triangles are measured once per grid, after
+ * which the grid can be triangulated for any number of maximum errors.
+ * Neighbouring triangles always share their corners, so the surface has no
+ * cracks within the grid.
+ *
+ * The grid must have a power of two quads along each side. The vertices of the
+ * triangles are numbered in rows along the x-axis, like the vertices of a
+ * chunk made by {@link TerrainFactory}.
+ *
+ * @author Arjan Boschman
+ */
+class TerrainSimplifier {
+
+    private final int quads;
+    private final int width;
+    /**
+     * The two corners on the long side of every possible triangle, as ax, ay,
+     * bx, by. Triangle i + 2 is split into triangles 2i + 4 and 2i + 5, so
+     * children always come after their parent.
+     */
+    private final int[] coordinates;
+    private final int triangleCount;
+    /**
+     * The number of triangles that can be split further.
+     */
+    private final int parentCount;
+
+    /**
+     * @param quads The number of quads along each side of the grid. Must be a
+     *              power of two.
+     */
+    TerrainSimplifier(int quads) {
+        if (quads < 2 || Integer.bitCount(quads) != 1) {
+            throw new IllegalArgumentException("The grid must have a power of two quads along each side, not " + quads + ".");
+        }
+        this.quads = quads;
+        this.width = quads + 1;
+        this.triangleCount = quads * quads * 2 - 2;
+        this.parentCount = triangleCount - quads * quads;
+        this.coordinates = new int[triangleCount * 4];
+        for (int i = 0; i < triangleCount; i++) {
+            int id = i + 2;
+            int ax = 0;
+            int ay = 0;
+            int bx = 0;
+            int by = 0;
+            int cx = 0;
+            int cy = 0;
+            if ((id & 1) == 1) {
+                bx = quads;
+                by = quads;
+                cx = quads;
+            } else {
+                ax = quads;
+                ay = quads;
+                cy = quads;
+            }
+            //Walk down from the top level triangle, following the bits of the id.
+            while ((id >>= 1) > 1) {
+                final int mx = (ax + bx) >> 1;
+                final int my = (ay + by) >> 1;
+                if ((id & 1) == 1) {
+                    bx = ax;
+                    by = ay;
+                    ax = cx;
+                    ay = cy;
+                } else {
+                    ax = bx;
+                    ay = by;
+                    bx = cx;
+                    by = cy;
+                }
+                cx = mx;
+                cy = my;
+            }
+            coordinates[i * 4] = ax;
+            coordinates[i * 4 + 1] = ay;
+            coordinates[i * 4 + 2] = bx;
+            coordinates[i * 4 + 3] = by;
+        }
+    }
+
+    /**
+     * Measure the error of splitting at each grid point. The error of a point
+     * includes those of the points that would be split at afterwards, so that
+     * a triangle is only left whole if all of its smaller triangles could be.
+     * Also measure the highest point of the two triangles that are split at
+     * each grid point.
+     *
+     * @param heights   The heights, in rows along the x-axis.
+     * @param offset    The index of the first height of the grid.
+     * @param rowStride The distance in the array between two rows.
+     * @return The measurement.
+     */
+    Measurement measure(float[] heights, int offset, int rowStride) {
+        final float[] errors = new float[width * width];
+        final float[] maxHeights = new float[width * width];
+        Arrays.fill(maxHeights, Float.NEGATIVE_INFINITY);
+        //Smallest triangles first.
+        for (int i = triangleCount - 1; i >= 0; i--) {
+            final int ax = coordinates[i * 4];
+            final int ay = coordinates[i * 4 + 1];
+            final int bx = coordinates[i * 4 + 2];
+            final int by = coordinates[i * 4 + 3];
+            final int mx = (ax + bx) >> 1;
+            final int my = (ay + by) >> 1;
+            final int cx = mx + my - ay;
+            final int cy = my + ax - mx;
+            final float heightA = heights[offset + ay * rowStride + ax];
+            final float heightB = heights[offset + by * rowStride + bx];
+            final float heightM = heights[offset + my * rowStride + mx];
+            final int middle = my * width + mx;
+            float error = Math.max(errors[middle], Math.abs((heightA + heightB) * 0.5f - heightM));
+            float maxHeight = Math.max(maxHeights[middle], Math.max(Math.max(heightA, heightB),
+                    Math.max(heightM, heights[offset + cy * rowStride + cx])));
+            if (i < parentCount) {
+                final int leftChild = ((ay + cy) >> 1) * width + ((ax + cx) >> 1);
+                final int rightChild = ((by + cy) >> 1) * width + ((bx + cx) >> 1);
+                error = Math.max(error, Math.max(errors[leftChild], errors[rightChild]));
+                maxHeight = Math.max(maxHeight, Math.max(maxHeights[leftChild], maxHeights[rightChild]));
+            }
+            errors[middle] = error;
+            maxHeights[middle] = maxHeight;
+        }
+        return new Measurement(errors, maxHeights);
+    }
+
+    /**
+     * Triangulate the grid for a maximum error. Triangles of which every
+     * point lies below the given height are left out.
+     *
+     * @param heights         The heights, in rows along the x-axis.
+     * @param offset          The index of the first height of the grid.
+     * @param rowStride       The distance in the array between two rows.
+     * @param measurement     The measurement made by {@link #measure} of the
+     *                        same heights.
+     * @param maxError        The largest error in meters at which a triangle
+     *                        is not split.
+     * @param submergedHeight The height below which triangles are left out.
+     * @return The vertices of the triangles, counter-clockwise seen from
+     *         above.
+     */
+    int[] triangulate(float[] heights, int offset, int rowStride, Measurement measurement, float maxError, float submergedHeight) {
+        final Triangulation triangulation = new Triangulation(heights, offset, rowStride, measurement, maxError, submergedHeight);
+        triangulation.split(0, 0, quads, quads, quads, 0);
+        triangulation.split(quads, quads, 0, 0, 0, quads);
+        return Arrays.copyOf(triangulation.triangles, triangulation.length);
+    }
+
+    /**
+     * Find the largest vertical distance between the heights and the
+     * triangles of an index buffer. Triangles that use vertices beyond the
+     * grid, like those of skirts, are skipped.
+     *
+     * @param heights   The heights, in rows along the x-axis.
+     * @param offset    The index of the first height of the grid.
+     * @param rowStride The distance in the array between two rows.
+     * @param width     The number of vertices in each row of the grid.
+     * @param rows      The number of rows of the grid.
+     * @param indices   The index buffer, a triangle list.
+     * @return The largest distance in meters.
+     */
+    static float measureDeviation(float[] heights, int offset, int rowStride, int width, int rows, IntBuffer indices) {
+        final int vertexCount = width * rows;
+        float deviation = 0f;
+        for (int i = 0; i + 2 < indices.limit(); i += 3) {
+            final int vertex0 = indices.get(i);
+            final int vertex1 = indices.get(i + 1);
+            final int vertex2 = indices.get(i + 2);
+            if (vertex0 < vertexCount && vertex1 < vertexCount && vertex2 < vertexCount) {
+                deviation = Math.max(deviation, measureTriangle(heights, offset, rowStride,
+                        vertex0 % width, vertex0 / width, vertex1 % width, vertex1 / width, vertex2 % width, vertex2 / width));
+            }
+        }
+        return deviation;
+    }
+
+    /**
+     * @return The number of triangles in the index buffer that use only
+     *         vertices of the grid.
+     */
+    static int countGridTriangles(int width, int rows, IntBuffer indices) {
+        final int vertexCount = width * rows;
+        int count = 0;
+        for (int i = 0; i + 2 < indices.limit(); i += 3) {
+            if (indices.get(i) < vertexCount && indices.get(i + 1) < vertexCount && indices.get(i + 2) < vertexCount) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Find the largest vertical distance between the grid points within a
+     * triangle, edges included, and the plane of the triangle.
+     */
+    private static float measureTriangle(float[] heights, int offset, int rowStride,
+            int x0, int y0, int x1, int y1, int x2, int y2) {
+        final float height0 = heights[offset + y0 * rowStride + x0];
+        final float height1 = heights[offset + y1 * rowStride + x1];
+        final float height2 = heights[offset + y2 * rowStride + x2];
+        final int area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if (area == 0) {
+            return 0f;
+        }
+        final float slopeX = ((height1 - height0) * (y2 - y0) - (height2 - height0) * (y1 - y0)) / area;
+        final float slopeY = ((x1 - x0) * (height2 - height0) - (x2 - x0) * (height1 - height0)) / area;
+        //Positive inside for either winding.
+        final int sign = (area > 0) ? 1 : -1;
+        float deviation = 0f;
+        for (int y = Math.min(y0, Math.min(y1, y2)); y <= Math.max(y0, Math.max(y1, y2)); y++) {
+            for (int x = Math.min(x0, Math.min(x1, x2)); x <= Math.max(x0, Math.max(x1, x2)); x++) {
+                final boolean inside = sign * ((x1 - x0) * (y - y0) - (y1 - y0) * (x - x0)) >= 0
+                        && sign * ((x2 - x1) * (y - y1) - (y2 - y1) * (x - x1)) >= 0
+                        && sign * ((x0 - x2) * (y - y2) - (y0 - y2) * (x - x2)) >= 0;
+                if (inside) {
+                    final float height = heights[offset + y * rowStride + x];
+                    deviation = Math.max(deviation, Math.abs(height - (height0 + (x - x0) * slopeX + (y - y0) * slopeY)));
+                }
+            }
+        }
+        return deviation;
+    }
+
+    /**
+     * What {@link #measure} found out about a grid.
+     */
+    static class Measurement {
+
+        /**
+         * The error of splitting at each grid point, including those of the
+         * splits that would follow.
+         */
+        private final float[] errors;
+        /**
+         * The highest point of the two triangles that are split at each grid
+         * point.
+         */
+        private final float[] maxHeights;
+
+        private Measurement(float[] errors, float[] maxHeights) {
+            this.errors = errors;
+            this.maxHeights = maxHeights;
+        }
+    }
+
+    /**
+     * The state of a single call to {@link #triangulate}.
+     */
+    private class Triangulation {
+
+        private final float[] heights;
+        private final int offset;
+        private final int rowStride;
+        private final Measurement measurement;
+        private final float maxError;
+        private final float submergedHeight;
+        private int[] triangles = new int[96];
+        private int length = 0;
+
+        private Triangulation(float[] heights, int offset, int rowStride, Measurement measurement, float maxError, float submergedHeight) {
+            this.heights = heights;
+            this.offset = offset;
+            this.rowStride = rowStride;
+            this.measurement = measurement;
+            this.maxError = maxError;
+            this.submergedHeight = submergedHeight;
+        }
+
+        /**
+         * Split the triangle with long side a-b and right angle at c, or put
+         * it in the list as it is.
+         */
+        private void split(int ax, int ay, int bx, int by, int cx, int cy) {
+            final int mx = (ax + bx) >> 1;
+            final int my = (ay + by) >> 1;
+            final boolean splittable = Math.abs(ax - cx) + Math.abs(ay - cy) > 1;
+            final int middle = my * width + mx;
+            if (splittable && measurement.maxHeights[middle] < submergedHeight) {
+                //All of it is submerged, and so is every triangle it could be split into.
+                return;
+            }
+            if (splittable && measurement.errors[middle] > maxError) {
+                split(cx, cy, ax, ay, mx, my);
+                split(bx, by, cx, cy, mx, my);
+            } else if (splittable || !isSubmerged(ax, ay, bx, by, cx, cy)) {
+                put(ax, ay, bx, by, cx, cy);
+            }
+        }
+
+        /**
+         * @return True if every corner of the triangle is submerged. For the
+         *         smallest triangles, that is every point.
+         */
+        private boolean isSubmerged(int ax, int ay, int bx, int by, int cx, int cy) {
+            return heights[offset + ay * rowStride + ax] < submergedHeight
+                    && heights[offset + by * rowStride + bx] < submergedHeight
+                    && heights[offset + cy * rowStride + cx] < submergedHeight;
+        }
+
+        private void put(int ax, int ay, int bx, int by, int cx, int cy) {
+            if (length + 3 > triangles.length) {
+                triangles = Arrays.copyOf(triangles, triangles.length * 2);
+            }
+            final int area = (bx - ax) * (cy - ay) - (cx - ax) * (by - ay);
+            triangles[length++] = ay * width + ax;
+            //Counter-clockwise seen from above.
+            if (area > 0) {
+                triangles[length++] = by * width + bx;
+                triangles[length++] = cy * width + cx;
+            } else {
+                triangles[length++] = cy * width + cx;
+                triangles[length++] = by * width + bx;
+            }
+        }
+    }
+
+}
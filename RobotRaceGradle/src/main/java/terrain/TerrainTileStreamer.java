@@ -0,0 +1,399 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain;
+
+import Camera.Frustum;
+import bodies.BufferManager;
+import bodies.StreamingBufferPool;
+import bodies.assembly.Vertex;
+import com.jogamp.common.nio.Buffers;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.media.opengl.GL2;
+import robotrace.Vector;
+
+/**
+ * A terrain without edges, made of square tiles around the camera. Tiles are
+ * generated in the background from a {@link TileableFractalTerrain} as the
+ * camera moves, and put into a fixed pool of buffers. When the pool is full,
+ * the tile that was least recently near the camera makes way.
+ *
+ * The memory used is fixed: the pool, plus at most a few tiles that are being
+ * generated. Drawing never waits for a tile; a tile that isn't ready yet is
+ * left out until a later frame.
+ *
+ * @author Arjan Boschman
+ */
+public class TerrainTileStreamer {
+
+    private static final Logger LOGGER = Logger.getLogger(TerrainTileStreamer.class.getName());
+    /**
+     * The number of quads along each side of a tile. The vertices of a tile
+     * fit in unsigned short indices.
+     */
+    private static final int TILE_QUADS = 64;
+    private static final int TILE_VERTICES = TILE_QUADS + 1;
+    /**
+     * The number of tiles drawn on each side of the tile the camera is above.
+     * With tiles of 128 meters, this reaches beyond the far plane.
+     */
+    private static final int TILE_RADIUS = 4;
+    /**
+     * Room for the tiles around the camera, and a ring more, so that tiles
+     * just left behind are still there when the camera turns back.
+     */
+    private static final int SLOT_COUNT = (2 * TILE_RADIUS + 2) * (2 * TILE_RADIUS + 2);
+    /**
+     * The number of tiles generated at the same time. Keeps the memory of
+     * tiles waiting for upload small, and the nearest tiles first in line.
+     */
+    private static final int MAX_PENDING_TILES = 8;
+    /**
+     * The number of tiles uploaded per frame, so that a fast camera doesn't
+     * make a single frame upload a whole ring.
+     */
+    private static final int MAX_UPLOADS_PER_FRAME = 4;
+    /**
+     * The heights mapped onto the bottom and the top of the terrain texture.
+     * Unlike the fixed terrain, the range of the whole terrain isn't known,
+     * so this is the range the fractal usually stays within.
+     */
+    private static final float TEXTURE_BOTTOM_HEIGHT = -100f;
+    private static final float TEXTURE_TOP_HEIGHT = 250f;
+    private static final int FLOATS_PER_VERTEX = Vertex.COORD_COUNT * Vertex.NR_VERTEX_ELEMENTS;
+
+    private final TileableFractalTerrain heightMap;
+    private final float tileSize;
+    private final Executor executor;
+    private final StreamingBufferPool pool;
+    /**
+     * The tiles in the pool, from least to most recently used.
+     */
+    private final Map<Long, Tile> residentTiles = new LinkedHashMap<>(SLOT_COUNT, 0.75f, true);
+    /**
+     * The tiles being generated, in the order they were asked for.
+     */
+    private final Map<Long, CompletableFuture<Tile>> pendingTiles = new LinkedHashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private int lastFrameVisibleTileCount = 0;
+    private int lastFrameMissingTileCount = 0;
+    private int lastFrameUploadCount = 0;
+    private int evictionCount = 0;
+
+    /**
+     * Make the pool of buffers for the tiles. Must be called during the
+     * initialisation phase.
+     *
+     * @param bmInitialiser The BufferManager.Initialiser that makes the pool.
+     * @param heightMap     The height map the tiles are generated from.
+     */
+    TerrainTileStreamer(BufferManager.Initialiser bmInitialiser, TileableFractalTerrain heightMap) {
+        this.heightMap = heightMap;
+        this.tileSize = TILE_QUADS * heightMap.getGridSpacing();
+        this.executor = bmInitialiser.getBuildExecutor();
+        this.pool = bmInitialiser.makeStreamingBufferPool(SLOT_COUNT, TILE_VERTICES * TILE_VERTICES, generateIndexBuffer());
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            freeSlots.add(slot);
+        }
+    }
+
+    /**
+     * Generate the triangles of a tile, which are the same for every tile.
+     */
+    private static IntBuffer generateIndexBuffer() {
+        final IntBuffer buffer = Buffers.newDirectIntBuffer(TILE_QUADS * TILE_QUADS * 6);
+        for (int y = 0; y < TILE_QUADS; y++) {
+            for (int x = 0; x < TILE_QUADS; x++) {
+                final int vertexIndex = y * TILE_VERTICES + x;
+                buffer.put(vertexIndex + 1);                                    //V1
+                buffer.put(vertexIndex + TILE_VERTICES + 1);                    //V3
+                buffer.put(vertexIndex);                                        //V0
+
+                buffer.put(vertexIndex + TILE_VERTICES + 1);                    //V3
+                buffer.put(vertexIndex + TILE_VERTICES);                        //V2
+                buffer.put(vertexIndex);                                        //V0
+            }
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    /**
+     * Upload the tiles that are done, ask for the tiles the camera has come
+     * near, and draw the tiles around the camera that may be visible. Must be
+     * called during the draw phase, with the current material and texture set
+     * for the terrain.
+     *
+     * @param gl      The instance of GL2 responsible for drawing the body.
+     * @param frustum The view frustum, in the coordinates the terrain is drawn
+     *                in. If null, all tiles are drawn.
+     * @param camPos  The position of the camera, in the coordinates the
+     *                terrain is drawn in.
+     */
+    public void draw(GL2 gl, Frustum frustum, Vector camPos) {
+        final int centerX = (int) Math.floor(camPos.x() / tileSize);
+        final int centerY = (int) Math.floor(camPos.y() / tileSize);
+        lastFrameUploadCount = uploadFinishedTiles(gl, centerX, centerY);
+        requestMissingTiles(centerX, centerY);
+        lastFrameVisibleTileCount = 0;
+        lastFrameMissingTileCount = 0;
+        for (int tileY = centerY - TILE_RADIUS; tileY <= centerY + TILE_RADIUS; tileY++) {
+            for (int tileX = centerX - TILE_RADIUS; tileX <= centerX + TILE_RADIUS; tileX++) {
+                //Also marks the tile as recently used, visible or not.
+                final Tile tile = residentTiles.get(key(tileX, tileY));
+                if (tile == null) {
+                    lastFrameMissingTileCount++;
+                } else if (frustum == null || frustum.intersectsBox(tile.minX, tile.minY, tile.minZ,
+                        tile.minX + tileSize, tile.minY + tileSize, tile.maxZ)) {
+                    pool.draw(gl, tile.slot);
+                    lastFrameVisibleTileCount++;
+                }
+            }
+        }
+        pool.endDraw(gl);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE,
+                    "{0} terrain tiles visible, {1} not ready, {2} uploaded, {3} generating, {4} evicted so far.",
+                    new Object[]{lastFrameVisibleTileCount, lastFrameMissingTileCount, lastFrameUploadCount,
+                        pendingTiles.size(), evictionCount});
+        }
+    }
+
+    /**
+     * Put the generated tiles into the pool, at most
+     * {@link #MAX_UPLOADS_PER_FRAME} of them. Tiles the camera has since moved
+     * away from are thrown away.
+     *
+     * @return The number of tiles uploaded.
+     */
+    private int uploadFinishedTiles(GL2 gl, int centerX, int centerY) {
+        int uploadCount = 0;
+        final Iterator<CompletableFuture<Tile>> iterator = pendingTiles.values().iterator();
+        while (iterator.hasNext() && uploadCount < MAX_UPLOADS_PER_FRAME) {
+            final CompletableFuture<Tile> pendingTile = iterator.next();
+            if (!pendingTile.isDone()) {
+                continue;
+            }
+            iterator.remove();
+            final Tile tile;
+            try {
+                tile = pendingTile.join();
+            } catch (CompletionException ex) {
+                //The tile is asked for again in the next frame.
+                LOGGER.log(Level.WARNING, "Could not generate a terrain tile.", ex);
+                continue;
+            }
+            if (!isNear(tile.tileX, tile.tileY, centerX, centerY)) {
+                continue;
+            }
+            tile.slot = takeSlot(centerX, centerY);
+            pool.upload(gl, tile.slot, tile.data);
+            //The vertices are in the pool now.
+            tile.data = null;
+            residentTiles.put(key(tile.tileX, tile.tileY), tile);
+            uploadCount++;
+        }
+        return uploadCount;
+    }
+
+    /**
+     * Take a free slot, or the slot of the least recently used tile that is
+     * not around the camera. The tiles around the camera are skipped, since
+     * the order of use is only brought up to date when they are drawn, which
+     * is after the uploads. One of the other tiles always has a slot, because
+     * a tile around the camera is missing and there are more slots than such
+     * tiles.
+     */
+    private int takeSlot(int centerX, int centerY) {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.poll();
+        }
+        final Iterator<Tile> leastRecentlyUsed = residentTiles.values().iterator();
+        Tile evicted = leastRecentlyUsed.next();
+        while (isNear(evicted.tileX, evicted.tileY, centerX, centerY)) {
+            evicted = leastRecentlyUsed.next();
+        }
+        leastRecentlyUsed.remove();
+        evictionCount++;
+        return evicted.slot;
+    }
+
+    /**
+     * Stop generating tiles the camera has moved away from, and start on the
+     * missing tiles nearest to the camera, until
+     * {@link #MAX_PENDING_TILES} are being generated.
+     */
+    private void requestMissingTiles(int centerX, int centerY) {
+        final Iterator<Map.Entry<Long, CompletableFuture<Tile>>> iterator = pendingTiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, CompletableFuture<Tile>> entry = iterator.next();
+            if (!isNear(keyX(entry.getKey()), keyY(entry.getKey()), centerX, centerY)) {
+                entry.getValue().cancel(false);
+                iterator.remove();
+            }
+        }
+        //Go around the camera in rings, nearest first.
+        for (int ring = 0; ring <= TILE_RADIUS; ring++) {
+            for (int tileY = centerY - ring; tileY <= centerY + ring; tileY++) {
+                //Only the first and last row of a ring are whole; in between only its ends are part of it.
+                final int stepX = (tileY == centerY - ring || tileY == centerY + ring) ? 1 : Math.max(1, 2 * ring);
+                for (int tileX = centerX - ring; tileX <= centerX + ring; tileX += stepX) {
+                    if (pendingTiles.size() >= MAX_PENDING_TILES) {
+                        return;
+                    }
+                    final long key = key(tileX, tileY);
+                    if (!residentTiles.containsKey(key) && !pendingTiles.containsKey(key)) {
+                        final int x = tileX;
+                        final int y = tileY;
+                        pendingTiles.put(key, CompletableFuture.supplyAsync(() -> generateTile(x, y), executor));
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isNear(int tileX, int tileY, int centerX, int centerY) {
+        return Math.abs(tileX - centerX) <= TILE_RADIUS && Math.abs(tileY - centerY) <= TILE_RADIUS;
+    }
+
+    /**
+     * Generate the vertices of a tile. Runs in the background.
+     */
+    private Tile generateTile(int tileX, int tileY) {
+        //One grid point more on each side, for the normals on the edges.
+        final int side = TILE_VERTICES + 2;
+        final float[] heights = new float[side * side];
+        heightMap.fillGrid(heights, 0, tileX * TILE_QUADS - 1, tileY * TILE_QUADS - 1, side, side);
+        final float spacing = heightMap.getGridSpacing();
+        final Tile tile = new Tile(tileX, tileY, tileX * tileSize, tileY * tileSize);
+        final float[] data = new float[TILE_VERTICES * TILE_VERTICES * FLOATS_PER_VERTEX];
+        int offset = 0;
+        for (int y = 0; y < TILE_VERTICES; y++) {
+            for (int x = 0; x < TILE_VERTICES; x++) {
+                final int index = (y + 1) * side + x + 1;
+                final float height = heights[index];
+                final float slopeX = (heights[index + 1] - heights[index - 1]) / (2f * spacing);
+                final float slopeY = (heights[index + side] - heights[index - side]) / (2f * spacing);
+                final float normalScale = 1f / (float) Math.sqrt(slopeX * slopeX + slopeY * slopeY + 1f);
+                final float textureHeight = (height - TEXTURE_BOTTOM_HEIGHT) / (TEXTURE_TOP_HEIGHT - TEXTURE_BOTTOM_HEIGHT);
+                data[offset] = tile.minX + x * spacing;
+                data[offset + 1] = tile.minY + y * spacing;
+                data[offset + 2] = height;
+                data[offset + 3] = -slopeX * normalScale;
+                data[offset + 4] = -slopeY * normalScale;
+                data[offset + 5] = normalScale;
+                data[offset + 6] = Math.max(0f, Math.min(0.9F, textureHeight));
+                data[offset + 7] = 0f;
+                data[offset + 8] = 0f;
+                offset += FLOATS_PER_VERTEX;
+                tile.minZ = Math.min(tile.minZ, height);
+                tile.maxZ = Math.max(tile.maxZ, height);
+            }
+        }
+        tile.data = FloatBuffer.wrap(data);
+        return tile;
+    }
+
+    private static long key(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFF_FFFFL);
+    }
+
+    private static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int keyY(long key) {
+        return (int) key;
+    }
+
+    /**
+     * @return The number of tiles drawn during the last call to
+     *         {@link #draw}.
+     */
+    public int getLastFrameVisibleTileCount() {
+        return lastFrameVisibleTileCount;
+    }
+
+    /**
+     * @return The number of tiles around the camera that were not generated
+     *         yet during the last call to {@link #draw}.
+     */
+    public int getLastFrameMissingTileCount() {
+        return lastFrameMissingTileCount;
+    }
+
+    /**
+     * @return The number of tiles put into the pool during the last call to
+     *         {@link #draw}.
+     */
+    public int getLastFrameUploadCount() {
+        return lastFrameUploadCount;
+    }
+
+    /**
+     * @return The number of tiles that were taken out of the pool to make
+     *         room for others, since the start.
+     */
+    public int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * A square piece of the terrain.
+     */
+    private static class Tile {
+
+        private final int tileX;
+        private final int tileY;
+        private final float minX;
+        private final float minY;
+        private float minZ = Float.POSITIVE_INFINITY;
+        private float maxZ = Float.NEGATIVE_INFINITY;
+        /**
+         * The vertices, until they are uploaded.
+         */
+        private FloatBuffer data;
+        private int slot = -1;
+
+        private Tile(int tileX, int tileY, float minX, float minY) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.minX = minX;
+            this.minY = minY;
+        }
+    }
+
+}
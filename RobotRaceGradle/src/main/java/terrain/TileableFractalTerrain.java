@@ -0,0 +1,267 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain;
+
+import utility.RandomUtils;
+
+/**
+ * A fractal terrain without edges, of which any rectangle of grid points can
+ * be generated on its own. Two rectangles that overlap get the same heights
+ * where they overlap, so the terrain can be made in tiles that fit together
+ * without seams.
+ *
+ * The heights are made by midpoint displacement, like the diamond-square
+ * algorithm of {@link FractalTerrainGenerator}, on a lattice that is refined
+ * from a coarse spacing down to a single grid point. Each new point is the
+ * average of its parents plus an offset taken from the seed and its position.
+ * Unlike the square step, a point on the edge of a cell only averages the two
+ * ends of that edge, so it never depends on the cell next to it.
+ *
+ * @author Arjan Boschman
+ */
+public class TileableFractalTerrain implements HeightMap {
+
+    /**
+     * The same seed as the fixed terrain, so the terrain doesn't change from
+     * one run of the program to the next.
+     */
+    private static final long RAND_SEED = 12_345_678_422L;
+    /**
+     * With two meters between the grid points, the coarsest lattice has the
+     * same size as the fixed terrain, and so do its hills.
+     */
+    private static final int DEFAULT_DETAIL = 9;
+    private static final float DEFAULT_ROUGHNESS = 0.3f;
+    private static final float DEFAULT_GRID_SPACING = 2f;
+    /**
+     * The fixed terrain has its corners fixed at -50 meters. Here the points
+     * of the coarsest lattice vary as well, so the heights spread out more;
+     * a higher starting point keeps about as much of the terrain above the
+     * water.
+     */
+    private static final float INITIAL_VALUE = 0f;
+
+    public static TileableFractalTerrain create() {
+        return new TileableFractalTerrain(RAND_SEED, DEFAULT_DETAIL, DEFAULT_ROUGHNESS, DEFAULT_GRID_SPACING);
+    }
+
+    private final long seed;
+    private final int detail;
+    private final float roughness;
+    private final float gridSpacing;
+
+    /**
+     * Make a new instance of the TileableFractalTerrain. Nothing is
+     * calculated in advance.
+     *
+     * @param seed        The seed all offsets are taken from.
+     * @param detail      A measure of the size of the largest hills: the
+     *                    coarsest lattice has (2 ^ detail) grid points between
+     *                    its points.
+     * @param roughness   A value between 0 and 1, this is a measure of the
+     *                    smoothness of the terrain.
+     * @param gridSpacing The distance in meters between two grid points.
+     */
+    public TileableFractalTerrain(long seed, int detail, float roughness, float gridSpacing) {
+        this.seed = seed;
+        this.detail = detail;
+        this.roughness = roughness;
+        this.gridSpacing = gridSpacing;
+    }
+
+    /**
+     * @return The distance in meters between two grid points.
+     */
+    public float getGridSpacing() {
+        return gridSpacing;
+    }
+
+    /**
+     * Calculate the heights of a rectangle of grid points. Grid point (0, 0)
+     * lies at the origin.
+     *
+     * @param heights    The array to store the heights in, one row along the
+     *                   x-axis after another.
+     * @param offset     The index in the array of the first height.
+     * @param firstGridX The column of the first grid point.
+     * @param firstGridY The row of the first grid point.
+     * @param countX     The number of grid points along the x-axis.
+     * @param countY     The number of grid points along the y-axis.
+     */
+    public void fillGrid(float[] heights, int offset, int firstGridX, int firstGridY, int countX, int countY) {
+        final int lastGridX = firstGridX + countX - 1;
+        final int lastGridY = firstGridY + countY - 1;
+        int size = 1 << detail;
+        //The points of the coarsest lattice around the rectangle.
+        int left = Math.floorDiv(firstGridX, size) * size;
+        int bottom = Math.floorDiv(firstGridY, size) * size;
+        int columns = ceilDiv(lastGridX - left, size) + 1;
+        int rows = ceilDiv(lastGridY - bottom, size) + 1;
+        float[] lattice = new float[columns * rows];
+        //The coarsest lattice varies half as much as a midpoint would, or the hills get too high.
+        final float initialScale = roughness * size * gridSpacing * 0.5f;
+        for (int j = 0; j < rows; j++) {
+            for (int i = 0; i < columns; i++) {
+                lattice[j * columns + i] = INITIAL_VALUE + offsetAt(left + i * size, bottom + j * size) * initialScale;
+            }
+        }
+        //Halve the spacing until every grid point is on the lattice, keeping only the cells around the rectangle.
+        for (; size > 1; size /= 2) {
+            final int half = size / 2;
+            final float scale = roughness * size * gridSpacing;
+            final int newLeft = Math.floorDiv(firstGridX, half) * half;
+            final int newBottom = Math.floorDiv(firstGridY, half) * half;
+            final int newColumns = ceilDiv(lastGridX - newLeft, half) + 1;
+            final int newRows = ceilDiv(lastGridY - newBottom, half) + 1;
+            final float[] newLattice = new float[newColumns * newRows];
+            for (int j = 0; j < newRows; j++) {
+                final int y = newBottom + j * half;
+                //The row of the old lattice on or just below this point.
+                final int row = Math.floorDiv(y - bottom, size);
+                final boolean onRow = Math.floorMod(y, size) == 0;
+                for (int i = 0; i < newColumns; i++) {
+                    final int x = newLeft + i * half;
+                    final int column = Math.floorDiv(x - left, size);
+                    final boolean onColumn = Math.floorMod(x, size) == 0;
+                    final int parent = row * columns + column;
+                    final float height;
+                    if (onRow && onColumn) {
+                        newLattice[j * newColumns + i] = lattice[parent];
+                        continue;
+                    } else if (onColumn) {
+                        height = (lattice[parent] + lattice[parent + columns]) * 0.5f;
+                    } else if (onRow) {
+                        height = (lattice[parent] + lattice[parent + 1]) * 0.5f;
+                    } else {
+                        height = (lattice[parent] + lattice[parent + 1]
+                                + lattice[parent + columns] + lattice[parent + columns + 1]) * 0.25f;
+                    }
+                    newLattice[j * newColumns + i] = height + offsetAt(x, y) * scale;
+                }
+            }
+            lattice = newLattice;
+            left = newLeft;
+            bottom = newBottom;
+            columns = newColumns;
+            rows = newRows;
+        }
+        //The lattice now is exactly the rectangle.
+        for (int j = 0; j < countY; j++) {
+            System.arraycopy(lattice, j * columns, heights, offset + j * countX, countX);
+        }
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    /**
+     * A random value in [-1, 1), the same every time for the same seed and
+     * grid point.
+     */
+    private float offsetAt(int x, int y) {
+        return RandomUtils.floatAt(seed, x, y) * 2f - 1f;
+    }
+
+    @Override
+    public String getCacheKey() {
+        return "tileable-fractal," + detail + "," + roughness + "," + gridSpacing + "," + seed;
+    }
+
+    @Override
+    public float heightAt(double x, double y) {
+        final float[] height = new float[1];
+        fillGrid(height, 0, (int) Math.round(x / gridSpacing), (int) Math.round(y / gridSpacing), 1, 1);
+        return height[0];
+    }
+
+    /**
+     * Bicubic sampling is not supported; it is done bilinearly instead.
+     */
+    @Override
+    public float heightAt(double x, double y, Sampling sampling) {
+        if (sampling == Sampling.NEAREST) {
+            return heightAt(x, y);
+        }
+        final double gridX = x / gridSpacing;
+        final double gridY = y / gridSpacing;
+        final int x0 = (int) Math.floor(gridX);
+        final int y0 = (int) Math.floor(gridY);
+        final float tx = (float) (gridX - x0);
+        final float ty = (float) (gridY - y0);
+        final float[] corners = new float[4];
+        fillGrid(corners, 0, x0, y0, 2, 2);
+        final float height0 = corners[0] + (corners[1] - corners[0]) * tx;
+        final float height1 = corners[2] + (corners[3] - corners[2]) * tx;
+        return height0 + (height1 - height0) * ty;
+    }
+
+    @Override
+    public void fillHeights(float[] heights, int offset, double firstX, double firstY, double spacing,
+            int countX, int countY, Sampling sampling) {
+        final double firstGridX = firstX / gridSpacing;
+        final double firstGridY = firstY / gridSpacing;
+        final boolean onGrid = spacing == gridSpacing
+                && firstGridX == Math.rint(firstGridX) && firstGridY == Math.rint(firstGridY);
+        if (onGrid) {
+            //Every position is a grid point, so the whole rectangle can be made at once.
+            fillGrid(heights, offset, (int) firstGridX, (int) firstGridY, countX, countY);
+            return;
+        }
+        if (sampling == Sampling.NEAREST) {
+            HeightMap.super.fillHeights(heights, offset, firstX, firstY, spacing, countX, countY, sampling);
+            return;
+        }
+        //The grid points around the rectangle.
+        final int left = (int) Math.floor(firstGridX);
+        final int bottom = (int) Math.floor(firstGridY);
+        final int columns = (int) Math.floor((firstX + (countX - 1) * spacing) / gridSpacing) - left + 2;
+        final int rows = (int) Math.floor((firstY + (countY - 1) * spacing) / gridSpacing) - bottom + 2;
+        if (columns * rows > 4 * countX * countY) {
+            //The positions are too far apart to make the grid points around them at once.
+            HeightMap.super.fillHeights(heights, offset, firstX, firstY, spacing, countX, countY, sampling);
+            return;
+        }
+        final float[] grid = new float[columns * rows];
+        fillGrid(grid, 0, left, bottom, columns, rows);
+        for (int j = 0; j < countY; j++) {
+            final double gridY = (firstY + j * spacing) / gridSpacing;
+            final int y0 = (int) Math.floor(gridY);
+            final float ty = (float) (gridY - y0);
+            for (int i = 0; i < countX; i++) {
+                final double gridX = (firstX + i * spacing) / gridSpacing;
+                final int x0 = (int) Math.floor(gridX);
+                final float tx = (float) (gridX - x0);
+                final int corner = (y0 - bottom) * columns + x0 - left;
+                final float height0 = grid[corner] + (grid[corner + 1] - grid[corner]) * tx;
+                final float height1 = grid[corner + columns] + (grid[corner + columns + 1] - grid[corner + columns]) * tx;
+                heights[offset + j * countX + i] = height0 + (height1 - height0) * ty;
+            }
+        }
+    }
+
+}
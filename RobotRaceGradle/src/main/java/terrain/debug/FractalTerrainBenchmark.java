@@ -0,0 +1,103 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain.debug;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import terrain.FractalTerrainGenerator;
+
+/**
+ * Measures how long the sequential and the parallel modes of the
+ * {@link FractalTerrainGenerator} take at several levels of detail. It also
+ * checks that the parallel mode yields the same terrain on a single thread
+ * as on all cores.
+ *
+ * No OpenGL context is needed.
+ *
+ * @author Arjan Boschman
+ */
+public class FractalTerrainBenchmark {
+
+    private static final int[] DETAILS = {10, 11, 12};
+    private static final float ROUGHNESS = 0.3f;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        System.out.printf("%d cores%n", Runtime.getRuntime().availableProcessors());
+        for (int detail : DETAILS) {
+            final double sequentialMillis = measure(detail, FractalTerrainGenerator.Mode.SEQUENTIAL);
+            final double parallelMillis = measure(detail, FractalTerrainGenerator.Mode.PARALLEL);
+            final ForkJoinPool singleThread = new ForkJoinPool(1);
+            final long singleThreadChecksum = singleThread.submit(
+                    () -> checksum(generate(detail, FractalTerrainGenerator.Mode.PARALLEL), detail)).get();
+            singleThread.shutdown();
+            final long allCoresChecksum = checksum(generate(detail, FractalTerrainGenerator.Mode.PARALLEL), detail);
+            System.out.printf("detail %2d (%5d^2 points): sequential %8.1f ms, parallel %8.1f ms (x%.1f faster), "
+                    + "same on 1 thread as on all cores: %b%n",
+                    detail, (1 << detail) + 1, sequentialMillis, parallelMillis,
+                    sequentialMillis / parallelMillis, singleThreadChecksum == allCoresChecksum);
+        }
+    }
+
+    /**
+     * @return The best time in milliseconds to generate a terrain.
+     */
+    private static double measure(int detail, FractalTerrainGenerator.Mode mode) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            generate(detail, mode);
+        }
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            final long start = System.nanoTime();
+            generate(detail, mode);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        return bestNanos / 1e6d;
+    }
+
+    private static FractalTerrainGenerator generate(int detail, FractalTerrainGenerator.Mode mode) {
+        final FractalTerrainGenerator generator = new FractalTerrainGenerator(detail, ROUGHNESS, mode);
+        generator.initialise();
+        return generator;
+    }
+
+    /**
+     * @return A hash of every height of the terrain.
+     */
+    private static long checksum(FractalTerrainGenerator generator, int detail) {
+        final int halfSize = (1 << detail) / 2;
+        long checksum = 0L;
+        for (int x = -halfSize; x <= halfSize; x++) {
+            for (int y = -halfSize; y <= halfSize; y++) {
+                checksum = checksum * 31L + Float.floatToIntBits(generator.heightAt(x, y));
+            }
+        }
+        return checksum;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain.debug;
+
+import bodies.MeshCache;
+import bodies.assembly.Vertex;
+import java.lang.management.ManagementFactory;
+import terrain.FractalTerrainGenerator;
+import terrain.TerrainFactory;
+
+/**
+ * Measures how long it takes to turn the default fractal terrain into the
+ * chunked mesh that is drawn, and how much garbage that produces on top of the
+ * mesh itself.
+ *
+ * The mesh cache is not used, and no OpenGL context is needed.
+ *
+ * @author Arjan Boschman
+ */
+public class TerrainMeshBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) {
+        final FractalTerrainGenerator heightMap = FractalTerrainGenerator.create();
+        final TerrainFactory terrainFactory = new TerrainFactory(1000f, 1000f, 1f);
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            terrainFactory.buildChunkedMesh(heightMap);
+        }
+        long bestNanos = Long.MAX_VALUE;
+        long allocatedBytes = 0L;
+        long meshBytes = 0L;
+        int vertexCount = 0;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            final long allocatedBefore = getAllocatedBytes();
+            final long start = System.nanoTime();
+            final MeshCache.Entry mesh = terrainFactory.buildChunkedMesh(heightMap);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            allocatedBytes += getAllocatedBytes() - allocatedBefore;
+            meshBytes = mesh.getByteCount();
+            vertexCount = mesh.getData().capacity() / (Vertex.COORD_COUNT * Vertex.NR_VERTEX_ELEMENTS);
+        }
+        System.out.printf("%d vertices: %.1f ms, %.1f ns/vertex, %d bytes allocated per run, of which %d bytes are the mesh%n",
+                vertexCount, bestNanos / 1e6d, bestNanos / (double) vertexCount,
+                allocatedBytes / MEASURED_RUNS, meshBytes);
+    }
+
+    /**
+     * @return The amount of bytes allocated by the current thread so far, or
+     *         zero if the virtual machine cannot tell.
+     */
+    private static long getAllocatedBytes() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+
+}
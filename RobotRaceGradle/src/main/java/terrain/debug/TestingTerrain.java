@@ -26,7 +26,9 @@
  */
 package terrain.debug;
 
+import Camera.Frustum;
 import bodies.BufferManager;
+import bodies.ModelViewStack;
 import com.jogamp.opengl.util.gl2.GLUT;
 import java.util.ArrayList;
 import java.util.List;
@@ -55,9 +57,11 @@ public class TestingTerrain extends Terrain {
     private static final double GROUND_EDGE_LENGTH = 25;
 
     private final List<Shape> shapes = new ArrayList<>();
+    private ModelViewStack modelView;
 
     @Override
     public void initialize(GL2 gl, BufferManager.Initialiser bmInitialiser) {
+        this.modelView = bmInitialiser.getModelView();
         for (int i = -5; i < 1000; i++) {
             shapes.add(makeFloorShape(i));
             shapes.add(makeWallShape(i));
@@ -79,15 +83,15 @@ public class TestingTerrain extends Terrain {
     }
 
     @Override
-    public void draw(GL2 gl, GLUT glut, Vector camPos, Lighting lighting) {
+    public void draw(GL2 gl, GLUT glut, Vector camPos, Frustum frustum, Lighting lighting) {
         shapes.stream().forEach((shape) -> {
-            gl.glPushMatrix();
-            gl.glTranslated(shape.translation.x(), shape.translation.y(), shape.translation.z());
-            gl.glRotated(shape.rotationAngle, shape.rotation.x(), shape.rotation.y(), shape.rotation.z());
-            gl.glScaled(shape.scaling.x(), shape.scaling.y(), shape.scaling.z());
+            modelView.pushMatrix(gl);
+            modelView.translate(gl, shape.translation.x(), shape.translation.y(), shape.translation.z());
+            modelView.rotate(gl, shape.rotationAngle, shape.rotation.x(), shape.rotation.y(), shape.rotation.z());
+            modelView.scale(gl, shape.scaling.x(), shape.scaling.y(), shape.scaling.z());
             lighting.setMaterial(gl, shape.material);
             glut.glutSolidCube(1f);
-            gl.glPopMatrix();
+            modelView.popMatrix(gl);
         });
     }
 
@@ -0,0 +1,96 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain.debug;
+
+import java.util.NoSuchElementException;
+import terrain.FractalTerrainGenerator;
+import terrain.HeightMap;
+import terrain.TileableFractalTerrain;
+import terrain.trees.Foliage;
+import terrain.trees.TreeSupplier;
+
+/**
+ * Measures how long it takes to find locations for many trees with each
+ * {@link TreeSupplier.Placement}, and how many trees the Poisson-disk
+ * placement fits on the default fractal terrain before it is full.
+ *
+ * No OpenGL context is needed.
+ *
+ * @author Arjan Boschman
+ */
+public class TreePlacementBenchmark {
+
+    private static final int TREE_COUNT = 10_000;
+    /**
+     * The width of the square the trees are placed in. The default fractal
+     * terrain is too small for this many trees, so the tileable one is used.
+     */
+    private static final double TILEABLE_SIZE = 2000d;
+    private static final double FIXED_SIZE = 1000d;
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 3;
+
+    public static void main(String[] args) {
+        final TileableFractalTerrain tileableTerrain = TileableFractalTerrain.create();
+        final Foliage foliage = new Foliage();
+        for (TreeSupplier.Placement placement : TreeSupplier.Placement.values()) {
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                place(tileableTerrain, TILEABLE_SIZE, foliage, placement, TREE_COUNT);
+            }
+            long bestNanos = Long.MAX_VALUE;
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                final long start = System.nanoTime();
+                place(tileableTerrain, TILEABLE_SIZE, foliage, placement, TREE_COUNT);
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            }
+            System.out.printf("%-12s %d trees in %8.1f ms%n", placement, TREE_COUNT, bestNanos / 1e6d);
+        }
+        final FractalTerrainGenerator fixedTerrain = FractalTerrainGenerator.create();
+        final long start = System.nanoTime();
+        final int fullCount = place(fixedTerrain, FIXED_SIZE, foliage, TreeSupplier.Placement.POISSON_DISK, Integer.MAX_VALUE);
+        System.out.printf("%-12s the default terrain is full after %d trees, in %8.1f ms%n",
+                TreeSupplier.Placement.POISSON_DISK, fullCount, (System.nanoTime() - start) / 1e6d);
+    }
+
+    /**
+     * @return The number of trees placed, fewer than asked if there was no
+     *         room for more.
+     */
+    private static int place(HeightMap heightMap, double size, Foliage foliage, TreeSupplier.Placement placement, int count) {
+        final TreeSupplier treeSupplier = new TreeSupplier(-size / 2d, -size / 2d, size, size,
+                heightMap, foliage, placement);
+        for (int i = 0; i < count; i++) {
+            try {
+                treeSupplier.get();
+            } catch (NoSuchElementException ex) {
+                return i;
+            }
+        }
+        return count;
+    }
+
+}
@@ -28,6 +28,8 @@ package terrain.trees;
 
 import bodies.Body;
 import bodies.BufferManager;
+import bodies.ModelViewStack;
+import bodies.SimpleBody;
 import bodies.SingletonDrawable;
 import bodies.StackBuilder;
 import javax.media.opengl.GL2;
@@ -41,11 +43,12 @@ import terrain.TerrainFactory;
  */
 public class Foliage implements SingletonDrawable {
 
-    private Body leaf;
-    private Body ultraHighDetailBranch;
-    private Body highDetailBranch;
-    private Body midDetailBranch;
-    private Body lowDetailBranch;
+    private SimpleBody leaf;
+    private SimpleBody ultraHighDetailBranch;
+    private SimpleBody highDetailBranch;
+    private SimpleBody midDetailBranch;
+    private SimpleBody lowDetailBranch;
+    private ModelViewStack modelView;
 
     @Override
     public void initialize(GL2 gl, BufferManager.Initialiser bmInitialiser) {
@@ -54,9 +57,10 @@ public class Foliage implements SingletonDrawable {
         this.midDetailBranch = makeBranch(bmInitialiser, 4);
         this.lowDetailBranch = makeBranch(bmInitialiser, 3);
         this.leaf = new TerrainFactory(1f, 1f, 1f).makeTerrain(bmInitialiser, (x, y) -> 0f, null);
+        this.modelView = bmInitialiser.getModelView();
     }
 
-    private Body makeBranch(BufferManager.Initialiser bmInitialiser, int sliceCount) {
+    private SimpleBody makeBranch(BufferManager.Initialiser bmInitialiser, int sliceCount) {
         return new StackBuilder(bmInitialiser)
                 .setSliceCount(sliceCount)
                 .addConicalFrustum(0.5f, 0f, 0f, 1f, false, false)
@@ -72,6 +76,21 @@ public class Foliage implements SingletonDrawable {
         leaf.draw(gl);
     }
 
+    /**
+     * @return The ModelViewStack through which the trees are moved into
+     *         place.
+     */
+    ModelViewStack getModelView() {
+        return modelView;
+    }
+
+    /**
+     * @return The body of a leaf.
+     */
+    SimpleBody getLeaf() {
+        return leaf;
+    }
+
     /**
      * Draws a branch at the current transformation. The level of detail (IE the
      * number of faces) on the branch depends on the given detail level.
@@ -85,20 +104,25 @@ public class Foliage implements SingletonDrawable {
      *                            number, the higher the detail level.
      */
     public void drawBranch(GL2 gl, int requiredDetailLevel) {
+        getBranch(requiredDetailLevel).draw(gl);
+    }
+
+    /**
+     * @param requiredDetailLevel The required level of detail, as in
+     *                            {@link #drawBranch}.
+     * @return The body of a branch at that level of detail.
+     */
+    SimpleBody getBranch(int requiredDetailLevel) {
         switch (requiredDetailLevel) {
             case 0:
-                lowDetailBranch.draw(gl);
-                break;
+                return lowDetailBranch;
             case 1:
-                midDetailBranch.draw(gl);
-                break;
+                return midDetailBranch;
             case 2:
-                highDetailBranch.draw(gl);
-                break;
+                return highDetailBranch;
             case 3:
             default:
-                ultraHighDetailBranch.draw(gl);
-                break;
+                return ultraHighDetailBranch;
         }
     }
 
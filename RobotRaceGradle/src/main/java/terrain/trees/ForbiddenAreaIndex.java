@@ -0,0 +1,157 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain.trees;
+
+import java.util.Arrays;
+
+/**
+ * A set of forbidden areas, kept in a uniform grid of cells so that checking
+ * whether a point is forbidden only looks at the areas near that point. Each
+ * cell lists the areas that overlap it.
+ *
+ * The areas are rectangles that contain their lowest x and y, but not their
+ * highest. Only points within the bounds of the grid can be checked.
+ *
+ * @author Arjan Boschman
+ */
+class ForbiddenAreaIndex {
+
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    /**
+     * The areas overlapping each cell, in rows along the x-axis. Null for
+     * cells without any.
+     */
+    private final int[][] cells;
+    private final int[] cellCounts;
+    /**
+     * The lowest x, lowest y, highest x and highest y of each area.
+     */
+    private double[] areas = new double[4 * INITIAL_CELL_CAPACITY];
+    private int areaCount = 0;
+
+    /**
+     * @param minX     The lowest x-coordinate in meters of the bounds.
+     * @param minY     The lowest y-coordinate in meters of the bounds.
+     * @param width    The width in meters of the bounds.
+     * @param height   The height in meters of the bounds.
+     * @param cellSize The size in meters of the cells. Works best around the
+     *                 size of the smallest areas.
+     */
+    ForbiddenAreaIndex(double minX, double minY, double width, double height, double cellSize) {
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cells = new int[columns * rows][];
+        this.cellCounts = new int[columns * rows];
+    }
+
+    /**
+     * Add a forbidden area. The parts outside of the bounds are ignored.
+     *
+     * @param x      The x-coordinate in meters of the area.
+     * @param y      The y-coordinate in meters of the area.
+     * @param width  The width in meters of the area.
+     * @param height The height in meters of the area.
+     */
+    void add(double x, double y, double width, double height) {
+        if (4 * areaCount == areas.length) {
+            areas = Arrays.copyOf(areas, areas.length * 2);
+        }
+        final int area = areaCount++;
+        areas[4 * area] = x;
+        areas[4 * area + 1] = y;
+        areas[4 * area + 2] = x + width;
+        areas[4 * area + 3] = y + height;
+        final int firstColumn = getColumn(x);
+        final int lastColumn = getColumn(x + width);
+        final int firstRow = getRow(y);
+        final int lastRow = getRow(y + height);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                addToCell(row * columns + column, area);
+            }
+        }
+    }
+
+    private void addToCell(int cell, int area) {
+        if (cells[cell] == null) {
+            cells[cell] = new int[INITIAL_CELL_CAPACITY];
+        } else if (cellCounts[cell] == cells[cell].length) {
+            cells[cell] = Arrays.copyOf(cells[cell], cellCounts[cell] * 2);
+        }
+        cells[cell][cellCounts[cell]++] = area;
+    }
+
+    /**
+     * @param x The x-coordinate in meters of the point.
+     * @param y The y-coordinate in meters of the point.
+     * @return True if the point lies within any of the forbidden areas.
+     */
+    boolean contains(double x, double y) {
+        final int cell = getRow(y) * columns + getColumn(x);
+        for (int i = 0; i < cellCounts[cell]; i++) {
+            final int area = cells[cell][i];
+            if (x >= areas[4 * area] && y >= areas[4 * area + 1]
+                    && x < areas[4 * area + 2] && y < areas[4 * area + 3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of forbidden areas.
+     */
+    int size() {
+        return areaCount;
+    }
+
+    /**
+     * @return The column of the cell that holds the given x-coordinate,
+     *         clamped to the grid.
+     */
+    private int getColumn(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellSize)));
+    }
+
+    /**
+     * @return The row of the cell that holds the given y-coordinate, clamped
+     *         to the grid.
+     */
+    private int getRow(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+    }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain.trees;
+
+import bodies.InstanceRenderer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.media.opengl.GL2;
+import robotrace.Lighting;
+import robotrace.Material;
+import robotrace.Vector;
+import utility.MatrixUtils;
+
+/**
+ * All the trees on a terrain.
+ *
+ * With an {@link InstanceRenderer}, the whole forest is drawn with one draw
+ * call per branch mesh and one for the leafs, however many trees there are.
+ * The matrices of all branches and leafs of all trees are gathered per mesh
+ * and uploaded in one go. They are gathered again only when a tree changes its
+ * detail level, which happens now and then as the camera moves. Without an
+ * InstanceRenderer, every tree is drawn by itself.
+ *
+ * With an {@link ImpostorRenderer}, trees further away than the impostor
+ * distance are drawn as a single textured quad each, all in one more draw
+ * call, so that the cost of distant trees hardly depends on their shape.
+ *
+ * @author Arjan Boschman
+ */
+public class Forest {
+
+    private static final Logger LOGGER = Logger.getLogger(Forest.class.getName());
+    /**
+     * The number of branch meshes, see {@link Foliage#getBranch}.
+     */
+    private static final int BRANCH_MESH_COUNT = 4;
+    /**
+     * The matrices are gathered in groups: one per branch mesh, followed by
+     * one for the leafs.
+     */
+    private static final int LEAF_GROUP = BRANCH_MESH_COUNT;
+    private static final int GROUP_COUNT = BRANCH_MESH_COUNT + 1;
+    /**
+     * The detail level of trees that are drawn as impostors.
+     */
+    private static final int IMPOSTOR = -2;
+    /**
+     * The default distance in meters beyond which trees are drawn as
+     * impostors. Trees this far away are drawn at a low detail level anyway,
+     * see {@link Tree}.
+     */
+    private static final float DEFAULT_IMPOSTOR_DISTANCE = 400f;
+
+    private final Foliage foliage;
+    private final InstanceRenderer instanceRenderer;
+    private final ImpostorRenderer impostorRenderer;
+    private float impostorDistance = DEFAULT_IMPOSTOR_DISTANCE;
+    private final List<Tree> trees = new ArrayList<>();
+    /**
+     * The detail level of each tree when the matrices were last gathered, or
+     * -1 if they have not been gathered since the tree was added. Trees drawn
+     * as impostors have the level {@link #IMPOSTOR}.
+     */
+    private int[] detailLevels = new int[0];
+    private float[] matrices = new float[0];
+    private final int[] groupStarts = new int[GROUP_COUNT];
+    private final int[] groupCounts = new int[GROUP_COUNT];
+    private int lastFrameDrawCallCount = 0;
+    private int lastFrameInstanceCount = 0;
+    private int lastFrameImpostorCount = 0;
+    private int gatherCount = 0;
+
+    /**
+     * @param foliage          The Foliage with the branch and leaf bodies.
+     * @param instanceRenderer The InstanceRenderer used to draw the trees, or
+     *                         null to draw every tree by itself.
+     * @param impostorRenderer The ImpostorRenderer used to draw distant
+     *                         trees, or null to draw all trees in full.
+     */
+    public Forest(Foliage foliage, InstanceRenderer instanceRenderer, ImpostorRenderer impostorRenderer) {
+        this.foliage = foliage;
+        this.instanceRenderer = instanceRenderer;
+        this.impostorRenderer = impostorRenderer;
+    }
+
+    /**
+     * @param impostorDistance The distance in meters beyond which trees are
+     *                         drawn as impostors, if there is an
+     *                         ImpostorRenderer.
+     * @return This Forest.
+     */
+    public Forest setImpostorDistance(float impostorDistance) {
+        this.impostorDistance = impostorDistance;
+        return this;
+    }
+
+    /**
+     * @param planted The trees to add. They must use the Foliage of this
+     *                forest.
+     */
+    public void addTrees(Collection<Tree> planted) {
+        trees.addAll(planted);
+        detailLevels = new int[trees.size()];
+        Arrays.fill(detailLevels, -1);
+    }
+
+    /**
+     * @return The number of trees.
+     */
+    public int size() {
+        return trees.size();
+    }
+
+    /**
+     * Draws all trees.
+     *
+     * @param gl       The instance of GL2 responsible for drawing the trees.
+     * @param camPos   The position of the camera in terrain coordinates.
+     * @param lighting The Lighting instance used to set the materials.
+     */
+    public void draw(GL2 gl, Vector camPos, Lighting lighting) {
+        if (instanceRenderer == null) {
+            drawEachTree(gl, camPos, lighting);
+            return;
+        }
+        if (updateDetailLevels(camPos)) {
+            gatherMatrices();
+            instanceRenderer.upload(gl, matrices, groupStarts[LEAF_GROUP] + groupCounts[LEAF_GROUP]);
+        }
+        lastFrameDrawCallCount = 0;
+        lastFrameInstanceCount = 0;
+        instanceRenderer.startDraw(gl);
+        lighting.setMaterial(gl, Material.BARK);
+        for (int mesh = 0; mesh < BRANCH_MESH_COUNT; mesh++) {
+            drawGroup(gl, mesh);
+        }
+        lighting.setMaterial(gl, Material.LEAF);
+        drawGroup(gl, LEAF_GROUP);
+        instanceRenderer.endDraw(gl);
+        drawImpostors(gl, camPos, lighting);
+        //Checked first, so that no arguments are boxed every frame while the message is not logged.
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE,
+                    "{0} trees drawn as {1} instances and {2} impostors in {3} draw calls, gathered {4} times so far.",
+                    new Object[]{trees.size(), lastFrameInstanceCount, lastFrameImpostorCount, lastFrameDrawCallCount, gatherCount});
+        }
+    }
+
+    private void drawEachTree(GL2 gl, Vector camPos, Lighting lighting) {
+        updateDetailLevels(camPos);
+        lastFrameDrawCallCount = 0;
+        for (int i = 0; i < trees.size(); i++) {
+            final int detailLevel = detailLevels[i];
+            if (detailLevel == IMPOSTOR) {
+                continue;
+            }
+            final Tree tree = trees.get(i);
+            tree.draw(gl, lighting, detailLevel);
+            lastFrameDrawCallCount += tree.getModel().getBranchCount(detailLevel)
+                    + tree.getModel().getLeafCount(detailLevel);
+        }
+        lastFrameInstanceCount = lastFrameDrawCallCount;
+        drawImpostors(gl, camPos, lighting);
+    }
+
+    /**
+     * Draw the trees whose detail level is {@link #IMPOSTOR}, in one draw
+     * call.
+     */
+    private void drawImpostors(GL2 gl, Vector camPos, Lighting lighting) {
+        lastFrameImpostorCount = 0;
+        if (impostorRenderer == null) {
+            return;
+        }
+        //The quads turn with the camera, so they are made again every frame.
+        for (int i = 0; i < trees.size(); i++) {
+            if (detailLevels[i] == IMPOSTOR) {
+                impostorRenderer.add(trees.get(i), camPos);
+            }
+        }
+        lastFrameImpostorCount = impostorRenderer.draw(gl, lighting);
+        if (lastFrameImpostorCount > 0) {
+            lastFrameDrawCallCount++;
+        }
+    }
+
+    private void drawGroup(GL2 gl, int group) {
+        if (groupCounts[group] == 0) {
+            return;
+        }
+        instanceRenderer.draw(gl, (group == LEAF_GROUP) ? foliage.getLeaf() : foliage.getBranch(group),
+                groupStarts[group], groupCounts[group]);
+        lastFrameDrawCallCount++;
+        lastFrameInstanceCount += groupCounts[group];
+    }
+
+    /**
+     * Work out the detail level of every tree. Distant trees are drawn as
+     * impostors, as far as the ImpostorRenderer has room for them.
+     *
+     * @return True if any tree changed its detail level.
+     */
+    private boolean updateDetailLevels(Vector camPos) {
+        boolean changed = false;
+        int impostorCount = 0;
+        for (int i = 0; i < trees.size(); i++) {
+            final Tree tree = trees.get(i);
+            final int detailLevel;
+            if (impostorCount < ImpostorRenderer.CAPACITY && isImpostor(tree, camPos)) {
+                detailLevel = IMPOSTOR;
+                impostorCount++;
+            } else {
+                detailLevel = tree.getRequiredDetailLevel(camPos);
+            }
+            if (detailLevel != detailLevels[i]) {
+                detailLevels[i] = detailLevel;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean isImpostor(Tree tree, Vector camPos) {
+        return impostorRenderer != null && impostorRenderer.canDraw(tree.getModel())
+                && camPos.subtract(tree.getPosition()).length() > impostorDistance;
+    }
+
+    /**
+     * Gather the matrices of all branches and leafs at the current detail
+     * level of each tree, grouped by mesh. Each matrix is the one of the tree
+     * model, moved to the position of the tree. Impostors are left out.
+     */
+    private void gatherMatrices() {
+        Arrays.fill(groupCounts, 0);
+        for (int i = 0; i < trees.size(); i++) {
+            if (detailLevels[i] == IMPOSTOR) {
+                continue;
+            }
+            final TreeModel model = trees.get(i).getModel();
+            for (int mesh : model.getBranchMeshes(detailLevels[i])) {
+                groupCounts[getBranchGroup(mesh)]++;
+            }
+            groupCounts[LEAF_GROUP] += model.getLeafCount(detailLevels[i]);
+        }
+        int matrixCount = 0;
+        for (int group = 0; group < GROUP_COUNT; group++) {
+            groupStarts[group] = matrixCount;
+            matrixCount += groupCounts[group];
+        }
+        if (matrices.length < matrixCount * MatrixUtils.MATRIX_SIZE) {
+            matrices = new float[matrixCount * MatrixUtils.MATRIX_SIZE];
+        }
+        //Count again while filling in, as the index of the next matrix of each group.
+        Arrays.fill(groupCounts, 0);
+        for (int i = 0; i < trees.size(); i++) {
+            if (detailLevels[i] == IMPOSTOR) {
+                continue;
+            }
+            final Tree tree = trees.get(i);
+            final TreeModel model = tree.getModel();
+            final float[] branchMatrices = model.getBranchMatrices(detailLevels[i]);
+            final int[] branchMeshes = model.getBranchMeshes(detailLevels[i]);
+            for (int branch = 0; branch < branchMeshes.length; branch++) {
+                final int group = getBranchGroup(branchMeshes[branch]);
+                addMatrix(branchMatrices, branch, group, tree.getPosition());
+            }
+            final float[] leafMatrices = model.getLeafMatrices(detailLevels[i]);
+            for (int leaf = 0; leaf < model.getLeafCount(detailLevels[i]); leaf++) {
+                addMatrix(leafMatrices, leaf, LEAF_GROUP, tree.getPosition());
+            }
+        }
+        gatherCount++;
+    }
+
+    private void addMatrix(float[] source, int index, int group, Vector position) {
+        final int target = (groupStarts[group] + groupCounts[group]++) * MatrixUtils.MATRIX_SIZE;
+        System.arraycopy(source, index * MatrixUtils.MATRIX_SIZE, matrices, target, MatrixUtils.MATRIX_SIZE);
+        //The model matrices don't project, so moving them only changes their translation.
+        matrices[target + 12] += (float) position.x();
+        matrices[target + 13] += (float) position.y();
+        matrices[target + 14] += (float) position.z();
+    }
+
+    /**
+     * Branches that ask for more detail than there are meshes get the most
+     * detailed one, like {@link Foliage#getBranch} does.
+     */
+    private static int getBranchGroup(int mesh) {
+        return Math.min(mesh, BRANCH_MESH_COUNT - 1);
+    }
+
+    /**
+     * @return The number of draw calls made during the last call to
+     *         {@link #draw}.
+     */
+    public int getLastFrameDrawCallCount() {
+        return lastFrameDrawCallCount;
+    }
+
+    /**
+     * @return The number of branches and leafs drawn during the last call to
+     *         {@link #draw}.
+     */
+    public int getLastFrameInstanceCount() {
+        return lastFrameInstanceCount;
+    }
+
+    /**
+     * @return The number of trees drawn as impostors during the last call to
+     *         {@link #draw}.
+     */
+    public int getLastFrameImpostorCount() {
+        return lastFrameImpostorCount;
+    }
+
+}
@@ -0,0 +1,502 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain.trees;
+
+import Texture.ImplementedTexture;
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.util.texture.TextureData;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.media.opengl.GL2;
+import robotrace.Material;
+import utility.MatrixUtils;
+
+/**
+ * Pictures of tree models seen from the side, used to draw distant trees as
+ * a single quad each. Every model is pictured from {@link #ANGLE_COUNT}
+ * directions around it, all in one image: a row of cells per model and a
+ * column per direction.
+ *
+ * The pictures are drawn in software rather than by OpenGL, so that the atlas
+ * can be made on a build thread while the meshes are still being made. The
+ * branches are drawn as tapered tubes and the leafs as quads, in the colours
+ * of their materials. Only the texture is made on the OpenGL thread, see
+ * {@link #makeTexture}.
+ *
+ * @author Arjan Boschman
+ */
+public class ImpostorAtlas {
+
+    /**
+     * The number of directions from which every model is pictured.
+     */
+    public static final int ANGLE_COUNT = 8;
+    /**
+     * The width and height of the picture of a model from one direction, in
+     * pixels.
+     */
+    public static final int CELL_SIZE = 128;
+    /**
+     * Pixels left transparent around every picture, so that interpolating
+     * between texels doesn't pick up the neighbouring pictures.
+     */
+    private static final int CELL_MARGIN = 1;
+    private static final int BYTES_PER_PIXEL = 4;
+    /**
+     * The radius of the foot of a branch mesh before scaling, see
+     * {@link Foliage}. The mesh narrows to a point at height one.
+     */
+    private static final double BRANCH_RADIUS = 0.5d;
+    /**
+     * Half the width of the leaf quad before scaling, see {@link Foliage}.
+     */
+    private static final double LEAF_HALF_SIZE = 0.5d;
+    /**
+     * The brightness of a surface seen edge-on, relative to one seen
+     * head-on.
+     */
+    private static final float EDGE_SHADE = 0.6f;
+
+    private final Map<TreeModel, Integer> rows = new IdentityHashMap<>();
+    private final float[] halfWidths;
+    private final float[] bottoms;
+    private final float[] tops;
+    private final int width;
+    private final int height;
+    private final ByteBuffer pixels;
+    /**
+     * The depth of the nearest surface drawn in each pixel of the current
+     * cell, larger being closer to the viewer.
+     */
+    private final double[] depths = new double[CELL_SIZE * CELL_SIZE];
+    private final byte[] barkColour = toBytes(Material.BARK.getDiffuse());
+    private final byte[] leafColour = toBytes(Material.LEAF.getDiffuse());
+
+    //The cell being drawn and how the meters around the model map onto it.
+    private int cellX;
+    private int cellY;
+    private double viewX;
+    private double viewY;
+    private double currentHalfWidth;
+    private double currentBottom;
+    private double pixelsPerMeterX;
+    private double pixelsPerMeterZ;
+
+    /**
+     * Picture every model from all directions. This takes a while, so it is
+     * best done on a build thread.
+     *
+     * @param models The models, each of which gets a row in the atlas.
+     */
+    public ImpostorAtlas(Collection<TreeModel> models) {
+        this.halfWidths = new float[models.size()];
+        this.bottoms = new float[models.size()];
+        this.tops = new float[models.size()];
+        this.width = ANGLE_COUNT * CELL_SIZE;
+        //Textures with power of two sizes work everywhere.
+        this.height = Math.max(CELL_SIZE, Integer.highestOneBit(Math.max(1, models.size() * CELL_SIZE - 1)) << 1);
+        this.pixels = Buffers.newDirectByteBuffer(width * height * BYTES_PER_PIXEL);
+        int row = 0;
+        for (TreeModel model : models) {
+            rows.put(model, row);
+            measure(model, row);
+            for (int angle = 0; angle < ANGLE_COUNT; angle++) {
+                drawCell(model, row, angle);
+            }
+            row++;
+        }
+    }
+
+    /**
+     * @param trees The trees whose models to picture.
+     * @return An atlas of every distinct model among the trees.
+     */
+    public static ImpostorAtlas forTrees(Collection<Tree> trees) {
+        final Set<TreeModel> models = new LinkedHashSet<>();
+        for (Tree tree : trees) {
+            models.add(tree.getModel());
+        }
+        return new ImpostorAtlas(models);
+    }
+
+    /**
+     * Make the texture of this atlas. Must be called on the OpenGL thread.
+     *
+     * @param gl The instance of GL2 that will own the texture.
+     * @return The texture.
+     */
+    public ImplementedTexture makeTexture(GL2 gl) {
+        final TextureData data = new TextureData(gl.getGLProfile(), GL2.GL_RGBA, width, height, 0,
+                GL2.GL_RGBA, GL2.GL_UNSIGNED_BYTE, false, false, false, pixels, null);
+        return new ImplementedTexture(gl, data, "tree impostors", true);
+    }
+
+    /**
+     * @return The number of models in this atlas.
+     */
+    public int getModelCount() {
+        return rows.size();
+    }
+
+    /**
+     * @return The row of the model, or -1 if it isn't in this atlas.
+     */
+    int getRow(TreeModel model) {
+        final Integer row = rows.get(model);
+        return (row == null) ? -1 : row;
+    }
+
+    /**
+     * @return The horizontal distance from the foot of the model to its
+     *         furthest point, which is half the width of its pictures.
+     */
+    float getHalfWidth(int row) {
+        return halfWidths[row];
+    }
+
+    /**
+     * @return The height of the lowest point of the model, relative to its
+     *         foot.
+     */
+    float getBottom(int row) {
+        return bottoms[row];
+    }
+
+    /**
+     * @return The height of the highest point of the model, relative to its
+     *         foot.
+     */
+    float getTop(int row) {
+        return tops[row];
+    }
+
+    /**
+     * @param azimuth The direction from the foot of the tree to the viewer,
+     *                in radians counterclockwise from the x axis.
+     * @return The column of the picture taken from closest to that direction.
+     */
+    static int getAngle(double azimuth) {
+        return Math.floorMod((int) Math.round(azimuth * ANGLE_COUNT / (2d * Math.PI)), ANGLE_COUNT);
+    }
+
+    /**
+     * @return The texture coordinate of the left edge of the pictures in the
+     *         given column.
+     */
+    float getLeftS(int angle) {
+        return (float) (angle * CELL_SIZE + CELL_MARGIN) / width;
+    }
+
+    /**
+     * @return The texture coordinate of the right edge of the pictures in the
+     *         given column.
+     */
+    float getRightS(int angle) {
+        return (float) ((angle + 1) * CELL_SIZE - CELL_MARGIN) / width;
+    }
+
+    /**
+     * @return The texture coordinate of the bottom edge of the pictures in
+     *         the given row.
+     */
+    float getBottomT(int row) {
+        return (float) (row * CELL_SIZE + CELL_MARGIN) / height;
+    }
+
+    /**
+     * @return The texture coordinate of the top edge of the pictures in the
+     *         given row.
+     */
+    float getTopT(int row) {
+        return (float) ((row + 1) * CELL_SIZE - CELL_MARGIN) / height;
+    }
+
+    /**
+     * @return The number of pixels covered by the picture of a model from a
+     *         direction.
+     */
+    int getCoveredPixelCount(int row, int angle) {
+        int covered = 0;
+        for (int y = 0; y < CELL_SIZE; y++) {
+            for (int x = 0; x < CELL_SIZE; x++) {
+                final int pixel = (row * CELL_SIZE + y) * width + angle * CELL_SIZE + x;
+                if (pixels.get(pixel * BYTES_PER_PIXEL + 3) != 0) {
+                    covered++;
+                }
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Find the extent of the model at its highest detail level.
+     */
+    private void measure(TreeModel model, int row) {
+        final int detailLevel = TreeModel.DETAIL_LEVEL_COUNT - 1;
+        double halfWidth = 0d;
+        double bottom = Double.POSITIVE_INFINITY;
+        double top = Double.NEGATIVE_INFINITY;
+        final float[] branches = model.getBranchMatrices(detailLevel);
+        for (int offset = 0; offset < branches.length; offset += MatrixUtils.MATRIX_SIZE) {
+            final double radius = getBranchRadius(branches, offset);
+            //The foot of the branch is a disc, whichever way it points; the tip is a point.
+            halfWidth = Math.max(halfWidth, Math.hypot(branches[offset + 12], branches[offset + 13]) + radius);
+            halfWidth = Math.max(halfWidth, Math.hypot(branches[offset + 12] + branches[offset + 8],
+                    branches[offset + 13] + branches[offset + 9]));
+            bottom = Math.min(bottom, Math.min(branches[offset + 14] - radius, branches[offset + 14] + branches[offset + 10]));
+            top = Math.max(top, Math.max(branches[offset + 14] + radius, branches[offset + 14] + branches[offset + 10]));
+        }
+        final float[] leafs = model.getLeafMatrices(detailLevel);
+        final double[] corner = new double[3];
+        for (int offset = 0; offset < leafs.length; offset += MatrixUtils.MATRIX_SIZE) {
+            for (int i = 0; i < 4; i++) {
+                getLeafCorner(leafs, offset, i, corner);
+                halfWidth = Math.max(halfWidth, Math.hypot(corner[0], corner[1]));
+                bottom = Math.min(bottom, corner[2]);
+                top = Math.max(top, corner[2]);
+            }
+        }
+        if (halfWidth <= 0d || !(top > bottom)) {
+            //A model without anything in it; give it a small empty picture.
+            halfWidth = 1d;
+            bottom = 0d;
+            top = 1d;
+        }
+        halfWidths[row] = (float) halfWidth;
+        bottoms[row] = (float) bottom;
+        tops[row] = (float) top;
+    }
+
+    /**
+     * Draw the model as seen from one direction into its cell.
+     */
+    private void drawCell(TreeModel model, int row, int angle) {
+        cellX = angle * CELL_SIZE;
+        cellY = row * CELL_SIZE;
+        //The viewer looks back along this direction at the foot of the tree.
+        final double azimuth = angle * 2d * Math.PI / ANGLE_COUNT;
+        viewX = Math.cos(azimuth);
+        viewY = Math.sin(azimuth);
+        currentHalfWidth = halfWidths[row];
+        currentBottom = bottoms[row];
+        final int drawableSize = CELL_SIZE - 2 * CELL_MARGIN;
+        pixelsPerMeterX = drawableSize / (2d * halfWidths[row]);
+        pixelsPerMeterZ = drawableSize / (double) (tops[row] - bottoms[row]);
+        Arrays.fill(depths, Double.NEGATIVE_INFINITY);
+        final int detailLevel = TreeModel.DETAIL_LEVEL_COUNT - 1;
+        final float[] branches = model.getBranchMatrices(detailLevel);
+        for (int offset = 0; offset < branches.length; offset += MatrixUtils.MATRIX_SIZE) {
+            drawBranch(branches, offset);
+        }
+        final float[] leafs = model.getLeafMatrices(detailLevel);
+        for (int offset = 0; offset < leafs.length; offset += MatrixUtils.MATRIX_SIZE) {
+            drawLeaf(leafs, offset);
+        }
+    }
+
+    /**
+     * Draw a branch as a tube narrowing from its foot to its tip, shaded
+     * darker towards its sides.
+     */
+    private void drawBranch(float[] matrix, int offset) {
+        final double footRadius = getBranchRadius(matrix, offset);
+        final double footX = matrix[offset + 12];
+        final double footY = matrix[offset + 13];
+        final double footZ = matrix[offset + 14];
+        final double tipX = footX + matrix[offset + 8];
+        final double tipY = footY + matrix[offset + 9];
+        final double tipZ = footZ + matrix[offset + 10];
+        //In picture coordinates: sideways in meters, height in meters and depth towards the viewer.
+        final double footU = toSideways(footX, footY);
+        final double tipU = toSideways(tipX, tipY);
+        final double footDepth = footX * viewX + footY * viewY;
+        final double tipDepth = tipX * viewX + tipY * viewY;
+        //Branches thinner than a pixel would disappear altogether.
+        final double minRadius = 0.5d / Math.min(pixelsPerMeterX, pixelsPerMeterZ);
+        final double axisU = tipU - footU;
+        final double axisZ = tipZ - footZ;
+        final double axisLengthSquared = axisU * axisU + axisZ * axisZ;
+        final double reach = Math.max(footRadius, minRadius);
+        final int minX = toPixelX(Math.min(footU, tipU) - reach);
+        final int maxX = toPixelX(Math.max(footU, tipU) + reach);
+        final int minY = toPixelY(Math.min(footZ, tipZ) - reach);
+        final int maxY = toPixelY(Math.max(footZ, tipZ) + reach);
+        for (int y = minY; y <= maxY; y++) {
+            final double z = fromPixelY(y);
+            for (int x = minX; x <= maxX; x++) {
+                final double u = fromPixelX(x);
+                //The closest point on the axis; a branch pointing at the viewer is seen as its foot.
+                final double along = (axisLengthSquared > 0d)
+                        ? Math.max(0d, Math.min(1d, ((u - footU) * axisU + (z - footZ) * axisZ) / axisLengthSquared))
+                        : 0d;
+                final double distanceU = u - (footU + along * axisU);
+                final double distanceZ = z - (footZ + along * axisZ);
+                final double distance = Math.sqrt(distanceU * distanceU + distanceZ * distanceZ);
+                final double radius = Math.max(footRadius * (1d - along), minRadius);
+                if (distance > radius) {
+                    continue;
+                }
+                final double facing = Math.sqrt(1d - (distance / radius) * (distance / radius));
+                final double depth = footDepth + along * (tipDepth - footDepth) + facing * radius;
+                plot(x, y, depth, barkColour, EDGE_SHADE + (1f - EDGE_SHADE) * (float) facing);
+            }
+        }
+    }
+
+    /**
+     * Draw a leaf as two triangles, shaded darker the more it is turned
+     * away from the viewer.
+     */
+    private void drawLeaf(float[] matrix, int offset) {
+        final double[][] corners = new double[4][3];
+        for (int i = 0; i < 4; i++) {
+            getLeafCorner(matrix, offset, i, corners[i]);
+        }
+        final double normalX = matrix[offset + 8];
+        final double normalY = matrix[offset + 9];
+        final double normalZ = matrix[offset + 10];
+        final double normalLength = Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+        final double facing = (normalLength > 0d) ? Math.abs(normalX * viewX + normalY * viewY) / normalLength : 0d;
+        final float shade = EDGE_SHADE + (1f - EDGE_SHADE) * (float) facing;
+        drawTriangle(corners[0], corners[1], corners[2], shade);
+        drawTriangle(corners[0], corners[2], corners[3], shade);
+    }
+
+    private void drawTriangle(double[] a, double[] b, double[] c, float shade) {
+        final double au = toSideways(a[0], a[1]);
+        final double bu = toSideways(b[0], b[1]);
+        final double cu = toSideways(c[0], c[1]);
+        final double area = (bu - au) * (c[2] - a[2]) - (cu - au) * (b[2] - a[2]);
+        if (area == 0d) {
+            return;
+        }
+        final double aDepth = a[0] * viewX + a[1] * viewY;
+        final double bDepth = b[0] * viewX + b[1] * viewY;
+        final double cDepth = c[0] * viewX + c[1] * viewY;
+        final int minX = toPixelX(Math.min(au, Math.min(bu, cu)));
+        final int maxX = toPixelX(Math.max(au, Math.max(bu, cu)));
+        final int minY = toPixelY(Math.min(a[2], Math.min(b[2], c[2])));
+        final int maxY = toPixelY(Math.max(a[2], Math.max(b[2], c[2])));
+        for (int y = minY; y <= maxY; y++) {
+            final double z = fromPixelY(y);
+            for (int x = minX; x <= maxX; x++) {
+                final double u = fromPixelX(x);
+                //Barycentric weights of b and c; the pixel is inside if all weights are positive.
+                final double weightB = ((u - au) * (c[2] - a[2]) - (cu - au) * (z - a[2])) / area;
+                final double weightC = ((bu - au) * (z - a[2]) - (u - au) * (b[2] - a[2])) / area;
+                final double weightA = 1d - weightB - weightC;
+                if (weightA < 0d || weightB < 0d || weightC < 0d) {
+                    continue;
+                }
+                plot(x, y, weightA * aDepth + weightB * bDepth + weightC * cDepth, leafColour, shade);
+            }
+        }
+    }
+
+    /**
+     * Colour a pixel of the current cell, unless something closer to the
+     * viewer has already been drawn there.
+     */
+    private void plot(int x, int y, double depth, byte[] colour, float shade) {
+        final int cellPixel = y * CELL_SIZE + x;
+        if (depth <= depths[cellPixel]) {
+            return;
+        }
+        depths[cellPixel] = depth;
+        final int index = ((cellY + y) * width + cellX + x) * BYTES_PER_PIXEL;
+        for (int channel = 0; channel < 3; channel++) {
+            pixels.put(index + channel, (byte) Math.round((colour[channel] & 0xFF) * shade));
+        }
+        pixels.put(index + 3, (byte) 0xFF);
+    }
+
+    private double toSideways(double x, double y) {
+        //To the right of a viewer looking back along the view direction.
+        return -x * viewY + y * viewX;
+    }
+
+    private int toPixelX(double u) {
+        final int x = (int) Math.floor(CELL_MARGIN + (u + currentHalfWidth) * pixelsPerMeterX);
+        return Math.max(CELL_MARGIN, Math.min(CELL_SIZE - CELL_MARGIN - 1, x));
+    }
+
+    private int toPixelY(double z) {
+        final int y = (int) Math.floor(CELL_MARGIN + (z - currentBottom) * pixelsPerMeterZ);
+        return Math.max(CELL_MARGIN, Math.min(CELL_SIZE - CELL_MARGIN - 1, y));
+    }
+
+    /**
+     * @return The sideways position of the centre of a pixel column.
+     */
+    private double fromPixelX(int x) {
+        return (x + 0.5d - CELL_MARGIN) / pixelsPerMeterX - currentHalfWidth;
+    }
+
+    /**
+     * @return The height of the centre of a pixel row.
+     */
+    private double fromPixelY(int y) {
+        return (y + 0.5d - CELL_MARGIN) / pixelsPerMeterZ + currentBottom;
+    }
+
+    /**
+     * @return The radius of the foot of a branch, after scaling.
+     */
+    private static double getBranchRadius(float[] matrix, int offset) {
+        final double scaleX = Math.sqrt(matrix[offset] * matrix[offset] + matrix[offset + 1] * matrix[offset + 1]
+                + matrix[offset + 2] * matrix[offset + 2]);
+        final double scaleY = Math.sqrt(matrix[offset + 4] * matrix[offset + 4] + matrix[offset + 5] * matrix[offset + 5]
+                + matrix[offset + 6] * matrix[offset + 6]);
+        return BRANCH_RADIUS * Math.max(scaleX, scaleY);
+    }
+
+    /**
+     * Transform a corner of the leaf quad, counterclockwise from the lower
+     * left one.
+     */
+    private static void getLeafCorner(float[] matrix, int offset, int corner, double[] target) {
+        final double x = (corner == 1 || corner == 2) ? LEAF_HALF_SIZE : -LEAF_HALF_SIZE;
+        final double y = (corner >= 2) ? LEAF_HALF_SIZE : -LEAF_HALF_SIZE;
+        for (int i = 0; i < 3; i++) {
+            target[i] = matrix[offset + i] * x + matrix[offset + 4 + i] * y + matrix[offset + 12 + i];
+        }
+    }
+
+    private static byte[] toBytes(float[] colour) {
+        final byte[] bytes = new byte[3];
+        for (int i = 0; i < 3; i++) {
+            bytes[i] = (byte) Math.round(Math.max(0f, Math.min(1f, colour[i])) * 0xFF);
+        }
+        return bytes;
+    }
+
+}
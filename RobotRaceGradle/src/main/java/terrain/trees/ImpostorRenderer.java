@@ -0,0 +1,209 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain.trees;
+
+import Texture.ImplementedTexture;
+import bodies.BufferManager;
+import bodies.GLStateCache;
+import bodies.StreamingBufferPool;
+import bodies.assembly.Vertex;
+import com.jogamp.common.nio.Buffers;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import javax.media.opengl.GL2;
+import robotrace.Lighting;
+import robotrace.Vector;
+
+/**
+ * Draws distant trees as impostors: a single quad per tree that turns to face
+ * the camera around the vertical axis, showing the picture from an
+ * {@link ImpostorAtlas} taken from the closest direction. All impostors of a
+ * frame are put into one buffer and drawn in a single draw call.
+ *
+ * The quads are lit as if they face upwards, like the canopy of a tree seen
+ * from afar. Pixels outside the pictures are dropped by an alpha test.
+ *
+ * @author Arjan Boschman
+ */
+public class ImpostorRenderer {
+
+    /**
+     * The largest number of impostors drawn in a frame.
+     */
+    public static final int CAPACITY = 4096;
+    private static final int VERTICES_PER_IMPOSTOR = 4;
+    private static final int INDICES_PER_IMPOSTOR = 6;
+    private static final int FLOATS_PER_VERTEX = Vertex.COORD_COUNT * Vertex.NR_VERTEX_ELEMENTS;
+    /**
+     * The alpha below which pixels of the pictures are left out.
+     */
+    private static final float ALPHA_THRESHOLD = 0.5f;
+
+    private final StreamingBufferPool pool;
+    private final GLStateCache stateCache;
+    /**
+     * The vertices of the impostors added this frame, reused every frame.
+     */
+    private final FloatBuffer vertices = Buffers.newDirectFloatBuffer(CAPACITY * VERTICES_PER_IMPOSTOR * FLOATS_PER_VERTEX);
+    private ImpostorAtlas atlas;
+    private ImplementedTexture texture;
+    private int impostorCount = 0;
+
+    /**
+     * Make the buffer the impostors are drawn from. The pictures follow later,
+     * see {@link #setAtlas}.
+     *
+     * @param bmInitialiser The BufferManager.Initialiser that makes the
+     *                      buffer.
+     */
+    public ImpostorRenderer(BufferManager.Initialiser bmInitialiser) {
+        this.pool = bmInitialiser.makeStreamingBufferPool(1, CAPACITY * VERTICES_PER_IMPOSTOR, generateIndexBuffer());
+        this.stateCache = bmInitialiser.getStateCache();
+    }
+
+    /**
+     * The triangles of all quads, which never change.
+     */
+    private static IntBuffer generateIndexBuffer() {
+        final IntBuffer buffer = Buffers.newDirectIntBuffer(CAPACITY * INDICES_PER_IMPOSTOR);
+        for (int i = 0; i < CAPACITY; i++) {
+            final int vertexIndex = i * VERTICES_PER_IMPOSTOR;
+            buffer.put(vertexIndex);                                            //Lower left
+            buffer.put(vertexIndex + 1);                                        //Lower right
+            buffer.put(vertexIndex + 2);                                        //Upper right
+
+            buffer.put(vertexIndex);                                            //Lower left
+            buffer.put(vertexIndex + 2);                                        //Upper right
+            buffer.put(vertexIndex + 3);                                        //Upper left
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    /**
+     * Set the pictures of the trees and make their texture. Must be called on
+     * the OpenGL thread.
+     *
+     * @param gl    The instance of GL2 that will own the texture.
+     * @param atlas The pictures of the tree models.
+     */
+    public void setAtlas(GL2 gl, ImpostorAtlas atlas) {
+        this.texture = atlas.makeTexture(gl);
+        this.atlas = atlas;
+    }
+
+    /**
+     * @return True if trees with the given model can be drawn as impostors.
+     */
+    boolean canDraw(TreeModel model) {
+        return atlas != null && atlas.getRow(model) >= 0;
+    }
+
+    /**
+     * Add the impostor of a tree to the ones drawn this frame. Trees added
+     * beyond the capacity are ignored.
+     *
+     * @param tree   The tree, whose model must be in the atlas.
+     * @param camPos The position of the camera in terrain coordinates.
+     */
+    void add(Tree tree, Vector camPos) {
+        if (impostorCount == CAPACITY) {
+            return;
+        }
+        final int row = atlas.getRow(tree.getModel());
+        final Vector position = tree.getPosition();
+        double towardsCameraX = camPos.x() - position.x();
+        double towardsCameraY = camPos.y() - position.y();
+        double horizontalDistance = Math.hypot(towardsCameraX, towardsCameraY);
+        if (horizontalDistance == 0d) {
+            //Right above the tree any direction will do.
+            towardsCameraX = 1d;
+            towardsCameraY = 0d;
+            horizontalDistance = 1d;
+        }
+        final int angle = ImpostorAtlas.getAngle(Math.atan2(towardsCameraY, towardsCameraX));
+        final float halfWidth = atlas.getHalfWidth(row);
+        //To the right of the camera as it looks at the tree.
+        final float rightX = (float) (-towardsCameraY / horizontalDistance) * halfWidth;
+        final float rightY = (float) (towardsCameraX / horizontalDistance) * halfWidth;
+        final float x = (float) position.x();
+        final float y = (float) position.y();
+        final float bottom = (float) position.z() + atlas.getBottom(row);
+        final float top = (float) position.z() + atlas.getTop(row);
+        final float leftS = atlas.getLeftS(angle);
+        final float rightS = atlas.getRightS(angle);
+        final float bottomT = atlas.getBottomT(row);
+        final float topT = atlas.getTopT(row);
+        int offset = impostorCount * VERTICES_PER_IMPOSTOR * FLOATS_PER_VERTEX;
+        offset = putVertex(offset, x - rightX, y - rightY, bottom, leftS, bottomT);
+        offset = putVertex(offset, x + rightX, y + rightY, bottom, rightS, bottomT);
+        offset = putVertex(offset, x + rightX, y + rightY, top, rightS, topT);
+        putVertex(offset, x - rightX, y - rightY, top, leftS, topT);
+        impostorCount++;
+    }
+
+    private int putVertex(int offset, float x, float y, float z, float s, float t) {
+        vertices.put(offset, x);
+        vertices.put(offset + 1, y);
+        vertices.put(offset + 2, z);
+        vertices.put(offset + 3, 0f);
+        vertices.put(offset + 4, 0f);
+        vertices.put(offset + 5, 1f);
+        vertices.put(offset + 6, s);
+        vertices.put(offset + 7, t);
+        vertices.put(offset + 8, 0f);
+        return offset + FLOATS_PER_VERTEX;
+    }
+
+    /**
+     * Draw the impostors added since the last call, in one draw call, and
+     * start over for the next frame.
+     *
+     * @param gl       The instance of GL2 responsible for drawing.
+     * @param lighting The Lighting instance used to set the colour.
+     * @return The number of impostors drawn.
+     */
+    int draw(GL2 gl, Lighting lighting) {
+        final int drawn = impostorCount;
+        impostorCount = 0;
+        if (drawn == 0) {
+            return 0;
+        }
+        pool.upload(gl, 0, vertices, drawn * VERTICES_PER_IMPOSTOR);
+        //The colours are in the texture; the material only carries the light.
+        lighting.setColor(gl, 1f, 1f, 1f, 1f);
+        stateCache.useTexture(gl, texture);
+        stateCache.enable(gl, GL2.GL_ALPHA_TEST);
+        gl.glAlphaFunc(GL2.GL_GREATER, ALPHA_THRESHOLD);
+        pool.draw(gl, 0, drawn * INDICES_PER_IMPOSTOR);
+        stateCache.disable(gl, GL2.GL_ALPHA_TEST);
+        stateCache.useTexture(gl, null);
+        pool.endDraw(gl);
+        return drawn;
+    }
+
+}
@@ -26,12 +26,13 @@
  */
 package terrain.trees;
 
-import java.util.HashSet;
-import java.util.Set;
+import bodies.ModelViewStack;
+import java.util.ArrayList;
+import java.util.List;
 import javax.media.opengl.GL2;
 import robotrace.Lighting;
-import robotrace.Material;
 import robotrace.Vector;
+import utility.MatrixUtils;
 
 /**
  *
@@ -41,12 +42,12 @@ public class Tree {
 
     private final Foliage foliage;
     private final Vector position;
-    private final Node trunk;
+    private final TreeModel model;
 
-    public Tree(Foliage foliage, Vector position, Node trunk) {
+    public Tree(Foliage foliage, Vector position, TreeModel model) {
         this.foliage = foliage;
         this.position = position;
-        this.trunk = trunk;
+        this.model = model;
     }
 
     /**
@@ -59,12 +60,26 @@ public class Tree {
      *                 bodies before drawing them.
      */
     public void draw(GL2 gl, Vector camPos, Lighting lighting) {
-        gl.glPushMatrix();
-        gl.glTranslated(position.x(), position.y(), position.z());
-        lighting.setMaterial(gl, Material.BARK);
-        final int requiredDetailLevel = getRequiredDetailLevel(camPos);
-        trunk.draw(gl, lighting, foliage, requiredDetailLevel, 0);
-        gl.glPopMatrix();
+        draw(gl, lighting, getRequiredDetailLevel(camPos));
+    }
+
+    /**
+     * Draws the tree at the given detail level.
+     */
+    void draw(GL2 gl, Lighting lighting, int detailLevel) {
+        final ModelViewStack modelView = foliage.getModelView();
+        modelView.pushMatrix(gl);
+        modelView.translate(gl, position.x(), position.y(), position.z());
+        model.draw(gl, lighting, foliage, detailLevel);
+        modelView.popMatrix(gl);
+    }
+
+    Vector getPosition() {
+        return position;
+    }
+
+    TreeModel getModel() {
+        return model;
     }
 
     /**
@@ -79,7 +94,7 @@ public class Tree {
      * @return An arbitrarily defined integer value between 0 <= x <= 3. The
      *         greater this value, the more detail is required.
      */
-    private int getRequiredDetailLevel(Vector camPos) {
+    int getRequiredDetailLevel(Vector camPos) {
         final float distanceToEye = (float) Math.abs(camPos.subtract(position).length());
         if (distanceToEye > 1500f) {
             return 0;
@@ -102,8 +117,8 @@ public class Tree {
         private final Vector scale;
         private final float zRotation;
         private final float yRotation;
-        private final Set<Node> childLeafs;
-        private final Set<Node> childBranches;
+        private final List<Node> childLeafs;
+        private final List<Node> childBranches;
         private final boolean isLeaf;
         private final float sidewaysTranslation;
 
@@ -131,7 +146,7 @@ public class Tree {
          *                            of the parent branch.
          */
         public Node(float zTranslation, Vector scale, float zRotation, float yRotation, float sidewaysTranslation) {
-            this(zTranslation, scale, zRotation, yRotation, new HashSet<>(0), new HashSet<>(0), true, sidewaysTranslation);
+            this(zTranslation, scale, zRotation, yRotation, new ArrayList<>(0), new ArrayList<>(0), true, sidewaysTranslation);
         }
 
         /**
@@ -148,15 +163,18 @@ public class Tree {
          *                      parent branch in degrees. The is in effect the
          *                      angle between this node and the parent branch,
          *                      if one imagines both in the same plane.
-         * @param childLeafs    A set of leaf nodes attached to this branch.
-         * @param childBranches A set of child branch nodes attached to this
-         *                      branch.
+         * @param childLeafs    A list of leaf nodes attached to this branch.
+         *                      When less detail is required, only the first
+         *                      ones are drawn.
+         * @param childBranches A list of child branch nodes attached to this
+         *                      branch. When less detail is required, only the
+         *                      first ones are drawn.
          */
-        public Node(float zTranslation, Vector scale, float zRotation, float yRotation, Set<Node> childLeafs, Set<Node> childBranches) {
+        public Node(float zTranslation, Vector scale, float zRotation, float yRotation, List<Node> childLeafs, List<Node> childBranches) {
             this(zTranslation, scale, zRotation, yRotation, childLeafs, childBranches, false, 0);
         }
 
-        private Node(float zTranslation, Vector scale, float zRotation, float yRotation, Set<Node> childLeafs, Set<Node> childBranches, boolean isLeaf, float sidewaysTranslation) {
+        private Node(float zTranslation, Vector scale, float zRotation, float yRotation, List<Node> childLeafs, List<Node> childBranches, boolean isLeaf, float sidewaysTranslation) {
             this.zTranslation = zTranslation;
             this.scale = scale;
             this.zRotation = zRotation;
@@ -167,38 +185,43 @@ public class Tree {
             this.sidewaysTranslation = sidewaysTranslation;
         }
 
-        public void draw(GL2 gl, Lighting lighting, Foliage foliage, int requiredDetailLevel, int depth) {
-            gl.glPushMatrix();
-            gl.glTranslated(0d, 0d, zTranslation);
-            gl.glRotated(zRotation, 0d, 0d, 1d);
-            gl.glRotated(yRotation, 0d, 1d, 0d);
-            gl.glPushMatrix();
+        /**
+         * Add this node and the descendants that are drawn at the given detail
+         * level to the draw lists of a {@link TreeModel}.
+         *
+         * @param requiredDetailLevel The detail level being baked.
+         * @param depth               The generation number of this node.
+         * @param parentMatrix        The matrix of the parent branch, before
+         *                            its scaling.
+         * @param branches            The list to add the branches to.
+         * @param leafs               The list to add the leafs to.
+         */
+        void bake(int requiredDetailLevel, int depth, double[] parentMatrix,
+                TreeModel.DrawList branches, TreeModel.DrawList leafs) {
+            final double[] matrix = parentMatrix.clone();
+            MatrixUtils.translate(matrix, 0d, 0d, zTranslation);
+            MatrixUtils.rotate(matrix, zRotation, 0d, 0d, 1d);
+            MatrixUtils.rotate(matrix, yRotation, 0d, 1d, 0d);
+            final double[] ownMatrix = matrix.clone();
             if (isLeaf) {
                 final float scaleMultiplier = (requiredDetailLevel == 0) ? (4f) : ((requiredDetailLevel == 1) ? (2f) : (1f));
-                gl.glScaled(scale.x() * scaleMultiplier, scale.y() * scaleMultiplier, scale.z() * scaleMultiplier);
-                gl.glTranslated(sidewaysTranslation, 0d, 0d);
-                gl.glRotated(zRotation, 0d, 0d, 1d);
-                foliage.drawLeaf(gl);
+                MatrixUtils.scale(ownMatrix, scale.x() * scaleMultiplier, scale.y() * scaleMultiplier, scale.z() * scaleMultiplier);
+                MatrixUtils.translate(ownMatrix, sidewaysTranslation, 0d, 0d);
+                MatrixUtils.rotate(ownMatrix, zRotation, 0d, 0d, 1d);
+                leafs.add(ownMatrix, 0);
             } else {
-                gl.glScaled(scale.x(), scale.y(), scale.z());
-                foliage.drawBranch(gl, calcRequiredDetailForBranch(requiredDetailLevel, (float) scale.x()));
+                MatrixUtils.scale(ownMatrix, scale.x(), scale.y(), scale.z());
+                branches.add(ownMatrix, calcRequiredDetailForBranch(requiredDetailLevel, (float) scale.x()));
             }
-            gl.glPopMatrix();
             final int maxNodes = (requiredDetailLevel == 0) ? (1)
                     : ((requiredDetailLevel == 1) ? (4)
                             : ((requiredDetailLevel == 2) ? (10)
                                     : (Integer.MAX_VALUE)));
-            if (!childLeafs.isEmpty()) {
-                lighting.setMaterial(gl, Material.LEAF);
-                childLeafs.stream().limit(maxNodes).forEach((node) -> node.draw(gl, lighting, foliage, requiredDetailLevel, depth + 1));
-                lighting.setMaterial(gl, Material.BARK);
-            }
+            childLeafs.stream().limit(maxNodes).forEach((node) -> node.bake(requiredDetailLevel, depth + 1, matrix, branches, leafs));
             if (!keepGoing(requiredDetailLevel, depth)) {
-                gl.glPopMatrix();
                 return;
             }
-            childBranches.stream().limit(maxNodes).forEach((child) -> child.draw(gl, lighting, foliage, requiredDetailLevel, depth + 1));
-            gl.glPopMatrix();
+            childBranches.stream().limit(maxNodes).forEach((child) -> child.bake(requiredDetailLevel, depth + 1, matrix, branches, leafs));
         }
 
         private boolean keepGoing(int requiredDetailLevel, int depth) {
@@ -26,9 +26,9 @@
  */
 package terrain.trees;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
-import java.util.Set;
 import robotrace.Vector;
 import terrain.trees.Tree.Node;
 
@@ -120,8 +120,8 @@ public class TreeGenerator {
      * @return A new branch node, fully configured with descendants.
      */
     private Tree.Node makeBranch(int depth, float scale, float translation, float zRotation, float yRotation) {
-        final Set<Node> childBranches = new HashSet<>();
-        final Set<Node> childLeafs = new HashSet<>();
+        final List<Node> childBranches = new ArrayList<>();
+        final List<Node> childLeafs = new ArrayList<>();
         final Vector scaleVector = new Vector(MAX_TRUNK_RADIUS * scale, MAX_TRUNK_RADIUS * scale, MAX_TRUNK_LENGTH * scale);
         final float branchLength = (float) scaleVector.z();
         if (depth < TREE_DEPTH) {
@@ -0,0 +1,170 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package terrain.trees;
+
+import bodies.ModelViewStack;
+import java.util.Arrays;
+import javax.media.opengl.GL2;
+import robotrace.Lighting;
+import robotrace.Material;
+import utility.MatrixUtils;
+
+/**
+ * The shape of a tree, worked out once for every detail level. Each level is
+ * a flat list of branches and a flat list of leafs, each with the matrix that
+ * places it relative to the foot of the tree. Drawing a tree is then just two
+ * loops, one per material, instead of a walk through all its nodes.
+ *
+ * Many trees can share a model.
+ *
+ * @author Arjan Boschman
+ */
+public class TreeModel {
+
+    /**
+     * The number of detail levels, see {@link Tree}.
+     */
+    public static final int DETAIL_LEVEL_COUNT = 4;
+
+    /**
+     * The matrices of the branches, per detail level.
+     */
+    private final float[][] branchMatrices = new float[DETAIL_LEVEL_COUNT][];
+    /**
+     * The detail level of the branch mesh of every branch, per detail level.
+     */
+    private final int[][] branchMeshes = new int[DETAIL_LEVEL_COUNT][];
+    /**
+     * The matrices of the leafs, per detail level.
+     */
+    private final float[][] leafMatrices = new float[DETAIL_LEVEL_COUNT][];
+
+    /**
+     * @param trunk The trunk of the tree, with all its branches and leafs.
+     */
+    public TreeModel(Tree.Node trunk) {
+        for (int detailLevel = 0; detailLevel < DETAIL_LEVEL_COUNT; detailLevel++) {
+            final DrawList branches = new DrawList();
+            final DrawList leafs = new DrawList();
+            trunk.bake(detailLevel, 0, MatrixUtils.identity(), branches, leafs);
+            branchMatrices[detailLevel] = branches.getMatrices();
+            branchMeshes[detailLevel] = branches.getMeshes();
+            leafMatrices[detailLevel] = leafs.getMatrices();
+        }
+    }
+
+    /**
+     * Draws the tree at the current transformation.
+     *
+     * @param gl          The instance of GL2 responsible for drawing the body.
+     * @param lighting    The Lighting instance used to set the materials.
+     * @param foliage     The Foliage with the branch and leaf bodies.
+     * @param detailLevel The detail level, between 0 (incl) and
+     *                    {@link #DETAIL_LEVEL_COUNT} (excl).
+     */
+    public void draw(GL2 gl, Lighting lighting, Foliage foliage, int detailLevel) {
+        final float[] branches = branchMatrices[detailLevel];
+        final int[] meshes = branchMeshes[detailLevel];
+        final ModelViewStack modelView = foliage.getModelView();
+        lighting.setMaterial(gl, Material.BARK);
+        for (int i = 0; i < meshes.length; i++) {
+            modelView.pushMatrix(gl);
+            modelView.multMatrix(gl, branches, i * MatrixUtils.MATRIX_SIZE);
+            foliage.drawBranch(gl, meshes[i]);
+            modelView.popMatrix(gl);
+        }
+        final float[] leafs = leafMatrices[detailLevel];
+        lighting.setMaterial(gl, Material.LEAF);
+        for (int offset = 0; offset < leafs.length; offset += MatrixUtils.MATRIX_SIZE) {
+            modelView.pushMatrix(gl);
+            modelView.multMatrix(gl, leafs, offset);
+            foliage.drawLeaf(gl);
+            modelView.popMatrix(gl);
+        }
+    }
+
+    /**
+     * @return The matrices of the branches at the given detail level, one
+     *         after another. Must not be changed.
+     */
+    float[] getBranchMatrices(int detailLevel) {
+        return branchMatrices[detailLevel];
+    }
+
+    /**
+     * @return The detail level of the branch mesh of every branch at the
+     *         given detail level. Must not be changed.
+     */
+    int[] getBranchMeshes(int detailLevel) {
+        return branchMeshes[detailLevel];
+    }
+
+    /**
+     * @return The matrices of the leafs at the given detail level, one after
+     *         another. Must not be changed.
+     */
+    float[] getLeafMatrices(int detailLevel) {
+        return leafMatrices[detailLevel];
+    }
+
+    public int getBranchCount(int detailLevel) {
+        return branchMeshes[detailLevel].length;
+    }
+
+    public int getLeafCount(int detailLevel) {
+        return leafMatrices[detailLevel].length / MatrixUtils.MATRIX_SIZE;
+    }
+
+    /**
+     * A growing list of matrices, each with the detail level of its mesh,
+     * used while baking.
+     */
+    static class DrawList {
+
+        private float[] matrices = new float[MatrixUtils.MATRIX_SIZE * 16];
+        private int[] meshes = new int[16];
+        private int size = 0;
+
+        void add(double[] matrix, int mesh) {
+            if (size == meshes.length) {
+                matrices = Arrays.copyOf(matrices, matrices.length * 2);
+                meshes = Arrays.copyOf(meshes, meshes.length * 2);
+            }
+            MatrixUtils.copyTo(matrix, matrices, size * MatrixUtils.MATRIX_SIZE);
+            meshes[size++] = mesh;
+        }
+
+        float[] getMatrices() {
+            return Arrays.copyOf(matrices, size * MatrixUtils.MATRIX_SIZE);
+        }
+
+        int[] getMeshes() {
+            return Arrays.copyOf(meshes, size);
+        }
+    }
+
+}
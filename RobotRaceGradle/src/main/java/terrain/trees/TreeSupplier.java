@@ -27,13 +27,11 @@
 package terrain.trees;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Random;
-import java.util.Set;
 import java.util.function.Supplier;
-import javafx.geometry.Point2D;
-import javafx.scene.shape.Rectangle;
 import robotrace.Vector;
 import terrain.HeightMap;
 
@@ -49,6 +47,11 @@ import terrain.HeightMap;
  * previously generated trees. 4: They're not underwater. 5: They're on
  * reasonably flat terrain.
  *
+ * The forbidden zones, including the clearings around the trees, are kept in
+ * a {@link ForbiddenAreaIndex}, so finding a location doesn't get slower as
+ * more trees are placed. See {@link Placement} for how the locations are
+ * picked.
+ *
  * @author Arjan Boschman
  */
 public class TreeSupplier implements Supplier<Tree> {
@@ -78,19 +81,114 @@ public class TreeSupplier implements Supplier<Tree> {
     private static final float MAX_TREE_ELEVATION = 145F;
 
     private static final int MAX_NR_UNIQUE_TREE_MODELS = 5;
+    /**
+     * The number of spots tried around a tree before it is considered to be
+     * surrounded, in the Poisson-disk placement.
+     */
+    private static final int CANDIDATE_ATTEMPTS = 30;
+    /**
+     * The number of random spots tried when no tree has room around it any
+     * more, before the bounds are considered to be full.
+     */
+    private static final int SEED_ATTEMPTS = 1000;
+
+    /**
+     * The ways in which locations for the trees can be picked.
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public enum Placement {
+
+        /**
+         * Random locations anywhere within the bounds. Trees may end up
+         * close together, as long as they're outside each other's clearing,
+         * and large parts may stay empty. Never runs out of locations, but
+         * takes ever longer to find one as the bounds fill up.
+         */
+        UNIFORM,
+        /**
+         * Poisson-disk sampling: each new tree is placed at a random distance
+         * between one and two clearing radii from an earlier one, and at
+         * least one clearing radius from all others. This spreads the trees
+         * evenly, and can fill the bounds completely.
+         */
+        POISSON_DISK
+    }
 
     private final Random rand = new Random(RAND_SEED);
     private final TreeGenerator treeGenerator = new TreeGenerator();
-    private final List<Tree.Node> cachedTreeTrunks = new ArrayList<>();
-    private final Set<Rectangle> forbiddenAreas = new HashSet<>();
-    private final Rectangle bounds;
+    private final List<TreeModel> cachedTreeModels = new ArrayList<>();
+    private final double boundsX;
+    private final double boundsY;
+    private final double boundsWidth;
+    private final double boundsHeight;
+    private final ForbiddenAreaIndex forbiddenAreas;
     private final HeightMap heightMap;
     private final Foliage foliage;
+    private final Placement placement;
+    /**
+     * The heights of the 3 by 3 meters around the spot being checked.
+     */
+    private final float[] surroundingHeights = new float[9];
+    /**
+     * The Poisson-disk placement keeps the trees in a grid of cells so small
+     * that each holds at most one tree: the index of the tree, or -1.
+     */
+    private final double sampleCellSize = TREE_CLEARING_RADIUS / Math.sqrt(2d);
+    private final int sampleColumns;
+    private final int[] sampleCells;
+    /**
+     * The x and y-coordinates of each tree of the Poisson-disk placement.
+     */
+    private double[] samples = new double[64];
+    private int sampleCount = 0;
+    /**
+     * The trees of the Poisson-disk placement that may still have room
+     * around them.
+     */
+    private int[] activeSamples = new int[32];
+    private int activeCount = 0;
+
+    /**
+     * Make a TreeSupplier with the uniform placement.
+     *
+     * @param x         The x-coordinate in meters of the bounds.
+     * @param y         The y-coordinate in meters of the bounds.
+     * @param width     The width in meters of the bounds.
+     * @param height    The height in meters of the bounds.
+     * @param heightMap The height map of the terrain.
+     * @param foliage   The Foliage the trees are drawn with.
+     */
+    public TreeSupplier(double x, double y, double width, double height, HeightMap heightMap, Foliage foliage) {
+        this(x, y, width, height, heightMap, foliage, Placement.UNIFORM);
+    }
 
-    public TreeSupplier(Rectangle bounds, HeightMap heightMap, Foliage foliage) {
-        this.bounds = bounds;
+    /**
+     * @param x         The x-coordinate in meters of the bounds.
+     * @param y         The y-coordinate in meters of the bounds.
+     * @param width     The width in meters of the bounds.
+     * @param height    The height in meters of the bounds.
+     * @param heightMap The height map of the terrain.
+     * @param foliage   The Foliage the trees are drawn with.
+     * @param placement How the locations of the trees are picked.
+     */
+    public TreeSupplier(double x, double y, double width, double height, HeightMap heightMap, Foliage foliage,
+            Placement placement) {
+        this.boundsX = x;
+        this.boundsY = y;
+        this.boundsWidth = width;
+        this.boundsHeight = height;
+        this.forbiddenAreas = new ForbiddenAreaIndex(x, y, width, height, 2d * TREE_CLEARING_RADIUS);
         this.heightMap = heightMap;
         this.foliage = foliage;
+        this.placement = placement;
+        if (placement == Placement.POISSON_DISK) {
+            this.sampleColumns = (int) Math.ceil(width / sampleCellSize);
+            this.sampleCells = new int[sampleColumns * (int) Math.ceil(height / sampleCellSize)];
+            Arrays.fill(sampleCells, -1);
+        } else {
+            this.sampleColumns = 0;
+            this.sampleCells = null;
+        }
     }
 
     /**
@@ -104,97 +202,222 @@ public class TreeSupplier implements Supplier<Tree> {
      * @param height The height in meters of the bounding box.
      */
     public void addForbiddenArea(double x, double y, double width, double height) {
-        this.forbiddenAreas.add(new Rectangle(x, y, width, height));
+        this.forbiddenAreas.add(x, y, width, height);
     }
 
+    /**
+     * Find a location for a tree and grow one there.
+     *
+     * @return The tree.
+     * @throws NoSuchElementException If the Poisson-disk placement found no
+     *                                room for another tree.
+     */
     @Override
     public Tree get() {
+        if (placement == Placement.POISSON_DISK) {
+            return getPoissonDisk();
+        }
         while (true) {
-            final Point2D coords = new Point2D(
-                    rand.nextDouble() * bounds.getWidth() + bounds.getX(),
-                    rand.nextDouble() * bounds.getHeight() + bounds.getY());
-            if (checkForbidden(coords)
-                    || checkAreaIsTooSteep(coords)
-                    || checkAreaIsUnderWater(coords)
-                    || checkAreaIsAboveTreeLine(coords)) {
+            final double x = rand.nextDouble() * boundsWidth + boundsX;
+            final double y = rand.nextDouble() * boundsHeight + boundsY;
+            if (!checkSuitable(x, y)) {
                 continue;
             }
-            addForbiddenArea(coords.getX() - TREE_CLEARING_RADIUS,
-                    coords.getY() - TREE_CLEARING_RADIUS,
+            addForbiddenArea(x - TREE_CLEARING_RADIUS,
+                    y - TREE_CLEARING_RADIUS,
                     2f * TREE_CLEARING_RADIUS, 2f * TREE_CLEARING_RADIUS);
             return new Tree(foliage,
-                    new Vector(coords.getX(), coords.getY(),
-                            heightMap.heightAt(coords.getX(), coords.getY())), getTreeTrunk());
+                    new Vector(x, y, getCenterHeight()), getTreeModel());
         }
     }
 
+    /**
+     * Place the next tree of the Poisson-disk placement, near a random tree
+     * that may still have room around it. When there is none, start anew at a
+     * random spot, to reach the parts of the bounds that are cut off from the
+     * trees so far by water or hills.
+     */
+    private Tree getPoissonDisk() {
+        while (activeCount > 0) {
+            final int activeIndex = rand.nextInt(activeCount);
+            final int sample = activeSamples[activeIndex];
+            for (int attempt = 0; attempt < CANDIDATE_ATTEMPTS; attempt++) {
+                final double angle = rand.nextDouble() * 2d * Math.PI;
+                final double distance = TREE_CLEARING_RADIUS * (1d + rand.nextDouble());
+                final double x = samples[2 * sample] + Math.cos(angle) * distance;
+                final double y = samples[2 * sample + 1] + Math.sin(angle) * distance;
+                if (isWithinBounds(x, y) && !checkTooCloseToTree(x, y) && checkSuitable(x, y)) {
+                    return addPoissonDiskTree(x, y);
+                }
+            }
+            //This tree is surrounded.
+            activeSamples[activeIndex] = activeSamples[--activeCount];
+        }
+        for (int attempt = 0; attempt < SEED_ATTEMPTS; attempt++) {
+            final double x = rand.nextDouble() * boundsWidth + boundsX;
+            final double y = rand.nextDouble() * boundsHeight + boundsY;
+            if (!checkTooCloseToTree(x, y) && checkSuitable(x, y)) {
+                return addPoissonDiskTree(x, y);
+            }
+        }
+        throw new NoSuchElementException("No room left for another tree.");
+    }
+
+    /**
+     * Grow a tree of the Poisson-disk placement at the location whose
+     * surrounding heights were last sampled.
+     */
+    private Tree addPoissonDiskTree(double x, double y) {
+        if (2 * sampleCount == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        if (activeCount == activeSamples.length) {
+            activeSamples = Arrays.copyOf(activeSamples, activeSamples.length * 2);
+        }
+        samples[2 * sampleCount] = x;
+        samples[2 * sampleCount + 1] = y;
+        sampleCells[getSampleCell(x, y)] = sampleCount;
+        activeSamples[activeCount++] = sampleCount;
+        sampleCount++;
+        return new Tree(foliage, new Vector(x, y, getCenterHeight()), getTreeModel());
+    }
+
+    private boolean isWithinBounds(double x, double y) {
+        return x >= boundsX && y >= boundsY && x < boundsX + boundsWidth && y < boundsY + boundsHeight;
+    }
+
+    /**
+     * @return The cell of the Poisson-disk placement that holds the given
+     *         location, which must be within the bounds.
+     */
+    private int getSampleCell(double x, double y) {
+        return (int) ((y - boundsY) / sampleCellSize) * sampleColumns + (int) ((x - boundsX) / sampleCellSize);
+    }
+
+    /**
+     * Check if a location is within the clearing of any tree of the
+     * Poisson-disk placement. The clearing can reach at most two cells away.
+     *
+     * @param x The x-coordinate in meters of the location.
+     * @param y The y-coordinate in meters of the location.
+     * @return True if it is.
+     */
+    private boolean checkTooCloseToTree(double x, double y) {
+        final int column = (int) ((x - boundsX) / sampleCellSize);
+        final int row = (int) ((y - boundsY) / sampleCellSize);
+        final int rows = sampleCells.length / sampleColumns;
+        for (int j = Math.max(0, row - 2); j <= Math.min(rows - 1, row + 2); j++) {
+            for (int i = Math.max(0, column - 2); i <= Math.min(sampleColumns - 1, column + 2); i++) {
+                final int sample = sampleCells[j * sampleColumns + i];
+                if (sample >= 0) {
+                    final double dx = samples[2 * sample] - x;
+                    final double dy = samples[2 * sample + 1] - y;
+                    if (dx * dx + dy * dy < TREE_CLEARING_RADIUS * TREE_CLEARING_RADIUS) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if a tree may grow at a location, by all rules but the distance
+     * to the trees of the Poisson-disk placement. Afterwards, the surrounding
+     * heights are those of the location.
+     *
+     * @param x The x-coordinate in meters of the location.
+     * @param y The y-coordinate in meters of the location.
+     * @return True if a tree may grow there.
+     */
+    private boolean checkSuitable(double x, double y) {
+        if (checkForbidden(x, y)) {
+            return false;
+        }
+        //Most spots are under water or above the tree line. A single height
+        //rules those out, before sampling the eight others.
+        final float center = heightMap.heightAt(x, y, HeightMap.Sampling.BILINEAR);
+        if (center < 0f || center > MAX_TREE_ELEVATION) {
+            return false;
+        }
+        heightMap.fillHeights(surroundingHeights, 0, x - 1d, y - 1d, 1d, 3, 3,
+                HeightMap.Sampling.BILINEAR);
+        return !(checkAreaIsTooSteep()
+                || checkAreaIsUnderWater()
+                || checkAreaIsAboveTreeLine());
+    }
+
     /**
      * Check if this supplier has already generated the maximum allotted number
-     * of tree types. If yes, then return a randomly selected trunk from the
-     * cache. Otherwise, generate a new trunk and cache it before returning it.
+     * of tree types. If yes, then return a randomly selected model from the
+     * cache. Otherwise, generate a new trunk, bake its model and cache it
+     * before returning it.
      *
-     * @return The root node of a tree.
+     * @return The model of a tree.
      */
-    private Tree.Node getTreeTrunk() {
-        if (cachedTreeTrunks.size() < MAX_NR_UNIQUE_TREE_MODELS) {
-            final Tree.Node trunk = treeGenerator.makeTreeTrunk();
-            cachedTreeTrunks.add(trunk);
-            return trunk;
+    private TreeModel getTreeModel() {
+        if (cachedTreeModels.size() < MAX_NR_UNIQUE_TREE_MODELS) {
+            final TreeModel model = new TreeModel(treeGenerator.makeTreeTrunk());
+            cachedTreeModels.add(model);
+            return model;
         } else {
-            return cachedTreeTrunks.get(rand.nextInt(MAX_NR_UNIQUE_TREE_MODELS));
+            return cachedTreeModels.get(rand.nextInt(MAX_NR_UNIQUE_TREE_MODELS));
         }
     }
 
     /**
      * Check if it is allowed to generate a tree at the given location.
      *
-     * @param coords The point to check.
+     * @param x The x-coordinate in meters of the point to check.
+     * @param y The y-coordinate in meters of the point to check.
      * @return True if the given coordinates are inside one of the forbidden
      *         areas and are thus illegible.
      */
-    private boolean checkForbidden(final Point2D coords) {
-        return forbiddenAreas.stream().anyMatch((rect) -> rect.contains(coords));
+    private boolean checkForbidden(double x, double y) {
+        return forbiddenAreas.contains(x, y);
     }
 
     /**
-     * Check if it is allowed to generate a tree at the given location.
+     * Check if it is allowed to generate a tree at the location whose
+     * surrounding heights were last sampled.
      *
-     * @param coords The point to check.
-     * @return True if the given coordinates are on a steep hill and are thus
-     *         illegible.
+     * @return True if the location is on a steep hill and is thus illegible.
      */
-    private boolean checkAreaIsTooSteep(final Point2D coords) {
-        final float center = heightMap.heightAt(coords.getX(), coords.getY());
-        final float north = heightMap.heightAt(coords.getX(), coords.getY() - 1d);
-        final float south = heightMap.heightAt(coords.getX(), coords.getY() + 1d);
-        final float west = heightMap.heightAt(coords.getX() - 1d, coords.getY());
-        final float east = heightMap.heightAt(coords.getX() + 1d, coords.getY());
-        return Math.abs(center - north) > MAX_DECLINATION
-                || Math.abs(center - south) > MAX_DECLINATION
-                || Math.abs(center - west) > MAX_DECLINATION
-                || Math.abs(center - east) > MAX_DECLINATION;
+    private boolean checkAreaIsTooSteep() {
+        final float center = getCenterHeight();
+        return Math.abs(center - surroundingHeights[1]) > MAX_DECLINATION //North
+                || Math.abs(center - surroundingHeights[7]) > MAX_DECLINATION //South
+                || Math.abs(center - surroundingHeights[3]) > MAX_DECLINATION //West
+                || Math.abs(center - surroundingHeights[5]) > MAX_DECLINATION; //East
     }
 
     /**
-     * Check if it is allowed to generate a tree at the given location.
+     * Check if it is allowed to generate a tree at the location whose
+     * surrounding heights were last sampled.
      *
-     * @param coords The point to check.
-     * @return True if the given coordinates are underwater and are thus
-     *         illegible.
+     * @return True if the location is underwater and is thus illegible.
      */
-    private boolean checkAreaIsUnderWater(final Point2D coords) {
-        return heightMap.heightAt(coords.getX(), coords.getY()) < 0f;
+    private boolean checkAreaIsUnderWater() {
+        return getCenterHeight() < 0f;
     }
 
     /**
-     * Check if it is allowed to generate a tree at the given location.
+     * Check if it is allowed to generate a tree at the location whose
+     * surrounding heights were last sampled.
      *
-     * @param coords The point to check.
-     * @return True if the given coordinates are above the tree line and are
-     *         thus illegible.
+     * @return True if the location is above the tree line and is thus
+     *         illegible.
+     */
+    private boolean checkAreaIsAboveTreeLine() {
+        return getCenterHeight() > MAX_TREE_ELEVATION;
+    }
+
+    /**
+     * @return The smooth height of the terrain at the location whose
+     *         surrounding heights were last sampled.
      */
-    private boolean checkAreaIsAboveTreeLine(final Point2D coords) {
-        return heightMap.heightAt(coords.getX(), coords.getY()) > MAX_TREE_ELEVATION;
+    private float getCenterHeight() {
+        return surroundingHeights[4];
     }
 
 }
@@ -0,0 +1,217 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package utility;
+
+import robotrace.Vector;
+
+/**
+ * Static utility class. Contains methods that build transformation matrices
+ * the way the OpenGL matrix stack does, so that a series of transformations
+ * can be worked out once and handed to OpenGL as a single matrix.
+ *
+ * Matrices are arrays of 16 doubles in column-major order, as expected by
+ * glMultMatrix and glLoadMatrix. Every transformation is applied to the right
+ * of the given matrix, like glTranslate, glRotate and glScale do.
+ *
+ * @author Arjan Boschman
+ */
+@SuppressWarnings("FinalClass")
+public final class MatrixUtils {
+
+    /**
+     * The number of elements in a matrix.
+     */
+    public static final int MATRIX_SIZE = 16;
+
+    /**
+     * @return A new identity matrix.
+     */
+    public static double[] identity() {
+        final double[] matrix = new double[MATRIX_SIZE];
+        matrix[0] = 1d;
+        matrix[5] = 1d;
+        matrix[10] = 1d;
+        matrix[15] = 1d;
+        return matrix;
+    }
+
+    /**
+     * Multiply the given matrix by a translation, like glTranslate.
+     *
+     * @param matrix The matrix to change.
+     * @param x      The translation along the x-axis.
+     * @param y      The translation along the y-axis.
+     * @param z      The translation along the z-axis.
+     */
+    public static void translate(double[] matrix, double x, double y, double z) {
+        for (int row = 0; row < 4; row++) {
+            matrix[12 + row] += matrix[row] * x + matrix[4 + row] * y + matrix[8 + row] * z;
+        }
+    }
+
+    /**
+     * Multiply the given matrix by a rotation, like glRotate.
+     *
+     * @param matrix The matrix to change.
+     * @param angle  The angle of rotation in degrees.
+     * @param x      The x-coordinate of the axis of rotation.
+     * @param y      The y-coordinate of the axis of rotation.
+     * @param z      The z-coordinate of the axis of rotation.
+     */
+    public static void rotate(double[] matrix, double angle, double x, double y, double z) {
+        final double length = Math.sqrt(x * x + y * y + z * z);
+        if (length == 0d) {
+            //Without an axis there is no rotation, as with glRotate.
+            return;
+        }
+        x /= length;
+        y /= length;
+        z /= length;
+        final double cos = Math.cos(Math.toRadians(angle));
+        final double sin = Math.sin(Math.toRadians(angle));
+        final double oneMinusCos = 1d - cos;
+        //The upper left 3 by 3 of the rotation matrix, one column after another.
+        final double[] rotation = {
+            x * x * oneMinusCos + cos, y * x * oneMinusCos + z * sin, x * z * oneMinusCos - y * sin,
+            x * y * oneMinusCos - z * sin, y * y * oneMinusCos + cos, y * z * oneMinusCos + x * sin,
+            x * z * oneMinusCos + y * sin, y * z * oneMinusCos - x * sin, z * z * oneMinusCos + cos};
+        for (int row = 0; row < 4; row++) {
+            final double m0 = matrix[row];
+            final double m1 = matrix[4 + row];
+            final double m2 = matrix[8 + row];
+            for (int column = 0; column < 3; column++) {
+                matrix[4 * column + row] = m0 * rotation[3 * column]
+                        + m1 * rotation[3 * column + 1]
+                        + m2 * rotation[3 * column + 2];
+            }
+        }
+    }
+
+    /**
+     * Multiply the given matrix by a scaling, like glScale.
+     *
+     * @param matrix The matrix to change.
+     * @param x      The scale factor along the x-axis.
+     * @param y      The scale factor along the y-axis.
+     * @param z      The scale factor along the z-axis.
+     */
+    public static void scale(double[] matrix, double x, double y, double z) {
+        for (int row = 0; row < 4; row++) {
+            matrix[row] *= x;
+            matrix[4 + row] *= y;
+            matrix[8 + row] *= z;
+        }
+    }
+
+    /**
+     * Multiply the given matrix by another one, like glMultMatrix.
+     *
+     * @param matrix The matrix to change.
+     * @param other  The array holding the matrix to multiply by.
+     * @param offset The index in the array of the first element.
+     */
+    public static void multiply(double[] matrix, float[] other, int offset) {
+        for (int row = 0; row < 4; row++) {
+            final double m0 = matrix[row];
+            final double m1 = matrix[4 + row];
+            final double m2 = matrix[8 + row];
+            final double m3 = matrix[12 + row];
+            for (int column = 0; column < 4; column++) {
+                final int o = offset + 4 * column;
+                matrix[4 * column + row] = m0 * other[o] + m1 * other[o + 1] + m2 * other[o + 2] + m3 * other[o + 3];
+            }
+        }
+    }
+
+    /**
+     * Multiply the given matrix by another one, like glMultMatrix.
+     *
+     * @param matrix The matrix to change.
+     * @param other  The matrix to multiply by.
+     */
+    public static void multiply(double[] matrix, double[] other) {
+        for (int row = 0; row < 4; row++) {
+            final double m0 = matrix[row];
+            final double m1 = matrix[4 + row];
+            final double m2 = matrix[8 + row];
+            final double m3 = matrix[12 + row];
+            for (int column = 0; column < 4; column++) {
+                final int o = 4 * column;
+                matrix[o + row] = m0 * other[o] + m1 * other[o + 1] + m2 * other[o + 2] + m3 * other[o + 3];
+            }
+        }
+    }
+
+    /**
+     * Make the viewing matrix that gluLookAt multiplies the current matrix
+     * by.
+     *
+     * @param eye    The position of the camera.
+     * @param center The point the camera looks at.
+     * @param up     The direction that is up in the picture.
+     *
+     * @return A new viewing matrix.
+     */
+    public static double[] lookAt(Vector eye, Vector center, Vector up) {
+        final Vector forward = center.subtract(eye).normalized();
+        final Vector side = forward.cross(up).normalized();
+        final Vector trueUp = side.cross(forward);
+        final double[] matrix = identity();
+        matrix[0] = side.x();
+        matrix[4] = side.y();
+        matrix[8] = side.z();
+        matrix[1] = trueUp.x();
+        matrix[5] = trueUp.y();
+        matrix[9] = trueUp.z();
+        matrix[2] = -forward.x();
+        matrix[6] = -forward.y();
+        matrix[10] = -forward.z();
+        translate(matrix, -eye.x(), -eye.y(), -eye.z());
+        return matrix;
+    }
+
+    /**
+     * Copy a matrix into a float array, for glMultMatrixf.
+     *
+     * @param matrix The matrix to copy.
+     * @param dest   The array to copy it into.
+     * @param offset The index in the array of the first element.
+     */
+    public static void copyTo(double[] matrix, float[] dest, int offset) {
+        for (int i = 0; i < MATRIX_SIZE; i++) {
+            dest[offset + i] = (float) matrix[i];
+        }
+    }
+
+    /**
+     * Empty, private constructor to make sure no instance of this final class
+     * is ever created.
+     */
+    private MatrixUtils() {
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package utility;
+
+/**
+ * Static utility class. Contains counter based random numbers: numbers that
+ * are computed from a seed and a position rather than drawn one after
+ * another, so that they are the same whatever the order in which they are
+ * asked for.
+ *
+ * @author Arjan Boschman
+ */
+@SuppressWarnings("FinalClass")
+public final class RandomUtils {
+
+    /**
+     * A random number that is the same every time for the same seed and
+     * position: the SplitMix64 finaliser applied to the seed and the position.
+     *
+     * @param seed The seed.
+     * @param x    The first coordinate of the position.
+     * @param y    The second coordinate of the position.
+     * @return A number in [0, 1).
+     */
+    public static float floatAt(long seed, int x, int y) {
+        long z = seed + (((long) x << 32) ^ (y & 0xFFFF_FFFFL)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        //The top 24 bits, the same precision as Random.nextFloat().
+        return (z >>> 40) / (float) (1 << 24);
+    }
+
+    private RandomUtils() {
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import bodies.assembly.Vertex;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that hold for every mesh the builders and assemblers make, and
+ * measurements to compare a mesh with the shape it should have.
+ *
+ * @author Arjan Boschman
+ */
+final class MeshAssertions {
+
+    /**
+     * The number of floats per vertex in the buffers produced by the
+     * assemblers.
+     */
+    static final int FLOATS_PER_VERTEX = Vertex.NR_VERTEX_ELEMENTS * Vertex.COORD_COUNT;
+
+    /**
+     * Normals need not be unit length, OpenGL normalises them, but they must
+     * have a direction.
+     */
+    private static final double MIN_NORMAL_LENGTH = 1e-3d;
+
+    /**
+     * Assert that a mesh is well formed: whole vertices, whole triangles,
+     * every index pointing at a vertex, no degenerate triangles and a normal
+     * for every vertex.
+     *
+     * @param mesh The mesh.
+     */
+    static void assertWellFormed(MeshCache.Entry mesh) {
+        final FloatBuffer data = mesh.getData();
+        assertEquals("Partial vertex in the data.", 0, data.capacity() % FLOATS_PER_VERTEX);
+        final int vertexCount = getVertexCount(mesh);
+        assertEquals(mesh.getIndexBuffers().size(), mesh.getTextureSlots().length);
+        assertEquals(mesh.getIndexBuffers().size(), mesh.getBaseVertices().length);
+        for (int buffer = 0; buffer < mesh.getIndexBuffers().size(); buffer++) {
+            final IntBuffer indices = mesh.getIndexBuffers().get(buffer);
+            final int baseVertex = mesh.getBaseVertices()[buffer];
+            assertEquals("Partial triangle in index buffer " + buffer + ".", 0, indices.capacity() % 3);
+            for (int i = 0; i < indices.capacity(); i++) {
+                final int vertex = baseVertex + indices.get(i);
+                assertTrue("Index " + vertex + " outside of " + vertexCount + " vertices.", vertex >= 0 && vertex < vertexCount);
+            }
+            for (int triangle = 0; triangle < indices.capacity() / 3; triangle++) {
+                assertTrue("Degenerate triangle " + triangle + " in index buffer " + buffer + ".",
+                        getTriangleArea(mesh, buffer, triangle) > 0d);
+            }
+        }
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            final int base = vertex * FLOATS_PER_VERTEX + Vertex.COORD_COUNT;
+            final double length = Math.sqrt(data.get(base) * data.get(base)
+                    + data.get(base + 1) * data.get(base + 1) + data.get(base + 2) * data.get(base + 2));
+            assertTrue("Normal of vertex " + vertex + " has no direction.", length > MIN_NORMAL_LENGTH);
+        }
+    }
+
+    /**
+     * @param mesh The mesh.
+     * @return The number of vertices in the data of the mesh.
+     */
+    static int getVertexCount(MeshCache.Entry mesh) {
+        return mesh.getData().capacity() / FLOATS_PER_VERTEX;
+    }
+
+    /**
+     * @param mesh The mesh.
+     * @return The number of triangles in all index buffers of the mesh.
+     */
+    static int getTriangleCount(MeshCache.Entry mesh) {
+        int triangleCount = 0;
+        for (IntBuffer indices : mesh.getIndexBuffers()) {
+            triangleCount += indices.capacity() / 3;
+        }
+        return triangleCount;
+    }
+
+    /**
+     * Sum up the area of the triangles of a mesh whose first vertex has a
+     * normal with at least the given z component.
+     *
+     * @param mesh       The mesh.
+     * @param minNormalZ The smallest z component of the normal to include;
+     *                   -1 includes every triangle.
+     * @return The area in square meters.
+     */
+    static double getArea(MeshCache.Entry mesh, float minNormalZ) {
+        double area = 0d;
+        for (int buffer = 0; buffer < mesh.getIndexBuffers().size(); buffer++) {
+            final IntBuffer indices = mesh.getIndexBuffers().get(buffer);
+            for (int triangle = 0; triangle < indices.capacity() / 3; triangle++) {
+                final int first = mesh.getBaseVertices()[buffer] + indices.get(triangle * 3);
+                if (mesh.getData().get(first * FLOATS_PER_VERTEX + Vertex.COORD_COUNT + 2) >= minNormalZ) {
+                    area += getTriangleArea(mesh, buffer, triangle);
+                }
+            }
+        }
+        return area;
+    }
+
+    /**
+     * @param mesh The mesh.
+     * @param axis The axis: 0 for x, 1 for y and 2 for z.
+     * @return The smallest and the largest coordinate of any vertex along the
+     *         axis.
+     */
+    static float[] getRange(MeshCache.Entry mesh, int axis) {
+        final float[] range = {Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int vertex = 0; vertex < getVertexCount(mesh); vertex++) {
+            final float coordinate = mesh.getData().get(vertex * FLOATS_PER_VERTEX + axis);
+            range[0] = Math.min(range[0], coordinate);
+            range[1] = Math.max(range[1], coordinate);
+        }
+        return range;
+    }
+
+    /**
+     * @param mesh The mesh.
+     * @return The smallest and the largest distance of any vertex to the
+     *         z-axis.
+     */
+    static double[] getRadialRange(MeshCache.Entry mesh) {
+        final double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int vertex = 0; vertex < getVertexCount(mesh); vertex++) {
+            final double radius = Math.hypot(mesh.getData().get(vertex * FLOATS_PER_VERTEX),
+                    mesh.getData().get(vertex * FLOATS_PER_VERTEX + 1));
+            range[0] = Math.min(range[0], radius);
+            range[1] = Math.max(range[1], radius);
+        }
+        return range;
+    }
+
+    private static double getTriangleArea(MeshCache.Entry mesh, int buffer, int triangle) {
+        final IntBuffer indices = mesh.getIndexBuffers().get(buffer);
+        final int baseVertex = mesh.getBaseVertices()[buffer];
+        final FloatBuffer data = mesh.getData();
+        final int a = (baseVertex + indices.get(triangle * 3)) * FLOATS_PER_VERTEX;
+        final int b = (baseVertex + indices.get(triangle * 3 + 1)) * FLOATS_PER_VERTEX;
+        final int c = (baseVertex + indices.get(triangle * 3 + 2)) * FLOATS_PER_VERTEX;
+        final double ux = data.get(b) - data.get(a), uy = data.get(b + 1) - data.get(a + 1), uz = data.get(b + 2) - data.get(a + 2);
+        final double vx = data.get(c) - data.get(a), vy = data.get(c + 1) - data.get(a + 1), vz = data.get(c + 2) - data.get(a + 2);
+        final double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+        return Math.sqrt(nx * nx + ny * ny + nz * nz) / 2d;
+    }
+
+    private MeshAssertions() {
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import com.jogamp.common.nio.Buffers;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Stores meshes in a temporary directory and reads them back.
+ *
+ * @author Arjan Boschman
+ */
+public class MeshCacheTest {
+
+    private static final String KEY = "test mesh";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    private Path directory;
+    private AtomicInteger generated;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath().resolve("meshcache");
+        generated = new AtomicInteger();
+    }
+
+    @Test
+    public void storedMeshIsReadBack() {
+        final MeshCache.Entry original = makeEntry(1000);
+        new MeshCache(directory).computeIfAbsent(KEY, generate(original));
+        final MeshCache.Entry loaded = new MeshCache(directory).computeIfAbsent(KEY, generate(makeEntry(5)));
+        assertEquals(1, generated.get());
+        assertEntryEquals(original, loaded);
+        assertEquals(original.getByteCount(), loaded.getByteCount());
+    }
+
+    @Test
+    public void otherKeyIsGenerated() {
+        final MeshCache cache = new MeshCache(directory);
+        cache.computeIfAbsent(KEY, generate(makeEntry(10)));
+        final MeshCache.Entry other = makeEntry(20);
+        assertEntryEquals(other, cache.computeIfAbsent(KEY + " 2", generate(other)));
+        assertEquals(2, generated.get());
+    }
+
+    @Test
+    public void truncatedFileIsGeneratedAgain() throws IOException {
+        final MeshCache cache = new MeshCache(directory);
+        cache.computeIfAbsent(KEY, generate(makeEntry(1000)));
+        final Path file = getOnlyFile();
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+        final MeshCache.Entry replacement = makeEntry(30);
+        assertEntryEquals(replacement, cache.computeIfAbsent(KEY, generate(replacement)));
+        assertEquals(2, generated.get());
+        //The replacement is stored in place of the damaged file.
+        assertEquals(file, getOnlyFile());
+        assertEntryEquals(replacement, new MeshCache(directory).computeIfAbsent(KEY, generate(makeEntry(5))));
+        assertEquals(2, generated.get());
+    }
+
+    @Test
+    public void fileOfAnotherVersionIsGeneratedAgain() throws IOException {
+        final MeshCache cache = new MeshCache(directory);
+        cache.computeIfAbsent(KEY, generate(makeEntry(10)));
+        final Path file = getOnlyFile();
+        final byte[] bytes = Files.readAllBytes(file);
+        //The version follows the magic number.
+        bytes[4] ^= 0x7F;
+        Files.write(file, bytes);
+        cache.computeIfAbsent(KEY, generate(makeEntry(10)));
+        assertEquals(2, generated.get());
+    }
+
+    @Test
+    public void emptyMeshIsReadBack() {
+        final MeshCache.Entry empty = new MeshCache.Entry(Buffers.newDirectFloatBuffer(0), new ArrayList<>(), new int[0]);
+        new MeshCache(directory).computeIfAbsent(KEY, generate(empty));
+        assertEntryEquals(empty, new MeshCache(directory).computeIfAbsent(KEY, generate(makeEntry(5))));
+        assertEquals(1, generated.get());
+    }
+
+    private Supplier<MeshCache.Entry> generate(MeshCache.Entry entry) {
+        return () -> {
+            generated.incrementAndGet();
+            return entry;
+        };
+    }
+
+    /**
+     * Get the only file in the cache directory, which also checks that no
+     * temporary files were left behind.
+     */
+    private Path getOnlyFile() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(files::add);
+        }
+        assertEquals(files.toString(), 1, files.size());
+        return files.get(0);
+    }
+
+    /**
+     * Make a mesh of the given number of vertices, with three index buffers of
+     * different lengths.
+     */
+    private static MeshCache.Entry makeEntry(int vertexCount) {
+        final FloatBuffer data = Buffers.newDirectFloatBuffer(vertexCount * MeshAssertions.FLOATS_PER_VERTEX);
+        for (int i = 0; i < data.capacity(); i++) {
+            data.put(i, i * 0.25f - vertexCount);
+        }
+        final List<IntBuffer> indexBuffers = new ArrayList<>();
+        final int[] textureSlots = new int[3];
+        final int[] baseVertices = new int[3];
+        for (int b = 0; b < 3; b++) {
+            final IntBuffer indices = Buffers.newDirectIntBuffer(3 * (b + 1) * vertexCount);
+            for (int i = 0; i < indices.capacity(); i++) {
+                indices.put(i, (i * 7 + b) % vertexCount);
+            }
+            indexBuffers.add(indices);
+            textureSlots[b] = b - 1;
+            baseVertices[b] = b * vertexCount;
+        }
+        return new MeshCache.Entry(data, indexBuffers, textureSlots, baseVertices);
+    }
+
+    private static void assertEntryEquals(MeshCache.Entry expected, MeshCache.Entry actual) {
+        assertNotNull(actual);
+        assertArrayEquals(toArray(expected.getData()), toArray(actual.getData()), 0f);
+        assertEquals(expected.getIndexBuffers().size(), actual.getIndexBuffers().size());
+        for (int b = 0; b < expected.getIndexBuffers().size(); b++) {
+            assertArrayEquals(toArray(expected.getIndexBuffers().get(b)), toArray(actual.getIndexBuffers().get(b)));
+        }
+        assertArrayEquals(expected.getTextureSlots(), actual.getTextureSlots());
+        assertArrayEquals(expected.getBaseVertices(), actual.getBaseVertices());
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        final float[] values = new float[buffer.remaining()];
+        buffer.duplicate().get(values);
+        return values;
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        final int[] values = new int[buffer.remaining()];
+        buffer.duplicate().get(values);
+        return values;
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import static bodies.MeshAssertions.assertWellFormed;
+import static bodies.MeshAssertions.getArea;
+import static bodies.MeshAssertions.getRadialRange;
+import static bodies.MeshAssertions.getRange;
+import static bodies.MeshAssertions.getTriangleCount;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Builds stacked bodies without an OpenGL context, and compares them with the
+ * shapes they describe.
+ *
+ * @author Arjan Boschman
+ */
+public class StackBuilderTest {
+
+    private static final double TOLERANCE = 1e-4d;
+
+    @Test
+    public void closedPrismHasTheAreaOfItsSidesAndCaps() {
+        final int sliceCount = 8;
+        final MeshCache.Entry mesh = new StackBuilder(null)
+                .setSliceCount(sliceCount)
+                .addConicalFrustum(1f, 1f, 0f, 2f, true, true)
+                .buildMesh();
+        assertWellFormed(mesh);
+        final double side = 2d * Math.sin(Math.PI / sliceCount);
+        final double capArea = sliceCount / 2d * Math.sin(2d * Math.PI / sliceCount);
+        assertEquals(sliceCount * side * 2d + 2d * capArea, getArea(mesh, -1f), TOLERANCE);
+        assertArrayEquals(new float[]{0f, 2f}, getRange(mesh, 2), (float) TOLERANCE);
+        assertEquals(1d, getRadialRange(mesh)[1], TOLERANCE);
+    }
+
+    @Test
+    public void openFrustumHasNoCaps() {
+        final int sliceCount = 16;
+        final MeshCache.Entry mesh = new StackBuilder(null)
+                .setSliceCount(sliceCount)
+                .addConicalFrustum(2f, 1f, 0f, 1f, false, false)
+                .buildMesh();
+        assertWellFormed(mesh);
+        //Every side is a trapezoid of two triangles.
+        assertEquals(2 * sliceCount, getTriangleCount(mesh));
+        final double bottomSide = 4d * Math.sin(Math.PI / sliceCount);
+        final double topSide = 2d * Math.sin(Math.PI / sliceCount);
+        final double slantHeight = Math.hypot(1d, (2d - 1d) * Math.cos(Math.PI / sliceCount));
+        assertEquals(sliceCount * (bottomSide + topSide) / 2d * slantHeight, getArea(mesh, -1f), TOLERANCE);
+    }
+
+    @Test
+    public void stackedElementsGoOnTopOfEachOther() {
+        final MeshCache.Entry mesh = new StackBuilder(null)
+                .setSliceCount(12)
+                .addConicalFrustum(1f, 1f, 0f, 0.5f, true, false)
+                .addPartialTorus(6, 1f, 0.5f, 0.5f, 1.5f, false, true)
+                .buildMesh();
+        assertWellFormed(mesh);
+        assertArrayEquals(new float[]{0f, 1.5f}, getRange(mesh, 2), (float) TOLERANCE);
+        //The caps are polygons between the corners, without a centre vertex.
+        assertArrayEquals(new double[]{0.5d, 1d}, getRadialRange(mesh), TOLERANCE);
+    }
+
+    @Test
+    public void surfacesWithoutTexturesShareOneIndexBuffer() {
+        final MeshCache.Entry mesh = new StackBuilder(null)
+                .setSliceCount(10)
+                .addConicalFrustum(1f, 1f, 0f, 1f, true, true)
+                .addConicalFrustum(1f, 0.5f, 1f, 2f, false, true)
+                .buildMesh();
+        assertEquals(1, mesh.getIndexBuffers().size());
+        assertArrayEquals(new int[]{StaticBatcher.NO_TEXTURE}, mesh.getTextureSlots());
+    }
+
+}
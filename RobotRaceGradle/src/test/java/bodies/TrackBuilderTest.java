@@ -0,0 +1,97 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies;
+
+import bodies.assembly.Vertex;
+import static bodies.MeshAssertions.assertWellFormed;
+import static bodies.MeshAssertions.getArea;
+import static bodies.MeshAssertions.getRadialRange;
+import static bodies.MeshAssertions.getRange;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Builds tracks without an OpenGL context, and compares them with the shapes
+ * they describe.
+ *
+ * @author Arjan Boschman
+ */
+public class TrackBuilderTest {
+
+    private static final float LANE_WIDTH = 1.22f;
+    private static final int LANE_COUNT = 4;
+    private static final float TRACK_WIDTH = LANE_WIDTH * LANE_COUNT;
+    private static final float TRACK_HEIGHT = 1f;
+    /**
+     * The area is summed up from float vertices, hundreds of meters apart.
+     */
+    private static final double RELATIVE_TOLERANCE = 1e-5d;
+
+    @Test
+    public void straightTrackIsABox() {
+        final List<Vertex> trackDescription = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            trackDescription.add(new Vertex(i, 0f, 0f));
+        }
+        final MeshCache.Entry mesh = new TrackBuilder(null)
+                .setTrackProperties(LANE_WIDTH, LANE_COUNT, TRACK_HEIGHT, false)
+                .buildMesh(trackDescription, Collections.emptyList());
+        assertWellFormed(mesh);
+        assertArrayEquals(new float[]{0f, 10f}, getRange(mesh, 0), 1e-5f);
+        assertArrayEquals(new float[]{-TRACK_WIDTH / 2f, TRACK_WIDTH / 2f}, getRange(mesh, 1), 1e-5f);
+        assertEquals(10d * TRACK_WIDTH, getArea(mesh, 0.99f), 10d * TRACK_WIDTH * RELATIVE_TOLERANCE);
+    }
+
+    @Test
+    public void closedTrackFollowsItsCentreLine() {
+        final int pointCount = 64;
+        final double radius = 20d;
+        final List<Vertex> trackDescription = new ArrayList<>();
+        for (int i = 0; i < pointCount; i++) {
+            final double angle = 2d * Math.PI * i / pointCount;
+            trackDescription.add(new Vertex((float) (radius * Math.cos(angle)), (float) (radius * Math.sin(angle)), 0f));
+        }
+        final MeshCache.Entry mesh = new TrackBuilder(null)
+                .setTrackProperties(LANE_WIDTH, LANE_COUNT, TRACK_HEIGHT, true)
+                .buildMesh(trackDescription, Collections.emptyList());
+        assertWellFormed(mesh);
+        //Each corner of the centre polygon is moved out and in by half the width.
+        final double innerRadius = radius - TRACK_WIDTH / 2d;
+        final double outerRadius = radius + TRACK_WIDTH / 2d;
+        final double[] radialRange = getRadialRange(mesh);
+        assertEquals(innerRadius, radialRange[0], 1e-4d);
+        assertEquals(outerRadius, radialRange[1], 1e-4d);
+        final double topArea = pointCount / 2d * Math.sin(2d * Math.PI / pointCount)
+                * (outerRadius * outerRadius - innerRadius * innerRadius);
+        assertEquals(topArea, getArea(mesh, 0.99f), topArea * RELATIVE_TOLERANCE);
+    }
+
+}
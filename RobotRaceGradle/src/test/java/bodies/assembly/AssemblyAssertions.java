@@ -0,0 +1,84 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies.assembly;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks shared by the tests of the assemblers.
+ *
+ * @author Arjan Boschman
+ */
+final class AssemblyAssertions {
+
+    private static final int FLOATS_PER_VERTEX = Vertex.NR_VERTEX_ELEMENTS * Vertex.COORD_COUNT;
+
+    /**
+     * Assert that the triangle lists of an assembly refer to its vertices, add
+     * up to its triangle count, and have one texture each.
+     *
+     * @param data          The vertex data of the assembly.
+     * @param indexBuffers  The triangle lists of the assembly.
+     * @param triangleCount The triangle count reported by the assembly.
+     * @param textureCount  The number of textures reported by the assembly.
+     */
+    static void assertConsistent(FloatBuffer data, List<IntBuffer> indexBuffers, int triangleCount, int textureCount) {
+        assertEquals(0, data.remaining() % FLOATS_PER_VERTEX);
+        final int vertexCount = data.remaining() / FLOATS_PER_VERTEX;
+        assertEquals(textureCount, indexBuffers.size());
+        int indexCount = 0;
+        for (IntBuffer indices : indexBuffers) {
+            assertEquals(0, indices.remaining() % 3);
+            for (int i = indices.position(); i < indices.limit(); i++) {
+                assertTrue(indices.get(i) >= 0 && indices.get(i) < vertexCount);
+            }
+            indexCount += indices.remaining();
+        }
+        assertEquals(3 * triangleCount, indexCount);
+    }
+
+    /**
+     * Assert that the reordering did not make the average cache miss ratio
+     * worse, and that it is at least as high as for a mesh of perfectly
+     * shared vertices.
+     *
+     * @param acmrBefore The average cache miss ratio before reordering.
+     * @param acmrAfter  The average cache miss ratio after reordering.
+     */
+    static void assertReordered(double acmrBefore, double acmrAfter) {
+        assertTrue(acmrAfter > 0.5d);
+        assertTrue(acmrAfter <= acmrBefore);
+    }
+
+    private AssemblyAssertions() {
+    }
+
+}
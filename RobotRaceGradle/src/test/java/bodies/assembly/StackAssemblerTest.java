@@ -0,0 +1,78 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies.assembly;
+
+import static bodies.assembly.AssemblyAssertions.assertConsistent;
+import static bodies.assembly.AssemblyAssertions.assertReordered;
+import java.nio.IntBuffer;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Assembles stacked bodies without an OpenGL context.
+ *
+ * @author Arjan Boschman
+ */
+public class StackAssemblerTest {
+
+    @Test
+    public void closedCylinderHasTwoCapsAndOneSide() {
+        final int sliceCount = 20;
+        final StackAssembler assembler = new StackAssembler();
+        assembler.addConicalFrustum(sliceCount, 1f, 1f, 0f, 1f, true, true, null, null, null);
+        assembler.compileSurfaceCompilation();
+        final List<IntBuffer> indexBuffers = assembler.getIndicesBuffers(true);
+        assertConsistent(assembler.getDataBuffer(), indexBuffers, assembler.getTriangleCount(), assembler.getTextureList().size());
+        assertEquals(3, indexBuffers.size());
+        //The rings repeat their first vertex, so each cap is a fan of sliceCount - 1 triangles.
+        assertEquals(2 * (sliceCount - 1) + 2 * sliceCount, assembler.getTriangleCount());
+        assertReordered(assembler.getAcmrBefore(), assembler.getAcmrAfter());
+    }
+
+    @Test
+    public void torusIsReordered() {
+        final StackAssembler assembler = new StackAssembler();
+        assembler.addConicalFrustum(32, 1f, 1f, 0f, 0.5f, true, false, null, null, null);
+        assembler.addPartialTorus(32, 16, 1f, 0.5f, 0.5f, 1.5f, false, true, null, null, null);
+        assembler.compileSurfaceCompilation();
+        final List<IntBuffer> indexBuffers = assembler.getIndicesBuffers(true);
+        assertConsistent(assembler.getDataBuffer(), indexBuffers, assembler.getTriangleCount(), assembler.getTextureList().size());
+        assertReordered(assembler.getAcmrBefore(), assembler.getAcmrAfter());
+    }
+
+    @Test
+    public void cacheMissesAreOnlyMeasuredOnRequest() {
+        final StackAssembler assembler = new StackAssembler();
+        assembler.addConicalFrustum(12, 1f, 0.5f, 0f, 1f, true, true, null, null, null);
+        assembler.compileSurfaceCompilation();
+        assembler.getIndicesBuffers(false);
+        assertEquals(0d, assembler.getAcmrBefore(), 0d);
+        assertEquals(0d, assembler.getAcmrAfter(), 0d);
+    }
+
+}
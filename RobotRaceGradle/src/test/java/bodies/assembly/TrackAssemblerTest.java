@@ -0,0 +1,83 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies.assembly;
+
+import static bodies.assembly.AssemblyAssertions.assertConsistent;
+import static bodies.assembly.AssemblyAssertions.assertReordered;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Assembles tracks without an OpenGL context.
+ *
+ * @author Arjan Boschman
+ */
+public class TrackAssemblerTest {
+
+    private static final float LANE_WIDTH = 1.22f;
+    private static final int LANE_COUNT = 4;
+    private static final float TRACK_HEIGHT = 1f;
+
+    @Test
+    public void closedTrackIsConsistent() {
+        final TrackAssembler assembler = new TrackAssembler();
+        assembler.calculateTrack(makeCircle(200, 30d), LANE_WIDTH, LANE_COUNT, TRACK_HEIGHT, true, null, null, null);
+        final List<IntBuffer> indexBuffers = assembler.getIndicesBuffers(true);
+        assertConsistent(assembler.getDataBuffer(), indexBuffers, assembler.getTriangleCount(), assembler.getTextureList().size());
+        assertReordered(assembler.getAcmrBefore(), assembler.getAcmrAfter());
+    }
+
+    @Test
+    public void openTrackHasMoreTrianglesForItsEnds() {
+        final List<Vertex> trackDescription = new ArrayList<>();
+        for (int i = 0; i <= 50; i++) {
+            trackDescription.add(new Vertex(i, 0f, 0f));
+        }
+        final TrackAssembler closedAssembler = new TrackAssembler();
+        closedAssembler.calculateTrack(trackDescription, LANE_WIDTH, LANE_COUNT, TRACK_HEIGHT, true, null, null, null);
+        closedAssembler.getIndicesBuffers(false);
+        final TrackAssembler openAssembler = new TrackAssembler();
+        openAssembler.calculateTrack(trackDescription, LANE_WIDTH, LANE_COUNT, TRACK_HEIGHT, false, null, null, null);
+        final List<IntBuffer> indexBuffers = openAssembler.getIndicesBuffers(false);
+        assertConsistent(openAssembler.getDataBuffer(), indexBuffers, openAssembler.getTriangleCount(), openAssembler.getTextureList().size());
+        //The open track lacks the segment back to the start, but has two end caps.
+        assertEquals(closedAssembler.getTriangleCount() - 8 + 4, openAssembler.getTriangleCount());
+    }
+
+    private static List<Vertex> makeCircle(int pointCount, double radius) {
+        final List<Vertex> trackDescription = new ArrayList<>(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            final double angle = 2d * Math.PI * i / pointCount;
+            trackDescription.add(new Vertex((float) (radius * Math.cos(angle)), (float) (radius * Math.sin(angle)), 0f));
+        }
+        return trackDescription;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package bodies.assembly;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks that reordering a triangle list keeps its triangles, and makes better
+ * use of the vertex cache.
+ *
+ * @author Arjan Boschman
+ */
+public class VertexCacheOptimizerTest {
+
+    @Test
+    public void gridKeepsItsTriangles() {
+        final int[] indices = makeGrid(40, 40);
+        final int[] original = indices.clone();
+        VertexCacheOptimizer.optimize(indices, 41 * 41);
+        assertArrayEquals(getSortedTriangles(original), getSortedTriangles(indices));
+    }
+
+    @Test
+    public void shuffledTrianglesAreKept() {
+        final int[] indices = shuffleTriangles(makeGrid(25, 30), new Random(42L));
+        final int[] original = indices.clone();
+        VertexCacheOptimizer.optimize(indices, 26 * 31);
+        assertArrayEquals(getSortedTriangles(original), getSortedTriangles(indices));
+    }
+
+    @Test
+    public void gridHasFewerCacheMisses() {
+        final int vertexCount = 41 * 41;
+        final int[] indices = makeGrid(40, 40);
+        final int missesBefore = VertexCacheOptimizer.countCacheMisses(indices, vertexCount);
+        VertexCacheOptimizer.optimize(indices, vertexCount);
+        final int missesAfter = VertexCacheOptimizer.countCacheMisses(indices, vertexCount);
+        //Every vertex has to be transformed at least once.
+        assertTrue(missesAfter >= vertexCount);
+        assertTrue(missesAfter < missesBefore);
+    }
+
+    @Test
+    public void shuffledTrianglesHaveFewerCacheMisses() {
+        final int vertexCount = 26 * 31;
+        final int[] indices = shuffleTriangles(makeGrid(25, 30), new Random(7L));
+        final int missesBefore = VertexCacheOptimizer.countCacheMisses(indices, vertexCount);
+        VertexCacheOptimizer.optimize(indices, vertexCount);
+        assertTrue(VertexCacheOptimizer.countCacheMisses(indices, vertexCount) < missesBefore);
+    }
+
+    @Test
+    public void singleTriangleIsLeftAlone() {
+        final int[] indices = {2, 0, 1};
+        VertexCacheOptimizer.optimize(indices, 3);
+        assertArrayEquals(new int[]{2, 0, 1}, indices);
+    }
+
+    @Test
+    public void missesAreCountedFirstInFirstOut() {
+        final int[] indices = new int[3 * (VertexCacheOptimizer.CACHE_SIZE + 3)];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i % (VertexCacheOptimizer.CACHE_SIZE + 1);
+        }
+        //Cycling through one vertex more than fits in the cache misses on every index.
+        assertEquals(indices.length, VertexCacheOptimizer.countCacheMisses(indices, VertexCacheOptimizer.CACHE_SIZE + 1));
+        Arrays.fill(indices, 0);
+        assertEquals(1, VertexCacheOptimizer.countCacheMisses(indices, 1));
+    }
+
+    /**
+     * Make a grid of quads, two triangles each, in rows.
+     */
+    private static int[] makeGrid(int columns, int rows) {
+        final int[] indices = new int[6 * columns * rows];
+        int i = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                final int corner = y * (columns + 1) + x;
+                indices[i++] = corner;
+                indices[i++] = corner + 1;
+                indices[i++] = corner + columns + 2;
+                indices[i++] = corner;
+                indices[i++] = corner + columns + 2;
+                indices[i++] = corner + columns + 1;
+            }
+        }
+        return indices;
+    }
+
+    private static int[] shuffleTriangles(int[] indices, Random random) {
+        final List<int[]> triangles = new ArrayList<>();
+        for (int t = 0; t < indices.length / 3; t++) {
+            triangles.add(Arrays.copyOfRange(indices, 3 * t, 3 * t + 3));
+        }
+        Collections.shuffle(triangles, random);
+        final int[] shuffled = new int[indices.length];
+        for (int t = 0; t < triangles.size(); t++) {
+            System.arraycopy(triangles.get(t), 0, shuffled, 3 * t, 3);
+        }
+        return shuffled;
+    }
+
+    /**
+     * Rotate every triangle to start at its smallest index, which keeps its
+     * winding, and sort the triangles.
+     */
+    private static long[] getSortedTriangles(int[] indices) {
+        final long[] triangles = new long[indices.length / 3];
+        for (int t = 0; t < triangles.length; t++) {
+            int first = 0;
+            for (int corner = 1; corner < 3; corner++) {
+                if (indices[3 * t + corner] < indices[3 * t + first]) {
+                    first = corner;
+                }
+            }
+            long key = 0L;
+            for (int corner = 0; corner < 3; corner++) {
+                key = (key << 21) | indices[3 * t + (first + corner) % 3];
+            }
+            triangles[t] = key;
+        }
+        Arrays.sort(triangles);
+        return triangles;
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack;
+
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Samples every track type and checks the slices against the bounds the
+ * sampler promises.
+ *
+ * @author Arjan Boschman
+ */
+public class AdaptiveTrackSamplerTest {
+
+    private static final double[] MAX_DEVIATIONS = {0.1d, AdaptiveTrackSampler.DEFAULT_MAX_DEVIATION};
+    /**
+     * The sampler allows the tangent to turn ten degrees between slices.
+     */
+    private static final double MIN_TURN_COSINE = Math.cos(Math.toRadians(10d)) - 1e-12d;
+
+    @Test
+    public void slicesRunFromZeroToOne() {
+        for (int trackType = 0; trackType <= RaceTrackDefinition.getMaxTypeID(); trackType++) {
+            final double[] ts = new AdaptiveTrackSampler(trackType, AdaptiveTrackSampler.DEFAULT_MAX_DEVIATION).sample();
+            assertEquals(0d, ts[0], 0d);
+            assertEquals(1d, ts[ts.length - 1], 0d);
+            for (int i = 1; i < ts.length; i++) {
+                assertTrue("Track type " + trackType + " at slice " + i, ts[i] > ts[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void slicesStayCloseToTheTrack() {
+        for (int trackType = 0; trackType <= RaceTrackDefinition.getMaxTypeID(); trackType++) {
+            for (double maxDeviation : MAX_DEVIATIONS) {
+                final double[] ts = new AdaptiveTrackSampler(trackType, maxDeviation).sample();
+                final double deviation = AdaptiveTrackSampler.measureDeviation(trackType, ts);
+                assertTrue("Track type " + trackType + " strays " + deviation + " from its slices.",
+                        deviation <= maxDeviation);
+            }
+        }
+    }
+
+    @Test
+    public void tangentTurnsLittleBetweenSlices() {
+        for (int trackType = 0; trackType <= RaceTrackDefinition.getMaxTypeID(); trackType++) {
+            final double[] ts = new AdaptiveTrackSampler(trackType, AdaptiveTrackSampler.DEFAULT_MAX_DEVIATION).sample();
+            final double[] pointsAndTangents = new double[ts.length * RaceTrackDefinition.POINT_AND_TANGENT_SIZE];
+            RaceTrackDefinition.getTrackPointsAndTangents(trackType, ts, pointsAndTangents);
+            for (int i = 1; i < ts.length; i++) {
+                double cosine = 0d;
+                for (int axis = 0; axis < 3; axis++) {
+                    cosine += pointsAndTangents[(i - 1) * RaceTrackDefinition.POINT_AND_TANGENT_SIZE + 3 + axis]
+                            * pointsAndTangents[i * RaceTrackDefinition.POINT_AND_TANGENT_SIZE + 3 + axis];
+                }
+                assertTrue("Track type " + trackType + " at slice " + i, cosine >= MIN_TURN_COSINE);
+            }
+        }
+    }
+
+    @Test
+    public void jointsBetweenSegmentsAreSlices() {
+        for (int trackType = 0; trackType <= RaceTrackDefinition.getMaxTypeID(); trackType++) {
+            final double[] ts = new AdaptiveTrackSampler(trackType, AdaptiveTrackSampler.DEFAULT_MAX_DEVIATION).sample();
+            final int segmentCount = RaceTrackDefinition.getSegmentCount(trackType);
+            for (int segment = 0; segment <= segmentCount; segment++) {
+                assertTrue("Track type " + trackType + " at joint " + segment,
+                        Arrays.binarySearch(ts, segment / (double) segmentCount) >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void smallerDeviationTakesMoreSlices() {
+        for (int trackType = 0; trackType <= RaceTrackDefinition.getMaxTypeID(); trackType++) {
+            final int coarse = new AdaptiveTrackSampler(trackType, 0.1d).sample().length;
+            final int fine = new AdaptiveTrackSampler(trackType, 0.001d).sample().length;
+            assertTrue("Track type " + trackType, fine > coarse);
+        }
+    }
+
+}
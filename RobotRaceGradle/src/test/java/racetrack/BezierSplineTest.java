@@ -0,0 +1,187 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import robotrace.Vector;
+
+/**
+ * Compares the spline with the Bernstein form of its segments, and its
+ * derivatives and tangents with finite differences.
+ *
+ * @author Arjan Boschman
+ */
+public class BezierSplineTest {
+
+    private static final double TOLERANCE = 1e-9d;
+    private static final double STEP = 1e-6d;
+    /**
+     * Central differences of {@link #STEP} are accurate to about STEP^2 times
+     * the third derivative, plus rounding of about 1e-16 / STEP.
+     */
+    private static final double DIFFERENCE_TOLERANCE = 1e-5d;
+
+    private final Random random = new Random(11L);
+    private final Vector[] controlPoints = makeControlPoints(random, 3);
+    private final BezierSpline spline = new BezierSpline(controlPoints);
+
+    @Test
+    public void pointsMatchTheBernsteinForm() {
+        assertEquals(3, spline.getSegmentCount());
+        for (int i = 0; i <= 300; i++) {
+            final double t = i / 300d;
+            assertVectorEquals(getBernsteinPoint(controlPoints, t), spline.getPoint(t), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void segmentsStartAtTheirFirstControlPoint() {
+        for (int segment = 0; segment < 3; segment++) {
+            assertVectorEquals(controlPoints[4 * segment], spline.getPoint(segment / 3d), TOLERANCE);
+        }
+        assertVectorEquals(controlPoints[11], spline.getPoint(1d), TOLERANCE);
+    }
+
+    @Test
+    public void derivativesMatchFiniteDifferences() {
+        final double[] evaluation = new double[BezierSpline.EVALUATION_SIZE];
+        final double[] before = new double[BezierSpline.EVALUATION_SIZE];
+        final double[] after = new double[BezierSpline.EVALUATION_SIZE];
+        for (int i = 0; i < 200; i++) {
+            final double t = getInteriorParameter(i);
+            spline.evaluate(t, evaluation, 0);
+            spline.evaluate(t - STEP, before, 0);
+            spline.evaluate(t + STEP, after, 0);
+            for (int axis = 0; axis < 3; axis++) {
+                final int first = BezierSpline.FIRST_DERIVATIVE + axis;
+                final int second = BezierSpline.SECOND_DERIVATIVE + axis;
+                final double scale = 1d + Math.abs(evaluation[first]);
+                assertEquals((after[BezierSpline.POINT + axis] - before[BezierSpline.POINT + axis]) / (2d * STEP),
+                        evaluation[first], DIFFERENCE_TOLERANCE * scale);
+                assertEquals((after[first] - before[first]) / (2d * STEP),
+                        evaluation[second], DIFFERENCE_TOLERANCE * (1d + Math.abs(evaluation[second])));
+            }
+        }
+    }
+
+    @Test
+    public void manyParametersAreEvaluatedLikeOne() {
+        final double[] ts = new double[50];
+        for (int i = 0; i < ts.length; i++) {
+            ts[i] = random.nextDouble();
+        }
+        final double[] evaluations = new double[ts.length * BezierSpline.EVALUATION_SIZE];
+        spline.evaluate(ts, evaluations);
+        final double[] evaluation = new double[BezierSpline.EVALUATION_SIZE];
+        for (int i = 0; i < ts.length; i++) {
+            spline.evaluate(ts[i], evaluation, 0);
+            for (int j = 0; j < BezierSpline.EVALUATION_SIZE; j++) {
+                assertEquals(evaluation[j], evaluations[i * BezierSpline.EVALUATION_SIZE + j], 0d);
+            }
+        }
+    }
+
+    @Test
+    public void tangentsFollowTheChordOfASmallStep() {
+        for (int i = 0; i < 200; i++) {
+            final double t = getInteriorParameter(i);
+            final Vector chord = spline.getPoint(t + STEP).subtract(spline.getPoint(t - STEP)).normalized();
+            final Vector tangent = spline.getTangent(t);
+            assertEquals(1d, tangent.length(), TOLERANCE);
+            assertVectorEquals(chord, tangent, DIFFERENCE_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void tangentIsDefinedWhereTheSplineStands() {
+        final Vector start = new Vector(1d, 2d, 0d);
+        final Vector end = new Vector(5d, -3d, 1d);
+        //The inner control points coincide with the end points, so the first derivative vanishes at both.
+        final BezierSpline standing = new BezierSpline(start, start, new Vector(4d, 4d, 0d), end,
+                end, end, start, start);
+        for (double t : new double[]{0d, 0.5d, 1d}) {
+            final double[] evaluation = new double[BezierSpline.EVALUATION_SIZE];
+            standing.evaluate(t, evaluation, 0);
+            assertEquals(0d, BezierSpline.toVector(evaluation, BezierSpline.FIRST_DERIVATIVE).length(), TOLERANCE);
+        }
+        //The tangent is the direction the spline leaves in, or arrives from.
+        assertVectorEquals(standing.getPoint(STEP).subtract(start).normalized(), standing.getTangent(0d), 1e-5d);
+        assertVectorEquals(end.subtract(standing.getPoint(0.5d - STEP)).normalized(),
+                standing.getTangent(0.5d - 1e-12d), 1e-5d);
+        assertVectorEquals(start.subtract(end).normalized(), standing.getTangent(1d), TOLERANCE);
+    }
+
+    @Test
+    public void tangentOfAPointIsDefined() {
+        final Vector point = new Vector(1d, 1d, 1d);
+        final BezierSpline still = new BezierSpline(point, point, point, point);
+        assertEquals(1d, still.getTangent(0.3d).length(), TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partialSegmentIsRejected() {
+        new BezierSpline(Vector.O, Vector.X, Vector.Y);
+    }
+
+    /**
+     * A parameter at least a few steps away from the joints between
+     * segments, where the derivatives jump.
+     */
+    private static double getInteriorParameter(int i) {
+        final double t = (i + 0.5d) / 200d;
+        final double u = t * 3d - Math.floor(t * 3d);
+        return (u < 1e-3d || u > 1d - 1e-3d) ? t + 2e-3d : t;
+    }
+
+    private static Vector[] makeControlPoints(Random random, int segmentCount) {
+        final Vector[] points = new Vector[4 * segmentCount];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Vector(random.nextDouble() * 100d - 50d, random.nextDouble() * 100d - 50d, random.nextDouble() * 5d);
+        }
+        return points;
+    }
+
+    private static Vector getBernsteinPoint(Vector[] controlPoints, double t) {
+        final int segmentCount = controlPoints.length / 4;
+        final int segment = Math.min(segmentCount - 1, (int) Math.floor(t * segmentCount));
+        final double u = t * segmentCount - segment;
+        final double v = 1d - u;
+        return controlPoints[4 * segment].scale(v * v * v)
+                .add(controlPoints[4 * segment + 1].scale(3d * v * v * u))
+                .add(controlPoints[4 * segment + 2].scale(3d * v * u * u))
+                .add(controlPoints[4 * segment + 3].scale(u * u * u));
+    }
+
+    private static void assertVectorEquals(Vector expected, Vector actual, double tolerance) {
+        assertEquals(expected.x(), actual.x(), tolerance);
+        assertEquals(expected.y(), actual.y(), tolerance);
+        assertEquals(expected.z(), actual.z(), tolerance);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * TU/e Eindhoven University of Technology
+ * Course: Computer Graphics
+ * Course Code: 2IV60
+ * Assignment: RobotRace
+ * 
+ * This code is based on 6 template classes, as well as the RobotRaceLibrary. 
+ * Both were provided by the course tutor, currently prof.dr.ir. 
+ * J.J. (Jack) van Wijk. (e-mail: j.j.v.wijk@tue.nl)
+ * 
+ * Copyright (C) 2015 Arjan Boschman, Robke Geenen
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package racetrack;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Converts between distances and track parameters, and compares the lookups
+ * with a plain linear scan of the same table.
+ *
+ * @author Arjan Boschman
+ */
+public class RaceTrackDistancesTest {
+
+    private static final double TOLERANCE = 1e-9d;
+
+    @Test
+    public void emptyTableGivesZero() {
+        final RaceTrackDistances table = new RaceTrackDistances();
+        assertEquals(0d, table.getDistance(0.5d), 0d);
+        assertEquals(0d, table.getT(3d), 0d);
+        assertEquals(0d, table.getLength(), 0d);
+    }
+
+    @Test
+    public void pairsAreFoundExactly() {
+        final RaceTrackDistances table = makeUniformTable(10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i * 5d, table.getDistance(i / 10d), TOLERANCE);
+            assertEquals(i / 10d, table.getT(i * 5d), TOLERANCE);
+        }
+        assertEquals(50d, table.getLength(), TOLERANCE);
+    }
+
+    @Test
+    public void valuesBetweenPairsAreInterpolated() {
+        final RaceTrackDistances table = new RaceTrackDistances();
+        table.addPair(0d, 0d);
+        table.addPair(1d, 0.5d);
+        table.addPair(3d, 1d);
+        assertEquals(0.5d, table.getDistance(0.25d), TOLERANCE);
+        assertEquals(2.5d, table.getDistance(0.75d), TOLERANCE);
+        assertEquals(0.25d, table.getT(0.5d), TOLERANCE);
+        assertEquals(0.75d, table.getT(2.5d), TOLERANCE);
+    }
+
+    @Test
+    public void furtherLapsWrapAround() {
+        final RaceTrackDistances table = makeUniformTable(100);
+        assertEquals(table.getDistance(0.37d), table.getDistance(5.37d), TOLERANCE);
+        assertEquals(table.getT(12.5d), table.getT(12.5d + 7d * table.getLength()), TOLERANCE);
+        //The end of a lap is the start of the next one.
+        assertEquals(0d, table.getDistance(1d), TOLERANCE);
+        assertEquals(0d, table.getT(table.getLength()), TOLERANCE);
+    }
+
+    @Test
+    public void lookUpsMatchALinearScan() {
+        final Random random = new Random(3L);
+        final int pairCount = 1000;
+        final double[] distances = new double[pairCount];
+        final double[] ts = new double[pairCount];
+        final RaceTrackDistances table = new RaceTrackDistances();
+        table.addPair(0d, 0d);
+        for (int i = 1; i < pairCount; i++) {
+            final double deltaDistance = 0.1d + random.nextDouble();
+            distances[i] = distances[i - 1] + deltaDistance;
+            ts[i] = i / (pairCount - 1d);
+            table.addPair(deltaDistance, ts[i]);
+        }
+        assertEquals(distances[pairCount - 1], table.getLength(), TOLERANCE);
+        for (int i = 0; i < 1000; i++) {
+            final double t = random.nextDouble();
+            assertEquals(scan(t, ts, distances), table.getDistance(t), TOLERANCE);
+            final double distance = random.nextDouble() * table.getLength();
+            assertEquals(scan(distance, distances, ts), table.getT(distance), TOLERANCE);
+        }
+    }
+
+    /**
+     * Make a table of the given number of segments, each five long, over a
+     * lap from t = 0 to t = 1.
+     */
+    private static RaceTrackDistances makeUniformTable(int segmentCount) {
+        final RaceTrackDistances table = new RaceTrackDistances();
+        table.addPair(0d, 0d);
+        for (int i = 1; i <= segmentCount; i++) {
+            table.addPair(5d, i / (double) segmentCount);
+        }
+        return table;
+    }
+
+    private static double scan(double key, double[] keys, double[] values) {
+        for (int i = 1; i < keys.length; i++) {
+            if (key <= keys[i]) {
+                final double scale = (key - keys[i - 1]) / (keys[i] - keys[i - 1]);
+                return (1d - scale) * values[i - 1] + scale * values[i];
+            }
+        }
+        return values[values.length - 1];
+    }
+
+}